@@ -29,9 +29,14 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Writer;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.Vector;
 
 /**
@@ -45,11 +50,16 @@ class AXSDataWriter {
 	}
 	
 	private static boolean sWriteGeneratedAnnotation = true;
+	private static boolean sWriteMatchers = false;
 	
 	public static void setUseGeneratedAnnotation(boolean write) {
 		sWriteGeneratedAnnotation = write;
 	}
 	
+	public static void setGenerateMatchers(boolean write) {
+		sWriteMatchers = write;
+	}
+	
 	/**
 	 * Write out the compiled _AXSData as Java source code to the given writer
 	 * @param w the writer to which the code should be written.
@@ -66,20 +76,39 @@ class AXSDataWriter {
 		int nrTexts = axsData.numberOfXPathMethods();
 		int nrEnds = axsData.numberOfXPathEndMethods();
 		int nrStarts = axsData.numberOfXPathStartMethods();
+		int nrStreams = axsData.numberOfXPathStreamMethods();
 		Vector<CompiledAXSData.Method> methods = axsData.methods();
 		
 		writeHeader(w, axsData);
-		writeCallFunction(w, axsData.className(), "callXPathText", "String", methods.subList(0, nrTexts));
-		writeCallFunction(w, axsData.className(), "callXPathEnd", null, methods.subList(nrTexts, nrTexts+nrEnds));
-		writeCallFunction(w, axsData.className(), "callXPathStart", "Attributes", methods.subList(nrTexts+nrEnds, nrTexts+nrEnds+nrStarts));
+		writeCallFunction(w, axsData.className(), "void", "callXPathText", "String", methods.subList(0, nrTexts));
+		writeCallFunction(w, axsData.className(), "void", "callXPathText", "CapturedText", methods.subList(0, nrTexts));
+		writeCallFunction(w, axsData.className(), "void", "callXPathEnd", null, methods.subList(nrTexts, nrTexts+nrEnds));
+		writeCallFunction(w, axsData.className(), "void", "callXPathStart", "Attributes", methods.subList(nrTexts+nrEnds, nrTexts+nrEnds+nrStarts));
+		writeCallFunction(w, axsData.className(), "Writer", "callXPathStream", "Attributes",
+				methods.subList(nrTexts+nrEnds+nrStarts, nrTexts+nrEnds+nrStarts+nrStreams));
 		writeInt(w, "getAXSDataVersion", AbstractAnnotatedHandler.AXSDATA_VERSION);
 		writeInt(w, "getNumberOfCapturingExpressions", nrTexts);
 		writeInt(w, "getNumberOfEndExpressions", nrEnds);
+		writeInt(w, "getNumberOfStreamExpressions", nrStreams);
 		writeInt(w, "getMaximumPredicateStackDepth", axsData.maximumPredicateStackDepth());
 		writeTriggerTags(w, axsData.triggers());
+		writeTriggerDispatch(w, axsData.triggers(), nrTexts, nrEnds);
 		writeSet(w, "AttributeCaptureTags", "getAttributeCaptureTags", axsData.attributeCaptureTags());
 		writeSet(w, "PositionCaptureTags", "getPositionCaptureTags", axsData.positionCaptureTags());
+		writeAttributeProjections(w, axsData.attributeProjections(), axsData.fullAttributeCaptures());
 		writeExpressions(w, methods, axsData.instructions(), axsData.literals(), axsData.qNames());
+		writeLimits(w, axsData.limits());
+		writeExclusiveGroups(w, axsData.expressionGroups());
+		writePatterns(w, axsData.literals(), axsData.patternLiterals(), axsData.simplePatternLiterals());
+		writeKeywordSets(w, axsData.literals(), axsData.keywordSets());
+		writeStepPredicates(w, axsData.stepPredicates());
+		writePrefixTrie(w, new CompiledPrefixTrie(axsData.instructions()));
+		writeSuffixTrie(w, new CompiledSuffixTrie(axsData.instructions()));
+		writeAutomaton(w, new CompiledAutomaton(axsData.instructions()));
+		if (sWriteMatchers)
+			MatcherWriter.writeMatchers(w, axsData);
+		else
+			MatcherWriter.writeNoMatchers(w);
 		writeFooter(w);
 	}
 	
@@ -101,10 +130,33 @@ class AXSDataWriter {
 	 * @param n
 	 * @throws IOException
 	 */
-	private static void indent(Writer w, int n) throws IOException {
+	static void indent(Writer w, int n) throws IOException {
 		while (n-- > 0)
 			w.write(' ');
 	}
+	
+	/**
+	 * Quote a string as a Java string literal
+	 * @param s
+	 * @return the literal, including the quotes
+	 */
+	static String javaString(String s) {
+		StringBuilder sb = new StringBuilder(s.length() + 2);
+		
+		sb.append('"');
+		for (int i = 0, len = s.length(); i < len; i++) {
+			char c = s.charAt(i);
+			
+			if (c == '"' || c == '\\')
+				sb.append('\\').append(c);
+			else if (c < ' ' || c > '~')
+				sb.append(String.format("\\u%04x", (int) c));
+			else
+				sb.append(c);
+		}
+		sb.append('"');
+		return sb.toString();
+	}
 
 	/**
 	 * Write the all-stars comment line of appropriate length for the license block
@@ -156,10 +208,12 @@ class AXSDataWriter {
 		w.write("\npackage ");
 		w.write(axsData.packageName());
 		w.write(";\n\n");
+		writeImport(w, "java.io.Writer");
 		writeImport(w, "java.util.HashMap");
 		writeImport(w, "java.util.HashSet");
 		writeImport(w, "java.util.Map");
 		writeImport(w, "java.util.Set");
+		writeImport(w, "java.util.regex.Pattern");
 		if (sWriteGeneratedAnnotation) {
 			writeImport(w, "javax.annotation.Generated");
 		}
@@ -168,9 +222,17 @@ class AXSDataWriter {
 		w.write("\n");
 		writeImport(w, "com.googlecode.axs.AXSData");
 		writeImport(w, "com.googlecode.axs.AbstractAnnotatedHandler");
+		writeImport(w, "com.googlecode.axs.Base64DecodingWriter");
+		writeImport(w, "com.googlecode.axs.CapturedText");
 		writeImport(w, "com.googlecode.axs.HandlerCallError");
+		writeImport(w, "com.googlecode.axs.KeywordSet");
+		writeImport(w, "com.googlecode.axs.MatchContext");
 		writeImport(w, "com.googlecode.axs.QName");
+		writeImport(w, "com.googlecode.axs.SimplePattern");
+		writeImport(w, "com.googlecode.axs.TextValues");
+		writeImport(w, "com.googlecode.axs.XPathAutomaton");
 		writeImport(w, "com.googlecode.axs.XPathExpression");
+		writeImport(w, "com.googlecode.axs.XPathSuffixTrie");
 		w.write("\n");
 		writeImport(w, axsData.packageName() + "." + axsData.className());
 		w.write("\n");
@@ -182,10 +244,12 @@ class AXSDataWriter {
 		indent(w, 4); w.write("private static Object Lock = new Object();\n\n");
 	}
 	
-	private static void writeCallFunction(Writer w, String className, String fnName,
+	private static void writeCallFunction(Writer w, String className, String returnType, String fnName,
 			String argType, List<CompiledAXSData.Method> methods) throws IOException {
+		final boolean returnsValue = !"void".equals(returnType);
+		
 		indent(w, 4); w.write("@Override\n");
-		indent(w, 4); w.write("public void ");
+		indent(w, 4); w.write("public " + returnType + " ");
 		w.write(fnName);
 		w.write("(AbstractAnnotatedHandler abstractHandler, int exprIx");
 		if (argType != null) {
@@ -200,11 +264,20 @@ class AXSDataWriter {
 		for (int i = 0, len = methods.size(); i < len; i++) {
 			indent(w, 8); w.write("case " + methods.get(i).index() + ": \n");
 			indent(w, 12); w.write("// \"" + methods.get(i).expression() + "\"\n");
-			indent(w, 12); w.write("handler." + methods.get(i).name() + "(");
+			// an OutputStream is only returned by an @XPathStream() method for base64 data
+			final boolean decodeBase64 = returnsValue &&
+					(methods.get(i).textParameter() == CompiledAXSData.Method.TEXT_BASE64_OUTPUT_STREAM);
+			
+			indent(w, 12);
+			if (returnsValue)
+				w.write(decodeBase64 ? "return Base64DecodingWriter.wrap(" : "return ");
+			w.write("handler." + methods.get(i).name() + "(");
 			if (argType != null)
-				w.write("callbackArg");
-			w.write(");\n");
-			indent(w, 12); w.write("break;\n");
+				w.write(callArguments(methods.get(i), argType));
+			w.write(decodeBase64 ? "));\n" : ");\n");
+			if (!returnsValue) {
+				indent(w, 12); w.write("break;\n");
+			}
 		}
 		
 		indent(w, 8); w.write("default: throw new HandlerCallError(\"unhandled call #\" + exprIx);\n");
@@ -212,6 +285,51 @@ class AXSDataWriter {
 		indent(w, 4); w.write("}\n\n");
 	}
 	
+	/**
+	 * Convert the callbackArg of a call function to the parameters of an annotated method.
+	 * @param method
+	 * @param argType the type of callbackArg
+	 * @return the argument list for the call
+	 */
+	private static String callArguments(CompiledAXSData.Method method, String argType) {
+		// the conversions are the same from a String or a CapturedText
+		if ("String".equals(argType) || "CapturedText".equals(argType)) {
+			switch (method.textParameter()) {
+			case CompiledAXSData.Method.TEXT_INT:
+				return "TextValues.parseInt(callbackArg)";
+			case CompiledAXSData.Method.TEXT_LONG:
+				return "TextValues.parseLong(callbackArg)";
+			case CompiledAXSData.Method.TEXT_DOUBLE:
+				return "TextValues.parseDouble(callbackArg)";
+			case CompiledAXSData.Method.TEXT_BOOLEAN:
+				return "TextValues.parseBoolean(callbackArg)";
+			case CompiledAXSData.Method.TEXT_BIG_DECIMAL:
+				return "TextValues.parseBigDecimal(callbackArg)";
+			case CompiledAXSData.Method.TEXT_ENUM:
+				return "TextValues.parseEnum(" + method.parameterType() + ".class, callbackArg)";
+			}
+		}
+		
+		if ("String".equals(argType)) {
+			switch (method.textParameter()) {
+			case CompiledAXSData.Method.TEXT_CHAR_RANGE:
+				return "callbackArg.toCharArray(), 0, callbackArg.length()";
+			default:
+				return "callbackArg";
+			}
+		} else if ("CapturedText".equals(argType)) {
+			switch (method.textParameter()) {
+			case CompiledAXSData.Method.TEXT_CHAR_SEQUENCE:
+				return "callbackArg";
+			case CompiledAXSData.Method.TEXT_CHAR_RANGE:
+				return "callbackArg.array(), callbackArg.offset(), callbackArg.length()";
+			default:
+				return "callbackArg.toString()";
+			}
+		}
+		return "callbackArg";
+	}
+	
 	private static void writeInt(Writer w, String getterName, int value) throws IOException {
 		indent(w, 4); w.write("@Override\n");
 		indent(w, 4); w.write("public int " + getterName + "() {\n");
@@ -219,7 +337,20 @@ class AXSDataWriter {
 		indent(w, 4); w.write("}\n\n");
 	}
 	
-	private static void writeTriggerTags(Writer w, Map<String, Vector<Integer>> triggers) throws IOException {
+	private static void writeTriggerTags(Writer w, Map<QName, Vector<Integer>> triggers) throws IOException {
+		// this older form of the triggers is only keyed by Local Name, so merge the
+		// triggers of the names which differ only by namespace
+		HashMap<String, TreeSet<Integer>> localNameTriggers = new HashMap<String, TreeSet<Integer>>();
+		for (Map.Entry<QName, Vector<Integer>> trigger : triggers.entrySet()) {
+			TreeSet<Integer> indices = localNameTriggers.get(trigger.getKey().getLocalPart());
+			
+			if (indices == null) {
+				indices = new TreeSet<Integer>();
+				localNameTriggers.put(trigger.getKey().getLocalPart(), indices);
+			}
+			indices.addAll(trigger.getValue());
+		}
+		
 		indent(w, 4); w.write("private static HashMap<String, int[]> Triggers = null;\n\n");
 		indent(w, 4); w.write("@Override\n");
 		indent(w, 4); w.write("public Map<String, int[]> getTriggerTags() {\n");
@@ -228,7 +359,7 @@ class AXSDataWriter {
 		indent(w, 16); w.write("return Triggers;\n");
 		indent(w, 12); w.write("Triggers = new HashMap<String, int[]>();\n");
 		
-		for (Map.Entry<String, Vector<Integer>> trigger : triggers.entrySet()) {
+		for (Map.Entry<String, TreeSet<Integer>> trigger : localNameTriggers.entrySet()) {
 			indent(w, 12); w.write("Triggers.put(\"" + trigger.getKey());
 			w.write("\", \n");
 			indent(w, 20); w.write("new int[] { ");
@@ -243,6 +374,186 @@ class AXSDataWriter {
 		indent(w, 4); w.write("}\n\n");
 	}
 	
+	/**
+	 * Write getTriggers(), which finds the trigger array for a tag name with a switch on
+	 * the length of its Local Name and then on the characters which tell the candidate names
+	 * apart, so that most names which trigger nothing are rejected without even a String
+	 * compare. Only the final candidate's Local Name and Namespace URI are compared.
+	 * Each name's triggers are split into the expressions to test when the tag starts
+	 * ({@literal @}XPath() and {@literal @}XPathStart()) and when it ends ({@literal @}XPath()
+	 * and {@literal @}XPathEnd()).
+	 * @param w
+	 * @param triggers
+	 * @param nrTexts the number of {@literal @}XPath() expressions
+	 * @param nrEnds the number of {@literal @}XPathEnd() expressions, which follow them
+	 * @throws IOException
+	 */
+	private static void writeTriggerDispatch(Writer w, Map<QName, Vector<Integer>> triggers,
+			int nrTexts, int nrEnds) throws IOException {
+		// sort the names for a stable output, and group them by Local Name and its length
+		TreeMap<String, Vector<QName>> qNamesByLocalName = new TreeMap<String, Vector<QName>>();
+		TreeMap<Integer, Vector<String>> namesByLength = new TreeMap<Integer, Vector<String>>();
+		HashMap<QName, Integer> arrayIndices = new HashMap<QName, Integer>();
+		
+		for (QName qName : triggers.keySet()) {
+			Vector<QName> qNames = qNamesByLocalName.get(qName.getLocalPart());
+			if (qNames == null) {
+				qNames = new Vector<QName>();
+				qNamesByLocalName.put(qName.getLocalPart(), qNames);
+				
+				Vector<String> names = namesByLength.get(qName.getLocalPart().length());
+				if (names == null) {
+					names = new Vector<String>();
+					namesByLength.put(qName.getLocalPart().length(), names);
+				}
+				names.add(qName.getLocalPart());
+			}
+			qNames.add(qName);
+		}
+		
+		for (Vector<QName> qNames : qNamesByLocalName.values()) {
+			Collections.sort(qNames, new Comparator<QName>() {
+				public int compare(QName a, QName b) {
+					return a.getNamespaceURI().compareTo(b.getNamespaceURI());
+				}
+			});
+			for (QName qName : qNames) {
+				Vector<Integer> startTriggers = new Vector<Integer>();
+				Vector<Integer> endTriggers = new Vector<Integer>();
+				
+				for (int ix : triggers.get(qName)) {
+					if (ix < nrTexts+nrEnds)
+						endTriggers.add(ix);
+					if (ix < nrTexts || ix >= nrTexts+nrEnds)
+						startTriggers.add(ix);
+				}
+				
+				indent(w, 4); w.write("private static final int[][] TriggerArray" + arrayIndices.size() + " = new int[][] { ");
+				writeTriggerArray(w, startTriggers);
+				writeTriggerArray(w, endTriggers);
+				w.write("};\n");
+				arrayIndices.put(qName, arrayIndices.size());
+			}
+		}
+		if (!arrayIndices.isEmpty())
+			w.write("\n");
+		
+		indent(w, 4); w.write("@Override\n");
+		indent(w, 4); w.write("public int[][] getTriggers(String namespaceURI, String localName) {\n");
+		if (!arrayIndices.isEmpty()) {
+			indent(w, 8); w.write("switch (localName.length()) {\n");
+			for (Map.Entry<Integer, Vector<String>> group : namesByLength.entrySet()) {
+				indent(w, 8); w.write("case " + group.getKey() + ":\n");
+				writeTriggerSwitch(w, 12, group.getValue(), new boolean[group.getKey()], qNamesByLocalName, arrayIndices);
+			}
+			indent(w, 8); w.write("}\n");
+		}
+		indent(w, 8); w.write("return null;\n");
+		indent(w, 4); w.write("}\n\n");
+	}
+	
+	/**
+	 * Write one half of a getTriggers() entry: an array initializer, or null if there are
+	 * no @p indices.
+	 * @param w
+	 * @param indices
+	 * @throws IOException
+	 */
+	private static void writeTriggerArray(Writer w, Vector<Integer> indices) throws IOException {
+		if (indices.isEmpty()) {
+			w.write("null, ");
+			return;
+		}
+		
+		w.write("new int[] { ");
+		for (int ix : indices) {
+			w.write(String.valueOf(ix));
+			w.write(", ");
+		}
+		w.write("}, ");
+	}
+	
+	/**
+	 * Write the part of getTriggers() which chooses between several names of the same length.
+	 * @param w
+	 * @param indentSpaces
+	 * @param names the candidate Local Names, which all differ at one or more positions not yet switched on
+	 * @param switched the positions which enclosing switches have already tested
+	 * @param qNamesByLocalName the namespace-qualified names for each Local Name
+	 * @param arrayIndices the TriggerArray of each qualified name
+	 * @throws IOException
+	 */
+	private static void writeTriggerSwitch(Writer w, int indentSpaces, List<String> names, boolean[] switched,
+			Map<String, Vector<QName>> qNamesByLocalName, Map<QName, Integer> arrayIndices) throws IOException {
+		final int in = indentSpaces;
+		
+		if (names.size() == 1) {
+			String name = names.get(0);
+			Vector<QName> qNames = qNamesByLocalName.get(name);
+			
+			if (qNames.size() == 1) {
+				indent(w, in); w.write("return (localName.equals(" + javaString(name) + ") && namespaceURI.equals(" +
+						javaString(qNames.get(0).getNamespaceURI()) + ") ? TriggerArray" +
+						arrayIndices.get(qNames.get(0)) + " : null);\n");
+				return;
+			}
+			
+			indent(w, in); w.write("if (localName.equals(" + javaString(name) + ")) {\n");
+			for (QName qName : qNames) {
+				indent(w, in+4); w.write("if (namespaceURI.equals(" + javaString(qName.getNamespaceURI()) + "))\n");
+				indent(w, in+8); w.write("return TriggerArray" + arrayIndices.get(qName) + ";\n");
+			}
+			indent(w, in); w.write("}\n");
+			indent(w, in); w.write("return null;\n");
+			return;
+		}
+		
+		// switch on the position which splits the names into the most groups
+		int bestPosition = -1;
+		TreeMap<Character, Vector<String>> bestGroups = null;
+		for (int position = 0; position < switched.length; position++) {
+			if (switched[position])
+				continue;
+			
+			TreeMap<Character, Vector<String>> groups = new TreeMap<Character, Vector<String>>();
+			for (String name : names) {
+				Vector<String> group = groups.get(name.charAt(position));
+				if (group == null) {
+					group = new Vector<String>();
+					groups.put(name.charAt(position), group);
+				}
+				group.add(name);
+			}
+			if (bestGroups == null || groups.size() > bestGroups.size()) {
+				bestPosition = position;
+				bestGroups = groups;
+			}
+		}
+		
+		switched[bestPosition] = true;
+		indent(w, in); w.write("switch (localName.charAt(" + bestPosition + ")) {\n");
+		for (Map.Entry<Character, Vector<String>> group : bestGroups.entrySet()) {
+			indent(w, in); w.write("case " + javaChar(group.getKey()) + ":\n");
+			writeTriggerSwitch(w, in+4, group.getValue(), switched.clone(), qNamesByLocalName, arrayIndices);
+		}
+		indent(w, in); w.write("}\n");
+		indent(w, in); w.write("return null;\n");
+	}
+	
+	/**
+	 * Quote a character as a Java character literal, or as its numeric value if it
+	 * is not printable ASCII
+	 * @param c
+	 * @return the literal
+	 */
+	private static String javaChar(char c) {
+		if (c == '\'' || c == '\\')
+			return "'\\" + c + "'";
+		if (c < ' ' || c > '~')
+			return String.valueOf((int) c);
+		return "'" + c + "'";
+	}
+	
 	private static void writeSet(Writer w, String setName, String getterName, Set<String> set) throws IOException {
 		indent(w, 4); w.write("private static HashSet<String> " + setName + " = null;\n\n");
 		indent(w, 4); w.write("@Override\n");
@@ -259,6 +570,29 @@ class AXSDataWriter {
 		indent(w, 4); w.write("}\n\n");
 	}
 	
+	private static void writeAttributeProjections(Writer w, Map<Integer, TreeSet<Integer>> projections,
+			Set<Integer> fullCaptures) throws IOException {
+		indent(w, 4); w.write("private static int[][] AttributeProjections = null;\n\n");
+		indent(w, 4); w.write("@Override\n");
+		indent(w, 4); w.write("public int[][] getAttributeProjections() {\n");
+		indent(w, 8); w.write("synchronized (Lock) {\n");
+		indent(w, 12); w.write("if (AttributeProjections != null)\n");
+		indent(w, 16); w.write("return AttributeProjections;\n");
+		indent(w, 12); w.write("AttributeProjections = new int[][] {\n");
+		for (int tagIx : new TreeSet<Integer>(projections.keySet())) {
+			indent(w, 16); w.write("new int[] { " + tagIx + ", ");
+			if (!fullCaptures.contains(tagIx)) {
+				for (int attrIx : projections.get(tagIx))
+					w.write(attrIx + ", ");
+			}
+			w.write("},\n");
+		}
+		indent(w, 12); w.write("};\n");
+		indent(w, 8); w.write("}\n");
+		indent(w, 8); w.write("return AttributeProjections;\n");
+		indent(w, 4); w.write("}\n\n");
+	}
+	
 	// these two arrays MUST match the encoding used in XPathExpression
 	// they are package-scope, since they're needed in CompiledAXSData as well
 	// how many instruction slots a given instruction occupies
@@ -268,7 +602,8 @@ class AXSDataWriter {
 		1, 1, 2, 1, 1,
 		1, 1, 1, 2, 1,
 		1, 1, 1, 1, 1,
-		1, 1, 2
+		1, 1, 2, 2, 2,
+		2
 	};
 	
 	// the XPathExpression.* names for each token value
@@ -296,7 +631,10 @@ class AXSDataWriter {
 		"INSTR_LE",
 		"INSTR_GE",
 		"INSTR_MATCHES",
-		"INSTR_SOFT_TEST_PREDICATE"
+		"INSTR_SOFT_TEST_PREDICATE",
+		"INSTR_STEP_PREDICATE",
+		"INSTR_BRANCH_IF_FALSE",
+		"INSTR_BRANCH_IF_TRUE"
 	};
 	
 	static final int NONE = 0;
@@ -327,6 +665,9 @@ class AXSDataWriter {
 		NONE,
 		NONE,
 		NONE,
+		INTEGER,
+		INTEGER,
+		INTEGER,
 		INTEGER
 	};
 	
@@ -357,9 +698,8 @@ class AXSDataWriter {
 		w.write("new String[] {\n");
 		for (int i = 0, len = literals.size(); i < len; i++) {
 			indent(w, in+4);
-			w.write('"');
-			w.write(literals.get(i).replace("\"", "\\\""));
-			w.write("\",\n");
+			w.write(javaString(literals.get(i)));
+			w.write(",\n");
 		}
 		indent(w, in); w.write("}");
 	}
@@ -371,11 +711,11 @@ class AXSDataWriter {
 		for (int i = 0, len = qNames.size(); i < len; i++) {
 			QName qn = qNames.get(i);
 			indent(w, in+4);
-			w.write("new QName(\"");
-			w.write(qn.getNamespaceURI().replace("\"", "\\\""));
-			w.write("\", \"");
-			w.write(qn.getLocalPart().replace("\"", "\\\""));
-			w.write("\"),\n");
+			w.write("new QName(");
+			w.write(javaString(qn.getNamespaceURI()));
+			w.write(", ");
+			w.write(javaString(qn.getLocalPart()));
+			w.write("),\n");
 		}
 		indent(w, in); w.write("}");
 	}
@@ -399,7 +739,241 @@ class AXSDataWriter {
 		}
 		indent(w, 4); w.write("};\n\n");
 
-		indent(w, 4); w.write("public XPathExpression[] getXPathExpressions() {\n        return Expressions;\n    }\n");
+		indent(w, 4); w.write("public XPathExpression[] getXPathExpressions() {\n        return Expressions;\n    }\n\n");
+	}
+	
+	private static void writeLimits(Writer w, Vector<int[]> limits) throws IOException {
+		indent(w, 4); w.write("private static final int[][] Limits = new int[][] {\n");
+		for (int[] limit : limits) {
+			indent(w, 8); w.write("new int[] { ");
+			for (int value : limit)
+				w.write(value + ", ");
+			w.write("},\n");
+		}
+		indent(w, 4); w.write("};\n\n");
+		
+		indent(w, 4); w.write("@Override\n");
+		indent(w, 4); w.write("public int[][] getLimits() {\n");
+		indent(w, 8); w.write("return Limits;\n");
+		indent(w, 4); w.write("}\n\n");
+	}
+	
+	private static void writeExclusiveGroups(Writer w, Vector<Integer> groups) throws IOException {
+		indent(w, 4); w.write("@Override\n");
+		indent(w, 4); w.write("public int[] getExclusiveGroups() {\n");
+		if (groups == null) {
+			indent(w, 8); w.write("return null;\n");
+		} else {
+			indent(w, 8); w.write("return new int[] { ");
+			for (int group : groups)
+				w.write(group + ", ");
+			w.write("};\n");
+		}
+		indent(w, 4); w.write("}\n\n");
+	}
+	
+	private static void writePatterns(Writer w, Vector<String> literals, Set<Integer> patternLiterals,
+			Set<Integer> simplePatternLiterals) throws IOException {
+		// the patterns are small and always needed by the first matches(), so unlike the other
+		// tables they are compiled when the class is loaded
+		indent(w, 4); w.write("private static final Pattern[] Patterns = new Pattern[] {\n");
+		for (int i = 0, len = literals.size(); i < len; i++) {
+			indent(w, 8);
+			if (patternLiterals.contains(i))
+				w.write("Pattern.compile(" + javaString(literals.get(i)) + "),\n");
+			else
+				w.write("null,\n");
+		}
+		indent(w, 4); w.write("};\n\n");
+		
+		indent(w, 4); w.write("@Override\n");
+		indent(w, 4); w.write("public Pattern[] getPatterns() {\n");
+		indent(w, 8); w.write("return Patterns;\n");
+		indent(w, 4); w.write("}\n\n");
+		
+		indent(w, 4); w.write("private static final SimplePattern[] SimplePatterns = new SimplePattern[] {\n");
+		for (int i = 0, len = literals.size(); i < len; i++) {
+			indent(w, 8);
+			if (simplePatternLiterals.contains(i))
+				w.write("SimplePattern.compile(" + javaString(literals.get(i)) + "),\n");
+			else
+				w.write("null,\n");
+		}
+		indent(w, 4); w.write("};\n\n");
+		
+		indent(w, 4); w.write("@Override\n");
+		indent(w, 4); w.write("public SimplePattern[] getSimplePatterns() {\n");
+		indent(w, 8); w.write("return SimplePatterns;\n");
+		indent(w, 4); w.write("}\n\n");
+	}
+	
+	private static void writeKeywordSets(Writer w, Vector<String> literals, Vector<int[]> keywordSets) throws IOException {
+		indent(w, 4); w.write("private static KeywordSet[] KeywordSets = null;\n\n");
+		indent(w, 4); w.write("@Override\n");
+		indent(w, 4); w.write("public KeywordSet[] getKeywordSets() {\n");
+		indent(w, 8); w.write("synchronized (Lock) {\n");
+		indent(w, 12); w.write("if (KeywordSets != null)\n");
+		indent(w, 16); w.write("return KeywordSets;\n");
+		indent(w, 12); w.write("KeywordSets = new KeywordSet[] {\n");
+		for (int[] set : keywordSets) {
+			indent(w, 16); w.write("new KeywordSet(new int[] { ");
+			for (int literalIx : set)
+				w.write(literalIx + ", ");
+			w.write("}, new String[] { ");
+			for (int literalIx : set)
+				w.write(javaString(literals.get(literalIx)) + ", ");
+			w.write("}),\n");
+		}
+		indent(w, 12); w.write("};\n");
+		indent(w, 8); w.write("}\n");
+		indent(w, 8); w.write("return KeywordSets;\n");
+		indent(w, 4); w.write("}\n\n");
+	}
+	
+	private static void writeStepPredicates(Writer w, Vector<ShortVector> stepPredicates) throws IOException {
+		indent(w, 4); w.write("private static XPathExpression[] StepPredicates = null;\n\n");
+		indent(w, 4); w.write("@Override\n");
+		indent(w, 4); w.write("public XPathExpression[] getStepPredicates() {\n");
+		indent(w, 8); w.write("synchronized (Lock) {\n");
+		indent(w, 12); w.write("if (StepPredicates != null)\n");
+		indent(w, 16); w.write("return StepPredicates;\n");
+		indent(w, 12); w.write("StepPredicates = new XPathExpression[] {\n");
+		for (ShortVector predicate : stepPredicates) {
+			indent(w, 16); w.write("new XPathExpression(");
+			writeInstructionArray(w, 16, predicate);
+			w.write(", QNames, Literals),\n");
+		}
+		indent(w, 12); w.write("};\n");
+		indent(w, 8); w.write("}\n");
+		indent(w, 8); w.write("return StepPredicates;\n");
+		indent(w, 4); w.write("}\n\n");
+	}
+	
+	private static void writeShortArray(Writer w, ShortVector values) throws IOException {
+		w.write("new short[] { ");
+		for (int i = 0, len = values.size(); i < len; i++) {
+			w.write(String.valueOf(values.get(i)));
+			w.write(", ");
+		}
+		w.write("}");
+	}
+	
+	private static void writeStateFlags(Writer w, ShortVector flags) throws IOException {
+		w.write("new short[] { ");
+		for (int i = 0, len = flags.size(); i < len; i++) {
+			final short f = flags.get(i);
+			
+			if (f == 0)
+				w.write("0");
+			if ((f & XPathAutomaton.STATE_ANCHORED) != 0)
+				w.write("XPathAutomaton.STATE_ANCHORED");
+			if ((f & XPathAutomaton.STATE_ANCHORED) != 0 && (f & XPathAutomaton.STATE_CARRIED) != 0)
+				w.write(" | ");
+			if ((f & XPathAutomaton.STATE_CARRIED) != 0)
+				w.write("XPathAutomaton.STATE_CARRIED");
+			w.write(", ");
+		}
+		w.write("}");
+	}
+	
+	private static void writePrefixTrie(Writer w, CompiledPrefixTrie prefixTrie) throws IOException {
+		if (!prefixTrie.isValid()) {
+			indent(w, 4); w.write("@Override\n");
+			indent(w, 4); w.write("public int[][] getReachablePrefixes() {\n");
+			indent(w, 8); w.write("// some expressions are relative, so any element can lead to a match\n");
+			indent(w, 8); w.write("return null;\n");
+			indent(w, 4); w.write("}\n\n");
+			return;
+		}
+		indent(w, 4); w.write("private static int[][] ReachablePrefixes = null;\n\n");
+		indent(w, 4); w.write("@Override\n");
+		indent(w, 4); w.write("public int[][] getReachablePrefixes() {\n");
+		indent(w, 8); w.write("synchronized (Lock) {\n");
+		indent(w, 12); w.write("if (ReachablePrefixes != null)\n");
+		indent(w, 16); w.write("return ReachablePrefixes;\n");
+		indent(w, 12); w.write("ReachablePrefixes = new int[][] {\n");
+		for (int node = 0, len = prefixTrie.parents().size(); node < len; node++) {
+			indent(w, 16);
+			w.write("new int[] { " + prefixTrie.parents().get(node) + ", " + prefixTrie.elements().get(node) +
+					", " + (prefixTrie.open().get(node) ? 1 : 0) + " },\n");
+		}
+		indent(w, 12); w.write("};\n");
+		indent(w, 8); w.write("}\n");
+		indent(w, 8); w.write("return ReachablePrefixes;\n");
+		indent(w, 4); w.write("}\n\n");
+	}
+	
+	private static void writeSuffixTrie(Writer w, CompiledSuffixTrie suffixTrie) throws IOException {
+		indent(w, 4); w.write("private static XPathSuffixTrie SuffixTrie = null;\n\n");
+		indent(w, 4); w.write("@Override\n");
+		indent(w, 4); w.write("public XPathSuffixTrie getSuffixTrie() {\n");
+		indent(w, 8); w.write("synchronized (Lock) {\n");
+		indent(w, 12); w.write("if (SuffixTrie != null)\n");
+		indent(w, 16); w.write("return SuffixTrie;\n");
+		indent(w, 12); w.write("SuffixTrie = new XPathSuffixTrie(\n");
+		indent(w, 16); w.write("new XPathExpression[] {\n");
+		for (ShortVector step : suffixTrie.steps()) {
+			indent(w, 20); w.write("new XPathExpression(");
+			writeInstructionArray(w, 20, step);
+			w.write(", QNames, Literals),\n");
+		}
+		indent(w, 16); w.write("},\n");
+		indent(w, 16); w.write("new int[] { ");
+		for (int parent : suffixTrie.parents()) {
+			w.write(String.valueOf(parent));
+			w.write(", ");
+		}
+		w.write("},\n");
+		indent(w, 16); w.write("new int[] { ");
+		for (int node : suffixTrie.expressionNodes()) {
+			w.write(String.valueOf(node));
+			w.write(", ");
+		}
+		w.write("});\n");
+		indent(w, 8); w.write("}\n");
+		indent(w, 8); w.write("return SuffixTrie;\n");
+		indent(w, 4); w.write("}\n\n");
+	}
+	
+	private static void writeAutomaton(Writer w, CompiledAutomaton automaton) throws IOException {
+		indent(w, 4); w.write("private static XPathAutomaton Automaton = null;\n\n");
+		indent(w, 4); w.write("@Override\n");
+		indent(w, 4); w.write("public XPathAutomaton getXPathAutomaton() {\n");
+		if (!automaton.isValid()) {
+			indent(w, 8); w.write("// the expressions cannot be represented by an automaton\n");
+			indent(w, 8); w.write("return null;\n");
+			indent(w, 4); w.write("}\n\n");
+			return;
+		}
+		indent(w, 8); w.write("synchronized (Lock) {\n");
+		indent(w, 12); w.write("if (Automaton != null)\n");
+		indent(w, 16); w.write("return Automaton;\n");
+		indent(w, 12); w.write("Automaton = new XPathAutomaton(\n");
+		indent(w, 16); writeShortArray(w, automaton.elements()); w.write(",\n");
+		indent(w, 16); writeShortArray(w, automaton.predecessors()); w.write(",\n");
+		indent(w, 16); writeStateFlags(w, automaton.flags()); w.write(",\n");
+		indent(w, 16); w.write("new XPathExpression[] {\n");
+		for (ShortVector predicates : automaton.predicates()) {
+			indent(w, 20);
+			if (predicates == null) {
+				w.write("null,\n");
+			} else {
+				w.write("new XPathExpression(");
+				writeInstructionArray(w, 20, predicates);
+				w.write(", QNames, Literals),\n");
+			}
+		}
+		indent(w, 16); w.write("},\n");
+		indent(w, 16); w.write("new int[] { ");
+		for (int state : automaton.acceptingStates()) {
+			w.write(String.valueOf(state));
+			w.write(", ");
+		}
+		w.write("},\n");
+		indent(w, 16); w.write("QNames);\n");
+		indent(w, 8); w.write("}\n");
+		indent(w, 8); w.write("return Automaton;\n");
+		indent(w, 4); w.write("}\n\n");
 	}
 	
 	private static void writeFooter(Writer w) throws IOException {
@@ -25,12 +25,20 @@
 package com.googlecode.axs;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.annotation.processing.Messager;
 import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Name;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
 import javax.tools.Diagnostic.Kind;
 
 /**
@@ -49,6 +57,16 @@ class AnnotatedClass {
 	private HashMap<String, String> mXPathMethods = new HashMap<String, String>();
 	private HashMap<String, String> mXPathEndMethods = new HashMap<String, String>();
 	private HashMap<String, String> mXPathStartMethods = new HashMap<String, String>();
+	private HashMap<String, String> mXPathStreamMethods = new HashMap<String, String>();
+	
+	// the limit() of each method which has one
+	private HashMap<String, Integer> mLimits = new HashMap<String, Integer>();
+	
+	// the group() and priority() of each method which has them, and the annotation of
+	// the methods of each group
+	private HashMap<String, String> mGroups = new HashMap<String, String>();
+	private HashMap<String, Integer> mPriorities = new HashMap<String, Integer>();
+	private HashMap<String, String> mGroupAnnotations = new HashMap<String, String>();
 	
 	// maps of method names to Elements
 	private HashMap<String, Element> mMethodElements = new HashMap<String, Element>();
@@ -71,19 +89,217 @@ class AnnotatedClass {
 		
 		if ("XPath".equals(aType)) {
 			XPath xp = methodElement.getAnnotation(XPath.class);
+			checkTextMethod(methodElement);
+			checkNotStreamMethod(methodElement, aType);
 			mXPathMethods.put(method, xp.value());
+			addLimit(methodElement, xp.limit());
+			addGroup(methodElement, aType, xp.group(), xp.priority());
 		} else if ("XPathStart".equals(aType)) {
 			XPathStart xp = methodElement.getAnnotation(XPathStart.class);
+			checkNotStreamMethod(methodElement, aType);
 			mXPathStartMethods.put(method, xp.value());
+			addLimit(methodElement, xp.limit());
+			addGroup(methodElement, aType, xp.group(), xp.priority());
 		} else if ("XPathEnd".equals(aType)) {
 			XPathEnd xp = methodElement.getAnnotation(XPathEnd.class);
+			checkNotStreamMethod(methodElement, aType);
 			mXPathEndMethods.put(method, xp.value());
+			addLimit(methodElement, xp.limit());
+			addGroup(methodElement, aType, xp.group(), xp.priority());
+		} else if ("XPathStream".equals(aType)) {
+			XPathStream xp = methodElement.getAnnotation(XPathStream.class);
+			checkStreamMethod(methodElement);
+			mXPathStreamMethods.put(method, xp.value());
 		} else {
 			mMessager.printMessage(Kind.ERROR, 
 					"Cannot apply annotation " + aType + " to element of type " + methodElement.getKind(), methodElement);
 		}
 	}
 	
+	/**
+	 * Record the limit() of an annotated method.
+	 * @param methodElement
+	 * @param limit the limit, or 0 for none
+	 */
+	private void addLimit(Element methodElement, int limit) {
+		if (limit < 0) {
+			mMessager.printMessage(Kind.ERROR, "The limit of an XPath method cannot be negative", methodElement);
+		} else if (limit > 0) {
+			mLimits.put(methodElement.getSimpleName().toString(), limit);
+		}
+	}
+	
+	/**
+	 * Record the group() and priority() of an annotated method.
+	 * @param methodElement
+	 * @param aType the simple name of the method's annotation
+	 * @param group the name of the group, or "" for none
+	 * @param priority
+	 */
+	private void addGroup(Element methodElement, String aType, String group, int priority) {
+		final String method = methodElement.getSimpleName().toString();
+		
+		if (priority != 0)
+			mPriorities.put(method, priority);
+		if ("".equals(group))
+			return;
+		
+		final String groupAnnotation = mGroupAnnotations.get(group);
+		if (groupAnnotation != null && !groupAnnotation.equals(aType)) {
+			mMessager.printMessage(Kind.ERROR, "All the methods of group \"" + group +
+					"\" must have the same annotation, not both @" + groupAnnotation + " and @" + aType, methodElement);
+			return;
+		}
+		mGroupAnnotations.put(group, aType);
+		mGroups.put(method, group);
+	}
+	
+	/**
+	 * Report an error unless an {@literal @}XPath() method takes the captured text in one of
+	 * the forms the generated _AXSData can pass it in.
+	 * @param methodElement
+	 */
+	private void checkTextMethod(Element methodElement) {
+		if (textParameter(methodElement) < 0) {
+			mMessager.printMessage(Kind.ERROR, 
+					"@XPath methods must take a single String, CharSequence, int, long, double, boolean," +
+					" java.math.BigDecimal or enum parameter, or a (char[], int, int) range", methodElement);
+		}
+	}
+	
+	/**
+	 * Report an error if a method which is not an {@literal @}XPathStream() method returns
+	 * a Writer or an OutputStream, as it would be mistaken for one.
+	 * @param methodElement
+	 * @param aType the simple name of the method's annotation
+	 */
+	private void checkNotStreamMethod(Element methodElement, String aType) {
+		if (streamReturn(methodElement) >= 0) {
+			mMessager.printMessage(Kind.ERROR, 
+					"@" + aType + " methods cannot return a java.io.Writer or a java.io.OutputStream;" +
+					" use @XPathStream to stream the text of an element", methodElement);
+		}
+	}
+	
+	/**
+	 * Work out how an {@literal @}XPath() method takes the text from its parameter list.
+	 * @param methodElement
+	 * @return one of the CompiledAXSData.Method.TEXT_* constants, or -1 if the method
+	 *  cannot take the text (as with {@literal @}XPathStart() and {@literal @}XPathEnd() methods)
+	 */
+	static int textParameter(Element methodElement) {
+		ExecutableElement method = (ExecutableElement) methodElement;
+		List<? extends VariableElement> parameters = method.getParameters();
+		
+		if (parameters.size() == 3) {
+			TypeMirror buffer = parameters.get(0).asType();
+			
+			if (buffer.getKind() == TypeKind.ARRAY &&
+					((ArrayType) buffer).getComponentType().getKind() == TypeKind.CHAR &&
+					parameters.get(1).asType().getKind() == TypeKind.INT &&
+					parameters.get(2).asType().getKind() == TypeKind.INT)
+				return CompiledAXSData.Method.TEXT_CHAR_RANGE;
+			return -1;
+		}
+		if (parameters.size() != 1)
+			return -1;
+		
+		TypeMirror type = parameters.get(0).asType();
+		switch (type.getKind()) {
+		case INT:
+			return CompiledAXSData.Method.TEXT_INT;
+		case LONG:
+			return CompiledAXSData.Method.TEXT_LONG;
+		case DOUBLE:
+			return CompiledAXSData.Method.TEXT_DOUBLE;
+		case BOOLEAN:
+			return CompiledAXSData.Method.TEXT_BOOLEAN;
+		case DECLARED:
+			break;
+		default:
+			return -1;
+		}
+		
+		Element typeElement = ((DeclaredType) type).asElement();
+		String typeName = ((TypeElement) typeElement).getQualifiedName().toString();
+		
+		if (typeElement.getKind() == ElementKind.ENUM)
+			return CompiledAXSData.Method.TEXT_ENUM;
+		if ("java.lang.String".equals(typeName))
+			return CompiledAXSData.Method.TEXT_STRING;
+		if ("java.lang.CharSequence".equals(typeName))
+			return CompiledAXSData.Method.TEXT_CHAR_SEQUENCE;
+		if ("java.math.BigDecimal".equals(typeName))
+			return CompiledAXSData.Method.TEXT_BIG_DECIMAL;
+		return -1;
+	}
+	
+	/**
+	 * Work out how an {@literal @}XPathStream() method takes the text from its return type.
+	 * @param methodElement
+	 * @return CompiledAXSData.Method.TEXT_WRITER or TEXT_BASE64_OUTPUT_STREAM, or -1 if the
+	 *  method returns neither a Writer nor an OutputStream
+	 */
+	static int streamReturn(Element methodElement) {
+		TypeMirror returnType = ((ExecutableElement) methodElement).getReturnType();
+		
+		if (isSubclassOf(returnType, "java.io.OutputStream"))
+			return CompiledAXSData.Method.TEXT_BASE64_OUTPUT_STREAM;
+		if (isSubclassOf(returnType, "java.io.Writer"))
+			return CompiledAXSData.Method.TEXT_WRITER;
+		return -1;
+	}
+	
+	/**
+	 * Get the type of an annotated method's first parameter, as it would be written in
+	 * Java source.
+	 * @param methodElement
+	 * @return the fully-qualified type name, or null if the method has no parameters
+	 */
+	static String parameterType(Element methodElement) {
+		List<? extends VariableElement> parameters = ((ExecutableElement) methodElement).getParameters();
+		
+		if (parameters.isEmpty())
+			return null;
+		return parameters.get(0).asType().toString();
+	}
+	
+	/**
+	 * Report an error unless an {@literal @}XPathStream() method takes the element's
+	 * Attributes and returns a Writer or an OutputStream.
+	 * @param methodElement
+	 */
+	private void checkStreamMethod(Element methodElement) {
+		ExecutableElement method = (ExecutableElement) methodElement;
+		
+		if (method.getParameters().size() != 1 ||
+				!"org.xml.sax.Attributes".equals(method.getParameters().get(0).asType().toString())) {
+			mMessager.printMessage(Kind.ERROR, 
+					"@XPathStream methods must take a single org.xml.sax.Attributes parameter", methodElement);
+		}
+		if (streamReturn(methodElement) < 0) {
+			mMessager.printMessage(Kind.ERROR, 
+					"@XPathStream methods must return a java.io.Writer or a java.io.OutputStream", methodElement);
+		}
+	}
+	
+	/**
+	 * Test whether @p type is the class @p className or one of its subclasses.
+	 * @param type
+	 * @param className the fully-qualified name of the class
+	 * @return true if it is
+	 */
+	static boolean isSubclassOf(TypeMirror type, String className) {
+		while (type.getKind() == TypeKind.DECLARED) {
+			TypeElement typeElement = (TypeElement) ((DeclaredType) type).asElement();
+			
+			if (typeElement.getQualifiedName().contentEquals(className))
+				return true;
+			type = typeElement.getSuperclass();
+		}
+		return false;
+	}
+	
 	public void addClassAnnotation(TypeElement annotationElement) {
 		final String aType = annotationElement.getSimpleName().toString();
 		
@@ -120,6 +336,32 @@ class AnnotatedClass {
 		return mMethodElements;
 	}
 	
+	/**
+	 * @param method the name of an annotated method
+	 * @return the number of times the method may be called for each document, or 0 for no limit
+	 */
+	public int limit(String method) {
+		final Integer limit = mLimits.get(method);
+		return (limit != null ? limit : 0);
+	}
+	
+	/**
+	 * @param method the name of an annotated method
+	 * @return the name of the method's group of mutually exclusive methods, or null if it has none
+	 */
+	public String group(String method) {
+		return mGroups.get(method);
+	}
+	
+	/**
+	 * @param method the name of an annotated method
+	 * @return the priority of the method within its group
+	 */
+	public int priority(String method) {
+		final Integer priority = mPriorities.get(method);
+		return (priority != null ? priority : 0);
+	}
+	
 	public Map<String, String> xPathMethods() {
 		return mXPathMethods;
 	}
@@ -132,6 +374,10 @@ class AnnotatedClass {
 		return mXPathStartMethods;
 	}
 	
+	public Map<String, String> xPathStreamMethods() {
+		return mXPathStreamMethods;
+	}
+	
 	public Map<String, String> prefixMap() {
 		return mPrefixMap;
 	}
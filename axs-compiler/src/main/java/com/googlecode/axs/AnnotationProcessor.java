@@ -55,10 +55,11 @@ import javax.tools.FileObject;
 	"com.googlecode.axs.XPath",
 	"com.googlecode.axs.XPathStart",
 	"com.googlecode.axs.XPathEnd",
+	"com.googlecode.axs.XPathStream",
 	"com.googlecode.axs.XPathNamespaces"
 })
 @SupportedSourceVersion(SourceVersion.RELEASE_6)
-@SupportedOptions("axs.nogenerated")
+@SupportedOptions({ "axs.nogenerated", "axs.codegen" })
 public class AnnotationProcessor extends AbstractProcessor {
 	// accumulate all the classes we need to generate _AXSData classes for
 	private HashMap<TypeElement, AnnotatedClass> mClasses = new HashMap<TypeElement, AnnotatedClass>();
@@ -128,6 +129,8 @@ public class AnnotationProcessor extends AbstractProcessor {
 				
 				if (processingEnv.getOptions().containsKey("axs.nogenerated"))
 					AXSDataWriter.setUseGeneratedAnnotation(false);
+				if (processingEnv.getOptions().containsKey("axs.codegen"))
+					AXSDataWriter.setGenerateMatchers(true);
 				
 				AXSDataWriter.writeAXSData(writer, axsData);
 				writer.close();
@@ -26,10 +26,13 @@ package com.googlecode.axs;
 
 import java.io.StringReader;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.Vector;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
@@ -89,19 +92,70 @@ public class CompiledAXSData implements ParserVisitor {
 	private Vector<QName> mQNames = null;
 	private HashMap<String, Integer> mLiteralIndices = null;
 	private HashMap<QName, Integer> mQNameIndices = null;
-	private HashMap<String, Vector<Integer>> mTriggerTags = new HashMap<String, Vector<Integer>>();
+	private HashMap<QName, Vector<Integer>> mTriggerTags = new HashMap<QName, Vector<Integer>>();
 	private HashSet<String> mAttributeCaptureTags = new HashSet<String>();
 	private HashSet<String> mPositionCaptureTags = new HashSet<String>();
 	
+	// the attributes which the predicates read from each element, in QName indices, and the
+	// elements whose attributes must all be captured for captureattrs()
+	private HashMap<Integer, TreeSet<Integer>> mAttributeProjections = new HashMap<Integer, TreeSet<Integer>>();
+	private HashSet<Integer> mFullAttributeCaptures = new HashSet<Integer>();
+	
+	// the attributes read by the predicates of the step being compiled, and whether they
+	// use captureattrs()
+	private TreeSet<Integer> mStepAttributes = new TreeSet<Integer>();
+	private boolean mStepCapturesAllAttributes = false;
+	
+	// the indices of the literals which are matches() patterns, split by whether they
+	// need java.util.regex
+	private TreeSet<Integer> mPatternLiterals = new TreeSet<Integer>();
+	private TreeSet<Integer> mSimplePatternLiterals = new TreeSet<Integer>();
+	
+	// the predicates of all the steps, as one-step expressions, and the index of each
+	private Vector<ShortVector> mStepPredicates = new Vector<ShortVector>();
+	private HashMap<String, Integer> mStepPredicateIndices = new HashMap<String, Integer>();
+	
+	// the limit() of each limited method followed by the indices of its expressions
+	private Vector<int[]> mLimits = new Vector<int[]>();
+	
+	// the group of each expression (-1 if it has none), and the index of each group
+	private Vector<Integer> mExpressionGroups = new Vector<Integer>();
+	private HashMap<String, Integer> mGroupIndices = new HashMap<String, Integer>();
+	
+	// the literals which contains() searches for in each attribute, by QName index
+	private TreeMap<Integer, TreeSet<Integer>> mContainsKeywords = new TreeMap<Integer, TreeSet<Integer>>();
+	// the literal index of each (attribute, literal) pair which contains() searches for,
+	// so that no two attributes, nor any other use of the literal, share a keyword
+	private HashMap<String, Integer> mKeywordIndices = new HashMap<String, Integer>();
+	
 	public class Method {
+		// the ways an @XPath() method can take the captured text
+		public static final int TEXT_STRING = 0; // (String text)
+		public static final int TEXT_CHAR_SEQUENCE = 1; // (CharSequence text)
+		public static final int TEXT_CHAR_RANGE = 2; // (char[] buf, int offset, int length)
+		// and the ways an @XPathStream() method can take the streamed text
+		public static final int TEXT_WRITER = 3; // Writer method(Attributes attrs)
+		public static final int TEXT_BASE64_OUTPUT_STREAM = 4; // OutputStream method(Attributes attrs)
+		// and the values an @XPath() method can have the captured text converted to
+		public static final int TEXT_INT = 5; // (int value)
+		public static final int TEXT_LONG = 6; // (long value)
+		public static final int TEXT_DOUBLE = 7; // (double value)
+		public static final int TEXT_BOOLEAN = 8; // (boolean value)
+		public static final int TEXT_BIG_DECIMAL = 9; // (BigDecimal value)
+		public static final int TEXT_ENUM = 10; // (SomeEnum value)
+		
 		private String mName;
 		private String mXPathExpression;
 		private int mIndex;
+		private int mTextParameter;
+		private String mParameterType;
 		
-		public Method(String name, String expression, int index) {
+		public Method(String name, String expression, int index, int textParameter, String parameterType) {
 			mName = name;
 			mXPathExpression = expression;
 			mIndex = index;
+			mTextParameter = textParameter;
+			mParameterType = parameterType;
 		}
 		
 		public String name() {
@@ -115,18 +169,34 @@ public class CompiledAXSData implements ParserVisitor {
 		public int index() {
 			return mIndex;
 		}
+		
+		public int textParameter() {
+			return mTextParameter;
+		}
+		
+		/**
+		 * @return the fully-qualified type of the method's first parameter, or null if it has none
+		 */
+		public String parameterType() {
+			return mParameterType;
+		}
 	}
 	
 	private Vector<Method> mMethods = new Vector<Method>();
 	private int mNrXPathMethods = 0;
 	private int mNrXPathEndMethods = 0;
 	private int mNrXPathStartMethods = 0;
+	private int mNrXPathStreamMethods = 0;
 	private Element mCurrentMethodElement = null;
 
 	private void errorMessage(String message) {
 		mMessager.printMessage(Kind.ERROR, message, mCurrentMethodElement);
 	}
 	
+	private void noteMessage(String message) {
+		mMessager.printMessage(Kind.NOTE, message, mCurrentMethodElement);
+	}
+	
 	/**
 	 * Add @p literal to the literals table and return its index
 	 * @param literal
@@ -268,30 +338,38 @@ public class CompiledAXSData implements ParserVisitor {
 
 	@Override
 	public Object visit(OrExpression node, ShortVector instrs) {
-		int children = node.jjtGetNumChildren();
-		int captures = CAPTURE_NONE;
-		
-		for (int i = 0; i < children; i++) {
-			captures |= (Integer) node.jjtGetChild(i).jjtAccept(this, instrs);
-		}
-		
-		for (int i = 1; i < children; i++) {
-			instrs.push(XPathExpression.INSTR_OR);
-		}
-		return captures;
+		return compileShortCircuit(node, instrs, XPathExpression.INSTR_BRANCH_IF_TRUE, XPathExpression.INSTR_OR);
 	}
 
 	@Override
 	public Object visit(AndExpression node, ShortVector instrs) {
+		return compileShortCircuit(node, instrs, XPathExpression.INSTR_BRANCH_IF_FALSE, XPathExpression.INSTR_AND);
+	}
+	
+	/**
+	 * Compile the operands of an 'and' or 'or' from left to right, combining each one with
+	 * the result so far. Before each operand, a branch skips it and its combining instruction
+	 * if the result so far already decides the outcome, leaving that result on the stack.
+	 * @param node the AndExpression or OrExpression
+	 * @param instrs
+	 * @param branch INSTR_BRANCH_IF_FALSE for 'and', INSTR_BRANCH_IF_TRUE for 'or'
+	 * @param combine INSTR_AND or INSTR_OR
+	 * @return the capture flags of the operands
+	 */
+	private int compileShortCircuit(Node node, ShortVector instrs, short branch, short combine) {
 		int children = node.jjtGetNumChildren();
-		int captures = CAPTURE_NONE;
-		
-		for (int i = 0; i < children; i++) {
-			captures |= (Integer) node.jjtGetChild(i).jjtAccept(this, instrs);
-		}
+		int captures = (Integer) node.jjtGetChild(0).jjtAccept(this, instrs);
 		
 		for (int i = 1; i < children; i++) {
-			instrs.push(XPathExpression.INSTR_AND);
+			final int branchLabel = instrs.size();
+			
+			instrs.push(branch);
+			instrs.push((short) 0);
+			captures |= (Integer) node.jjtGetChild(i).jjtAccept(this, instrs);
+			instrs.push(combine);
+			
+			// branch to just after the combining instruction
+			instrs.put(branchLabel + 1, (short) (instrs.size() - branchLabel));
 		}
 		return captures;
 	}
@@ -362,6 +440,7 @@ public class CompiledAXSData implements ParserVisitor {
 		if (node.jjtGetNumChildren() != 2)
 			errorMessage("Unexpectedly found " + node.jjtGetNumChildren() + " descendants of a string search function expression");
 		int captures = CAPTURE_NONE;
+		final int nrLiterals = mLiterals.size();
 		
 		for (int i = 0; i < 2; i++) {
 			captures |= (Integer) node.jjtGetChild(i).jjtAccept(this, instrs);
@@ -371,6 +450,14 @@ public class CompiledAXSData implements ParserVisitor {
 		
 		requireStackDepth(1);
 		if ("contains".equals(fnName)) {
+			// the two operands are exactly the last two instructions
+			if (instrs.get(instrs.size() - 4) == XPathExpression.INSTR_ATTRIBUTE &&
+					instrs.get(instrs.size() - 2) == XPathExpression.INSTR_LITERAL) {
+				final int literalIx = instrs.get(instrs.size() - 1);
+				
+				instrs.put(instrs.size() - 1, addKeyword(instrs.get(instrs.size() - 3), literalIx,
+						literalIx >= nrLiterals));
+			}
 			instrs.push(XPathExpression.INSTR_CONTAINS);
 		} else if ("starts-with".equals(fnName)) {
 			instrs.push(XPathExpression.INSTR_STARTS_WITH);
@@ -386,6 +473,18 @@ public class CompiledAXSData implements ParserVisitor {
 			} catch (PatternSyntaxException e) {
 				errorMessage("Malformed regular expression: " + e);
 			}
+			if (instrs.get(instrs.size() - 2) == XPathExpression.INSTR_LITERAL) {
+				final int literalIx = instrs.get(instrs.size() - 1);
+				
+				// report which patterns can be matched without java.util.regex
+				if (SimplePattern.compile(pattern) != null) {
+					if (mSimplePatternLiterals.add(literalIx))
+						noteMessage("matches() pattern \"" + pattern + "\" is specialized to a SimplePattern");
+				} else {
+					if (mPatternLiterals.add(literalIx))
+						noteMessage("matches() pattern \"" + pattern + "\" uses java.util.regex");
+				}
+			}
 			instrs.push(XPathExpression.INSTR_MATCHES);
 		} else {
 			errorMessage("Unknown string comparison function \"" + fnName + "\"");
@@ -429,14 +528,17 @@ public class CompiledAXSData implements ParserVisitor {
 			name = name.substring(11);
 		}
 		QName qName = parseQName(name, true);
+		short qNameIx = addQName(qName);
 		
+		mStepAttributes.add((int) qNameIx);
 		instrs.push(XPathExpression.INSTR_ATTRIBUTE);
-		instrs.push(addQName(qName));
+		instrs.push(qNameIx);
 		return CAPTURE_ATTRIBUTES;
 	}
 
 	@Override
 	public Object visit(CaptureAttrsFunction node, ShortVector instrs) {
+		mStepCapturesAllAttributes = true;
 		requireStackDepth(1);
 		instrs.push(XPathExpression.INSTR_ILITERAL);
 		instrs.push((short) 1);
@@ -461,7 +563,7 @@ public class CompiledAXSData implements ParserVisitor {
 	/**
 	 * Do the work of compiling an Expression.
 	 * 
-	 * @return the Local Name of the last tag in the expression
+	 * @return the QName of the last tag in the expression
 	 */
 	@Override
 	public Object visit(Expression expressionNode, ShortVector instrs) {
@@ -470,13 +572,14 @@ public class CompiledAXSData implements ParserVisitor {
 		
 		if (totalSteps == 0) {
 			errorMessage("An XPath expression must have at least one element");
-			return "";
+			return new QName("");
 		}
 		
 		// we need to keep track of whether the step _after_ the current step
 		// was a descendant:: step, e.g. when compiling "a/b/descendant::c", we need
 		// to know that "c" was a descendant:: step when we compile "b"
 		boolean lastWasDescendant = false;
+		QName lastQName = null;
 		
 		for (int step = totalSteps - 1; step >= 0; step -= 2) {
 			// determine the tag name for this step
@@ -496,6 +599,8 @@ public class CompiledAXSData implements ParserVisitor {
 			
 			// this is the real name for this step
 			QName qName = parseQName(name, false);
+			if (lastQName == null)
+				lastQName = qName;
 			
 			// add an instruction scroll up the stack to this node, if the following
 			// step was a '//'
@@ -518,8 +623,22 @@ public class CompiledAXSData implements ParserVisitor {
 			
 			// now that we're at the correct tag, compile any Predicates for this step
 			int captureFlags = CAPTURE_NONE;
+			mStepAttributes.clear();
+			mStepCapturesAllAttributes = false;
 			for (int i = 1, children = axisStepNode.jjtGetNumChildren(); i < children; i++) {
-				captureFlags |= (Integer) axisStepNode.jjtGetChild(i).jjtAccept(this, instrs);
+				ShortVector predicate = new ShortVector();
+				captureFlags |= (Integer) axisStepNode.jjtGetChild(i).jjtAccept(this, predicate);
+				
+				if (readsAttributes(predicate)) {
+					// the predicate is split out to be evaluated once when the element starts,
+					// so that the attributes need not be kept, and the expression just tests
+					// its outcome
+					instrs.push(XPathExpression.INSTR_STEP_PREDICATE);
+					instrs.push(addStepPredicate(addQName(qName), predicate));
+					instrs.push(XPathExpression.INSTR_TEST_PREDICATE);
+				} else {
+					instrs.pushAll(predicate);
+				}
 				
 				if (isDescendant) {
 					// each Predicate ends with an INSTR_TEST_PREDICATE, patch it into an
@@ -539,6 +658,7 @@ public class CompiledAXSData implements ParserVisitor {
 			
 			if ((captureFlags & CAPTURE_ATTRIBUTES) != 0) {
 				mAttributeCaptureTags.add(qName.getLocalPart());
+				addAttributeProjection(addQName(qName));
 			}
 			
 			if ((captureFlags & CAPTURE_POSITIONS) != 0) {
@@ -555,15 +675,12 @@ public class CompiledAXSData implements ParserVisitor {
 			instrs.push(XPathExpression.INSTR_ROOT);
 		}
 		
-		// return the local part of the innermost node in the pattern
-		String lastNodeName = (String) expressionNode.jjtGetChild(totalSteps - 1)
-														.jjtGetChild(0)
-														.jjtAccept(this, instrs);
-		return parseQName(lastNodeName, false).getLocalPart();
+		// return the innermost node in the pattern
+		return lastQName;
 	}
 	
-	private String compileExpression(Node expressionNode, ShortVector instrVector) {
-		return (String) expressionNode.jjtAccept(this, instrVector);
+	private QName compileExpression(Node expressionNode, ShortVector instrVector) {
+		return (QName) expressionNode.jjtAccept(this, instrVector);
 	}
 	
 	/**
@@ -574,9 +691,12 @@ public class CompiledAXSData implements ParserVisitor {
 	 * @param messager
 	 * @param methodName the name of the annotated method
 	 * @param xpathExpression the XPath annotation of the annotated method
+	 * @param isStream whether the method is an {@literal @}XPathStream() method
 	 */
-	private void compileOneExpression(String methodName, String xpathExpression) {
+	private void compileOneExpression(String methodName, String xpathExpression, boolean isStream) {
 		mCurrentMethodElement = mClass.methodElements().get(methodName);
+		final int textParameter = (isStream ? AnnotatedClass.streamReturn(mCurrentMethodElement) :
+				AnnotatedClass.textParameter(mCurrentMethodElement));
 		
 		// invoke the JJTree/JavaCC parser in com.googlecode.axs.xpath.Parser
 		Parser parser = new Parser(new StringReader(xpathExpression));
@@ -587,15 +707,45 @@ public class CompiledAXSData implements ParserVisitor {
 			rootNode = parser.Start();
 			
 			// the Start element has as direct children all the alternative expressions
-			for (int child = 0, nrChildren = rootNode.jjtGetNumChildren(); child < nrChildren; child++) {
+			final int nrChildren = rootNode.jjtGetNumChildren();
+			final int limit = mClass.limit(methodName);
+			final int[] limitRow = (limit > 0 ? new int[1 + nrChildren] : null);
+			
+			for (int child = 0; child < nrChildren; child++) {
 				ShortVector instructions = new ShortVector();
-				String trigger = compileExpression(rootNode.jjtGetChild(child), instructions);
+				QName trigger = compileExpression(rootNode.jjtGetChild(child), instructions);
 				
 				// System.out.println("parsed \"" + xpathExpression + "\" to " + instructions);
 				// store the compiled method
 				mInstructions.add(instructions);
-				mMethods.add(new Method(methodName, xpathExpression, mInstructions.size() - 1));
+				mMethods.add(new Method(methodName, xpathExpression, mInstructions.size() - 1,
+						textParameter,
+						AnnotatedClass.parameterType(mCurrentMethodElement)));
 				addTrigger(trigger, mInstructions.size() - 1);
+				if (limitRow != null)
+					limitRow[1 + child] = mInstructions.size() - 1;
+			}
+			
+			// the alternatives are in the method's group
+			final String group = mClass.group(methodName);
+			if (group != null) {
+				Integer groupIx = mGroupIndices.get(group);
+				
+				if (groupIx == null) {
+					groupIx = mGroupIndices.size();
+					mGroupIndices.put(group, groupIx);
+				}
+				for (int child = 0; child < nrChildren; child++)
+					mExpressionGroups.add(groupIx);
+			} else {
+				for (int child = 0; child < nrChildren; child++)
+					mExpressionGroups.add(-1);
+			}
+			
+			// the alternatives share the method's limit
+			if (limitRow != null) {
+				limitRow[0] = limit;
+				mLimits.add(limitRow);
 			}
 		} catch (ParseException e) {
 			errorMessage("Syntax error in XPath expression:\n" + e.getMessage());
@@ -605,12 +755,102 @@ public class CompiledAXSData implements ParserVisitor {
 		}
 	}
 	
+	/**
+	 * Record that the step just compiled needs the attributes its predicates read captured
+	 * from elements named @p tagIx.
+	 * @param tagIx the QName index of the step's element
+	 */
+	private void addAttributeProjection(int tagIx) {
+		if (mStepCapturesAllAttributes)
+			mFullAttributeCaptures.add(tagIx);
+		
+		TreeSet<Integer> attributes = mAttributeProjections.get(tagIx);
+		if (attributes == null) {
+			attributes = new TreeSet<Integer>();
+			mAttributeProjections.put(tagIx, attributes);
+		}
+		attributes.addAll(mStepAttributes);
+	}
+	
+	/**
+	 * @param predicate the instructions of a predicate
+	 * @return true if the predicate reads any attribute
+	 */
+	private static boolean readsAttributes(ShortVector predicate) {
+		for (int ip = 0, len = predicate.size(); ip < len; ip += AXSDataWriter.InstructionLengths[predicate.get(ip)]) {
+			if (predicate.get(ip) == XPathExpression.INSTR_ATTRIBUTE)
+				return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Add a step predicate, unless the same predicate is already there for the same element.
+	 * @param tagIx the QName index of the step's element
+	 * @param predicate the predicate's instructions, ending with its INSTR_TEST_PREDICATE
+	 * @return the index of the step predicate
+	 */
+	private short addStepPredicate(short tagIx, ShortVector predicate) {
+		// a step predicate is the one-step expression element[predicate]
+		predicate.push(XPathExpression.INSTR_ELEMENT);
+		predicate.push(tagIx);
+		
+		final String key = Arrays.toString(predicate.result());
+		Integer ix = mStepPredicateIndices.get(key);
+		
+		if (ix == null) {
+			ix = mStepPredicates.size();
+			mStepPredicates.add(predicate);
+			mStepPredicateIndices.put(key, ix);
+		}
+		return (short)(int) ix;
+	}
+	
+	/**
+	 * Record that a contains() predicate searches the attribute @p attrIx for the literal
+	 * @p literalIx, which gets an index of its own for that attribute.
+	 * @param attrIx the QName index of the attribute
+	 * @param literalIx the index of the literal
+	 * @param isNew whether the literal was added to the literals table for this predicate
+	 * @return the index of the literal for searching the attribute
+	 */
+	private short addKeyword(int attrIx, int literalIx, boolean isNew) {
+		final String literal = mLiterals.get(literalIx);
+		final String key = attrIx + "/" + literal;
+		Integer keywordIx = mKeywordIndices.get(key);
+		
+		if (keywordIx == null) {
+			// a literal used nowhere else becomes the keyword; otherwise it is repeated
+			if (isNew) {
+				mLiteralIndices.remove(literal);
+				keywordIx = literalIx;
+			} else {
+				mLiterals.add(literal);
+				keywordIx = mLiterals.size() - 1;
+			}
+			mKeywordIndices.put(key, keywordIx);
+		} else if (isNew) {
+			// the literal just added for this predicate is not needed after all
+			mLiterals.remove(literalIx);
+			mLiteralIndices.remove(literal);
+		}
+		
+		TreeSet<Integer> keywords = mContainsKeywords.get(attrIx);
+		
+		if (keywords == null) {
+			keywords = new TreeSet<Integer>();
+			mContainsKeywords.put(attrIx, keywords);
+		}
+		keywords.add(keywordIx);
+		return keywordIx.shortValue();
+	}
+	
 	/**
 	 * Add @p xprIx to the list of triggers for @p tag
-	 * @param tag
+	 * @param tag the namespace-qualified name of the expression's last step
 	 * @param xprIx
 	 */
-	private void addTrigger(String tag, int xprIx) {
+	private void addTrigger(QName tag, int xprIx) {
 		Vector<Integer> triggers = mTriggerTags.get(tag);
 		
 		if (triggers == null) {
@@ -624,16 +864,29 @@ public class CompiledAXSData implements ParserVisitor {
 	 * Compile the methods in one class of annotation and return the number of Methods generated.
 	 * @param messager
 	 * @param methodSet
+	 * @param isStream whether the methods are {@literal @}XPathStream() methods
 	 * @return
 	 */
-	private int compileOneSet(Map<String, String> methodSet) {
+	private int compileOneSet(Map<String, String> methodSet, boolean isStream) {
 		int firstMethodIndex = mMethods.size() - 1;
 		String[] sortedMethods = methodSet.keySet().toArray(new String[0]);
-		Arrays.sort(sortedMethods);
+		
+		// the methods are compiled in priority order, so that the trigger arrays, which
+		// are in expression order, test the methods of each group in that order
+		Arrays.sort(sortedMethods, new Comparator<String>() {
+			@Override
+			public int compare(String a, String b) {
+				final int priorityA = mClass.priority(a), priorityB = mClass.priority(b);
+				
+				if (priorityA != priorityB)
+					return (priorityA > priorityB ? -1 : 1);
+				return a.compareTo(b);
+			}
+		});
 		
 		for (String method : sortedMethods) {
 			String xpathExpression = methodSet.get(method);
-			compileOneExpression(method, xpathExpression);
+			compileOneExpression(method, xpathExpression, isStream);
 		}
 		
 		return (mMethods.size() - 1) - firstMethodIndex;
@@ -644,9 +897,10 @@ public class CompiledAXSData implements ParserVisitor {
 	 * @param messager a Message for logging
 	 */
 	public void compile() {
-		mNrXPathMethods = compileOneSet(mClass.xPathMethods());
-		mNrXPathEndMethods = compileOneSet(mClass.xPathEndMethods());
-		mNrXPathStartMethods = compileOneSet(mClass.xPathStartMethods());
+		mNrXPathMethods = compileOneSet(mClass.xPathMethods(), false);
+		mNrXPathEndMethods = compileOneSet(mClass.xPathEndMethods(), false);
+		mNrXPathStartMethods = compileOneSet(mClass.xPathStartMethods(), false);
+		mNrXPathStreamMethods = compileOneSet(mClass.xPathStreamMethods(), true);
 	}
 	
 	public Vector<ShortVector> instructions() {
@@ -677,6 +931,10 @@ public class CompiledAXSData implements ParserVisitor {
 		return mNrXPathStartMethods;
 	}
 	
+	public int numberOfXPathStreamMethods() {
+		return mNrXPathStreamMethods;
+	}
+	
 	public int maximumPredicateStackDepth() {
 		return mMaxPredicateStackDepth;
 	}
@@ -685,11 +943,87 @@ public class CompiledAXSData implements ParserVisitor {
 		return mAttributeCaptureTags;
 	}
 	
+	/**
+	 * @return the QName indices of the attributes read from each element by the predicates
+	 */
+	public Map<Integer, TreeSet<Integer>> attributeProjections() {
+		return mAttributeProjections;
+	}
+	
+	/**
+	 * @return the QName indices of the elements which need all their attributes captured
+	 */
+	public Set<Integer> fullAttributeCaptures() {
+		return mFullAttributeCaptures;
+	}
+	
+	/**
+	 * @return the indices of the literals which are used as matches() patterns that
+	 *  need java.util.regex
+	 */
+	public Set<Integer> patternLiterals() {
+		return mPatternLiterals;
+	}
+	
+	/**
+	 * @return the indices of the literals which are used as matches() patterns that
+	 *  a SimplePattern can match
+	 */
+	public Set<Integer> simplePatternLiterals() {
+		return mSimplePatternLiterals;
+	}
+	
+	/**
+	 * @return the index of the group of mutually exclusive methods of each expression, or
+	 *  -1 for the expressions of methods without a group(); null if there are no groups
+	 */
+	public Vector<Integer> expressionGroups() {
+		return (mGroupIndices.isEmpty() ? null : mExpressionGroups);
+	}
+	
+	/**
+	 * @return for each method with a limit(), the limit followed by the indices of its expressions
+	 */
+	public Vector<int[]> limits() {
+		return mLimits;
+	}
+	
+	/**
+	 * @return the predicates of all the steps, each compiled as the one-step expression
+	 *  element[predicate]
+	 */
+	public Vector<ShortVector> stepPredicates() {
+		return mStepPredicates;
+	}
+	
+	/**
+	 * Group the contains() literals by the attribute they are searched for in, so that each
+	 * group can be found with one scan of the attribute's value. A literal searched for in
+	 * several attributes has a separate index for each, so the groups are disjoint, and only
+	 * groups of more than one literal are worth a KeywordSet.
+	 * @return the literal indices of each group
+	 */
+	public Vector<int[]> keywordSets() {
+		Vector<int[]> sets = new Vector<int[]>();
+		
+		for (TreeSet<Integer> keywords : mContainsKeywords.values()) {
+			if (keywords.size() < 2)
+				continue;
+			
+			int[] set = new int[keywords.size()];
+			int i = 0;
+			for (int literalIx : keywords)
+				set[i++] = literalIx;
+			sets.add(set);
+		}
+		return sets;
+	}
+	
 	public Set<String> positionCaptureTags() {
 		return mPositionCaptureTags;
 	}
 	
-	public Map<String, Vector<Integer>> triggers() {
+	public Map<QName, Vector<Integer>> triggers() {
 		return mTriggerTags;
 	}
 	
@@ -0,0 +1,170 @@
+/*
+ * This file is part of AXS, Annotation-XPath for SAX.
+ * 
+ * Copyright (c) 2013 Benjamin K. Stuhl
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.googlecode.axs;
+
+import java.util.HashMap;
+import java.util.Vector;
+
+/**
+ * This class merges the compiled instructions of all the XPath expressions of a handler
+ * into the XPathAutomaton data needed at run time. Expressions which start with the same
+ * steps share the states for those steps.
+ * @author Ben
+ *
+ */
+public class CompiledAutomaton {
+	// one state per distinct step prefix, in parallel vectors
+	private ShortVector mElements = new ShortVector();
+	private ShortVector mPredecessors = new ShortVector();
+	private ShortVector mFlags = new ShortVector();
+	private Vector<ShortVector> mPredicates = new Vector<ShortVector>();
+	private int[] mAcceptingStates = null;
+	
+	// the states by their step and predecessor, for merging common prefixes
+	private HashMap<String, Integer> mStateIndices = new HashMap<String, Integer>();
+	
+	private boolean mIsValid = true;
+	
+	// one step of an expression, as decoded from its instructions
+	private static class Step {
+		short element;
+		boolean isCarried = false;
+		ShortVector predicates = null;
+	}
+	
+	public CompiledAutomaton(Vector<ShortVector> instructions) {
+		mAcceptingStates = new int[instructions.size()];
+		
+		for (int i = 0, len = instructions.size(); i < len && mIsValid; i++)
+			mAcceptingStates[i] = addExpression(instructions.get(i));
+	}
+	
+	/**
+	 * Decode the steps of one expression and add the states for them.
+	 * @param instrs the compiled expression
+	 * @return the accepting state of the expression, or -1 if it cannot be represented
+	 */
+	private int addExpression(ShortVector instrs) {
+		// the instructions test the steps from last to first
+		Vector<Step> steps = new Vector<Step>();
+		boolean isAnchored = false;
+		Step step = new Step();
+		
+		for (int ip = 0, len = instrs.size(); ip < len; ip += AXSDataWriter.InstructionLengths[instrs.get(ip)]) {
+			final short instr = instrs.get(ip);
+			
+			switch (instr) {
+			case XPathExpression.INSTR_ROOT:
+				if (ip != len - 1)
+					return invalid();
+				isAnchored = true;
+				break;
+			case XPathExpression.INSTR_NONCONSECUTIVE_ELEMENT:
+				step.isCarried = true;
+				break;
+			case XPathExpression.INSTR_ELEMENT:
+				step.element = instrs.get(ip+1);
+				steps.add(0, step);
+				step = new Step();
+				break;
+			case XPathExpression.INSTR_SOFT_TEST_PREDICATE:
+			case XPathExpression.INSTR_TEST_PREDICATE:
+				// all the predicates of a step are tested together at its element
+				if (step.predicates == null)
+					step.predicates = new ShortVector();
+				step.predicates.push(XPathExpression.INSTR_TEST_PREDICATE);
+				break;
+			default:
+				if (step.predicates == null)
+					step.predicates = new ShortVector();
+				for (int i = 0; i < AXSDataWriter.InstructionLengths[instr]; i++)
+					step.predicates.push(instrs.get(ip + i));
+				break;
+			}
+		}
+		
+		if (steps.isEmpty() || step.isCarried || step.predicates != null)
+			return invalid();
+		
+		int state = -1;
+		for (int i = 0, len = steps.size(); i < len; i++) {
+			short flags = 0;
+			
+			if (i == 0 && isAnchored)
+				flags |= XPathAutomaton.STATE_ANCHORED;
+			if (steps.get(i).isCarried)
+				flags |= XPathAutomaton.STATE_CARRIED;
+			state = addState(state, steps.get(i), flags);
+		}
+		return state;
+	}
+	
+	private int invalid() {
+		mIsValid = false;
+		return -1;
+	}
+	
+	private int addState(int predecessor, Step step, short flags) {
+		String key = predecessor + "/" + step.element + "/" + flags + "/" + step.predicates;
+		Integer index = mStateIndices.get(key);
+		
+		if (index != null)
+			return index;
+		
+		mElements.push(step.element);
+		mPredecessors.push((short) predecessor);
+		mFlags.push(flags);
+		mPredicates.add(step.predicates);
+		mStateIndices.put(key, mElements.size() - 1);
+		return mElements.size() - 1;
+	}
+	
+	/**
+	 * @return false if any of the expressions could not be represented by the automaton
+	 */
+	public boolean isValid() {
+		return mIsValid && mElements.size() <= Short.MAX_VALUE;
+	}
+	
+	public ShortVector elements() {
+		return mElements;
+	}
+	
+	public ShortVector predecessors() {
+		return mPredecessors;
+	}
+	
+	public ShortVector flags() {
+		return mFlags;
+	}
+	
+	public Vector<ShortVector> predicates() {
+		return mPredicates;
+	}
+	
+	public int[] acceptingStates() {
+		return mAcceptingStates;
+	}
+}
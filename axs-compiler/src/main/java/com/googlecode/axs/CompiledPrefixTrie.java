@@ -0,0 +1,134 @@
+/*
+ * This file is part of AXS, Annotation-XPath for SAX.
+ * 
+ * Copyright (c) 2013 Benjamin K. Stuhl
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.googlecode.axs;
+
+import java.util.HashMap;
+import java.util.Vector;
+
+/**
+ * This class works out, from the compiled instructions of all the XPath expressions of a
+ * handler, which element paths can still lead to a match. When all the expressions are
+ * absolute, an element can only match if the path to it starts with the steps of some
+ * expression up to its first '//', so the engine need not track the elements of any
+ * subtree which leaves all those prefixes. The prefixes are merged into a trie, in which
+ * an open node is the step before a '//', below which any path can match.
+ * @author Ben
+ *
+ */
+public class CompiledPrefixTrie {
+	// the parent, element QName index and openness of each node, in parallel vectors
+	private Vector<Integer> mParents = new Vector<Integer>();
+	private Vector<Short> mElements = new Vector<Short>();
+	private Vector<Boolean> mOpen = new Vector<Boolean>();
+	
+	// the nodes by their parent and element, for sharing common prefixes
+	private HashMap<String, Integer> mNodeIndices = new HashMap<String, Integer>();
+	
+	// whether an expression is relative, and so can match anywhere
+	private boolean mIsValid = true;
+	
+	public CompiledPrefixTrie(Vector<ShortVector> instructions) {
+		for (int i = 0, len = instructions.size(); i < len && mIsValid; i++)
+			addExpression(instructions.get(i));
+	}
+	
+	/**
+	 * Add the nodes for the steps of one expression up to its first '//'. The instructions
+	 * test the steps from last to first, each one after the INSTR_NONCONSECUTIVE_ELEMENT that
+	 * marks a '//' following it, if any, and end with INSTR_ROOT if the expression is absolute.
+	 * @param instrs the compiled expression
+	 */
+	private void addExpression(ShortVector instrs) {
+		ShortVector elements = new ShortVector();
+		ShortVector descendants = new ShortVector();
+		boolean isDescendant = false;
+		// the last instruction, not the last short, which may be an argument
+		short lastInstr = -1;
+		
+		for (int ip = 0, len = instrs.size(); ip < len; ip += AXSDataWriter.InstructionLengths[instrs.get(ip)]) {
+			final short instr = instrs.get(ip);
+			
+			lastInstr = instr;
+			if (instr == XPathExpression.INSTR_NONCONSECUTIVE_ELEMENT) {
+				isDescendant = true;
+			} else if (instr == XPathExpression.INSTR_ELEMENT) {
+				elements.push(instrs.get(ip + 1));
+				descendants.push((short) (isDescendant ? 1 : 0));
+				isDescendant = false;
+			}
+		}
+		
+		if (lastInstr != XPathExpression.INSTR_ROOT) {
+			mIsValid = false;
+			return;
+		}
+		
+		int node = -1;
+		for (int step = elements.size() - 1; step >= 0; step--) {
+			node = addNode(node, elements.get(step));
+			
+			// another expression may already have opened the node
+			if (mOpen.get(node))
+				break;
+			if (descendants.get(step) != 0) {
+				mOpen.set(node, true);
+				break;
+			}
+		}
+	}
+	
+	private int addNode(int parent, short element) {
+		String key = parent + "/" + element;
+		Integer index = mNodeIndices.get(key);
+		
+		if (index != null)
+			return index;
+		
+		mParents.add(parent);
+		mElements.add(element);
+		mOpen.add(false);
+		mNodeIndices.put(key, mParents.size() - 1);
+		return mParents.size() - 1;
+	}
+	
+	/**
+	 * @return false if some expression can match anywhere, so that no subtree can be skipped
+	 */
+	public boolean isValid() {
+		return mIsValid;
+	}
+	
+	public Vector<Integer> parents() {
+		return mParents;
+	}
+	
+	public Vector<Short> elements() {
+		return mElements;
+	}
+	
+	public Vector<Boolean> open() {
+		return mOpen;
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * This file is part of AXS, Annotation-XPath for SAX.
+ * 
+ * Copyright (c) 2013 Benjamin K. Stuhl
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.googlecode.axs;
+
+import java.util.HashMap;
+import java.util.Vector;
+
+/**
+ * This class merges the compiled instructions of all the XPath expressions of a handler
+ * into the XPathSuffixTrie data needed at run time. Since the instructions test the steps
+ * from last to first, expressions which end with the same steps start with the same
+ * instructions, and share the trie nodes for them.
+ * @author Ben
+ *
+ */
+public class CompiledSuffixTrie {
+	// the instructions and parent of each node, in parallel vectors
+	private Vector<ShortVector> mSteps = new Vector<ShortVector>();
+	private Vector<Integer> mParents = new Vector<Integer>();
+	private int[] mExpressionNodes = null;
+	
+	// the nodes by their instructions and parent, for sharing common suffixes
+	private HashMap<String, Integer> mNodeIndices = new HashMap<String, Integer>();
+	
+	public CompiledSuffixTrie(Vector<ShortVector> instructions) {
+		mExpressionNodes = new int[instructions.size()];
+		
+		for (int i = 0, len = instructions.size(); i < len; i++)
+			mExpressionNodes[i] = addExpression(instructions.get(i));
+	}
+	
+	/**
+	 * Split the instructions of one expression into steps and add the nodes for them.
+	 * Each step runs up to and including its INSTR_ELEMENT, so that the branch offsets of
+	 * any INSTR_SOFT_TEST_PREDICATEs stay within the step; the INSTR_ROOT test is a
+	 * step of its own.
+	 * @param instrs the compiled expression
+	 * @return the node of the first step of the expression
+	 */
+	private int addExpression(ShortVector instrs) {
+		int node = -1;
+		ShortVector step = new ShortVector();
+		
+		for (int ip = 0, len = instrs.size(); ip < len; ip += AXSDataWriter.InstructionLengths[instrs.get(ip)]) {
+			final short instr = instrs.get(ip);
+			
+			for (int i = 0; i < AXSDataWriter.InstructionLengths[instr]; i++)
+				step.push(instrs.get(ip + i));
+			
+			if (instr == XPathExpression.INSTR_ELEMENT || instr == XPathExpression.INSTR_ROOT) {
+				node = addNode(node, step);
+				step = new ShortVector();
+			}
+		}
+		return node;
+	}
+	
+	private int addNode(int parent, ShortVector step) {
+		String key = parent + "/" + step;
+		Integer index = mNodeIndices.get(key);
+		
+		if (index != null)
+			return index;
+		
+		mSteps.add(step);
+		mParents.add(parent);
+		mNodeIndices.put(key, mSteps.size() - 1);
+		return mSteps.size() - 1;
+	}
+	
+	public Vector<ShortVector> steps() {
+		return mSteps;
+	}
+	
+	public Vector<Integer> parents() {
+		return mParents;
+	}
+	
+	public int[] expressionNodes() {
+		return mExpressionNodes;
+	}
+}
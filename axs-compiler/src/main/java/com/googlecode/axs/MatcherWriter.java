@@ -0,0 +1,329 @@
+/*
+ * This file is part of AXS, Annotation-XPath for SAX.
+ * 
+ * Copyright (c) 2013 Benjamin K. Stuhl
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.googlecode.axs;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.Stack;
+import java.util.Vector;
+
+/**
+ * This class provides the static methods which translate compiled XPath expressions
+ * into Java matcher methods for the _AXSData, so that the engine can run them
+ * directly instead of interpreting the instructions.
+ * 
+ * The translation walks the instructions in order, keeping a symbolic version of the
+ * interpreter's stacks: attribute and position() fetches become local variables, tested
+ * in the same order that the interpreter would execute them, and the predicate
+ * operators build up a Java expression which is tested where the interpreter would pop it.
+ * Every compound expression is built parenthesized, so it can be negated with a plain '!'
+ * and a leading '!' can simply be dropped.
+ * @author Ben
+ *
+ */
+class MatcherWriter {
+	private MatcherWriter() {
+	}
+	
+	// an entry on the symbolic evaluation stack: a Java expression and its type
+	private static class Value {
+		final String code;
+		final boolean isBoolean;
+		final boolean isConstant;
+		final int literalIx; // the Literals index if this is a string literal, else -1
+		
+		Value(String code, boolean isBoolean) {
+			this(code, isBoolean, false, -1);
+		}
+		Value(String code, boolean isBoolean, boolean isConstant, int literalIx) {
+			this.code = code;
+			this.isBoolean = isBoolean;
+			this.isConstant = isConstant;
+			this.literalIx = literalIx;
+		}
+		
+		String asBoolean() {
+			if (isBoolean)
+				return code;
+			if (isConstant)
+				return Integer.parseInt(code) != 0 ? "true" : "false";
+			return "(" + code + " != 0)";
+		}
+		String asInt() {
+			return isBoolean ? "(" + code + " ? 1 : 0)" : code;
+		}
+	}
+	
+	// negate a boolean Java expression built by the translation
+	private static String not(String code) {
+		if (code.equals("true"))
+			return "false";
+		if (code.equals("false"))
+			return "true";
+		if (code.startsWith("!"))
+			return code.substring(1);
+		return "!" + code;
+	}
+	
+	/**
+	 * Write the compiled matchers and the AXSData methods that expose them.
+	 * @param w the writer to which the code should be written
+	 * @param axsData the _AXSData being written
+	 * @throws IOException
+	 */
+	public static void writeMatchers(Writer w, CompiledAXSData axsData) throws IOException {
+		Vector<CompiledAXSData.Method> methods = axsData.methods();
+		Vector<ShortVector> instructions = axsData.instructions();
+		Vector<String> literals = axsData.literals();
+		
+		StringWriter matchers = new StringWriter();
+		
+		// the contains() literals which the engine finds with a KeywordSet
+		HashSet<Integer> keywords = new HashSet<Integer>();
+		for (int[] set : axsData.keywordSets()) {
+			for (int literalIx : set)
+				keywords.add(literalIx);
+		}
+		
+		for (int i = 0, len = instructions.size(); i < len; i++)
+			writeMatcher(matchers, i, methods.get(i).expression(), instructions.get(i), literals, keywords);
+
+		AXSDataWriter.indent(w, 4); w.write("@Override\n");
+		AXSDataWriter.indent(w, 4); w.write("public boolean hasCompiledMatchers() {\n");
+		AXSDataWriter.indent(w, 8); w.write("return true;\n");
+		AXSDataWriter.indent(w, 4); w.write("}\n\n");
+
+		AXSDataWriter.indent(w, 4); w.write("@Override\n");
+		AXSDataWriter.indent(w, 4); w.write("public boolean test(int exprIx, MatchContext ctx) {\n");
+		AXSDataWriter.indent(w, 8); w.write("switch (exprIx) {\n");
+		for (int i = 0, len = instructions.size(); i < len; i++) {
+			AXSDataWriter.indent(w, 8); w.write("case " + i + ": return match" + i + "(ctx);\n");
+		}
+		AXSDataWriter.indent(w, 8); w.write("default: throw new HandlerCallError(\"unhandled test #\" + exprIx);\n");
+		AXSDataWriter.indent(w, 8); w.write("}\n");
+		AXSDataWriter.indent(w, 4); w.write("}\n\n");
+		
+		w.write(matchers.toString());
+	}
+	
+	/**
+	 * Write the stub AXSData methods for an _AXSData without compiled matchers.
+	 * @param w the writer to which the code should be written
+	 * @throws IOException
+	 */
+	public static void writeNoMatchers(Writer w) throws IOException {
+		AXSDataWriter.indent(w, 4); w.write("@Override\n");
+		AXSDataWriter.indent(w, 4); w.write("public boolean hasCompiledMatchers() {\n");
+		AXSDataWriter.indent(w, 8); w.write("return false;\n");
+		AXSDataWriter.indent(w, 4); w.write("}\n\n");
+
+		AXSDataWriter.indent(w, 4); w.write("@Override\n");
+		AXSDataWriter.indent(w, 4); w.write("public boolean test(int exprIx, MatchContext ctx) {\n");
+		AXSDataWriter.indent(w, 8); w.write("throw new HandlerCallError(\"no compiled matchers\");\n");
+		AXSDataWriter.indent(w, 4); w.write("}\n\n");
+	}
+	
+	// write one line of a matcher at the given indent
+	private static void line(Writer w, int in, String code) throws IOException {
+		AXSDataWriter.indent(w, in);
+		w.write(code);
+		w.write("\n");
+	}
+	
+	// write a test which returns false from the matcher if @p condition holds
+	private static void failIf(Writer w, int in, String condition) throws IOException {
+		line(w, in, "if (" + condition + ")");
+		line(w, in+4, "return false;");
+	}
+	
+	private static void writeMatcher(Writer w, int exprIx, String expression, ShortVector instrs,
+			Vector<String> literals, HashSet<Integer> keywords) throws IOException {
+		Stack<Value> stack = new Stack<Value>();
+		Stack<Value> strings = new Stack<Value>();
+		int nrVariables = 0;
+		// are we inside the retry loop of a // step with predicates?
+		boolean inLoop = false;
+		int in = 8;
+		
+		line(w, 4, "// \"" + expression + "\"");
+		line(w, 4, "private static boolean match" + exprIx + "(MatchContext ctx) {");
+		line(w, in, "int tagp = ctx.depth() - 1;");
+		
+		for (int ip = 0, len = instrs.size(); ip < len; ip += AXSDataWriter.InstructionLengths[instrs.get(ip)]) {
+			final short instr = instrs.get(ip);
+			Value a, b;
+			String var, condition;
+			
+			switch (instr) {
+			case XPathExpression.INSTR_ROOT:
+				failIf(w, in, "tagp != -1");
+				break;
+			case XPathExpression.INSTR_ELEMENT:
+				if (inLoop) {
+					// the loop has already found the element
+					line(w, in, "break;");
+					in -= 4;
+					line(w, in, "}");
+					inLoop = false;
+				} else {
+					failIf(w, in, "tagp < 0 || ctx.tagAt(tagp) != " + instrs.get(ip+1));
+				}
+				line(w, in, "tagp--;");
+				break;
+			case XPathExpression.INSTR_NONCONSECUTIVE_ELEMENT:
+				// if the step has predicates, we may have to retry at an outer element
+				if (instrs.get(ip+2) != XPathExpression.INSTR_ELEMENT) {
+					line(w, in, "while (true) {");
+					in += 4;
+					inLoop = true;
+				}
+				line(w, in, "while (tagp >= 0 && ctx.tagAt(tagp) != " + instrs.get(ip+1) + ")");
+				line(w, in+4, "tagp--;");
+				failIf(w, in, "tagp < 0");
+				break;
+			case XPathExpression.INSTR_ATTRIBUTE:
+				var = "a" + nrVariables++;
+				line(w, in, "final String " + var + " = ctx.attribute(tagp, " + instrs.get(ip+1) + ");");
+				failIf(w, in, var + " == null");
+				strings.push(new Value(var, false));
+				break;
+			case XPathExpression.INSTR_STEP_PREDICATE:
+				// the engine evaluated the predicate when the element started
+				var = "s" + nrVariables++;
+				line(w, in, "final int " + var + " = ctx.stepPredicate(tagp, " + instrs.get(ip+1) + ");");
+				failIf(w, in, var + " < 0");
+				stack.push(new Value("(" + var + " != 0)", true));
+				break;
+			case XPathExpression.INSTR_LITERAL:
+				strings.push(new Value(AXSDataWriter.javaString(literals.get(instrs.get(ip+1))), false, true, instrs.get(ip+1)));
+				break;
+			case XPathExpression.INSTR_EQ_STR:
+				b = strings.pop(); a = strings.pop();
+				stack.push(new Value(a.code + ".equals(" + b.code + ")", true));
+				break;
+			case XPathExpression.INSTR_CONTAINS:
+				b = strings.pop(); a = strings.pop();
+				if (keywords.contains(b.literalIx))
+					stack.push(new Value("ctx.contains(" + b.literalIx + ", " + a.code + ")", true));
+				else
+					stack.push(new Value(a.code + ".contains(" + b.code + ")", true));
+				break;
+			case XPathExpression.INSTR_STARTS_WITH:
+				b = strings.pop(); a = strings.pop();
+				stack.push(new Value(a.code + ".startsWith(" + b.code + ")", true));
+				break;
+			case XPathExpression.INSTR_ENDS_WITH:
+				b = strings.pop(); a = strings.pop();
+				stack.push(new Value(a.code + ".endsWith(" + b.code + ")", true));
+				break;
+			case XPathExpression.INSTR_MATCHES:
+				b = strings.pop(); a = strings.pop();
+				if (b.literalIx >= 0) {
+					// the engine keeps a Matcher for each of the precompiled Patterns
+					stack.push(new Value("ctx.matches(" + b.literalIx + ", " + a.code + ")", true));
+				} else {
+					// like the interpreter, fail the whole match if the pattern is malformed
+					var = "m" + nrVariables++;
+					line(w, in, "final int " + var + " = ctx.matchesPattern(" + b.code + ", " + a.code + ");");
+					failIf(w, in, var + " < 0");
+					stack.push(new Value(var, false));
+				}
+				break;
+			case XPathExpression.INSTR_ILITERAL:
+				stack.push(new Value(String.valueOf(instrs.get(ip+1)), false, true, -1));
+				break;
+			case XPathExpression.INSTR_POSITION:
+				var = "p" + nrVariables++;
+				line(w, in, "final int " + var + " = ctx.position(tagp);");
+				failIf(w, in, var + " < 0");
+				stack.push(new Value(var, false));
+				break;
+			case XPathExpression.INSTR_NOT:
+				a = stack.pop();
+				stack.push(new Value(not(a.asBoolean()), true));
+				break;
+			case XPathExpression.INSTR_AND:
+				b = stack.pop(); a = stack.pop();
+				stack.push(new Value("(" + a.asBoolean() + " && " + b.asBoolean() + ")", true));
+				break;
+			case XPathExpression.INSTR_OR:
+				b = stack.pop(); a = stack.pop();
+				stack.push(new Value("(" + a.asBoolean() + " || " + b.asBoolean() + ")", true));
+				break;
+			case XPathExpression.INSTR_LT:
+			case XPathExpression.INSTR_GT:
+			case XPathExpression.INSTR_EQ:
+			case XPathExpression.INSTR_NE:
+			case XPathExpression.INSTR_LE:
+			case XPathExpression.INSTR_GE:
+				b = stack.pop(); a = stack.pop();
+				stack.push(new Value("(" + a.asInt() + " " + comparisonOperator(instr) + " " + b.asInt() + ")", true));
+				break;
+			case XPathExpression.INSTR_BRANCH_IF_FALSE:
+			case XPathExpression.INSTR_BRANCH_IF_TRUE:
+				// the && and || written for INSTR_AND and INSTR_OR already short-circuit
+				break;
+			case XPathExpression.INSTR_TEST_PREDICATE:
+				condition = not(stack.pop().asBoolean());
+				
+				// a predicate which always holds, such as captureattrs(), needs no test
+				if (!condition.equals("false"))
+					failIf(w, in, condition);
+				break;
+			case XPathExpression.INSTR_SOFT_TEST_PREDICATE:
+				// retry from the next element out
+				condition = not(stack.pop().asBoolean());
+				
+				if (!condition.equals("false")) {
+					line(w, in, "if (" + condition + ") {");
+					failIf(w, in+4, "--tagp < 0");
+					line(w, in+4, "continue;");
+					line(w, in, "}");
+				}
+				break;
+			default:
+				throw new IllegalStateException("Cannot compile instruction " +
+						AXSDataWriter.InstructionNames[instr] + " in \"" + expression + "\"");
+			}
+		}
+		
+		line(w, in, "return true;");
+		line(w, 4, "}");
+		w.write("\n");
+	}
+	
+	private static String comparisonOperator(short instr) {
+		switch (instr) {
+		case XPathExpression.INSTR_LT: return "<";
+		case XPathExpression.INSTR_GT: return ">";
+		case XPathExpression.INSTR_EQ: return "==";
+		case XPathExpression.INSTR_NE: return "!=";
+		case XPathExpression.INSTR_LE: return "<=";
+		default: return ">=";
+		}
+	}
+}
@@ -50,6 +50,11 @@ public class ShortVector {
 		buffer[length++] = v;
 	}
 	
+	public void pushAll(ShortVector v) {
+		for (int i = 0; i < v.length; i++)
+			push(v.buffer[i]);
+	}
+	
 	public int size() {
 		return length;
 	}
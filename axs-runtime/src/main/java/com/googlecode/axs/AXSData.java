@@ -24,8 +24,10 @@
 
 package com.googlecode.axs;
 
+import java.io.Writer;
 import java.util.Map;
 import java.util.Set;
+import java.util.regex.Pattern;
 
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
@@ -71,11 +73,33 @@ public interface AXSData {
 	public abstract void callXPathText(AbstractAnnotatedHandler handler, int xpId, String text)
 				throws SAXException;
 	
+	/**
+	 * Call an {@literal @}XPath() function with a view of the engine's capture buffer, which
+	 * is only converted to a String if the function takes one.
+	 * Since v1.7 (AXSDATA_VERSION_CAPTURED_TEXT).
+	 * @param handler the Handler to make the call on
+	 * @param xpId the index of the XPath expression in the expression data
+	 * @param text the concatenated TEXT elements enclosed by this element
+	 */
+	public abstract void callXPathText(AbstractAnnotatedHandler handler, int xpId, CapturedText text)
+				throws SAXException;
+	
+	/**
+	 * Call an {@literal @}XPathStream() function. Since v1.8 (AXSDATA_VERSION_STREAMS).
+	 * @param handler the Handler to make the call on
+	 * @param xpId the index of the XPath expression in the expression data
+	 * @param attrs the SAX Attributes of the the node which triggered the call
+	 * @return the Writer to stream the node's text to, or null
+	 */
+	public abstract Writer callXPathStream(AbstractAnnotatedHandler handler, int xpId, Attributes attrs)
+				throws SAXException;
+	
 	/**
 	 * Fetch the list of precompiled XPath expressions used by the Handler. The list must be
 	 * sorted so that all the {@literal @}XPath() expressions (which require the engine to capture
 	 * all the TEXT elements within the match range of the expression) are first, then all the
-	 * {@literal @}XPathEnd() expressions, then the {@literal @}XPathStart() expressions
+	 * {@literal @}XPathEnd() expressions, then the {@literal @}XPathStart() expressions, and
+	 * finally the {@literal @}XPathStream() expressions
 	 * @return the array of compiled XPath expressions
 	 */
 	public XPathExpression[] getXPathExpressions();
@@ -99,6 +123,13 @@ public interface AXSData {
 	 */
 	public int getNumberOfEndExpressions();
 	
+	/**
+	 * Get the number of {@literal @}XPathStream() expressions, which are the last N elements
+	 * of {@link getXPathExpressions()}. Since v1.8 (AXSDATA_VERSION_STREAMS).
+	 * @return the number of expressions
+	 */
+	public int getNumberOfStreamExpressions();
+	
 	/**
 	 * Get the maximum stack depth required to evaluate any predicate in the expression array.
 	 * @return the maximum stack depth required
@@ -111,6 +142,18 @@ public interface AXSData {
 	 */
 	public Map<String, int[]> getTriggerTags();
 	
+	/**
+	 * Look up which XPath expressions a tag can trigger, without going through the
+	 * map returned by {@link #getTriggerTags()}. Unlike that map, the triggers are
+	 * told apart by namespace as well as by name, and split by the event which tests
+	 * them. Since v1.6 (AXSDATA_VERSION_TRIGGER_DISPATCH).
+	 * @param namespaceURI the tag's Namespace URI, or "" if it has none
+	 * @param localName the tag's Local Name, or its qName if it has no Namespace URI
+	 * @return a pair of the indices into the expression array to test when the tag starts
+	 *  and when it ends (either of which may be null), or null if the tag triggers none
+	 */
+	public int[][] getTriggers(String namespaceURI, String localName);
+	
 	/**
 	 * Get the set of tags whose attributes should be captured for later XPath expressions.
 	 * @return a Set<String> of Local Names
@@ -123,4 +166,105 @@ public interface AXSData {
 	 * @return a Set<String> of Local Names
 	 */
 	public Set<String> getPositionCaptureTags();
+	
+	/**
+	 * Report whether this _AXSData was generated with compiled matchers, so that
+	 * {@link #test(int, MatchContext)} can be used instead of interpreting the expressions.
+	 * Since v1.1 (AXSDATA_VERSION_MATCHERS).
+	 * @return true if test() is implemented
+	 */
+	public boolean hasCompiledMatchers();
+	
+	/**
+	 * Test an XPath expression against the current element with the matcher compiled for it.
+	 * This must give the same result as interpreting the expression's XPathExpression.
+	 * @param exprIx the index of the XPath expression in the expression data
+	 * @param ctx the engine's view of the currently open elements
+	 * @return true if the expression matches
+	 */
+	public boolean test(int exprIx, MatchContext ctx);
+	
+	/**
+	 * Get all the XPath expressions compiled into a single automaton.
+	 * Since v1.2 (AXSDATA_VERSION_AUTOMATON).
+	 * @return the automaton, or null if the expressions could not be compiled into one
+	 */
+	public XPathAutomaton getXPathAutomaton();
+	
+	/**
+	 * Get all the XPath expressions with their common trailing steps shared.
+	 * Since v1.3 (AXSDATA_VERSION_SUFFIX_TRIE).
+	 * @return the suffix trie of the expressions
+	 */
+	public XPathSuffixTrie getSuffixTrie();
+	
+	/**
+	 * Get the attributes which the expressions' predicates read from each element. Each row
+	 * holds the index of an element's name followed by the indices of its attributes' names,
+	 * all in the QName table shared by {@link getXPathExpressions()}; a row holding only the
+	 * element means that all its attributes are needed, for captureattrs().
+	 * Since v1.9 (AXSDATA_VERSION_ATTRIBUTE_PROJECTIONS).
+	 * @return the attribute projections, one row per element name
+	 */
+	public int[][] getAttributeProjections();
+	
+	/**
+	 * Get the precompiled patterns of the expressions' matches() predicates.
+	 * Since v1.10 (AXSDATA_VERSION_PATTERNS).
+	 * @return an array parallel to the Literals table shared by {@link getXPathExpressions()},
+	 *  holding the compiled Pattern of each literal used as a matches() pattern and null
+	 *  for the other literals
+	 */
+	public Pattern[] getPatterns();
+	
+	/**
+	 * Get the matches() patterns which were simple enough to be specialized to SimplePatterns.
+	 * Since v1.11 (AXSDATA_VERSION_SIMPLE_PATTERNS).
+	 * @return an array parallel to the Literals table shared by {@link getXPathExpressions()},
+	 *  holding the SimplePattern of each specialized pattern and null for the other literals
+	 */
+	public SimplePattern[] getSimplePatterns();
+	
+	/**
+	 * Get the groups of contains() literals which are searched for in the same attribute.
+	 * Since v1.12 (AXSDATA_VERSION_KEYWORD_SETS).
+	 * @return the KeywordSets, each of which finds its literals in one pass
+	 */
+	public KeywordSet[] getKeywordSets();
+	
+	/**
+	 * Get the predicates which read attributes, which the expressions test with
+	 * INSTR_STEP_PREDICATE. Each one is compiled as the one-step expression
+	 * element[predicate], and is evaluated when its element starts.
+	 * Since v1.13 (AXSDATA_VERSION_STEP_PREDICATES).
+	 * @return the step predicates, indexed by the INSTR_STEP_PREDICATE argument
+	 */
+	public XPathExpression[] getStepPredicates();
+	
+	/**
+	 * Get the trie of the element paths which can lead to a match when all the expressions
+	 * are absolute. Each row is a node of the trie, holding the index of its parent node
+	 * (-1 for the root element), the index of its element's name in the QName table shared
+	 * by {@link getXPathExpressions()}, and 1 if any path below it can match or 0 if only
+	 * the paths through its children can. Since v1.14 (AXSDATA_VERSION_REACHABLE_PREFIXES).
+	 * @return the nodes of the trie, or null if some expression can match anywhere
+	 */
+	public int[][] getReachablePrefixes();
+	
+	/**
+	 * Get the limit() of each method which has one. Each row holds the limit followed by the
+	 * indices of the method's expressions, which share it.
+	 * Since v1.15 (AXSDATA_VERSION_LIMITS).
+	 * @return the limits, one row per limited method
+	 */
+	public int[][] getLimits();
+	
+	/**
+	 * Get the group() of mutually exclusive methods which each expression belongs to. The
+	 * expressions of each group are in priority order.
+	 * Since v1.16 (AXSDATA_VERSION_EXCLUSIVE_GROUPS).
+	 * @return the index of each expression's group, or -1 if it is in none; null if no
+	 *  method has a group
+	 */
+	public int[] getExclusiveGroups();
 }
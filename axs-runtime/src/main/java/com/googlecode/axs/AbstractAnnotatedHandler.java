@@ -24,15 +24,16 @@
 
 package com.googlecode.axs;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
-import java.util.Stack;
-import java.util.regex.Pattern;
-import java.util.regex.PatternSyntaxException;
 
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
 import org.xml.sax.helpers.DefaultHandler;
 
 /**
@@ -43,42 +44,46 @@ import org.xml.sax.helpers.DefaultHandler;
  */
 public class AbstractAnnotatedHandler extends DefaultHandler {
 	// the version of the _AXSData expressions generated by the library
-	public static final int AXSDATA_VERSION = 0x00010000; // v1.0
+	public static final int AXSDATA_VERSION = 0x00010010; // v1.16
 	
-	// a Stack of the current tag path
-	private Stack<QName> mTagStack = new Stack<QName>();
+	// the first AXSData versions which provide each of the optional parts of the interface:
+	// older _AXSData classes do not implement those methods at all
+	static final int AXSDATA_VERSION_MATCHERS = 0x00010001;
+	static final int AXSDATA_VERSION_AUTOMATON = 0x00010002;
+	static final int AXSDATA_VERSION_SUFFIX_TRIE = 0x00010003;
+	static final int AXSDATA_VERSION_TRIGGER_DISPATCH = 0x00010006;
+	static final int AXSDATA_VERSION_CAPTURED_TEXT = 0x00010007;
+	static final int AXSDATA_VERSION_STREAMS = 0x00010008;
+	static final int AXSDATA_VERSION_ATTRIBUTE_PROJECTIONS = 0x00010009;
+	static final int AXSDATA_VERSION_PATTERNS = 0x0001000A;
+	static final int AXSDATA_VERSION_SIMPLE_PATTERNS = 0x0001000B;
+	static final int AXSDATA_VERSION_KEYWORD_SETS = 0x0001000C;
+	static final int AXSDATA_VERSION_STEP_PREDICATES = 0x0001000D;
+	static final int AXSDATA_VERSION_REACHABLE_PREFIXES = 0x0001000E;
+	static final int AXSDATA_VERSION_LIMITS = 0x0001000F;
+	static final int AXSDATA_VERSION_EXCLUSIVE_GROUPS = 0x00010010;
 	
-	// a Stack of the attributes for the current tag path
-	// note: we only store attributes that may be needed to execute one of the
-	// XPath expressions in the handler; all tags whose attributes are never referenced
-	// have null stored here.
-	private Stack<HashMap<QName, String>> mAttributesStack = new Stack<HashMap<QName, String>>();
+	// the ways setXPathEngine() can have XPath expressions evaluated
+	public static final int ENGINE_INTERPRETER = 0; // interpret the XPathExpression instructions
+	public static final int ENGINE_COMPILED = 1; // use the _AXSData's compiled matchers, if it has them
+	public static final int ENGINE_AUTOMATON = 2; // track all expressions at once with the _AXSData's XPathAutomaton
 	
-	// a Stack of the active text captures
-	private Stack<StringBuilder> mTextCaptureStack = new Stack<StringBuilder>();
+	// the tag path, attributes, text captures and position records of every open element
+	private final ElementFrames mFrames = new ElementFrames();
 	
 	// how many text captures are active
 	private int mNrActiveTextCaptures = 0;
 	
-	// according to some Googling, it is faster to store a mutable object in a Map
-	// and update it in-place than it is to do a fetch, update, store sequence
-	private final class Position {
-		  private int mValue = 1;
-		  public void increment() {
-			  ++mValue;
-		  }
-		  public int get() {
-			  return mValue;
-		  }
-		  
-		  public String toString() {
-			  return "Position(" + mValue + ")";
-		  }
-	};
-	
-	// a Stack of HashMap<QName, Position>s which store position capture information
-	// each Map stores the number of times that each QName has been seen under this parent
-	private Stack<HashMap<QName, Position>> mPositionCaptureStack = new Stack<HashMap<QName, Position>>();
+	// the text of all the active captures: each one starts at the offset recorded on its
+	// element's frame and runs to the end, so nested captures share the characters
+	private final CaptureBuffer mCaptureBuffer = new CaptureBuffer();
+	
+	// the view of a finished capture which is passed to the @XPath() handlers
+	private final CapturedText mCapturedText = new CapturedText();
+	
+	// the Writers returned by the @XPathStream() handlers of the open elements, innermost last
+	private Writer[] mActiveTextStreams = new Writer[4];
+	private int mNrActiveTextStreams = 0;
 	
 	// the evaluation stack for the predicate evaluator
 	private int[] mPredicateStack = null;
@@ -86,31 +91,91 @@ public class AbstractAnnotatedHandler extends DefaultHandler {
 	// the string stack for the predicate evaluator
 	private String[] mPredicateStringStack = new String[2];
 	
-	// a cache so that we don't have to recompile patterns for matches()
-	// function calls
-	private HashMap<String, Pattern> mPatternCache = null;
-
+	// the Literals index of each string on the string stack, or -1 if it is not a literal
+	private int[] mPredicateStringLiterals = new int[2];
+	
 	// the compiled XPath expression data provider for our subclass
 	private AXSData mAXSData = null;
 	
 	// cached values pulled from the AXSData
 	private XPathExpression[] mExpressions = null;
+	private SymbolTable mSymbols = null;
+	private int[][] mQNameIds = null;
 	private int mNrCaptureExpressions = 0;
 	private int mNrEndExpressions = 0;
-	private Map<String, int[]> mTriggerTags = null;
+	private int mFirstStreamExpression = 0;
+	private HashMap<String, int[][]> mTriggerTags = null;
+	private boolean mHaveTriggerDispatch = false;
+	private boolean mHaveCapturedText = false;
 	private Set<String> mAttributeCaptureTags = null;
-	private Set<String> mPositionCaptureTags = null;
 	private boolean mCaptureAttributes = false;
+	private boolean mProjectAttributes = false;
 	private boolean mCapturePositions = false;
+	private boolean mHaveCompiledMatchers = false;
+	private XPathAutomaton mAutomaton = null;
+	
+	// the predicates which read attributes, and the ones to evaluate when each element
+	// name id starts; only their outcomes are kept on the elements' frames
+	private XPathExpression[] mStepPredicates = null;
+	private int[][] mStepPredicateQNameIds = null;
+	private int[][] mStepPredicatesByTag = null;
+	
+	// the children of each node of the reachable prefix trie as pairs of element name id and
+	// node, indexed by node + 1 so that the first entry holds the possible root elements, and
+	// whether any path below each node can match; null if any element can lead to a match
+	private int[][] mPrefixChildren = null;
+	private boolean[] mPrefixOpen = null;
+	
+	// the limits of the limited methods, the limit of each expression (-1 if it has none),
+	// how many more calls each limit allows in the current document, and how many limits
+	// have not been reached yet; mLimits is null if no method has a limit
+	private int[] mLimits = null;
+	private int[] mLimitOf = null;
+	private int[] mCallsLeft = null;
+	private int mNrLimitsLeft = 0;
+	
+	// the group of mutually exclusive expressions of each expression (-1 if it is in none), or
+	// null if there are no groups, and the last loop over triggered expressions in which each
+	// group has matched, as a stamp of mGroupLoop
+	private int[] mGroupOf = null;
+	private int[] mGroupMatchedLoops = null;
+	private int mGroupLoop = 0;
+	
+	// whether to stop the parse once all the limits have been reached
+	private boolean mStopWhenLimitsReached = false;
+	
+	// how deeply the parser is nested in a subtree that cannot match, which is not tracked
+	private int mSkippedDepth = 0;
+	
+	// for the automaton engine: the states for each element name id, the ids of the
+	// automaton's QName table, and whether it is in use for the current document
+	private int[][] mStatesByTag = null;
+	private int[] mAutomatonQNameIds = null;
+	private boolean mUseAutomaton = false;
+	
+	// for the interpreter: the expressions' shared steps, the trie nodes of each expression
+	// from its last step to its first, and the result of each node for the current event,
+	// which is valid if the node's stamp is the current event's
+	private XPathExpression[] mTrieSteps = null;
+	private int[][] mTrieStepQNameIds = null;
+	private int[][] mTriePaths = null;
+	private int[] mTrieResults = null;
+	private int[] mTrieStamps = null;
+	private int mEventStamp = 0;
+	
+	// the engine selected by setXPathEngine(), and whether it is in use for the current document
+	private int mXPathEngine = ENGINE_COMPILED;
+	private boolean mUseCompiledMatchers = false;
 
 	// cache a few objects to reduce GC churn for the common case that only one expression is active
 	// at a time
-	private StringBuilder mCachedStringBuilder = null;
 	private HashMap<QName, String> mCachedAttributesMap = null;
-	private HashMap<QName, Position> mCachedPositionMap = null;
 
 	private static final boolean TRACE_EXECUTION = false;
 	
+	// the result of runInstructions() when the instructions do not match
+	private static final int NO_MATCH = Integer.MIN_VALUE;
+	
 	public AbstractAnnotatedHandler() {
 		super();
 		
@@ -133,25 +198,217 @@ public class AbstractAnnotatedHandler extends DefaultHandler {
 
 	// load and cache all the relevant data from the _AXSData
 	private void setup() {
+		final int version = mAXSData.getAXSDataVersion();
+		
 		mExpressions = mAXSData.getXPathExpressions();
+		mSymbols = SymbolTable.forAXSData(mAXSData);
+		mQNameIds = new int[mExpressions.length][];
+		for (int i = 0; i < mExpressions.length; i++)
+			mQNameIds[i] = mSymbols.qNameIds(mExpressions[i]);
 		mNrCaptureExpressions = mAXSData.getNumberOfCapturingExpressions();
 		mNrEndExpressions = mAXSData.getNumberOfEndExpressions();
-		mTriggerTags = mAXSData.getTriggerTags();
+		mFirstStreamExpression = mExpressions.length -
+				(version >= AXSDATA_VERSION_STREAMS ? mAXSData.getNumberOfStreamExpressions() : 0);
+		mHaveTriggerDispatch = (version >= AXSDATA_VERSION_TRIGGER_DISPATCH);
+		mHaveCapturedText = (version >= AXSDATA_VERSION_CAPTURED_TEXT);
+		if (!mHaveTriggerDispatch)
+			mTriggerTags = splitTriggerTags(mAXSData.getTriggerTags());
 		mAttributeCaptureTags = mAXSData.getAttributeCaptureTags();
-		mPositionCaptureTags = mAXSData.getPositionCaptureTags();
 		
 		mCaptureAttributes = !mAttributeCaptureTags.isEmpty();
-		mCapturePositions = !mPositionCaptureTags.isEmpty();
+		mProjectAttributes = mSymbols.hasAttributeProjections();
+		mCapturePositions = (mSymbols.numberOfPositions() > 0);
 		
 		mPredicateStack = new int[mAXSData.getMaximumPredicateStackDepth()];
+		
+		// the compiled matchers refer to names by their index in the _AXSData's QName table
+		mFrames.symbols = mSymbols;
+		mFrames.setNumberOfAttributes(mSymbols.numberOfAttributes());
+		mFrames.setNumberOfPositions(mSymbols.numberOfPositions());
+		mFrames.setNumberOfCaptures(mNrCaptureExpressions);
+		mFrames.setPatterns(version >= AXSDATA_VERSION_PATTERNS ? mAXSData.getPatterns() : null,
+				version >= AXSDATA_VERSION_SIMPLE_PATTERNS ? mAXSData.getSimplePatterns() : null);
+		mFrames.setKeywordSets(version >= AXSDATA_VERSION_KEYWORD_SETS ? mAXSData.getKeywordSets() : null);
+		if (version >= AXSDATA_VERSION_STEP_PREDICATES)
+			setupStepPredicates(mAXSData.getStepPredicates());
+		mHaveCompiledMatchers = (version >= AXSDATA_VERSION_MATCHERS) &&
+				mAXSData.hasCompiledMatchers() && mSymbols.idsAreTableIndices();
+		
+		mAutomaton = (version >= AXSDATA_VERSION_AUTOMATON ? mAXSData.getXPathAutomaton() : null);
+		if (mAutomaton != null)
+			setupAutomaton();
+		
+		if (version >= AXSDATA_VERSION_LIMITS)
+			setupLimits(mAXSData.getLimits());
+		if (version >= AXSDATA_VERSION_EXCLUSIVE_GROUPS)
+			setupExclusiveGroups(mAXSData.getExclusiveGroups());
+		
+		// a subclass which overrides the SAX callbacks may query the tag path anywhere, so it
+		// must see every element
+		final int[][] prefixes = (version >= AXSDATA_VERSION_REACHABLE_PREFIXES ? mAXSData.getReachablePrefixes() : null);
+		if (prefixes != null && !overridesSAXCallbacks())
+			setupReachablePrefixes(prefixes);
+		
+		final XPathSuffixTrie suffixTrie = (version >= AXSDATA_VERSION_SUFFIX_TRIE ? mAXSData.getSuffixTrie() : null);
+		if (suffixTrie != null)
+			setupSuffixTrie(suffixTrie);
+	}
+	
+	// note the limit of each limited expression
+	private void setupLimits(int[][] limits) {
+		if (limits.length == 0)
+			return;
+		
+		mLimits = new int[limits.length];
+		mLimitOf = new int[mExpressions.length];
+		mCallsLeft = new int[limits.length];
+		Arrays.fill(mLimitOf, -1);
+		for (int limit = 0; limit < limits.length; limit++) {
+			mLimits[limit] = limits[limit][0];
+			for (int i = 1; i < limits[limit].length; i++)
+				mLimitOf[limits[limit][i]] = limit;
+		}
+	}
+	
+	// size the record of which groups of mutually exclusive expressions have matched
+	private void setupExclusiveGroups(int[] groups) {
+		if (groups == null)
+			return;
+		
+		int nrGroups = 0;
+		for (int group : groups)
+			nrGroups = Math.max(nrGroups, group + 1);
+		mGroupOf = groups;
+		mGroupMatchedLoops = new int[nrGroups];
+	}
+	
+	// test whether the handler subclass overrides any of the callbacks in which the tag path is tracked
+	private boolean overridesSAXCallbacks() {
+		final Class<?> handlerClass = this.getClass();
+		
+		try {
+			return handlerClass.getMethod("startElement", String.class, String.class, String.class, Attributes.class)
+						.getDeclaringClass() != AbstractAnnotatedHandler.class
+					|| handlerClass.getMethod("endElement", String.class, String.class, String.class)
+						.getDeclaringClass() != AbstractAnnotatedHandler.class
+					|| handlerClass.getMethod("characters", char[].class, int.class, int.class)
+						.getDeclaringClass() != AbstractAnnotatedHandler.class;
+		} catch (NoSuchMethodException e) {
+			throw new XPathExecutionError("Bug: got a NoSuchMethodException while looking up the SAX callbacks" +
+					" of class " + handlerClass.getName());
+		}
+	}
+	
+	// index the children of each node of the reachable prefix trie by element name id
+	private void setupReachablePrefixes(int[][] prefixes) {
+		final int[] counts = new int[prefixes.length + 1];
+		
+		for (int[] node : prefixes)
+			counts[node[0] + 1]++;
+		
+		mPrefixChildren = new int[prefixes.length + 1][];
+		mPrefixOpen = new boolean[prefixes.length];
+		for (int node = 0; node < prefixes.length; node++) {
+			final int parent = prefixes[node][0] + 1;
+			
+			// the nodes hold indices into the QName table that all the expressions share
+			if (mPrefixChildren[parent] == null)
+				mPrefixChildren[parent] = new int[2 * counts[parent]];
+			final int pair = mPrefixChildren[parent].length - 2 * counts[parent]--;
+			mPrefixChildren[parent][pair] = mQNameIds[0][prefixes[node][1]];
+			mPrefixChildren[parent][pair + 1] = node;
+			mPrefixOpen[node] = (prefixes[node][2] != 0);
+		}
+	}
+	
+	// index the step predicates by the name of the element they are for
+	private void setupStepPredicates(XPathExpression[] stepPredicates) {
+		final int[] tags = new int[stepPredicates.length];
+		final int[] counts = new int[mSymbols.size()];
+		
+		mStepPredicates = stepPredicates;
+		mStepPredicateQNameIds = new int[stepPredicates.length][];
+		for (int i = 0; i < stepPredicates.length; i++) {
+			// each one ends with the INSTR_ELEMENT of its step
+			final short[] instructions = stepPredicates[i].instructions();
+			
+			mStepPredicateQNameIds[i] = mSymbols.qNameIds(stepPredicates[i]);
+			tags[i] = mStepPredicateQNameIds[i][instructions[instructions.length - 1]];
+			counts[tags[i]]++;
+		}
+		
+		mStepPredicatesByTag = new int[counts.length][];
+		for (int i = 0; i < stepPredicates.length; i++) {
+			final int tag = tags[i];
+			
+			if (mStepPredicatesByTag[tag] == null)
+				mStepPredicatesByTag[tag] = new int[counts[tag]];
+			mStepPredicatesByTag[tag][mStepPredicatesByTag[tag].length - counts[tag]--] = i;
+		}
+		mFrames.setStepPredicates(tags);
+	}
+	
+	// unroll the path through the suffix trie for each expression
+	private void setupSuffixTrie(XPathSuffixTrie suffixTrie) {
+		final int[] parents = suffixTrie.parents();
+		final int[] expressionNodes = suffixTrie.expressionNodes();
+		
+		mTrieSteps = suffixTrie.steps();
+		mTrieStepQNameIds = new int[mTrieSteps.length][];
+		for (int node = 0; node < mTrieSteps.length; node++)
+			mTrieStepQNameIds[node] = mSymbols.qNameIds(mTrieSteps[node]);
+		
+		mTriePaths = new int[expressionNodes.length][];
+		for (int exprIndex = 0; exprIndex < expressionNodes.length; exprIndex++) {
+			int length = 0;
+			for (int node = expressionNodes[exprIndex]; node >= 0; node = parents[node])
+				length++;
+			
+			final int[] path = new int[length];
+			for (int node = expressionNodes[exprIndex]; node >= 0; node = parents[node])
+				path[--length] = node;
+			mTriePaths[exprIndex] = path;
+		}
+		
+		mTrieResults = new int[mTrieSteps.length];
+		mTrieStamps = new int[mTrieSteps.length];
+	}
+	
+	// index the automaton's states by element name
+	private void setupAutomaton() {
+		final short[] elements = mAutomaton.elements();
+		final int[] counts = new int[mSymbols.size()];
+		
+		mAutomatonQNameIds = mSymbols.qNameIds(mAutomaton);
+		for (int state = 0; state < elements.length; state++)
+			counts[mAutomatonQNameIds[elements[state]]]++;
+
+		mStatesByTag = new int[counts.length][];
+		for (int state = 0; state < elements.length; state++) {
+			final int tag = mAutomatonQNameIds[elements[state]];
+			
+			if (mStatesByTag[tag] == null)
+				mStatesByTag[tag] = new int[counts[tag]];
+			mStatesByTag[tag][mStatesByTag[tag].length - counts[tag]--] = state;
+		}
 	}
 	
 	// clear everything for a new document
 	private void reset() {
-		mTagStack.clear();
-		mAttributesStack.clear();
-		mTextCaptureStack.clear();
+		mFrames.clear();
+		mSkippedDepth = 0;
+		if (mLimits != null) {
+			System.arraycopy(mLimits, 0, mCallsLeft, 0, mLimits.length);
+			mNrLimitsLeft = mLimits.length;
+		}
 		mNrActiveTextCaptures = 0;
+		mCaptureBuffer.clear();
+		Arrays.fill(mActiveTextStreams, 0, mNrActiveTextStreams, null);
+		mNrActiveTextStreams = 0;
+		mUseCompiledMatchers = (mXPathEngine == ENGINE_COMPILED && mHaveCompiledMatchers);
+		mUseAutomaton = (mXPathEngine == ENGINE_AUTOMATON && mAutomaton != null);
+		if (mUseAutomaton)
+			mFrames.setNumberOfStates(mAutomaton.numberOfStates());
 	}
 
 	@Override
@@ -161,6 +418,26 @@ public class AbstractAnnotatedHandler extends DefaultHandler {
 		reset();
 	}
 	
+	/**
+	 * The implementation of endDocument() drops any captured text which is still held, with
+	 * its spill file. Make sure you call it via super if you override it in your handler subclass.
+	 */
+	@Override
+	public void endDocument() throws SAXException {
+		abandonDocument();
+	}
+	
+	/**
+	 * The implementation of fatalError() closes the Writers of the open
+	 * {@literal @}XPathStream() elements and drops the captured text, since the parse
+	 * will not finish, then throws @p e.
+	 */
+	@Override
+	public void fatalError(SAXParseException e) throws SAXException {
+		abandonDocument();
+		throw e;
+	}
+	
 	private void instrOk() {
 		System.out.println("ok");
 	}
@@ -169,12 +446,194 @@ public class AbstractAnnotatedHandler extends DefaultHandler {
 		System.out.println("fail");
 	}
 
+	/**
+	 * Test one of the handler's XPath expressions against the current tag with the selected engine.
+	 * @param exprIndex the index of the expression
+	 * @return true if the expression matches, false otherwise
+	 */
+	private boolean matches(int exprIndex) {
+		if (mUseAutomaton) {
+			final int state = mAutomaton.acceptingStates()[exprIndex];
+			final int word = (mFrames.size - 1) * mFrames.stateWords + (state >>> 6);
+			return (mFrames.activeStates[word] & (1L << state)) != 0;
+		}
+		if (mUseCompiledMatchers)
+			return mAXSData.test(exprIndex, mFrames);
+		if (mTriePaths != null)
+			return testTriePath(mTriePaths[exprIndex]);
+		return testExpression(mExpressions[exprIndex], mQNameIds[exprIndex]);
+	}
+	
+	/**
+	 * Split the triggers of an _AXSData which predates getTriggers() into the expressions
+	 * to test when each tag starts and when it ends, the way getTriggers() returns them.
+	 * @param triggerTags
+	 * @return the start and end triggers for each tag name
+	 */
+	private HashMap<String, int[][]> splitTriggerTags(Map<String, int[]> triggerTags) {
+		final HashMap<String, int[][]> split = new HashMap<String, int[][]>();
+		final int nrNonStartExpressions = mNrCaptureExpressions + mNrEndExpressions;
+		
+		for (Map.Entry<String, int[]> trigger : triggerTags.entrySet()) {
+			final int[] indices = trigger.getValue();
+			int nrStarts = 0, nrEnds = 0;
+			
+			for (final int ix : indices) {
+				if (ix < nrNonStartExpressions)
+					nrEnds++;
+				if (ix < mNrCaptureExpressions || ix >= nrNonStartExpressions)
+					nrStarts++;
+			}
+			
+			final int[] starts = (nrStarts > 0 ? new int[nrStarts] : null);
+			final int[] ends = (nrEnds > 0 ? new int[nrEnds] : null);
+			nrStarts = nrEnds = 0;
+			for (final int ix : indices) {
+				if (ix < nrNonStartExpressions)
+					ends[nrEnds++] = ix;
+				if (ix < mNrCaptureExpressions || ix >= nrNonStartExpressions)
+					starts[nrStarts++] = ix;
+			}
+			split.put(trigger.getKey(), new int[][] { starts, ends });
+		}
+		return split;
+	}
+	
+	/**
+	 * Look up the expressions which an element can trigger, through the _AXSData's
+	 * generated dispatcher if it has one. Older _AXSData classes only key their
+	 * triggers by name, so elements from any namespace trigger them.
+	 * @param namespaceURI the element's Namespace URI
+	 * @param localName the element's Local Name, or its qName if it has no Namespace URI
+	 * @return the indices of the expressions to test when the element starts and when
+	 *  it ends, or null if there are none
+	 */
+	private int[][] triggersFor(String namespaceURI, String localName) {
+		if (mHaveTriggerDispatch)
+			return mAXSData.getTriggers(namespaceURI, localName);
+		return mTriggerTags.get(localName);
+	}
+
+	/**
+	 * Start a new event for the suffix trie results: the results of the previous
+	 * event are no longer valid once the tag path changes.
+	 */
+	private void nextEvent() {
+		if (++mEventStamp == 0) {
+			// the stamps have wrapped around: make sure no stale stamp can match
+			Arrays.fill(mTrieStamps, 0);
+			mEventStamp = 1;
+		}
+	}
+	
+	/**
+	 * Test an expression by executing its path through the suffix trie, reusing the
+	 * result of every node that another expression has already executed for this event.
+	 * @param path the trie nodes of the expression, from its last step to its first
+	 * @return true if the expression matches, false otherwise
+	 */
+	private boolean testTriePath(int[] path) {
+		final int[] results = mTrieResults;
+		final int[] stamps = mTrieStamps;
+		final int stamp = mEventStamp;
+		int tagp = mFrames.size - 1;
+		
+		for (final int node : path) {
+			if (stamps[node] == stamp) {
+				tagp = results[node];
+			} else {
+				tagp = runInstructions(mTrieSteps[node], mTrieStepQNameIds[node], tagp);
+				results[node] = tagp;
+				stamps[node] = stamp;
+			}
+			if (tagp == NO_MATCH)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Compute the automaton states of the element which was just started from those of
+	 * its parent. The element's attributes and position must already be captured.
+	 * @param tag the SymbolTable id of the element
+	 */
+	private void advanceAutomaton(int tag) {
+		final ElementFrames frames = mFrames;
+		final int words = frames.stateWords;
+		final int top = frames.size - 1;
+		final int base = top * words;
+		final int parentBase = base - words;
+		final long[] active = frames.activeStates;
+		final long[] carried = frames.carriedStates;
+		
+		// nothing is active yet, and everything carried by the parent is carried through
+		for (int w = 0; w < words; w++) {
+			active[base + w] = 0;
+			carried[base + w] = (top > 0 ? carried[parentBase + w] : 0);
+		}
+		
+		if (tag == SymbolTable.NO_SYMBOL || mStatesByTag[tag] == null)
+			return;
+		
+		final short[] predecessors = mAutomaton.predecessors();
+		final short[] flags = mAutomaton.flags();
+		final XPathExpression[] predicates = mAutomaton.predicates();
+		
+		for (final int state : mStatesByTag[tag]) {
+			final int predecessor = predecessors[state];
+			final boolean isCarried = (flags[state] & XPathAutomaton.STATE_CARRIED) != 0;
+			boolean reachable;
+			
+			if (predecessor < 0) {
+				reachable = ((flags[state] & XPathAutomaton.STATE_ANCHORED) == 0 || top == 0);
+			} else if (top == 0) {
+				reachable = false;
+			} else {
+				final long[] from = ((flags[predecessor] & XPathAutomaton.STATE_CARRIED) != 0 ? carried : active);
+				reachable = (from[parentBase + (predecessor >>> 6)] & (1L << predecessor)) != 0;
+			}
+			
+			// a carried state must know whether the element matches even if it is not
+			// reachable, since a match hides any outer matches from the descendants
+			if (!reachable && !isCarried)
+				continue;
+			if (predicates[state] != null && !testExpression(predicates[state], mAutomatonQNameIds))
+				continue;
+			
+			final int word = base + (state >>> 6);
+			final long bit = 1L << state;
+			
+			if (reachable)
+				active[word] |= bit;
+			if (isCarried) {
+				if (reachable)
+					carried[word] |= bit;
+				else
+					carried[word] &= ~bit;
+			}
+		}
+	}
+
 	/**
 	 * Test an XPathExpression against the current tag.
 	 * @param xpr the expression to test
+	 * @param qNameIds the SymbolTable ids of xpr.qNames()
 	 * @return true if the expression matches, false otherwise
 	 */
-	private boolean testExpression(XPathExpression xpr)
+	private boolean testExpression(XPathExpression xpr, int[] qNameIds) {
+		return runInstructions(xpr, qNameIds, mFrames.size - 1) != NO_MATCH;
+	}
+
+	/**
+	 * Execute the instructions of an XPathExpression, which may be only part of a compiled
+	 * expression, against the tag path.
+	 * @param xpr the instructions to execute
+	 * @param qNameIds the SymbolTable ids of xpr.qNames()
+	 * @param tagp the depth of the tag at which to start
+	 * @return the depth of the next tag to test after the instructions have consumed
+	 * their tags, or NO_MATCH if they did not match
+	 */
+	private int runInstructions(XPathExpression xpr, int[] qNameIds, int tagp)
 	{
 		final short[] instructions = xpr.instructions();
 		final String[] literals = xpr.literals();
@@ -182,8 +641,9 @@ public class AbstractAnnotatedHandler extends DefaultHandler {
 		final int[] evaluationStack = mPredicateStack;
 		int esp = 0;
 		int ip = 0, maxIp = instructions.length;
-		int tagp = mTagStack.size() - 1; // the current tag
+		final ElementFrames frames = mFrames;
 		String[] stringStack = mPredicateStringStack;
+		final int[] stringLiterals = mPredicateStringLiterals;
 		int ssp = 0;
 		
 		if (TRACE_EXECUTION)
@@ -204,30 +664,28 @@ public class AbstractAnnotatedHandler extends DefaultHandler {
 				if (tagp != -1) {
 					if (TRACE_EXECUTION)
 						instrFail();
-					return false;
+					return NO_MATCH;
 				}
 				if (TRACE_EXECUTION)
 					instrOk();
 				break;
 			case XPathExpression.INSTR_ELEMENT:
 			{
-				final QName wantedTag = qNames[instructions[++ip]];
+				final int qNameIx = instructions[++ip];
 				
 				if (TRACE_EXECUTION)
-					System.out.print("  ELEMENT(" + wantedTag + "): ");
+					System.out.print("  ELEMENT(" + qNames[qNameIx] + "): ");
 
 				// test if the current node is a specific tag
 				if (tagp < 0) {
 					if (TRACE_EXECUTION)
 						instrFail();
-					return false;
+					return NO_MATCH;
 				}
-				final QName tag = mTagStack.get(tagp);
-
-				if (!wantedTag.equals(tag)) {
+				if (frames.tags[tagp] != qNameIds[qNameIx]) {
 					if (TRACE_EXECUTION)
 						instrFail();
-					return false;
+					return NO_MATCH;
 				}
 				
 				if (TRACE_EXECUTION)
@@ -239,7 +697,13 @@ public class AbstractAnnotatedHandler extends DefaultHandler {
 			}
 			case XPathExpression.INSTR_CONTAINS:
 			{
-				if (stringStack[0].contains(stringStack[1])) {
+				final boolean found;
+				if (frames.hasKeyword(stringLiterals[1]))
+					found = frames.contains(stringLiterals[1], stringStack[0]);
+				else
+					found = stringStack[0].contains(stringStack[1]);
+				
+				if (found) {
 					evaluationStack[esp++] = 1;
 				} else {
 					evaluationStack[esp++] = 0;
@@ -253,28 +717,23 @@ public class AbstractAnnotatedHandler extends DefaultHandler {
 			}
 			case XPathExpression.INSTR_ATTRIBUTE:
 			{
-				final QName attrName = qNames[instructions[++ip]];
+				final int qNameIx = instructions[++ip];
 
 				if (TRACE_EXECUTION)
-					System.out.print("  ATTRIBUTE(" + attrName + "): ");
+					System.out.print("  ATTRIBUTE(" + qNames[qNameIx] + "): ");
 
 				// push the value of an attribute onto the predicate string stack
-				if (tagp < 0) {
-					if (TRACE_EXECUTION)
-						instrFail();
-					return false;
-				}
-				final HashMap<QName, String> attrs = mAttributesStack.get(tagp);
-				if (attrs == null) {
+				final String value = frames.attribute(tagp, qNameIds[qNameIx]);
+				if (value == null) {
 					// predicates are executed before the tag value is tested, so
 					// there is no guarantee that capture data is available if the tag
 					// test would eventually fail
 					if (TRACE_EXECUTION)
 						instrFail();
-					return false;
+					return NO_MATCH;
 				}
-				final String value = attrs.get(attrName);
-				stringStack[ssp++] = (value != null ? value : "");
+				stringLiterals[ssp] = -1;
+				stringStack[ssp++] = value;
 				
 				if (TRACE_EXECUTION)
 					System.out.println(stringStack[ssp-1]);
@@ -283,7 +742,8 @@ public class AbstractAnnotatedHandler extends DefaultHandler {
 			}
 			case XPathExpression.INSTR_LITERAL:
 				// push a literal onto the predicate string stack
-				stringStack[ssp++] = literals[instructions[++ip]];
+				stringLiterals[ssp] = instructions[++ip];
+				stringStack[ssp++] = literals[instructions[ip]];
 				
 				if (TRACE_EXECUTION)
 					System.out.println("  LITERAL(\"" + stringStack[ssp-1] + "\")");
@@ -349,7 +809,7 @@ public class AbstractAnnotatedHandler extends DefaultHandler {
 				if (esp != 1 || evaluationStack[0] == 0) {
 					if (TRACE_EXECUTION)
 						instrFail();
-					return false;
+					return NO_MATCH;
 				}
 
 				esp = 0;
@@ -388,19 +848,20 @@ public class AbstractAnnotatedHandler extends DefaultHandler {
 				// consumes any number of tags until the QName before the double slash is found
 				// but does not consume the tag
 			{
-				final QName targetTag = qNames[instructions[++ip]];
+				final int qNameIx = instructions[++ip];
+				final int targetTag = qNameIds[qNameIx];
 				
 				if (TRACE_EXECUTION)
-					System.out.print("  NONCONSECUTIVE_ELEMENT(" + targetTag + "): ");
+					System.out.print("  NONCONSECUTIVE_ELEMENT(" + qNames[qNameIx] + "): ");
 				while (tagp >= 0) {
-					if (mTagStack.get(tagp).equals(targetTag))
+					if (frames.tags[tagp] == targetTag)
 						break;
 					tagp--;
 				}
 				if (tagp < 0) {
 					if (TRACE_EXECUTION)
 						instrFail();
-					return false;
+					return NO_MATCH;
 				}
 				if (TRACE_EXECUTION)
 					instrOk();
@@ -414,24 +875,44 @@ public class AbstractAnnotatedHandler extends DefaultHandler {
 				if (tagp <= 0) {
 					if (TRACE_EXECUTION)
 						instrFail();
-					return false;
+					return NO_MATCH;
 				}
 				// look up the current tag under its parent
-				final HashMap<QName, Position> posMap = mPositionCaptureStack.get(tagp-1);
-				if (posMap == null) {
+				final int position = frames.position(tagp);
+				if (position < 0) {
 					// predicates are executed before the tag value is tested, so
 					// there is no guarantee that capture data is available if the tag
 					// test would eventually fail
 					if (TRACE_EXECUTION)
 						instrFail();
-					return false;
+					return NO_MATCH;
 				}
-				final int pos = posMap.get(mTagStack.get(tagp)).get();
-				evaluationStack[esp++] = pos;
+				evaluationStack[esp++] = position;
 				
 				if (TRACE_EXECUTION)
 					System.out.println(String.valueOf(evaluationStack[esp-1]));
 				break;
+			case XPathExpression.INSTR_STEP_PREDICATE:
+			{
+				final int predicateIx = instructions[++ip];
+				
+				// push the outcome of a predicate which was evaluated when the tag started
+				if (TRACE_EXECUTION)
+					System.out.print("  STEP_PREDICATE(" + predicateIx + "): ");
+				
+				final int held = frames.stepPredicate(tagp, predicateIx);
+				if (held < 0) {
+					// as for INSTR_POSITION, the tag may not be the one the predicate is for
+					if (TRACE_EXECUTION)
+						instrFail();
+					return NO_MATCH;
+				}
+				evaluationStack[esp++] = held;
+				
+				if (TRACE_EXECUTION)
+					System.out.println(String.valueOf(held));
+				break;
+			}
 			case XPathExpression.INSTR_LT:
 			{
 				// less-than operation
@@ -505,27 +986,46 @@ public class AbstractAnnotatedHandler extends DefaultHandler {
 				if (TRACE_EXECUTION)
 					System.out.print("  MATCHES(\"" + target + "\", \"" + patternString + "\": ");
 				
-				if (mPatternCache == null)
-					mPatternCache = new HashMap<String, Pattern>();
-				
-				Pattern pattern = mPatternCache.get(patternString);
-				if (pattern == null) {
-					try {
-						pattern = Pattern.compile(patternString);
-					} catch (PatternSyntaxException e) {
+				final boolean matched;
+				if (frames.hasPattern(stringLiterals[1])) {
+					// a precompiled pattern
+					matched = frames.matches(stringLiterals[1], target);
+				} else {
+					// the same cache serves the compiled matchers
+					final int result = frames.matchesPattern(patternString, target);
+					
+					if (result < 0) {
 						if (TRACE_EXECUTION)
 							instrFail();
-						return false;
+						return NO_MATCH;
 					}
-					mPatternCache.put(patternString, pattern);
+					matched = (result != 0);
 				}
 				
-				evaluationStack[esp++] = (pattern.matcher(target).matches() ? 1 : 0);
+				evaluationStack[esp++] = (matched ? 1 : 0);
+				ssp = 0;
 				
 				if (TRACE_EXECUTION)
 					System.out.println(String.valueOf(evaluationStack[esp-1]));
 				break;
 			}
+			case XPathExpression.INSTR_BRANCH_IF_FALSE:
+			case XPathExpression.INSTR_BRANCH_IF_TRUE:
+			{
+				// skip the other operand of an 'and' or 'or' if the one on the stack decides it,
+				// leaving that one as the result
+				final boolean decided = ((evaluationStack[esp-1] != 0) == (instr == XPathExpression.INSTR_BRANCH_IF_TRUE));
+				
+				if (TRACE_EXECUTION)
+					System.out.println("  " + (instr == XPathExpression.INSTR_BRANCH_IF_TRUE ? "BRANCH_IF_TRUE" : "BRANCH_IF_FALSE") +
+							"(" + evaluationStack[esp-1] + "): " + (decided ? "branch" : "continue"));
+				if (decided) {
+					ip += instructions[ip+1];
+					continue; // execute the branch immediately
+				}
+				ip++;
+				break;
+			}
 			case XPathExpression.INSTR_SOFT_TEST_PREDICATE:
 				// test whether the predicate matched
 				if (TRACE_EXECUTION)
@@ -536,7 +1036,7 @@ public class AbstractAnnotatedHandler extends DefaultHandler {
 					if (--tagp < 0) {
 						if (TRACE_EXECUTION)
 							instrFail();
-						return false;
+						return NO_MATCH;
 					}
 					
 					if (TRACE_EXECUTION)
@@ -558,7 +1058,7 @@ public class AbstractAnnotatedHandler extends DefaultHandler {
 			ip++;
 		}
 
-		return true;
+		return tagp;
 	}
 	
 	/**
@@ -569,14 +1069,14 @@ public class AbstractAnnotatedHandler extends DefaultHandler {
 	 * @return a new QName
 	 */
 	private QName makeQName(String uri, String localName, String qName) {
-		if (! "".equals(uri))
+		if (uri != null && !"".equals(uri))
 			return new QName(uri, localName);
 		return new QName(qName);
 	}
 	
 	/**
 	 * Capture all the attributes in @p attrs.
-	 * @param attrs the attributes to capture to the attribute stack
+	 * @param attrs the attributes to capture into the current frame
 	 */
 	private void captureAttributes(Attributes attrs) {
 		HashMap<QName, String> map = null;
@@ -599,62 +1099,210 @@ public class AbstractAnnotatedHandler extends DefaultHandler {
 			map.put(makeQName(uri, localName, localName), value);
 		}
 		
-		// push the map onto the attributes stack
-		mAttributesStack.push(map);
+		// store the map in the current frame
+		mFrames.attributes[mFrames.size - 1] = map;
+	}
+	
+	/**
+	 * Copy just the attributes which the predicates read into the current frame's slots.
+	 * @param projection the attribute indices of the names to copy
+	 * @param attrs the attributes of the current element
+	 */
+	private void projectAttributes(int[] projection, Attributes attrs) {
+		final int top = mFrames.size - 1;
+		final int base = top * mFrames.attributeWidth;
+		
+		for (int index : projection) {
+			final QName name = mSymbols.qName(mSymbols.attributeId(index));
+			final String namespaceURI = name.getNamespaceURI();
+			
+			mFrames.attributeValues[base + index] = ("".equals(namespaceURI) ?
+					attrs.getValue(name.getLocalPart()) : attrs.getValue(namespaceURI, name.getLocalPart()));
+		}
+		mFrames.attributesProjected[top] = true;
+		
+		if (TRACE_EXECUTION)
+			System.out.println("projectAttributes => " + attributesAtDepth(top));
 	}
 	
 	/**
-	 * Update the position record for a new tag. Assumes that the capture stack is still
-	 * at the position for the tag's parent.
-	 * @param qn the QName of the new tag
+	 * Update the position counter for a new tag in its parent's frame. Assumes that the
+	 * new tag's own frame has already been pushed.
+	 * @param index the SymbolTable position index of the new tag
 	 */
-	private void capturePosition(QName qn) {
+	private void capturePosition(int index) {
+		final int parent = mFrames.size - 2;
+		
 		// there is only one root element, ever
-		if (mPositionCaptureStack.empty())
+		if (parent < 0)
 			return;
 		
-		HashMap<QName, Position> map = mPositionCaptureStack.pop();
-		
-		if (map == null) {
-			if (mCachedPositionMap != null) {
-				map = mCachedPositionMap;
-				mCachedPositionMap = null;
-				map.clear();
-			} else {
-				map = new HashMap<QName, Position>();
+		mFrames.positionCounts[parent * mFrames.positionWidth + index]++;
+		mFrames.positionsCounted[parent] = true;
+	}
+	
+	/**
+	 * Test whether an expression's method has already been called as often as its limit() allows.
+	 * @param exprIndex the index of the expression
+	 * @return true if the expression need not be tested any more in this document
+	 */
+	private boolean limitReached(int exprIndex) {
+		return mLimitOf != null && mLimitOf[exprIndex] >= 0 && mCallsLeft[mLimitOf[exprIndex]] == 0;
+	}
+	
+	/**
+	 * Test whether another expression of an expression's group has already matched in the
+	 * current loop over the triggered expressions, which is mGroupLoop.
+	 * @param exprIndex the index of the expression
+	 * @return true if the expression need not be tested
+	 */
+	private boolean groupMatched(int exprIndex) {
+		return mGroupOf != null && mGroupOf[exprIndex] >= 0 && mGroupMatchedLoops[mGroupOf[exprIndex]] == mGroupLoop;
+	}
+	
+	/**
+	 * Record that an expression matched in the current loop over the triggered expressions,
+	 * so that the rest of its group is not tested.
+	 * @param exprIndex the index of the expression
+	 */
+	private void noteGroupMatched(int exprIndex) {
+		if (mGroupOf != null && mGroupOf[exprIndex] >= 0)
+			mGroupMatchedLoops[mGroupOf[exprIndex]] = mGroupLoop;
+	}
+	
+	/**
+	 * Count a call of an expression's method against its limit(), if it has one.
+	 * @param exprIndex the index of the expression
+	 */
+	private void countCall(int exprIndex) {
+		if (mLimitOf == null || mLimitOf[exprIndex] < 0)
+			return;
+		if (--mCallsLeft[mLimitOf[exprIndex]] == 0)
+			mNrLimitsLeft--;
+	}
+	
+	/**
+	 * Stop the parse if it was asked to stop once all the limits have been reached, and they have.
+	 * The Writers of the open elements are closed and the captured text is dropped first, since
+	 * none of their elements will ever end.
+	 * @throws StopParsingException
+	 */
+	private void checkLimitsReached() throws StopParsingException {
+		if (mStopWhenLimitsReached && mLimits != null && mNrLimitsLeft == 0) {
+			abandonDocument();
+			throw new StopParsingException();
+		}
+	}
+	
+	/**
+	 * Release everything which the open elements hold, for a parse which will not finish or
+	 * has finished.
+	 */
+	private void abandonDocument() {
+		while (mNrActiveTextStreams > 0) {
+			final Writer stream = mActiveTextStreams[--mNrActiveTextStreams];
+			
+			mActiveTextStreams[mNrActiveTextStreams] = null;
+			try {
+				stream.close();
+			} catch (IOException e) {
+				// the text of the element was cut short anyway; a Writer which objects to
+				// that must not hide why the parse ended
 			}
 		}
+		mNrActiveTextCaptures = 0;
+		mCaptureBuffer.clear();
+	}
+	
+	/**
+	 * Find the node of the reachable prefix trie for a new tag, before its frame is pushed.
+	 * @param tag the SymbolTable id of the new tag
+	 * @return the node, or -1 if neither the tag nor anything inside it can match
+	 */
+	private int reachablePrefix(int tag) {
+		final int parent = (mFrames.size > 0 ? mFrames.prefixNodes[mFrames.size - 1] : -1);
 		
-		Position p = map.get(qn);
-		if (p != null) {
-			p.increment();
-		} else {
-			map.put(qn, new Position());
+		// below an open node every tag stays at it
+		if (parent >= 0 && mPrefixOpen[parent])
+			return parent;
+		
+		final int[] children = mPrefixChildren[parent + 1];
+		if (children != null) {
+			for (int i = 0; i < children.length; i += 2) {
+				if (children[i] == tag)
+					return children[i + 1];
+			}
 		}
+		return -1;
+	}
+	
+	/**
+	 * Evaluate step predicates for the current tag and record their outcomes in its frame.
+	 * Assumes that the tag's attributes and position have already been captured.
+	 * @param predicates the indices of the step predicates for the tag's name
+	 */
+	private void evaluateStepPredicates(int[] predicates) {
+		final int top = mFrames.size - 1;
 		
-		mPositionCaptureStack.push(map);
+		for (final int ix : predicates) {
+			final boolean held = (runInstructions(mStepPredicates[ix], mStepPredicateQNameIds[ix], top) != NO_MATCH);
+			
+			mFrames.setStepPredicate(ix, held);
+			if (TRACE_EXECUTION)
+				System.out.println("step predicate #" + ix + " => " + held);
+		}
 	}
 	
 	/**
-	 * Set up to start capturing all the text within this element.
+	 * Open an {@literal @}XPathStream() handler's Writer for this element, if it returns one.
+	 * @param exprIndex the index of the {@literal @}XPathStream() expression
+	 * @param attrs the element's attributes
+	 * @throws SAXException
 	 */
-	private void startTextCapture() {
-		StringBuilder sb = mTextCaptureStack.pop();
+	private void startTextStream(int exprIndex, Attributes attrs) throws SAXException {
+		final Writer stream = mAXSData.callXPathStream(this, exprIndex, attrs);
 		
-		if (sb != null) {
-			mTextCaptureStack.push(sb);
+		if (stream == null)
 			return;
+		
+		if (mNrActiveTextStreams == mActiveTextStreams.length)
+			mActiveTextStreams = Arrays.copyOf(mActiveTextStreams, mNrActiveTextStreams * 2);
+		mActiveTextStreams[mNrActiveTextStreams++] = stream;
+		mFrames.textStreamCounts[mFrames.size - 1]++;
+	}
+	
+	/**
+	 * Close the Writers which the ending element's {@literal @}XPathStream() handlers returned.
+	 * @param count the number of Writers the element opened
+	 * @throws SAXException
+	 */
+	private void closeTextStreams(int count) throws SAXException {
+		while (count-- > 0) {
+			final Writer stream = mActiveTextStreams[--mNrActiveTextStreams];
+			
+			mActiveTextStreams[mNrActiveTextStreams] = null;
+			try {
+				stream.close();
+			} catch (IOException e) {
+				throw new SAXException("Error closing @XPathStream() Writer", e);
+			}
 		}
-
-		mNrActiveTextCaptures++;
+	}
+	
+	/**
+	 * Set up to start capturing all the text within this element, and record that the
+	 * {@literal @}XPath() expression matched it so that endElement() need not test it again.
+	 * @param exprIndex the index of the {@literal @}XPath() expression
+	 */
+	private void startTextCapture(int exprIndex) {
+		final int top = mFrames.size - 1;
 		
-		if (mCachedStringBuilder != null) {
-			mCachedStringBuilder.setLength(0);
-			mTextCaptureStack.push(mCachedStringBuilder);
-			mCachedStringBuilder = null;
-		} else {
-			mTextCaptureStack.push(new StringBuilder());
+		if (mFrames.textCaptureStarts[top] < 0) {
+			mNrActiveTextCaptures++;
+			mFrames.textCaptureStarts[top] = mCaptureBuffer.length();
+			Arrays.fill(mFrames.captureBits, top * mFrames.captureWords, (top + 1) * mFrames.captureWords, 0);
 		}
+		mFrames.setCaptured(exprIndex);
 	}
 	
 	/**
@@ -664,55 +1312,110 @@ public class AbstractAnnotatedHandler extends DefaultHandler {
 	 */
 	@Override
 	public void startElement(String uri, String localName, String qName, Attributes attrs) throws SAXException {
-		// push this tag onto the stack
-		final QName qn = makeQName(uri, localName, qName);
-		mTagStack.push(qn);
+		boolean started = false;
+		
+		try {
+			// parsers which are not namespace aware may report no Namespace URI at all
+			openElement(uri != null ? uri : "", localName, qName, attrs);
+			started = true;
+		} finally {
+			// a handler threw: the open elements will never end
+			if (!started)
+				abandonDocument();
+		}
+	}
+	
+	private void openElement(String uri, String localName, String qName, Attributes attrs) throws SAXException {
+		// nothing inside a subtree which cannot match needs to be tracked; only the text
+		// of any enclosing captures is still collected, by characters()
+		if (mSkippedDepth > 0) {
+			mSkippedDepth++;
+			return;
+		}
+		
+		final String normalizedLocalName = ("".equals(uri) ? qName : localName);
+		final int tag = mSymbols.lookup(uri, normalizedLocalName);
+		int prefix = -1;
+		
+		if (mPrefixChildren != null) {
+			prefix = reachablePrefix(tag);
+			if (prefix < 0) {
+				if (TRACE_EXECUTION)
+					System.out.println("startElement: <" + makeQName(uri, localName, qName) + "> cannot match, skipping");
+				mSkippedDepth = 1;
+				return;
+			}
+		}
+		
+		// open a frame for this tag
+		mFrames.push(tag, uri, normalizedLocalName);
+		mFrames.prefixNodes[mFrames.size - 1] = prefix;
 		
 		if (TRACE_EXECUTION)
-			System.out.println("startElement: <" + qn + ">");
-
-		String normalizedLocalName = qn.getLocalPart();
+			System.out.println("startElement: <" + makeQName(uri, localName, qName) + "> = #" + tag);
 		
 		// test whether to perform attribute capture
-		if (mCaptureAttributes) {
+		if (mProjectAttributes) {
+			final int[] projection = mSymbols.attributeProjection(tag);
+			
+			if (projection == SymbolTable.ALL_ATTRIBUTES) {
+				captureAttributes(attrs);
+				if (TRACE_EXECUTION)
+					System.out.println("captureAttributes => " + mFrames.attributes[mFrames.size - 1]);
+			} else if (projection != null) {
+				projectAttributes(projection, attrs);
+			}
+		} else if (mCaptureAttributes) {
 			if (mAttributeCaptureTags.contains(normalizedLocalName)) {
 				captureAttributes(attrs);
 				if (TRACE_EXECUTION)
-					System.out.println("captureAttributes => " + mAttributesStack.peek());
-			} else {
-				mAttributesStack.push(null);
+					System.out.println("captureAttributes => " + mFrames.attributes[mFrames.size - 1]);
 			}
 		}
 
 		// test whether to perform position capture
 		if (mCapturePositions) {
-			if (mPositionCaptureTags.contains(normalizedLocalName)) {
-				if (TRACE_EXECUTION)
-					System.out.println("capturePosition => " + mPositionCaptureStack.peek());
-				// update the position marker in the parent tag's level in the stack
-				capturePosition(qn);
+			final int positionIndex = mSymbols.positionIndex(tag);
+			
+			if (positionIndex >= 0) {
+				// update the position counter in the parent tag's frame
+				capturePosition(positionIndex);
+				if (TRACE_EXECUTION && mFrames.size > 1)
+					System.out.println("capturePosition => " + mFrames.position(mFrames.size - 1));
 			}
-			// push the position capture stack
-			mPositionCaptureStack.push(null);
 		}
-		
-		// push the text capture stack
-		mTextCaptureStack.push(null);
+
+		// evaluate the predicates on this element once and for all; the expressions only
+		// test their outcomes, so the attributes which they read need not be kept
+		if (mStepPredicatesByTag != null && tag >= 0 && mStepPredicatesByTag[tag] != null) {
+			evaluateStepPredicates(mStepPredicatesByTag[tag]);
+			mFrames.dropAttributes(mFrames.size - 1);
+		}
+
+		if (mUseAutomaton)
+			advanceAutomaton(tag);
+		if (mTriePaths != null)
+			nextEvent();
 
 		// test whether we should start text capture for one or more expressions
-		// and test whether we have any expressions to fire
-		int[] triggeredExpressions = mTriggerTags.get(normalizedLocalName);
+		// and test whether we have any expressions to fire; endElement() will find
+		// its own triggers on the frame
+		final int[][] triggers = triggersFor(uri, normalizedLocalName);
+		
+		if (triggers == null)
+			return;
+		mFrames.triggers[mFrames.size - 1] = triggers;
+		
+		final int[] triggeredExpressions = triggers[0];
 		
 		if (triggeredExpressions == null)
 			return;
 		
+		mGroupLoop++;
 		for (final int exprIndex : triggeredExpressions) {
-			// skip @XPathEnd() expressions
-			if (exprIndex >= mNrCaptureExpressions && exprIndex < mNrCaptureExpressions+mNrEndExpressions)
-				continue;
-			
-			if (!testExpression(mExpressions[exprIndex]))
+			if (groupMatched(exprIndex) || limitReached(exprIndex) || !matches(exprIndex))
 				continue;
+			noteGroupMatched(exprIndex);
 			
 			// the expression matched: execute it
 			if (exprIndex < mNrCaptureExpressions) {
@@ -720,36 +1423,52 @@ public class AbstractAnnotatedHandler extends DefaultHandler {
 					System.out.println("CAPTURE for @XPath(" + exprIndex + ")");
 				
 				// we've found the start of an @XPath() expression: start capturing TEXT elements
-				startTextCapture();
+				startTextCapture(exprIndex);
+			} else if (exprIndex >= mFirstStreamExpression) {
+				if (TRACE_EXECUTION)
+					System.out.println("CALL @XPathStream(" + exprIndex + ")");
+				
+				// we've found the start of an @XPathStream() expression: start streaming TEXT elements
+				startTextStream(exprIndex, attrs);
 			} else {
 				if (TRACE_EXECUTION)
 					System.out.println("CALL @XPathStart(" + exprIndex + ")");
 				
 				// must be an @XPathStart() expression: fire it
 				mAXSData.callXPathStart(this, exprIndex, attrs);
+				countCall(exprIndex);
 			}
 		}
+		checkLimitsReached();
 	}
 	
 	/**
 	 * The implementation of characters() provides text capture support for {@literal @}XPath()
-	 * handlers. Make sure you call if via super if you override it in your handler subclass.
+	 * and {@literal @}XPathStream() handlers. Make sure you call if via super if you override
+	 * it in your handler subclass.
 	 */
 	@Override
 	public void characters(char[] ch, int start, int length) throws SAXException {
+		// the streamed text is passed straight on, without being kept
+		for (int i = 0; i < mNrActiveTextStreams; i++) {
+			try {
+				mActiveTextStreams[i].write(ch, start, length);
+			} catch (IOException e) {
+				abandonDocument();
+				throw new SAXException("Error writing to @XPathStream() Writer", e);
+			}
+		}
+		
 		if (mNrActiveTextCaptures == 0)
 			return;
 		
-		// append the characters to all the active text captures
-		int n = mNrActiveTextCaptures, ix = mTextCaptureStack.size() - 1;
-		while (n > 0) {
-			final StringBuilder sb = mTextCaptureStack.get(ix);
-			
-			if (sb != null) {
-				sb.append(ch, start, length);
-				n--;
-			}
-			ix--;
+		// the active text captures all end at the end of the buffer, so appending
+		// the characters once adds them to every one of them
+		try {
+			mCaptureBuffer.append(ch, start, length);
+		} catch (IOException e) {
+			abandonDocument();
+			throw new SAXException("Error spilling @XPath() text capture", e);
 		}
 	}
 	
@@ -760,74 +1479,172 @@ public class AbstractAnnotatedHandler extends DefaultHandler {
 	 */
 	@Override
 	public void endElement(String uri, String localName, String qName) throws SAXException {
-		// if we've completed a capture, close it out
+		boolean ended = false;
+		
+		try {
+			closeElement(uri, localName, qName);
+			ended = true;
+		} finally {
+			// a handler threw: the open elements will never end
+			if (!ended)
+				abandonDocument();
+		}
+	}
+	
+	private void closeElement(String uri, String localName, String qName) throws SAXException {
+		if (mSkippedDepth > 0) {
+			mSkippedDepth--;
+			return;
+		}
+		
+		// if we've completed a capture, close it out; the handlers get a view of it which
+		// is only valid until they return
 		String text = null;
-		final StringBuilder sb = mTextCaptureStack.pop();
+		final int top = mFrames.size - 1;
+		final long captureStart = mFrames.textCaptureStarts[top];
 		
-		if (sb != null) {
-			text = sb.toString();
+		if (captureStart >= 0) {
+			try {
+				mCaptureBuffer.view(mCapturedText, captureStart);
+			} catch (IOException e) {
+				throw new SAXException("Error reading spilled @XPath() text capture", e);
+			}
+			if (!mHaveCapturedText)
+				text = mCapturedText.toString();
 			mNrActiveTextCaptures--;
-			mCachedStringBuilder = sb;
 		}
 
 		if (TRACE_EXECUTION) {
 			QName qn = makeQName(uri, localName, qName);
 			System.out.println("endElement: <" + qn + ">");
 		}
+		
+		// the element's streamed text is complete
+		if (mFrames.textStreamCounts[top] > 0)
+			closeTextStreams(mFrames.textStreamCounts[top]);
 
-		// test whether we have any expressions to fire
-		int[] triggeredExpressions = mTriggerTags.get(uri.equals("") ? qName : localName);
+		if (mTriePaths != null)
+			nextEvent();
+
+		// test whether we have any expressions to fire, as looked up by startElement()
+		final int[][] triggers = mFrames.triggers[top];
+		final int[] triggeredExpressions = (triggers != null ? triggers[1] : null);
 		
 		if (triggeredExpressions != null) {
+			mGroupLoop++;
 			for (final int exprIndex : triggeredExpressions) {
-				// skip @XPathStart() expressions
-				if (exprIndex >= mNrCaptureExpressions+mNrEndExpressions)
-					continue;
-				
-				if (!testExpression(mExpressions[exprIndex]))
+				// the tag path is the same as when the element started, so the @XPath()
+				// expressions which matched then are the ones which started its capture,
+				// of which only one per group
+				if (groupMatched(exprIndex) || limitReached(exprIndex) ||
+						(exprIndex < mNrCaptureExpressions ? !mFrames.isCaptured(top, exprIndex) : !matches(exprIndex)))
 					continue;
+				noteGroupMatched(exprIndex);
 				
 				// the expression matched: execute it
 				if (exprIndex < mNrCaptureExpressions) {
 					if (TRACE_EXECUTION)
-						System.out.println("CALL @XPath(" + exprIndex + ",\"" + text + "\")");
+						System.out.println("CALL @XPath(" + exprIndex + ",\"" + mCapturedText + "\")");
 					
 					// we've found the end of an @XPath() expression: fire it
-					mAXSData.callXPathText(this, exprIndex, text);
+					if (mHaveCapturedText)
+						mAXSData.callXPathText(this, exprIndex, mCapturedText);
+					else
+						mAXSData.callXPathText(this, exprIndex, text);
+					countCall(exprIndex);
 				} else {
 					if (TRACE_EXECUTION)
 						System.out.println("CALL @XPathEnd(" + exprIndex + ")");
 					
 					// must be an @XPathEnd() expression: fire it
 					mAXSData.callXPathEnd(this, exprIndex);
+					countCall(exprIndex);
 				}
 			}
 		}
 		
-		// pop the remaining stacks
-		if (mCapturePositions) {
-			final HashMap<QName, Position> posMap = mPositionCaptureStack.pop();
-			
-			if (posMap != null)
-				mCachedPositionMap = posMap;
-		}
+		// once the outermost capture is closed and its handlers are done with it, the
+		// buffer can be reused from the start
+		if (captureStart >= 0 && mNrActiveTextCaptures == 0)
+			mCaptureBuffer.clear();
 		
-		if (mCaptureAttributes) {
-			final HashMap<QName, String> attrMap = mAttributesStack.pop();
-			
-			if (attrMap != null)
-				mCachedAttributesMap = attrMap;
-		}
+		// recycle the frame's capture data and close it
+		final HashMap<QName, String> attrMap = mFrames.attributes[top];
+		
+		if (attrMap != null)
+			mCachedAttributesMap = attrMap;
 		
-		mTagStack.pop();
+		mFrames.pop();
+		checkLimitsReached();
+	}
+	
+	/**
+	 * Stop parsing each document as soon as all the methods with a limit() have been called
+	 * that many times, by throwing a StopParsingException out of the parser's parse(). The
+	 * methods without a limit() are not taken into account. Without this, the limited methods
+	 * are just no longer called, and the rest of the document is parsed as usual. The Writers
+	 * of the {@literal @}XPathStream() elements which are still open are closed before the
+	 * parse is stopped.
+	 * @param stop true to stop parsing once the limits are reached
+	 */
+	public void setStopWhenLimitsReached(boolean stop) {
+		mStopWhenLimitsReached = stop;
+	}
+	
+	/**
+	 * Select how XPath expressions are evaluated. ENGINE_COMPILED, the default, uses the
+	 * matchers that the annotation processor compiled into the _AXSData when it was run with
+	 * -Aaxs.codegen, and falls back to ENGINE_INTERPRETER if there are none. ENGINE_AUTOMATON
+	 * tracks all the expressions at once as elements are started, which makes each test
+	 * independent of the document depth, at the cost of some work for every element. The
+	 * setting takes effect at the next startDocument().
+	 * @param engine one of the ENGINE_* constants
+	 */
+	public void setXPathEngine(int engine) {
+		if (engine != ENGINE_INTERPRETER && engine != ENGINE_COMPILED && engine != ENGINE_AUTOMATON)
+			throw new IllegalArgumentException("Unknown XPath engine " + engine);
+		mXPathEngine = engine;
+	}
+	
+	/**
+	 * Query which engine was selected with {@link setXPathEngine}().
+	 * @return one of the ENGINE_* constants
+	 */
+	public int getXPathEngine() {
+		return mXPathEngine;
 	}
 	
 	/**
-	 * Query what depth the current tag is at. Call this from inside an expression handler.
+	 * Limit how much {@literal @}XPath() text is captured on the heap. Once the active captures
+	 * hold more than @p chars characters, their text is moved to a temporary file, which is
+	 * memory-mapped to give it to the handlers and deleted when the outermost capture ends, or
+	 * when the parse fails. Handlers which take a CharSequence can then read a capture of up to
+	 * Integer.MAX_VALUE chars without it being copied onto the heap; use {@literal @}XPathStream()
+	 * for larger text. By default, the text is never spilled.
+	 * @param chars the most characters to keep on the heap
+	 */
+	public void setCaptureSpillThreshold(int chars) {
+		if (chars <= 0)
+			throw new IllegalArgumentException("The capture spill threshold must be positive");
+		mCaptureBuffer.setSpillThreshold(chars);
+	}
+	
+	/**
+	 * Query the limit set by {@link setCaptureSpillThreshold}().
+	 * @return the most characters kept on the heap
+	 */
+	public int getCaptureSpillThreshold() {
+		return mCaptureBuffer.getSpillThreshold();
+	}
+	
+	/**
+	 * Query what depth the current tag is at. Call this from inside an expression handler, or
+	 * from an override of one of the SAX callbacks; subtrees are only skipped for handlers which
+	 * do not override startElement(), endElement() or characters().
 	 * @return the number of tag to the root from the current tag
 	 */
 	public int tagDepth() {
-		return mTagStack.size();
+		return mFrames.size;
 	}
 	
 	/**
@@ -837,7 +1654,8 @@ public class AbstractAnnotatedHandler extends DefaultHandler {
 	 * @return the QName of the element at the given @p depth
 	 */
 	public QName tagAtDepth(int depth) {
-		return mTagStack.get(depth);
+		mFrames.checkDepth(depth);
+		return new QName(mFrames.namespaceURIs[depth], mFrames.names[depth]);
 	}
 	
 	/**
@@ -846,7 +1664,7 @@ public class AbstractAnnotatedHandler extends DefaultHandler {
 	 * @return the depth of the found tag, or -1 if it was not found
 	 */
 	public int findTag(QName tag) {
-		return mTagStack.indexOf(tag);
+		return findTag(tag, 0);
 	}
 	
 	/**
@@ -856,18 +1674,40 @@ public class AbstractAnnotatedHandler extends DefaultHandler {
 	 * @return the depth of the found tag, or -1 if it was not found
 	 */
 	public int findTag(QName tag, int start) {
-		return mTagStack.indexOf(tag, start);
+		final String namespaceURI = tag.getNamespaceURI();
+		final String name = tag.getLocalPart();
+		final String[] names = mFrames.names;
+		
+		for (int depth = start, size = mFrames.size; depth < size; depth++) {
+			if (names[depth].equals(name) && mFrames.namespaceURIs[depth].equals(namespaceURI))
+				return depth;
+		}
+		return -1;
 	}
 	
 	/**
 	 * Query the attributes map a tag at some other depth in the document. Depth 0 refers to the root element;
 	 * the current tag is {@link tagDepth}()-1. Use the special captureattrs() function as a predicate in
-	 * your XPath expression to mark that attributes should be captured for a given element even if they are
-	 * not used in any other predicate.
+	 * your XPath expression to mark that attributes should be captured for a given element; predicates
+	 * which read attributes are evaluated when the element starts, and only their outcomes are kept.
 	 * @param depth
 	 * @return either a map of attributes or null if the attributes were not captured
 	 */
 	public Map<QName, String> attributesAtDepth(int depth) {
-		return mAttributesStack.get(depth);
+		mFrames.checkDepth(depth);
+		if (mFrames.attributesProjected[depth] && mFrames.attributes[depth] == null) {
+			// only build a map of the projected attributes if someone asks for it
+			final HashMap<QName, String> map = new HashMap<QName, String>();
+			final int base = depth * mFrames.attributeWidth;
+			
+			for (int index = 0; index < mFrames.attributeWidth; index++) {
+				final String value = mFrames.attributeValues[base + index];
+				
+				if (value != null)
+					map.put(mSymbols.qName(mSymbols.attributeId(index)), value);
+			}
+			mFrames.attributes[depth] = map;
+		}
+		return mFrames.attributes[depth];
 	}
 }
@@ -0,0 +1,157 @@
+/*
+ * This file is part of AXS, Annotation-XPath for SAX.
+ * 
+ * Copyright (c) 2013 Benjamin K. Stuhl
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.googlecode.axs;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * A Writer which decodes the base64 text written to it and passes the decoded bytes on to
+ * an OutputStream as it goes, so that only a small window of the data is ever held in
+ * memory. Whitespace is ignored, and decoding stops at the first padding character. This
+ * is what an {@literal @}XPathStream() method which returns an OutputStream is wrapped in.
+ * @author Ben
+ *
+ */
+public final class Base64DecodingWriter extends Writer {
+	private static final int BUFFER_SIZE = 3 * 1024;
+	
+	// the 6-bit value of each base64 character, or -1
+	private static final byte[] DECODE_TABLE = new byte[128];
+	static {
+		final String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+		
+		for (int i = 0; i < DECODE_TABLE.length; i++)
+			DECODE_TABLE[i] = -1;
+		for (int i = 0; i < alphabet.length(); i++)
+			DECODE_TABLE[alphabet.charAt(i)] = (byte) i;
+	}
+	
+	private final OutputStream mOut;
+	private final byte[] mBuffer = new byte[BUFFER_SIZE];
+	private int mBufferLength = 0;
+	
+	// the bits of the quantum being decoded, and how many characters of it have been seen
+	private int mBits = 0;
+	private int mNrChars = 0;
+	
+	// whether the padding at the end of the data has been seen
+	private boolean mPadded = false;
+	
+	public Base64DecodingWriter(OutputStream out) {
+		mOut = out;
+	}
+	
+	/**
+	 * Wrap an {@literal @}XPathStream() method's OutputStream, passing on null.
+	 * @param out
+	 * @return a Writer which decodes into @p out, or null if @p out is null
+	 */
+	public static Writer wrap(OutputStream out) {
+		return (out != null ? new Base64DecodingWriter(out) : null);
+	}
+	
+	@Override
+	public void write(char[] cbuf, int off, int len) throws IOException {
+		for (int i = off, end = off + len; i < end; i++) {
+			final char c = cbuf[i];
+			
+			if (c == ' ' || c == '\n' || c == '\r' || c == '\t')
+				continue;
+			if (mPadded)
+				continue;
+			if (c == '=') {
+				mPadded = true;
+				continue;
+			}
+			
+			final int value = (c < DECODE_TABLE.length ? DECODE_TABLE[c] : -1);
+			if (value < 0)
+				throw new IOException("Invalid base64 character '" + c + "'");
+			
+			mBits = (mBits << 6) | value;
+			if (++mNrChars == 4) {
+				if (mBufferLength + 3 > mBuffer.length)
+					flushBuffer();
+				mBuffer[mBufferLength++] = (byte) (mBits >> 16);
+				mBuffer[mBufferLength++] = (byte) (mBits >> 8);
+				mBuffer[mBufferLength++] = (byte) mBits;
+				mBits = 0;
+				mNrChars = 0;
+			}
+		}
+	}
+	
+	private void flushBuffer() throws IOException {
+		mOut.write(mBuffer, 0, mBufferLength);
+		mBufferLength = 0;
+	}
+	
+	@Override
+	public void flush() throws IOException {
+		flushBuffer();
+		mOut.flush();
+	}
+	
+	/**
+	 * Decode the final, partial quantum if there is one, and close the OutputStream. The
+	 * OutputStream is closed, with all the bytes decoded so far, even if the data turns out
+	 * to be truncated.
+	 */
+	@Override
+	public void close() throws IOException {
+		boolean truncated = false;
+		
+		try {
+			if (mBufferLength + 2 > mBuffer.length)
+				flushBuffer();
+			
+			switch (mNrChars) {
+			case 0:
+				break;
+			case 2:
+				mBuffer[mBufferLength++] = (byte) (mBits >> 4);
+				break;
+			case 3:
+				mBuffer[mBufferLength++] = (byte) (mBits >> 10);
+				mBuffer[mBufferLength++] = (byte) (mBits >> 2);
+				break;
+			default:
+				truncated = true;
+				break;
+			}
+			mBits = 0;
+			mNrChars = 0;
+			
+			flushBuffer();
+		} finally {
+			mOut.close();
+		}
+		
+		if (truncated)
+			throw new IOException("Truncated base64 data");
+	}
+}
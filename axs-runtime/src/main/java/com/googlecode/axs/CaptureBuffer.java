@@ -0,0 +1,203 @@
+/*
+ * This file is part of AXS, Annotation-XPath for SAX.
+ * 
+ * Copyright (c) 2013 Benjamin K. Stuhl
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.googlecode.axs;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Internal support class which holds the text of all the active {@literal @}XPath() captures.
+ * Each capture starts at some offset and runs to the end of the buffer, so nested captures
+ * share their characters. The text is kept in a char array until it grows past the spill
+ * threshold; from then on, until the buffer is cleared, it is written to a temporary file
+ * through a direct staging buffer, and captures are viewed through memory mappings of that
+ * file, MAP_CHUNK chars at a time, so that the heap never holds more than the threshold.
+ * @author Ben
+ *
+ */
+final class CaptureBuffer {
+	private static final int INITIAL_SIZE = 256;
+	
+	// the largest array which is kept for the next capture once the buffer is cleared
+	private static final int RETAINED_SIZE = 64 * 1024;
+	
+	// the size of the staging buffer for writes to the spill file, in chars
+	private static final int STAGING_SIZE = 32 * 1024;
+	
+	// the most chars which one mapping of the spill file holds, a power of two which keeps
+	// the mapping within the 2G bytes a MappedByteBuffer can address
+	static final int MAP_CHUNK_SHIFT = 28;
+	static final int MAP_CHUNK = 1 << MAP_CHUNK_SHIFT;
+	static final int MAP_CHUNK_MASK = MAP_CHUNK - 1;
+	
+	private char[] mChars = new char[INITIAL_SIZE];
+	private long mLength = 0;
+	private int mSpillThreshold = Integer.MAX_VALUE;
+	
+	// the spill file, if the text has outgrown mChars; it holds all the text, as UTF-16
+	private File mSpillFile = null;
+	private RandomAccessFile mSpillStream = null;
+	private FileChannel mSpillChannel = null;
+	private ByteBuffer mStaging = null;
+	
+	/**
+	 * Set how many chars may be held on the heap before the text is spilled to a file.
+	 * @param chars
+	 */
+	public void setSpillThreshold(int chars) {
+		mSpillThreshold = chars;
+	}
+	
+	public int getSpillThreshold() {
+		return mSpillThreshold;
+	}
+	
+	/**
+	 * Query the length of all the text in the buffer.
+	 * @return the length, which is the offset at which a new capture starts
+	 */
+	public long length() {
+		return mLength;
+	}
+	
+	/**
+	 * Append some characters to every active capture.
+	 * @param ch
+	 * @param start
+	 * @param length
+	 * @throws IOException if the spill file cannot be written
+	 */
+	public void append(char[] ch, int start, int length) throws IOException {
+		final long newLength = mLength + length;
+		
+		if (mSpillChannel == null && newLength > mSpillThreshold)
+			startSpilling();
+		
+		if (mSpillChannel != null) {
+			spill(ch, start, length);
+		} else {
+			// short of the spill threshold, the length fits in an int
+			if (newLength > mChars.length)
+				mChars = Arrays.copyOf(mChars, (int) Math.min(Math.max(newLength, mChars.length * 2L), mSpillThreshold));
+			System.arraycopy(ch, start, mChars, (int) mLength, length);
+		}
+		mLength = newLength;
+	}
+	
+	/**
+	 * Point @p text at the capture which started at @p start.
+	 * @param text
+	 * @param start
+	 * @throws IOException if the spill file cannot be mapped, or the capture is too long
+	 * for a CharSequence
+	 */
+	public void view(CapturedText text, long start) throws IOException {
+		final long length = mLength - start;
+		
+		if (mSpillChannel == null) {
+			text.set(mChars, (int) start, (int) length);
+			return;
+		}
+		
+		if (length > Integer.MAX_VALUE)
+			throw new IOException("A capture of " + length + " chars is too long for a CharSequence; use @XPathStream() instead");
+		
+		final CharBuffer[] chunks = new CharBuffer[(int) ((length + MAP_CHUNK_MASK) >>> MAP_CHUNK_SHIFT)];
+		for (int i = 0; i < chunks.length; i++) {
+			final long offset = (long) i << MAP_CHUNK_SHIFT;
+			
+			chunks[i] = mSpillChannel.map(FileChannel.MapMode.READ_ONLY,
+					(start + offset) * 2, Math.min(length - offset, MAP_CHUNK) * 2).asCharBuffer();
+		}
+		text.set(chunks, (int) length);
+	}
+	
+	/**
+	 * Drop all the text, once there are no more active captures. Any spill file is deleted,
+	 * and an array which has grown large is given up.
+	 */
+	public void clear() {
+		mLength = 0;
+		if (mChars.length > RETAINED_SIZE)
+			mChars = new char[INITIAL_SIZE];
+		if (mSpillChannel != null)
+			stopSpilling();
+	}
+	
+	/**
+	 * Move the text into a new spill file, which receives all the text from now on.
+	 * @throws IOException
+	 */
+	private void startSpilling() throws IOException {
+		mSpillFile = File.createTempFile("axs-capture", ".tmp");
+		mSpillStream = new RandomAccessFile(mSpillFile, "rw");
+		mSpillChannel = mSpillStream.getChannel();
+		if (mStaging == null)
+			mStaging = ByteBuffer.allocateDirect(STAGING_SIZE * 2);
+		
+		spill(mChars, 0, (int) mLength);
+		mChars = new char[INITIAL_SIZE];
+	}
+	
+	/**
+	 * Write some characters to the end of the spill file.
+	 * @param ch
+	 * @param start
+	 * @param length
+	 * @throws IOException
+	 */
+	private void spill(char[] ch, int start, int length) throws IOException {
+		while (length > 0) {
+			final int n = Math.min(length, STAGING_SIZE);
+			
+			mStaging.clear();
+			mStaging.asCharBuffer().put(ch, start, n);
+			mStaging.limit(n * 2);
+			while (mStaging.hasRemaining())
+				mSpillChannel.write(mStaging);
+			start += n;
+			length -= n;
+		}
+	}
+	
+	private void stopSpilling() {
+		try {
+			mSpillStream.close();
+		} catch (IOException e) {
+			// there is nothing left in the file that anyone needs
+		}
+		// a mapping which is still open may keep the file from being deleted on some platforms
+		if (!mSpillFile.delete())
+			mSpillFile.deleteOnExit();
+		mSpillFile = null;
+		mSpillStream = null;
+		mSpillChannel = null;
+	}
+}
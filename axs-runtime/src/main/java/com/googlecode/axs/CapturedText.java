@@ -0,0 +1,163 @@
+/*
+ * This file is part of AXS, Annotation-XPath for SAX.
+ * 
+ * Copyright (c) 2013 Benjamin K. Stuhl
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.googlecode.axs;
+
+import java.nio.CharBuffer;
+
+/**
+ * A read-only view of the text captured for an {@literal @}XPath() expression, as passed
+ * to handler methods which take a CharSequence or a (char[], int, int) range instead of a
+ * String. The view refers directly to the engine's capture buffer, so it and any array
+ * obtained from it are only valid for the duration of the handler call; use toString()
+ * to keep the text.
+ * @author Ben
+ *
+ */
+public final class CapturedText implements CharSequence {
+	private char[] mBuffer = null;
+	private int mOffset = 0;
+	private int mLength = 0;
+	
+	// the text, if it was spilled out of the heap rather than being in mBuffer, as mappings
+	// of CaptureBuffer.MAP_CHUNK chars each but the last
+	private CharBuffer[] mSpilled = null;
+	
+	// the text as a String, once one has been asked for
+	private String mString = null;
+	
+	CapturedText() {
+	}
+	
+	/**
+	 * Point the view at a new capture.
+	 * @param buffer
+	 * @param offset
+	 * @param length
+	 */
+	void set(char[] buffer, int offset, int length) {
+		mBuffer = buffer;
+		mOffset = offset;
+		mLength = length;
+		mSpilled = null;
+		mString = null;
+	}
+	
+	/**
+	 * Point the view at a new capture which has been spilled out of the heap.
+	 * @param spilled the consecutive chunks of the text
+	 * @param length
+	 */
+	void set(CharBuffer[] spilled, int length) {
+		mBuffer = null;
+		mOffset = 0;
+		mLength = length;
+		mSpilled = spilled;
+		mString = null;
+	}
+	
+	/**
+	 * Copy some of the spilled text into an array.
+	 * @param start the index of the first character to copy
+	 * @param dst
+	 * @param dstOffset
+	 * @param length
+	 */
+	private void copySpilled(int start, char[] dst, int dstOffset, int length) {
+		while (length > 0) {
+			final CharBuffer chunk = mSpilled[start >>> CaptureBuffer.MAP_CHUNK_SHIFT].duplicate();
+			
+			chunk.position(start & CaptureBuffer.MAP_CHUNK_MASK);
+			final int n = Math.min(length, chunk.remaining());
+			chunk.get(dst, dstOffset, n);
+			start += n;
+			dstOffset += n;
+			length -= n;
+		}
+	}
+	
+	/**
+	 * Get the buffer which holds the text. The buffer must not be modified. If the text
+	 * was too large to be kept on the heap, it is copied into a new buffer.
+	 * @return the buffer, whose characters from {@link offset}() on are the text
+	 */
+	public char[] array() {
+		if (mBuffer == null && mSpilled != null) {
+			mBuffer = new char[mLength];
+			copySpilled(0, mBuffer, 0, mLength);
+		}
+		return mBuffer;
+	}
+	
+	/**
+	 * Get the buffer which holds the text, without copying a spilled capture into the heap.
+	 * @return the buffer, whose characters from {@link offset}() on are the text, or null
+	 * if the text was spilled
+	 */
+	char[] heapArray() {
+		return mBuffer;
+	}
+	
+	/**
+	 * Get the position of the text in {@link array}().
+	 * @return the offset of the first character of the text
+	 */
+	public int offset() {
+		return mOffset;
+	}
+	
+	@Override
+	public int length() {
+		return mLength;
+	}
+	
+	@Override
+	public char charAt(int index) {
+		if (index < 0 || index >= mLength)
+			throw new IndexOutOfBoundsException("index " + index + ", length " + mLength);
+		if (mSpilled != null)
+			return mSpilled[index >>> CaptureBuffer.MAP_CHUNK_SHIFT].get(index & CaptureBuffer.MAP_CHUNK_MASK);
+		return mBuffer[mOffset + index];
+	}
+	
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		if (start < 0 || end > mLength || start > end)
+			throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + mLength);
+		if (mSpilled != null && mBuffer == null) {
+			final char[] chars = new char[end - start];
+			
+			copySpilled(start, chars, 0, end - start);
+			return new String(chars);
+		}
+		return new String(mBuffer, mOffset + start, end - start);
+	}
+	
+	@Override
+	public String toString() {
+		if (mString == null)
+			mString = new String(array(), mOffset, mLength);
+		return mString;
+	}
+}
@@ -0,0 +1,506 @@
+/*
+ * This file is part of AXS, Annotation-XPath for SAX.
+ * 
+ * Copyright (c) 2013 Benjamin K. Stuhl
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.googlecode.axs;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Internal support class which holds the per-element state of the engine for
+ * every currently open element. The state is kept as a set of parallel arrays
+ * indexed by depth (0 is the root element), so that the expression evaluator can
+ * read it with plain array accesses instead of going through a synchronized
+ * java.util.Stack for every tag.
+ * @author Ben
+ *
+ */
+final class ElementFrames implements MatchContext {
+	private static final int INITIAL_DEPTH = 16;
+
+	// the SymbolTable id of each open element
+	int[] tags;
+	
+	// the Namespace URI and name of each open element, as the SAX parser reported them;
+	// the name is the Local Name if there is a Namespace URI and the raw qName otherwise
+	String[] namespaceURIs;
+	String[] names;
+
+	// the captured attributes of each open element
+	// note: we only store attributes that may be needed to execute one of the
+	// XPath expressions in the handler; all tags whose attributes are never referenced
+	// have null stored here.
+	HashMap<QName, String>[] attributes;
+
+	// the projected attributes of each open element, as attributeWidth values per element
+	// indexed by SymbolTable attribute index (null if the element does not have one), and
+	// whether each element's attributes were projected into them instead of captured
+	String[] attributeValues;
+	boolean[] attributesProjected;
+	int attributeWidth = 0;
+
+	// the node of the handler's reachable prefix trie which each open element is at
+	int[] prefixNodes;
+
+	// the start and end trigger arrays which each open element's name looked up, or null
+	int[][][] triggers;
+
+	// the offset in the handler's shared capture buffer at which each open element's
+	// text capture started, or -1 if the element is not capturing its text
+	long[] textCaptureStarts;
+	
+	// which @XPath() expressions matched each open element when it started, as captureWords
+	// longs of bits per element indexed by expression; only valid for the elements which
+	// are capturing their text
+	long[] captureBits;
+	int captureWords = 0;
+	
+	// the number of @XPathStream() Writers each open element has opened
+	int[] textStreamCounts;
+
+	// for each open element, how many times each position-captured child tag has been
+	// seen under it, as positionWidth counters per element indexed by SymbolTable position
+	// index, and whether any of the element's counters is non-zero
+	int[] positionCounts;
+	boolean[] positionsCounted;
+	int positionWidth = 0;
+
+	// the element name id of each of the _AXSData's step predicates, and their outcomes
+	// for each open element with that name, as predicateWords longs of bits per element
+	private int[] stepPredicateTags = null;
+	long[] predicateBits;
+	int predicateWords = 0;
+
+	// for the automaton engine, the active and carried XPathAutomaton states of each open
+	// element, as stateWords longs of bits per element
+	long[] activeStates;
+	long[] carriedStates;
+	int stateWords = 0;
+
+	// the _AXSData's precompiled matches() patterns, indexed by literal, and a Matcher for
+	// each which is reset for every test instead of being reallocated; the patterns which
+	// were specialized do not need java.util.regex at all
+	private Pattern[] patterns = null;
+	private Matcher[] matchers = null;
+	private SimplePattern[] simplePatterns = null;
+	
+	// a cache so that we don't have to recompile patterns for matches() function calls
+	// whose pattern the _AXSData did not precompile
+	private HashMap<String, Pattern> patternCache = null;
+
+	// the _AXSData's KeywordSets, the set and bit of each literal which is in one (indexed
+	// by literal, -1 if it is not), and the last string each set searched with what it found
+	private KeywordSet[] keywordSets = null;
+	private int[] keywordSetOf = null;
+	private int[] keywordBitOf = null;
+	private String[] keywordTargets = null;
+	private long[][] keywordsFound = null;
+
+	// the number of open elements
+	int size = 0;
+	
+	// the names used by the handler's expressions
+	SymbolTable symbols = null;
+
+	public ElementFrames() {
+		allocate(INITIAL_DEPTH);
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private void allocate(int capacity) {
+		tags = new int[capacity];
+		namespaceURIs = new String[capacity];
+		names = new String[capacity];
+		attributes = new HashMap[capacity];
+		attributeValues = new String[capacity * attributeWidth];
+		attributesProjected = new boolean[capacity];
+		prefixNodes = new int[capacity];
+		triggers = new int[capacity][][];
+		textCaptureStarts = new long[capacity];
+		textStreamCounts = new int[capacity];
+		captureBits = new long[capacity * captureWords];
+		positionCounts = new int[capacity * positionWidth];
+		positionsCounted = new boolean[capacity];
+		predicateBits = new long[capacity * predicateWords];
+		activeStates = new long[capacity * stateWords];
+		carriedStates = new long[capacity * stateWords];
+	}
+
+	/**
+	 * Size the automaton state bitsets for @p nrStates states. The frames must be empty.
+	 * @param nrStates
+	 */
+	public void setNumberOfStates(int nrStates) {
+		final int words = (nrStates + 63) >>> 6;
+
+		if (words == stateWords)
+			return;
+		stateWords = words;
+		activeStates = new long[tags.length * words];
+		carriedStates = new long[tags.length * words];
+	}
+
+	/**
+	 * Size the projected attribute values for @p nrAttributes attribute names. The frames
+	 * must be empty.
+	 * @param nrAttributes
+	 */
+	public void setNumberOfAttributes(int nrAttributes) {
+		if (nrAttributes == attributeWidth)
+			return;
+		attributeWidth = nrAttributes;
+		attributeValues = new String[tags.length * nrAttributes];
+	}
+
+	/**
+	 * Size the record of matched @XPath() expressions for @p nrCaptures expressions. The
+	 * frames must be empty.
+	 * @param nrCaptures
+	 */
+	public void setNumberOfCaptures(int nrCaptures) {
+		final int words = (nrCaptures + 63) >>> 6;
+
+		if (words == captureWords)
+			return;
+		captureWords = words;
+		captureBits = new long[tags.length * words];
+	}
+
+	/**
+	 * Record that an @XPath() expression matched the innermost element when it started.
+	 * The element's text capture must already have been started.
+	 * @param exprIndex the index of the expression
+	 */
+	public void setCaptured(int exprIndex) {
+		captureBits[(size - 1) * captureWords + (exprIndex >>> 6)] |= 1L << exprIndex;
+	}
+
+	/**
+	 * Test whether an @XPath() expression matched an element when it started.
+	 * @param depth the depth of the element
+	 * @param exprIndex the index of the expression
+	 * @return true if setCaptured() was called for the expression
+	 */
+	public boolean isCaptured(int depth, int exprIndex) {
+		if (textCaptureStarts[depth] < 0)
+			return false;
+		return (captureBits[depth * captureWords + (exprIndex >>> 6)] & (1L << exprIndex)) != 0;
+	}
+
+	/**
+	 * Size the position counters for @p nrPositions element names. The frames must be empty.
+	 * @param nrPositions
+	 */
+	public void setNumberOfPositions(int nrPositions) {
+		if (nrPositions == positionWidth)
+			return;
+		positionWidth = nrPositions;
+		positionCounts = new int[tags.length * nrPositions];
+	}
+
+	/**
+	 * Size the step predicate outcomes for the _AXSData's step predicates. The frames must
+	 * be empty.
+	 * @param tags the element name id of each step predicate, or null if there are none
+	 */
+	public void setStepPredicates(int[] tags) {
+		final int words = (tags != null ? (tags.length + 63) >>> 6 : 0);
+
+		stepPredicateTags = tags;
+		if (words == predicateWords)
+			return;
+		predicateWords = words;
+		predicateBits = new long[this.tags.length * words];
+	}
+
+	/**
+	 * Record the outcome of a step predicate for the innermost element.
+	 * @param predicateIx the index of the step predicate
+	 * @param held whether the predicate held
+	 */
+	public void setStepPredicate(int predicateIx, boolean held) {
+		final int word = (size - 1) * predicateWords + (predicateIx >>> 6);
+		final long bit = 1L << predicateIx;
+
+		if (held)
+			predicateBits[word] |= bit;
+		else
+			predicateBits[word] &= ~bit;
+	}
+
+	/**
+	 * Forget the projected attributes of an element once its predicates have been evaluated.
+	 * @param depth
+	 */
+	public void dropAttributes(int depth) {
+		if (!attributesProjected[depth])
+			return;
+		Arrays.fill(attributeValues, depth * attributeWidth, (depth + 1) * attributeWidth, null);
+		attributesProjected[depth] = false;
+	}
+
+	/**
+	 * Use the precompiled patterns of an _AXSData for matches().
+	 * @param patterns the patterns, indexed by literal, or null if there are none
+	 * @param simplePatterns the specialized patterns, indexed by literal, or null if there are none
+	 */
+	public void setPatterns(Pattern[] patterns, SimplePattern[] simplePatterns) {
+		this.patterns = patterns;
+		this.matchers = (patterns != null ? new Matcher[patterns.length] : null);
+		this.simplePatterns = simplePatterns;
+	}
+
+	/**
+	 * Use the KeywordSets of an _AXSData for contains().
+	 * @param sets the KeywordSets, or null if there are none
+	 */
+	public void setKeywordSets(KeywordSet[] sets) {
+		keywordSets = sets;
+		keywordSetOf = null;
+		if (sets == null || sets.length == 0)
+			return;
+
+		int nrLiterals = 0;
+		for (KeywordSet set : sets) {
+			for (int literalIx : set.literalIndices())
+				nrLiterals = Math.max(nrLiterals, literalIx + 1);
+		}
+
+		keywordSetOf = new int[nrLiterals];
+		keywordBitOf = new int[nrLiterals];
+		keywordTargets = new String[sets.length];
+		keywordsFound = new long[sets.length][];
+		Arrays.fill(keywordSetOf, -1);
+		for (int set = 0; set < sets.length; set++) {
+			final int[] literalIndices = sets[set].literalIndices();
+
+			for (int bit = 0; bit < literalIndices.length; bit++) {
+				keywordSetOf[literalIndices[bit]] = set;
+				keywordBitOf[literalIndices[bit]] = bit;
+			}
+			keywordsFound[set] = new long[(literalIndices.length + 63) >>> 6];
+		}
+	}
+
+	/**
+	 * Test whether a literal is one of the keywords of a KeywordSet.
+	 * @param literalIx the index of the literal, or -1
+	 * @return true if contains() can be called for the literal
+	 */
+	public boolean hasKeyword(int literalIx) {
+		return (keywordSetOf != null && literalIx >= 0 && literalIx < keywordSetOf.length &&
+				keywordSetOf[literalIx] >= 0);
+	}
+
+	/**
+	 * Test whether a literal is one of the precompiled patterns.
+	 * @param literalIx the index of the literal, or -1
+	 * @return true if matches() can be called for the literal
+	 */
+	public boolean hasPattern(int literalIx) {
+		if (literalIx < 0)
+			return false;
+		return (patterns != null && literalIx < patterns.length && patterns[literalIx] != null) ||
+				(simplePatterns != null && literalIx < simplePatterns.length && simplePatterns[literalIx] != null);
+	}
+
+	/**
+	 * Open a new frame for an element. All the other per-frame values start out null, and
+	 * the element is not capturing or streaming text.
+	 * @param tag the SymbolTable id of the element being started
+	 * @param namespaceURI the element's Namespace URI
+	 * @param name the element's Local Name, or its qName if it has no Namespace URI
+	 */
+	public void push(int tag, String namespaceURI, String name) {
+		if (size == tags.length)
+			grow();
+		tags[size] = tag;
+		namespaceURIs[size] = namespaceURI;
+		names[size] = name;
+		textCaptureStarts[size] = -1;
+		textStreamCounts[size] = 0;
+		attributesProjected[size] = false;
+		size++;
+	}
+
+	/**
+	 * Close the innermost frame, dropping its references so that they can be collected.
+	 */
+	public void pop() {
+		--size;
+		namespaceURIs[size] = null;
+		names[size] = null;
+		attributes[size] = null;
+		if (attributesProjected[size])
+			Arrays.fill(attributeValues, size * attributeWidth, (size + 1) * attributeWidth, null);
+		triggers[size] = null;
+		if (positionsCounted[size]) {
+			Arrays.fill(positionCounts, size * positionWidth, (size + 1) * positionWidth, 0);
+			positionsCounted[size] = false;
+		}
+	}
+
+	/**
+	 * Close all the frames.
+	 */
+	public void clear() {
+		Arrays.fill(namespaceURIs, 0, size, null);
+		Arrays.fill(names, 0, size, null);
+		Arrays.fill(attributes, 0, size, null);
+		Arrays.fill(attributeValues, 0, size * attributeWidth, null);
+		Arrays.fill(triggers, 0, size, null);
+		Arrays.fill(positionCounts, 0, size * positionWidth, 0);
+		Arrays.fill(positionsCounted, 0, size, false);
+		size = 0;
+	}
+
+	/**
+	 * Throw if @p depth does not refer to an open element
+	 * @param depth
+	 */
+	public void checkDepth(int depth) {
+		if (depth < 0 || depth >= size)
+			throw new ArrayIndexOutOfBoundsException(depth);
+	}
+
+	@Override
+	public int depth() {
+		return size;
+	}
+
+	@Override
+	public int tagAt(int depth) {
+		return tags[depth];
+	}
+
+	@Override
+	public String attribute(int depth, int qNameIx) {
+		if (depth < 0)
+			return null;
+
+		if (attributesProjected[depth]) {
+			final int index = symbols.attributeIndex(qNameIx);
+			final String value = (index >= 0 ? attributeValues[depth * attributeWidth + index] : null);
+			return (value != null ? value : "");
+		}
+
+		final HashMap<QName, String> attrs = attributes[depth];
+		if (attrs == null)
+			return null;
+
+		final String value = attrs.get(symbols.qName(qNameIx));
+		return (value != null ? value : "");
+	}
+
+	@Override
+	public int stepPredicate(int depth, int predicateIx) {
+		if (depth < 0 || tags[depth] != stepPredicateTags[predicateIx])
+			return -1;
+
+		// the bits of the element's name's predicates were all set when it started
+		final long word = predicateBits[depth * predicateWords + (predicateIx >>> 6)];
+		return ((word & (1L << predicateIx)) != 0 ? 1 : 0);
+	}
+
+	@Override
+	public boolean matches(int literalIx, String target) {
+		if (simplePatterns != null && simplePatterns[literalIx] != null)
+			return simplePatterns[literalIx].matches(target);
+		
+		Matcher matcher = matchers[literalIx];
+
+		if (matcher == null) {
+			matcher = patterns[literalIx].matcher(target);
+			matchers[literalIx] = matcher;
+		} else {
+			matcher.reset(target);
+		}
+		return matcher.matches();
+	}
+
+	@Override
+	public int matchesPattern(String pattern, String target) {
+		if (patternCache == null)
+			patternCache = new HashMap<String, Pattern>();
+		
+		Pattern compiled = patternCache.get(pattern);
+		if (compiled == null) {
+			try {
+				compiled = Pattern.compile(pattern);
+			} catch (PatternSyntaxException e) {
+				return -1;
+			}
+			patternCache.put(pattern, compiled);
+		}
+		return (compiled.matcher(target).matches() ? 1 : 0);
+	}
+
+	@Override
+	public boolean contains(int literalIx, String target) {
+		final int set = keywordSetOf[literalIx];
+		final int bit = keywordBitOf[literalIx];
+
+		// the expressions testing an attribute all see the same String, so one search
+		// answers all of them
+		if (keywordTargets[set] != target) {
+			keywordSets[set].search(target, keywordsFound[set]);
+			keywordTargets[set] = target;
+		}
+		return (keywordsFound[set][bit >>> 6] & (1L << bit)) != 0;
+	}
+
+	@Override
+	public int position(int depth) {
+		if (depth <= 0)
+			return -1;
+
+		final int index = symbols.positionIndex(tags[depth]);
+		final int count = (index >= 0 ? positionCounts[(depth-1) * positionWidth + index] : 0);
+		return (count > 0 ? count : -1);
+	}
+
+	private void grow() {
+		final int newCapacity = tags.length * 2;
+
+		tags = Arrays.copyOf(tags, newCapacity);
+		namespaceURIs = Arrays.copyOf(namespaceURIs, newCapacity);
+		names = Arrays.copyOf(names, newCapacity);
+		attributes = Arrays.copyOf(attributes, newCapacity);
+		attributeValues = Arrays.copyOf(attributeValues, newCapacity * attributeWidth);
+		attributesProjected = Arrays.copyOf(attributesProjected, newCapacity);
+		prefixNodes = Arrays.copyOf(prefixNodes, newCapacity);
+		triggers = Arrays.copyOf(triggers, newCapacity);
+		textCaptureStarts = Arrays.copyOf(textCaptureStarts, newCapacity);
+		textStreamCounts = Arrays.copyOf(textStreamCounts, newCapacity);
+		captureBits = Arrays.copyOf(captureBits, newCapacity * captureWords);
+		positionCounts = Arrays.copyOf(positionCounts, newCapacity * positionWidth);
+		positionsCounted = Arrays.copyOf(positionsCounted, newCapacity);
+		predicateBits = Arrays.copyOf(predicateBits, newCapacity * predicateWords);
+		activeStates = Arrays.copyOf(activeStates, newCapacity * stateWords);
+		carriedStates = Arrays.copyOf(carriedStates, newCapacity * stateWords);
+	}
+}
@@ -0,0 +1,187 @@
+/*
+ * This file is part of AXS, Annotation-XPath for SAX.
+ * 
+ * Copyright (c) 2013 Benjamin K. Stuhl
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.googlecode.axs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * An Aho-Corasick automaton over the literals of a group of contains() predicates, which
+ * finds all of them in a single pass over the searched string. The annotation processor
+ * groups the contains() literals which are searched for in the same attribute, so that
+ * the engine can scan each attribute value once for all the expressions that test it.
+ * @author Ben
+ *
+ */
+public final class KeywordSet {
+	// the index in the _AXSData's Literals table of each keyword
+	private final int[] mLiteralIndices;
+	
+	// for each state, the sorted characters of its transitions and their target states
+	private final char[][] mLabels;
+	private final int[][] mTargets;
+	
+	// the failure transition of each state
+	private final int[] mFailures;
+	
+	// the keywords which have been found once each state is reached
+	private final int[][] mOutputs;
+	
+	/**
+	 * Build the automaton for a group of keywords.
+	 * @param literalIndices the index of each keyword in the _AXSData's Literals table
+	 * @param keywords the keywords
+	 */
+	public KeywordSet(int[] literalIndices, String[] keywords) {
+		mLiteralIndices = literalIndices;
+		
+		// build the trie of the keywords
+		final ArrayList<StringBuilder> labels = new ArrayList<StringBuilder>();
+		final ArrayList<ArrayList<Integer>> targets = new ArrayList<ArrayList<Integer>>();
+		final ArrayList<ArrayList<Integer>> outputs = new ArrayList<ArrayList<Integer>>();
+		labels.add(new StringBuilder());
+		targets.add(new ArrayList<Integer>());
+		outputs.add(new ArrayList<Integer>());
+		
+		for (int keyword = 0; keyword < keywords.length; keyword++) {
+			final String s = keywords[keyword];
+			int state = 0;
+			
+			for (int i = 0; i < s.length(); i++) {
+				final int c = labels.get(state).indexOf(String.valueOf(s.charAt(i)));
+				
+				if (c >= 0) {
+					state = targets.get(state).get(c);
+				} else {
+					labels.get(state).append(s.charAt(i));
+					targets.get(state).add(labels.size());
+					state = labels.size();
+					labels.add(new StringBuilder());
+					targets.add(new ArrayList<Integer>());
+					outputs.add(new ArrayList<Integer>());
+				}
+			}
+			outputs.get(state).add(keyword);
+		}
+		
+		final int nrStates = labels.size();
+		mLabels = new char[nrStates][];
+		mTargets = new int[nrStates][];
+		for (int state = 0; state < nrStates; state++) {
+			// sort the transitions by character, so that next() can stop early
+			final String label = labels.get(state).toString();
+			final char[] sorted = label.toCharArray();
+			Arrays.sort(sorted);
+			
+			mLabels[state] = sorted;
+			mTargets[state] = new int[sorted.length];
+			for (int i = 0; i < sorted.length; i++)
+				mTargets[state][i] = targets.get(state).get(label.indexOf(sorted[i]));
+		}
+		
+		// compute the failure transitions breadth-first, merging in the outputs of the
+		// states they lead to
+		mFailures = new int[nrStates];
+		mOutputs = new int[nrStates][];
+		mOutputs[0] = toArray(outputs.get(0));
+		
+		final int[] queue = new int[nrStates];
+		int head = 0, tail = 0;
+		for (int target : mTargets[0]) {
+			mFailures[target] = 0;
+			queue[tail++] = target;
+		}
+		while (head < tail) {
+			final int state = queue[head++];
+			
+			final ArrayList<Integer> output = outputs.get(state);
+			for (int keyword : mOutputs[mFailures[state]])
+				output.add(keyword);
+			mOutputs[state] = toArray(output);
+			
+			for (int i = 0; i < mLabels[state].length; i++) {
+				final int target = mTargets[state][i];
+				int failure = mFailures[state];
+				int next;
+				
+				while ((next = next(failure, mLabels[state][i])) < 0 && failure != 0)
+					failure = mFailures[failure];
+				mFailures[target] = (next >= 0 ? next : 0);
+				queue[tail++] = target;
+			}
+		}
+	}
+	
+	private static int[] toArray(ArrayList<Integer> values) {
+		final int[] array = new int[values.size()];
+		
+		for (int i = 0; i < array.length; i++)
+			array[i] = values.get(i);
+		return array;
+	}
+	
+	private int next(int state, char c) {
+		final char[] labels = mLabels[state];
+		
+		for (int i = 0; i < labels.length; i++) {
+			if (labels[i] >= c)
+				return (labels[i] == c ? mTargets[state][i] : -1);
+		}
+		return -1;
+	}
+	
+	/**
+	 * @return the index in the _AXSData's Literals table of each keyword
+	 */
+	public int[] literalIndices() {
+		return mLiteralIndices;
+	}
+	
+	/**
+	 * Find which of the keywords occur in @p target.
+	 * @param target the string to search
+	 * @param found set to a bitset of the keywords found, indexed like literalIndices();
+	 *  it must have room for one bit per keyword
+	 */
+	public void search(String target, long[] found) {
+		Arrays.fill(found, 0);
+		for (int keyword : mOutputs[0])
+			found[keyword >>> 6] |= (1L << keyword);
+		
+		int state = 0;
+		for (int i = 0, len = target.length(); i < len; i++) {
+			final char c = target.charAt(i);
+			int next;
+			
+			while ((next = next(state, c)) < 0 && state != 0)
+				state = mFailures[state];
+			state = (next >= 0 ? next : 0);
+			
+			for (int keyword : mOutputs[state])
+				found[keyword >>> 6] |= (1L << keyword);
+		}
+	}
+}
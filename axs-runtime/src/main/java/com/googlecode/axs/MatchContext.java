@@ -0,0 +1,104 @@
+/*
+ * This file is part of AXS, Annotation-XPath for SAX.
+ * 
+ * Copyright (c) 2013 Benjamin K. Stuhl
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.googlecode.axs;
+
+/**
+ * A MatchContext gives the matchers compiled into an _AXSData class access to the
+ * engine's record of the currently open elements. Like the rest of the interface
+ * between the engine and the generated code, it is completely subject to change in
+ * a future version of this library.
+ * @author Ben
+ *
+ */
+public interface MatchContext {
+	/**
+	 * Get the number of open elements.
+	 * @return the depth of the current element plus one
+	 */
+	public int depth();
+
+	/**
+	 * Get the name of an open element.
+	 * @param depth the depth of the element; 0 is the root element
+	 * @return the index of the element's name in the _AXSData's QName table, or
+	 * a negative number if no expression uses that name
+	 */
+	public int tagAt(int depth);
+
+	/**
+	 * Get the value of an attribute of an open element.
+	 * @param depth the depth of the element
+	 * @param qNameIx the index of the attribute's name in the _AXSData's QName table
+	 * @return the value of the attribute, "" if the element does not have it, or
+	 * null if the element's attributes were not captured or depth is negative
+	 */
+	public String attribute(int depth, int qNameIx);
+
+	/**
+	 * Get the position() of an open element among its siblings of the same name.
+	 * @param depth the depth of the element
+	 * @return the 1-based position, or -1 if positions were not captured for this
+	 * element or it is the root element
+	 */
+	public int position(int depth);
+
+	/**
+	 * Get the outcome of one of the _AXSData's step predicates for an open element. The
+	 * step predicates are evaluated once, when their element starts.
+	 * @param depth the depth of the element
+	 * @param predicateIx the index of the predicate in the _AXSData's step predicates
+	 * @return 1 if the predicate held, 0 if it did not, or -1 if depth is negative or
+	 * the element is not the one the predicate is for
+	 */
+	public int stepPredicate(int depth, int predicateIx);
+
+	/**
+	 * Test a string against one of the _AXSData's precompiled matches() patterns.
+	 * @param literalIx the index of the pattern in the _AXSData's Literals table
+	 * @param target the string to test
+	 * @return true if the whole of @p target matches the pattern
+	 */
+	public boolean matches(int literalIx, String target);
+
+	/**
+	 * Test a string against a matches() pattern which was not known when the _AXSData
+	 * was generated. The compiled patterns are cached.
+	 * @param pattern the regular expression
+	 * @param target the string to test
+	 * @return 1 if the whole of @p target matches the pattern, 0 if it does not, or -1 if
+	 * the pattern is malformed, in which case the expression does not match at all
+	 */
+	public int matchesPattern(String pattern, String target);
+
+	/**
+	 * Test whether a string contains one of the literals of the _AXSData's KeywordSets.
+	 * All the literals of a set are searched for at once, and the result is reused as
+	 * long as the same string is tested.
+	 * @param literalIx the index of the literal in the _AXSData's Literals table
+	 * @param target the string to search
+	 * @return true if @p target contains the literal
+	 */
+	public boolean contains(int literalIx, String target);
+}
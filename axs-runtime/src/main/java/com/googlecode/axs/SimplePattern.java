@@ -0,0 +1,505 @@
+/*
+ * This file is part of AXS, Annotation-XPath for SAX.
+ * 
+ * Copyright (c) 2013 Benjamin K. Stuhl
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.googlecode.axs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A matcher for the simple regular expressions which make up most matches() predicates:
+ * a sequence of literal characters and character classes ('.', [...], \d, \w, \s), each
+ * with an optional quantifier, optionally preceded by (?i) and anchored by ^ and $. The
+ * annotation processor specializes such patterns to a SimplePattern, which tests a string
+ * in a single pass without java.util.regex; all other patterns are left to Pattern.
+ * @author Ben
+ *
+ */
+public final class SimplePattern {
+	private static final int UNBOUNDED = Integer.MAX_VALUE;
+	
+	// the characters which '.' does not match
+	private static final char[] LINE_TERMINATORS = normalize(new int[] {
+		'\n', '\n', '\r', '\r', 0x0085, 0x0085, 0x2028, 0x2029 });
+	private static final char[] SURROGATES = { 0xD800, 0xDFFF };
+	
+	// the largest repeat count the quantifiers may use
+	private static final int MAX_REPEATS = 0xFFFF;
+	
+	private final String mPattern;
+	
+	// the whole pattern, if it is a plain literal
+	private final String mLiteral;
+	
+	// the sorted, disjoint [lo, hi] character ranges of each atom, and how many times it repeats
+	private final char[][] mRanges;
+	private final int[] mMin;
+	private final int[] mMax;
+	
+	// whether the first atom is matched last, up to the fixed-length rest of the pattern,
+	// and that length
+	private final boolean mMatchFromEnd;
+	private final int mTailLength;
+	
+	private SimplePattern(String pattern, char[][] ranges, int[] min, int[] max, boolean matchFromEnd) {
+		mPattern = pattern;
+		mRanges = ranges;
+		mMin = min;
+		mMax = max;
+		mMatchFromEnd = matchFromEnd;
+		
+		int tailLength = 0;
+		for (int i = 1; i < min.length; i++)
+			tailLength += min[i];
+		mTailLength = tailLength;
+		
+		mLiteral = literalOf(ranges, min, max);
+	}
+	
+	/**
+	 * Compile a regular expression to a SimplePattern, if it is simple enough.
+	 * @param pattern a regular expression in java.util.regex syntax
+	 * @return a SimplePattern which matches exactly the same strings as Pattern.matches(),
+	 *  or null if the expression needs java.util.regex
+	 */
+	public static SimplePattern compile(String pattern) {
+		return new Parser(pattern).parse();
+	}
+	
+	/**
+	 * @return the regular expression this pattern was compiled from
+	 */
+	public String pattern() {
+		return mPattern;
+	}
+	
+	/**
+	 * Test whether the whole of @p target matches the pattern.
+	 * @param target
+	 * @return true if it matches
+	 */
+	public boolean matches(String target) {
+		if (mLiteral != null)
+			return mLiteral.equals(target);
+		
+		final int length = target.length();
+		int pos = 0;
+		int atom = 0;
+		
+		if (mMatchFromEnd) {
+			// the rest of the pattern has a fixed length, so it decides where the first atom ends
+			final int end = length - mTailLength;
+			
+			if (end < mMin[0] || end > mMax[0])
+				return false;
+			while (pos < end) {
+				if (!contains(mRanges[0], target.charAt(pos++)))
+					return false;
+			}
+			atom = 1;
+		}
+		
+		// the parser only lets through patterns for which the greedy match is the only one
+		for (; atom < mRanges.length; atom++) {
+			final char[] ranges = mRanges[atom];
+			final int max = mMax[atom];
+			int count = 0;
+			
+			while (count < max && pos < length && contains(ranges, target.charAt(pos))) {
+				pos++;
+				count++;
+			}
+			if (count < mMin[atom])
+				return false;
+		}
+		return (pos == length);
+	}
+	
+	@Override
+	public String toString() {
+		return "SimplePattern(" + mPattern + ")";
+	}
+	
+	private static boolean contains(char[] ranges, char c) {
+		for (int i = 0; i < ranges.length; i += 2) {
+			if (c < ranges[i])
+				return false;
+			if (c <= ranges[i+1])
+				return true;
+		}
+		return false;
+	}
+	
+	// the pattern as a String, if every atom is exactly one fixed character
+	private static String literalOf(char[][] ranges, int[] min, int[] max) {
+		final char[] literal = new char[ranges.length];
+		
+		for (int i = 0; i < ranges.length; i++) {
+			if (min[i] != 1 || max[i] != 1 || ranges[i].length != 2 || ranges[i][0] != ranges[i][1])
+				return null;
+			literal[i] = ranges[i][0];
+		}
+		return new String(literal);
+	}
+	
+	// sort and merge [lo, hi] pairs of characters into disjoint ranges
+	private static char[] normalize(int[] pairs) {
+		final int nrRanges = pairs.length / 2;
+		final long[] sorted = new long[nrRanges];
+		
+		for (int i = 0; i < nrRanges; i++)
+			sorted[i] = ((long) pairs[2*i] << 32) | pairs[2*i+1];
+		Arrays.sort(sorted);
+		
+		final char[] ranges = new char[pairs.length];
+		int size = 0;
+		for (long range : sorted) {
+			final int lo = (int) (range >>> 32);
+			final int hi = (int) range;
+			
+			if (size > 0 && lo <= ranges[size-1] + 1) {
+				if (hi > ranges[size-1])
+					ranges[size-1] = (char) hi;
+			} else {
+				ranges[size++] = (char) lo;
+				ranges[size++] = (char) hi;
+			}
+		}
+		return Arrays.copyOf(ranges, size);
+	}
+	
+	private static char[] complement(char[] ranges) {
+		final int[] pairs = new int[ranges.length + 2];
+		int size = 0;
+		int next = 0;
+		
+		for (int i = 0; i < ranges.length; i += 2) {
+			if (ranges[i] > next) {
+				pairs[size++] = next;
+				pairs[size++] = ranges[i] - 1;
+			}
+			next = ranges[i+1] + 1;
+		}
+		if (next <= Character.MAX_VALUE) {
+			pairs[size++] = next;
+			pairs[size++] = Character.MAX_VALUE;
+		}
+		return normalize(Arrays.copyOf(pairs, size));
+	}
+	
+	private static char[] union(char[] a, char[] b) {
+		final int[] pairs = new int[a.length + b.length];
+		
+		for (int i = 0; i < a.length; i++)
+			pairs[i] = a[i];
+		for (int i = 0; i < b.length; i++)
+			pairs[a.length + i] = b[i];
+		return normalize(pairs);
+	}
+	
+	private static boolean intersects(char[] a, char[] b) {
+		int i = 0, j = 0;
+		
+		while (i < a.length && j < b.length) {
+			if (a[i+1] < b[j])
+				i += 2;
+			else if (b[j+1] < a[i])
+				j += 2;
+			else
+				return true;
+		}
+		return false;
+	}
+	
+	// add the other case of every ASCII letter in the ranges, as (?i) does
+	private static char[] foldCase(char[] ranges) {
+		final char[] lower = intersection(ranges, 'a', 'z');
+		final char[] upper = intersection(ranges, 'A', 'Z');
+		final int[] pairs = new int[ranges.length + lower.length + upper.length];
+		int size = 0;
+		
+		for (char c : ranges)
+			pairs[size++] = c;
+		for (char c : lower)
+			pairs[size++] = c - ('a' - 'A');
+		for (char c : upper)
+			pairs[size++] = c + ('a' - 'A');
+		return normalize(pairs);
+	}
+	
+	private static char[] intersection(char[] ranges, char lo, char hi) {
+		final char[] result = new char[ranges.length];
+		int size = 0;
+		
+		for (int i = 0; i < ranges.length; i += 2) {
+			final char start = (ranges[i] > lo ? ranges[i] : lo);
+			final char end = (ranges[i+1] < hi ? ranges[i+1] : hi);
+			
+			if (start <= end) {
+				result[size++] = start;
+				result[size++] = end;
+			}
+		}
+		return Arrays.copyOf(result, size);
+	}
+	
+	/**
+	 * A recursive-descent parser for the supported subset of the java.util.regex syntax,
+	 * which gives up on anything outside it.
+	 */
+	private static final class Parser {
+		private final String mPattern;
+		private int mPos = 0;
+		private boolean mCaseInsensitive = false;
+		
+		private final ArrayList<char[]> mAtoms = new ArrayList<char[]>();
+		private final ArrayList<int[]> mQuantifiers = new ArrayList<int[]>();
+		
+		Parser(String pattern) {
+			mPattern = pattern;
+		}
+		
+		private boolean atEnd() {
+			return mPos >= mPattern.length();
+		}
+		
+		private char peek() {
+			return mPattern.charAt(mPos);
+		}
+		
+		SimplePattern parse() {
+			if (mPattern.startsWith("(?i)")) {
+				mCaseInsensitive = true;
+				mPos = 4;
+			}
+			// matches() must match the whole string, so the anchors do not change anything
+			if (!atEnd() && peek() == '^')
+				mPos++;
+			
+			while (!atEnd()) {
+				if (peek() == '$' && mPos == mPattern.length() - 1)
+					break;
+				
+				char[] atom = parseAtom();
+				if (atom == null)
+					return null;
+				final int[] quantifier = parseQuantifier();
+				if (quantifier == null)
+					return null;
+				
+				if (mCaseInsensitive)
+					atom = foldCase(atom);
+				
+				// java.util.regex matches a surrogate pair as one character, so only allow
+				// atoms which can match surrogates where that cannot change the result
+				if (intersects(atom, SURROGATES) && (quantifier[0] > 1 || quantifier[1] != UNBOUNDED))
+					return null;
+				
+				mAtoms.add(atom);
+				mQuantifiers.add(quantifier);
+			}
+			return build();
+		}
+		
+		private SimplePattern build() {
+			final int nrAtoms = mAtoms.size();
+			final char[][] ranges = mAtoms.toArray(new char[nrAtoms][]);
+			final int[] min = new int[nrAtoms];
+			final int[] max = new int[nrAtoms];
+			
+			for (int i = 0; i < nrAtoms; i++) {
+				min[i] = mQuantifiers.get(i)[0];
+				max[i] = mQuantifiers.get(i)[1];
+			}
+			
+			// a variable first atom followed by fixed-length atoms, such as .*abc, is
+			// matched from the end of the string
+			boolean tailIsFixed = (nrAtoms > 0 && min[0] != max[0]);
+			for (int i = 1; i < nrAtoms && tailIsFixed; i++)
+				tailIsFixed = (min[i] == max[i]);
+			if (tailIsFixed)
+				return new SimplePattern(mPattern, ranges, min, max, true);
+			
+			// otherwise, every variable atom must be unable to match the characters which
+			// could follow it, so that the greedy match is the only possible one
+			for (int i = 0; i < nrAtoms; i++) {
+				if (min[i] == max[i])
+					continue;
+				
+				char[] follow = new char[0];
+				for (int j = i + 1; j < nrAtoms; j++) {
+					follow = union(follow, ranges[j]);
+					if (min[j] > 0)
+						break;
+				}
+				if (intersects(ranges[i], follow))
+					return null;
+			}
+			return new SimplePattern(mPattern, ranges, min, max, false);
+		}
+		
+		private char[] parseAtom() {
+			final char c = mPattern.charAt(mPos++);
+			
+			switch (c) {
+			case '.':
+				return complement(LINE_TERMINATORS);
+			case '[':
+				return parseClass();
+			case '\\':
+				return parseEscape();
+			case '(': case ')': case '|': case '?': case '*': case '+': case '{': case '^': case '$':
+				return null;
+			default:
+				return new char[] { c, c };
+			}
+		}
+		
+		private char[] parseEscape() {
+			if (atEnd())
+				return null;
+			
+			final char c = mPattern.charAt(mPos++);
+			switch (c) {
+			case 'd':
+				return new char[] { '0', '9' };
+			case 'w':
+				return new char[] { '0', '9', 'A', 'Z', '_', '_', 'a', 'z' };
+			case 's':
+				return new char[] { '\t', '\r', ' ', ' ' };
+			case 't':
+				return new char[] { '\t', '\t' };
+			case 'n':
+				return new char[] { '\n', '\n' };
+			case 'r':
+				return new char[] { '\r', '\r' };
+			case 'f':
+				return new char[] { '\f', '\f' };
+			default:
+				// an escaped punctuation character stands for itself; everything else
+				// (\b, \p{..}, \Q, back references, ...) is left to java.util.regex
+				if (c < 0x80 && !Character.isLetterOrDigit(c))
+					return new char[] { c, c };
+				return null;
+			}
+		}
+		
+		private char[] parseClass() {
+			boolean negated = false;
+			if (!atEnd() && peek() == '^') {
+				negated = true;
+				mPos++;
+			}
+			if (!atEnd() && peek() == ']')
+				return null;
+			
+			char[] ranges = new char[0];
+			while (true) {
+				if (atEnd())
+					return null;
+				
+				final char c = mPattern.charAt(mPos++);
+				if (c == ']')
+					break;
+				if (c == '[' || (c == '&' && !atEnd() && peek() == '&'))
+					return null;
+				
+				char[] element;
+				if (c == '\\') {
+					element = parseEscape();
+					// java.util.regex also allows an escaped character to start a range
+					if (element == null || (!atEnd() && peek() == '-'))
+						return null;
+				} else if (mPos + 1 < mPattern.length() && peek() == '-' && mPattern.charAt(mPos + 1) != ']') {
+					final char hi = mPattern.charAt(mPos + 1);
+					
+					if (hi == '\\' || hi == '[' || hi < c)
+						return null;
+					element = new char[] { c, hi };
+					mPos += 2;
+				} else {
+					element = new char[] { c, c };
+				}
+				ranges = union(ranges, element);
+			}
+			
+			if (negated) {
+				// leave the case folding of negated classes to java.util.regex
+				if (mCaseInsensitive)
+					return null;
+				ranges = complement(ranges);
+			}
+			return ranges;
+		}
+		
+		// returns { min, max }, or null for the lazy and possessive quantifiers
+		private int[] parseQuantifier() {
+			int min = 1, max = 1;
+			
+			if (!atEnd()) {
+				switch (peek()) {
+				case '?':
+					min = 0; max = 1; mPos++;
+					break;
+				case '*':
+					min = 0; max = UNBOUNDED; mPos++;
+					break;
+				case '+':
+					min = 1; max = UNBOUNDED; mPos++;
+					break;
+				case '{':
+				{
+					final int close = mPattern.indexOf('}', mPos);
+					if (close < 0)
+						return null;
+					
+					final String bounds = mPattern.substring(mPos + 1, close);
+					final int comma = bounds.indexOf(',');
+					try {
+						if (comma < 0) {
+							min = max = Integer.parseInt(bounds);
+						} else {
+							min = Integer.parseInt(bounds.substring(0, comma));
+							max = (comma == bounds.length() - 1 ? UNBOUNDED : Integer.parseInt(bounds.substring(comma + 1)));
+						}
+					} catch (NumberFormatException e) {
+						return null;
+					}
+					if (min < 0 || max < min || min > MAX_REPEATS || (max != UNBOUNDED && max > MAX_REPEATS))
+						return null;
+					mPos = close + 1;
+					break;
+				}
+				default:
+					return new int[] { min, max };
+				}
+				
+				if (!atEnd() && (peek() == '?' || peek() == '+'))
+					return null;
+			}
+			return new int[] { min, max };
+		}
+	}
+}
@@ -0,0 +1,358 @@
+/*
+ * This file is part of AXS, Annotation-XPath for SAX.
+ * 
+ * Copyright (c) 2013 Benjamin K. Stuhl
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.googlecode.axs;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Internal support class which interns every element and attribute name used by
+ * the compiled XPath expressions of a handler class to a dense integer id, so that
+ * the engine can test names with integer compares. Names which are not used by any
+ * expression all map to {@link #NO_SYMBOL}, and looking them up does not allocate.
+ * A SymbolTable is immutable once built and is shared by all the instances of a
+ * handler class.
+ * @author Ben
+ *
+ */
+final class SymbolTable {
+	// the id of every name which is not referenced by any expression
+	public static final int NO_SYMBOL = -1;
+
+	// the attribute projection of an element whose attributes must all be captured
+	public static final int[] ALL_ATTRIBUTES = new int[0];
+
+	// one table per _AXSData class; the tables hold nothing which was loaded with the class,
+	// so that the weak keys let it and its class loader be unloaded
+	private static final WeakHashMap<Class<?>, SymbolTable> sTables = new WeakHashMap<Class<?>, SymbolTable>();
+
+	// an open-addressed hash table of the interned names
+	private String[] mSlotNamespaces;
+	private String[] mSlotLocalParts;
+	private int[] mSlotIds;
+	private int mMask;
+
+	// the interned names, indexed by id
+	private QName[] mQNames = new QName[16];
+	private int mSize = 0;
+
+	// the ids of each distinct QName[] table used by the expressions
+	private final IdentityHashMap<QName[], int[]> mResolvedTables = new IdentityHashMap<QName[], int[]>();
+
+	// the dense index of every name which the predicates read as an attribute, or -1,
+	// indexed by id, and the id of each attribute index
+	private int[] mAttributeIndices = null;
+	private int[] mAttributeIds = null;
+
+	// the attribute indices which the predicates read from each element name id: null if
+	// none, ALL_ATTRIBUTES for captureattrs()
+	private int[][] mAttributeProjections = null;
+
+	// the dense index of every element name whose position() the predicates read, or -1,
+	// indexed by id
+	private int[] mPositionIndices;
+	private int mNrPositions = 0;
+
+	/**
+	 * Get the shared SymbolTable for the expressions provided by @p axsData.
+	 * @param axsData
+	 * @return the SymbolTable for the _AXSData's class
+	 */
+	public static SymbolTable forAXSData(AXSData axsData) {
+		synchronized (sTables) {
+			SymbolTable table = sTables.get(axsData.getClass());
+
+			if (table == null) {
+				table = new SymbolTable(axsData);
+				sTables.put(axsData.getClass(), table);
+			}
+			return table;
+		}
+	}
+
+	private SymbolTable(AXSData axsData) {
+		final XPathExpression[] expressions = axsData.getXPathExpressions();
+		final int version = axsData.getAXSDataVersion();
+		final XPathAutomaton automaton = (version >= AbstractAnnotatedHandler.AXSDATA_VERSION_AUTOMATON ?
+				axsData.getXPathAutomaton() : null);
+		final XPathSuffixTrie suffixTrie = (version >= AbstractAnnotatedHandler.AXSDATA_VERSION_SUFFIX_TRIE ?
+				axsData.getSuffixTrie() : null);
+		int capacity = 16;
+		for (XPathExpression xpr : expressions)
+			capacity += xpr.qNames().length;
+
+		allocateSlots(Integer.highestOneBit(capacity) << 2);
+
+		for (XPathExpression xpr : expressions)
+			resolve(xpr.qNames());
+		
+		// the automaton's and trie's names are all used by the expressions too, but
+		// their tables need not be one of the expressions'
+		if (automaton != null)
+			resolve(automaton.qNames());
+		if (suffixTrie != null) {
+			for (XPathExpression xpr : suffixTrie.steps())
+				resolve(xpr.qNames());
+		}
+		if (version >= AbstractAnnotatedHandler.AXSDATA_VERSION_STEP_PREDICATES) {
+			for (XPathExpression xpr : axsData.getStepPredicates())
+				resolve(xpr.qNames());
+		}
+
+		if (version >= AbstractAnnotatedHandler.AXSDATA_VERSION_ATTRIBUTE_PROJECTIONS && expressions.length > 0)
+			projectAttributes(axsData.getAttributeProjections(), resolve(expressions[0].qNames()));
+
+		// positions are captured for every name with a captured Local Name
+		final Set<String> positionCaptureTags = axsData.getPositionCaptureTags();
+		mPositionIndices = new int[mSize];
+		for (int id = 0; id < mSize; id++) {
+			if (positionCaptureTags.contains(mQNames[id].getLocalPart()))
+				mPositionIndices[id] = mNrPositions++;
+			else
+				mPositionIndices[id] = -1;
+		}
+	}
+
+	/**
+	 * Number the attribute names which the predicates read and index the attributes read
+	 * from each element by the element's id.
+	 * @param projections the _AXSData's attribute projections
+	 * @param ids the ids of the QName table which the projections index
+	 */
+	private void projectAttributes(int[][] projections, int[] ids) {
+		int nrAttributes = 0;
+
+		mAttributeIndices = new int[mSize];
+		mAttributeIds = new int[mSize];
+		mAttributeProjections = new int[mSize][];
+		Arrays.fill(mAttributeIndices, -1);
+
+		for (int[] row : projections) {
+			final int tag = ids[row[0]];
+
+			if (row.length == 1) {
+				mAttributeProjections[tag] = ALL_ATTRIBUTES;
+				continue;
+			}
+
+			final int[] projection = new int[row.length - 1];
+			for (int i = 1; i < row.length; i++) {
+				final int id = ids[row[i]];
+
+				if (mAttributeIndices[id] < 0) {
+					mAttributeIds[nrAttributes] = id;
+					mAttributeIndices[id] = nrAttributes++;
+				}
+				projection[i - 1] = mAttributeIndices[id];
+			}
+			mAttributeProjections[tag] = projection;
+		}
+		mAttributeIds = Arrays.copyOf(mAttributeIds, nrAttributes);
+	}
+
+	private void allocateSlots(int nrSlots) {
+		mSlotNamespaces = new String[nrSlots];
+		mSlotLocalParts = new String[nrSlots];
+		mSlotIds = new int[nrSlots];
+		mMask = nrSlots - 1;
+	}
+
+	private static int hash(String namespaceURI, String localPart) {
+		// String caches its hashCode, so this is cheap for the parser's recycled names
+		final int h = namespaceURI.hashCode() * 31 + localPart.hashCode();
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Add @p qName to the table if it is not already there.
+	 * @param qName
+	 * @return the id of the name
+	 */
+	private int intern(QName qName) {
+		final String namespaceURI = qName.getNamespaceURI();
+		final String localPart = qName.getLocalPart();
+		int slot = hash(namespaceURI, localPart) & mMask;
+
+		while (mSlotLocalParts[slot] != null) {
+			if (mSlotLocalParts[slot].equals(localPart) && mSlotNamespaces[slot].equals(namespaceURI))
+				return mSlotIds[slot];
+			slot = (slot + 1) & mMask;
+		}
+
+		if (mSize == mQNames.length)
+			mQNames = Arrays.copyOf(mQNames, mSize * 2);
+		mQNames[mSize] = qName;
+
+		mSlotNamespaces[slot] = namespaceURI;
+		mSlotLocalParts[slot] = localPart;
+		mSlotIds[slot] = mSize;
+		return mSize++;
+	}
+
+	private int[] resolve(QName[] qNames) {
+		int[] ids = mResolvedTables.get(qNames);
+
+		if (ids != null)
+			return ids;
+
+		ids = new int[qNames.length];
+		for (int i = 0; i < qNames.length; i++)
+			ids[i] = intern(qNames[i]);
+
+		mResolvedTables.put(qNames, ids);
+		return ids;
+	}
+
+	/**
+	 * Look up the id of a name.
+	 * @param namespaceURI the Namespace URI of the name, "" or null for none
+	 * @param localPart the Local Part of the name
+	 * @return the id of the name, or NO_SYMBOL if no expression references it
+	 */
+	public int lookup(String namespaceURI, String localPart) {
+		if (namespaceURI == null)
+			namespaceURI = "";
+		
+		int slot = hash(namespaceURI, localPart) & mMask;
+		String slotLocalPart;
+
+		while ((slotLocalPart = mSlotLocalParts[slot]) != null) {
+			if (slotLocalPart.equals(localPart) && mSlotNamespaces[slot].equals(namespaceURI))
+				return mSlotIds[slot];
+			slot = (slot + 1) & mMask;
+		}
+		return NO_SYMBOL;
+	}
+
+	/**
+	 * Get the ids of all the entries of an expression's QName table.
+	 * @param xpr
+	 * @return an array parallel to xpr.qNames() holding the id of each QName
+	 */
+	public int[] qNameIds(XPathExpression xpr) {
+		return mResolvedTables.get(xpr.qNames());
+	}
+
+	/**
+	 * Get the ids of all the entries of an automaton's QName table.
+	 * @param automaton
+	 * @return an array parallel to automaton.qNames() holding the id of each QName
+	 */
+	public int[] qNameIds(XPathAutomaton automaton) {
+		return mResolvedTables.get(automaton.qNames());
+	}
+
+	/**
+	 * Test whether every name's id is the same as its index in the QName tables of the
+	 * expressions, as the compiled matchers of an _AXSData assume. This holds when all
+	 * the expressions share a single table of distinct QNames, as generated _AXSData do.
+	 * @return true if the ids are the QName table indices
+	 */
+	public boolean idsAreTableIndices() {
+		for (int[] ids : mResolvedTables.values()) {
+			for (int i = 0; i < ids.length; i++) {
+				if (ids[i] != i)
+					return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Get the interned name with a given id.
+	 * @param id
+	 * @return the QName
+	 */
+	public QName qName(int id) {
+		return mQNames[id];
+	}
+
+	/**
+	 * @return true if the _AXSData says which attributes the predicates read from each element
+	 */
+	public boolean hasAttributeProjections() {
+		return mAttributeProjections != null;
+	}
+
+	/**
+	 * Get the attributes which the predicates read from an element.
+	 * @param tag the id of the element's name
+	 * @return the attribute indices of the names to capture, ALL_ATTRIBUTES if all of the
+	 *  element's attributes must be captured, or null if none are read
+	 */
+	public int[] attributeProjection(int tag) {
+		return (tag != NO_SYMBOL ? mAttributeProjections[tag] : null);
+	}
+
+	/**
+	 * Get the attribute index of a name.
+	 * @param id
+	 * @return the dense index of the name among the attributes which the predicates read, or -1
+	 */
+	public int attributeIndex(int id) {
+		return (mAttributeIndices != null ? mAttributeIndices[id] : -1);
+	}
+
+	/**
+	 * Get the id of the name with a given attribute index.
+	 * @param index
+	 * @return the id
+	 */
+	public int attributeId(int index) {
+		return mAttributeIds[index];
+	}
+
+	/**
+	 * @return the number of attribute names which the predicates read
+	 */
+	public int numberOfAttributes() {
+		return (mAttributeIds != null ? mAttributeIds.length : 0);
+	}
+
+	/**
+	 * Get the position index of an element name.
+	 * @param tag the id of the element's name
+	 * @return the dense index of the name among the elements whose positions are counted, or -1
+	 */
+	public int positionIndex(int tag) {
+		return (tag != NO_SYMBOL ? mPositionIndices[tag] : -1);
+	}
+
+	/**
+	 * @return the number of element names whose positions are counted
+	 */
+	public int numberOfPositions() {
+		return mNrPositions;
+	}
+
+	/**
+	 * @return the number of interned names
+	 */
+	public int size() {
+		return mSize;
+	}
+}
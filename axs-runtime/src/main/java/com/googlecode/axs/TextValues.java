@@ -0,0 +1,263 @@
+/*
+ * This file is part of AXS, Annotation-XPath for SAX.
+ * 
+ * Copyright (c) 2013 Benjamin K. Stuhl
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.googlecode.axs;
+
+import java.math.BigDecimal;
+
+/**
+ * Conversions of captured text to the parameter types that {@literal @}XPath() methods may
+ * take instead of a String. The generated _AXSData calls these on the CapturedText view of
+ * the capture buffer, so the common conversions do not build a String at all. Leading and
+ * trailing XML whitespace is ignored, and text which cannot be converted causes a
+ * HandlerCallError.
+ * @author Ben
+ *
+ */
+public final class TextValues {
+	// the largest power of ten, and the most mantissa digits, for which a double
+	// can be computed exactly from a long mantissa with a single multiply or divide
+	private static final int MAX_EXACT_POWER = 22;
+	private static final int MAX_EXACT_DIGITS = 15;
+	private static final double[] POWERS_OF_TEN = new double[MAX_EXACT_POWER + 1];
+	static {
+		POWERS_OF_TEN[0] = 1.0;
+		for (int i = 1; i <= MAX_EXACT_POWER; i++)
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i-1] * 10.0;
+	}
+	
+	private TextValues() {
+	}
+	
+	private static boolean isWhitespace(char c) {
+		return (c == ' ' || c == '\n' || c == '\r' || c == '\t');
+	}
+	
+	private static int trimStart(CharSequence text) {
+		int start = 0;
+		
+		while (start < text.length() && isWhitespace(text.charAt(start)))
+			start++;
+		return start;
+	}
+	
+	private static int trimEnd(CharSequence text, int start) {
+		int end = text.length();
+		
+		while (end > start && isWhitespace(text.charAt(end - 1)))
+			end--;
+		return end;
+	}
+	
+	// the most characters of the text to quote in an error message
+	private static final int QUOTE_LENGTH = 64;
+	
+	private static HandlerCallError conversionError(CharSequence text, String type, Throwable cause) {
+		// the text may be a capture of any size, so quote only its beginning
+		final String quoted = (text.length() <= QUOTE_LENGTH ? text.toString()
+				: text.subSequence(0, QUOTE_LENGTH) + "... (" + text.length() + " chars)");
+		
+		return new HandlerCallError("Cannot convert \"" + quoted + "\" to " + type, cause);
+	}
+	
+	/**
+	 * Convert text to a long, checking that it is in [@p min, @p max].
+	 * @param text
+	 * @param min
+	 * @param max
+	 * @param type the name of the type, for the error message
+	 * @return the value
+	 */
+	private static long parseInteger(CharSequence text, long min, long max, String type) {
+		final int start = trimStart(text), end = trimEnd(text, start);
+		int i = start;
+		boolean negative = false;
+		
+		if (i < end && (text.charAt(i) == '-' || text.charAt(i) == '+'))
+			negative = (text.charAt(i++) == '-');
+		if (i == end)
+			throw conversionError(text, type, null);
+		
+		// accumulate negatively, so that the most negative value does not overflow
+		final long limit = (negative ? min : -max);
+		long value = 0;
+		
+		for (; i < end; i++) {
+			final int digit = text.charAt(i) - '0';
+			
+			if (digit < 0 || digit > 9)
+				throw conversionError(text, type, null);
+			if (value < (limit + digit) / 10)
+				throw conversionError(text, type, null);
+			value = value * 10 - digit;
+		}
+		return (negative ? value : -value);
+	}
+	
+	public static int parseInt(CharSequence text) {
+		return (int) parseInteger(text, Integer.MIN_VALUE, Integer.MAX_VALUE, "int");
+	}
+	
+	public static long parseLong(CharSequence text) {
+		return parseInteger(text, Long.MIN_VALUE, Long.MAX_VALUE, "long");
+	}
+	
+	/**
+	 * Convert text to a double. Plain decimal numbers of up to 15 significant digits are
+	 * converted directly; anything else goes through Double.parseDouble(), which gives the
+	 * same result.
+	 * @param text
+	 * @return the value
+	 */
+	public static double parseDouble(CharSequence text) {
+		final int start = trimStart(text), end = trimEnd(text, start);
+		int i = start;
+		boolean negative = false;
+		long mantissa = 0;
+		int nrDigits = 0, exponent = 0;
+		
+		if (i < end && (text.charAt(i) == '-' || text.charAt(i) == '+'))
+			negative = (text.charAt(i++) == '-');
+		
+		// the integer and fraction digits; leading zeros are not significant
+		boolean seenDigit = false, seenPoint = false;
+		for (; i < end; i++) {
+			final char c = text.charAt(i);
+			
+			if (c == '.' && !seenPoint) {
+				seenPoint = true;
+				continue;
+			}
+			if (c < '0' || c > '9')
+				break;
+			seenDigit = true;
+			if (mantissa == 0 && c == '0') {
+				if (seenPoint)
+					exponent--;
+				continue;
+			}
+			if (++nrDigits > MAX_EXACT_DIGITS)
+				return parseDoubleSlowly(text, start, end);
+			mantissa = mantissa * 10 + (c - '0');
+			if (seenPoint)
+				exponent--;
+		}
+		if (!seenDigit)
+			return parseDoubleSlowly(text, start, end);
+		
+		// the exponent
+		if (i < end && (text.charAt(i) == 'e' || text.charAt(i) == 'E')) {
+			boolean negativeExponent = false;
+			int explicitExponent = 0;
+			
+			if (++i < end && (text.charAt(i) == '-' || text.charAt(i) == '+'))
+				negativeExponent = (text.charAt(i++) == '-');
+			if (i == end)
+				return parseDoubleSlowly(text, start, end);
+			for (; i < end; i++) {
+				final int digit = text.charAt(i) - '0';
+				
+				if (digit < 0 || digit > 9 || explicitExponent > 1000)
+					return parseDoubleSlowly(text, start, end);
+				explicitExponent = explicitExponent * 10 + digit;
+			}
+			exponent += (negativeExponent ? -explicitExponent : explicitExponent);
+		}
+		if (i != end)
+			return parseDoubleSlowly(text, start, end);
+		
+		double value;
+		if (mantissa == 0)
+			value = 0.0;
+		else if (exponent >= 0 && exponent <= MAX_EXACT_POWER)
+			value = mantissa * POWERS_OF_TEN[exponent];
+		else if (exponent < 0 && exponent >= -MAX_EXACT_POWER)
+			value = mantissa / POWERS_OF_TEN[-exponent];
+		else
+			return parseDoubleSlowly(text, start, end);
+		
+		return (negative ? -value : value);
+	}
+	
+	private static double parseDoubleSlowly(CharSequence text, int start, int end) {
+		try {
+			return Double.parseDouble(text.subSequence(start, end).toString());
+		} catch (NumberFormatException e) {
+			throw conversionError(text, "double", e);
+		}
+	}
+	
+	/**
+	 * Convert text to a boolean, accepting "true", "false", "1" and "0" like XML Schema does.
+	 * @param text
+	 * @return the value
+	 */
+	public static boolean parseBoolean(CharSequence text) {
+		final int start = trimStart(text), end = trimEnd(text, start);
+		
+		if (regionEquals(text, start, end, "true") || regionEquals(text, start, end, "1"))
+			return true;
+		if (regionEquals(text, start, end, "false") || regionEquals(text, start, end, "0"))
+			return false;
+		throw conversionError(text, "boolean", null);
+	}
+	
+	private static boolean regionEquals(CharSequence text, int start, int end, String s) {
+		if (end - start != s.length())
+			return false;
+		for (int i = 0; i < s.length(); i++) {
+			if (text.charAt(start + i) != s.charAt(i))
+				return false;
+		}
+		return true;
+	}
+	
+	public static BigDecimal parseBigDecimal(CharSequence text) {
+		final int start = trimStart(text), end = trimEnd(text, start);
+		
+		try {
+			if (text instanceof CapturedText) {
+				final CapturedText captured = (CapturedText) text;
+				final char[] buffer = captured.heapArray();
+				
+				// a spilled capture is copied below, but only as far as the number goes
+				if (buffer != null)
+					return new BigDecimal(buffer, captured.offset() + start, end - start);
+			}
+			return new BigDecimal(text.subSequence(start, end).toString());
+		} catch (NumberFormatException e) {
+			throw conversionError(text, "BigDecimal", e);
+		}
+	}
+	
+	public static <E extends Enum<E>> E parseEnum(Class<E> type, CharSequence text) {
+		final int start = trimStart(text), end = trimEnd(text, start);
+		
+		try {
+			return Enum.valueOf(type, text.subSequence(start, end).toString());
+		} catch (IllegalArgumentException e) {
+			throw conversionError(text, type.getSimpleName(), e);
+		}
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * This file is part of AXS, Annotation-XPath for SAX.
+ * 
+ * Copyright (c) 2013 Benjamin K. Stuhl
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.googlecode.axs;
+
+/**
+ * An XPathAutomaton is a precompiled form of all the XPath expressions of a handler as a
+ * single nondeterministic automaton over element names, which lets the engine track every
+ * expression incrementally as elements are started instead of re-walking the tag path.
+ * 
+ * Each state corresponds to one step of one or more expressions (expressions which start
+ * with the same steps share their states). A state is active at an element if the element
+ * matches the state's name and predicates and its predecessor state was active at the
+ * parent element. If the step after a state is a descendant:: step, the state is
+ * CARRIED instead: it is passed down to all descendants from the nearest element which
+ * matched its name and predicates, which reproduces the nearest-ancestor search of
+ * the INSTR_NONCONSECUTIVE_ELEMENT instruction. An expression matches at an element if its
+ * accepting state is active there.
+ * 
+ * Like XPathExpression, its format is subject to change in future versions of this library.
+ * @author Ben
+ *
+ */
+public final class XPathAutomaton {
+	// the state's step must be the root element
+	public static final short STATE_ANCHORED = 1;
+	// the step after this state is a descendant:: step
+	public static final short STATE_CARRIED = 2;
+
+	private short[] mElements = null;
+	private short[] mPredecessors = null;
+	private short[] mFlags = null;
+	private XPathExpression[] mPredicates = null;
+	private int[] mAcceptingStates = null;
+	private QName[] mQNames = null;
+
+	/**
+	 * @param elements the index into qNames of each state's element name
+	 * @param predecessors the state of the previous step of each state, or -1 for a first step
+	 * @param flags the STATE_* flags of each state
+	 * @param predicates the predicates of each state's step, as an expression containing only
+	 * predicates that is tested at the element, or null if the step has no predicates; these
+	 * expressions must use qNames as their QName table
+	 * @param acceptingStates the accepting state of each of the handler's expressions
+	 * @param qNames the names used by the automaton
+	 */
+	public XPathAutomaton(short[] elements, short[] predecessors, short[] flags,
+			XPathExpression[] predicates, int[] acceptingStates, QName[] qNames) {
+		mElements = elements;
+		mPredecessors = predecessors;
+		mFlags = flags;
+		mPredicates = predicates;
+		mAcceptingStates = acceptingStates;
+		mQNames = qNames;
+	}
+	
+	public int numberOfStates() {
+		return mElements.length;
+	}
+
+	public short[] elements() {
+		return mElements;
+	}
+	
+	public short[] predecessors() {
+		return mPredecessors;
+	}
+	
+	public short[] flags() {
+		return mFlags;
+	}
+	
+	public XPathExpression[] predicates() {
+		return mPredicates;
+	}
+	
+	public int[] acceptingStates() {
+		return mAcceptingStates;
+	}
+	
+	public QName[] qNames() {
+		return mQNames;
+	}
+}
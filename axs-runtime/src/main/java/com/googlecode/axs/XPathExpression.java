@@ -57,6 +57,9 @@ public final class XPathExpression {
 	public static final short INSTR_GE = 21;
 	public static final short INSTR_MATCHES = 22;
 	public static final short INSTR_SOFT_TEST_PREDICATE = 23; // the following value is a signed offset relative to this instruction
+	public static final short INSTR_STEP_PREDICATE = 24; // the following value is the index into the step predicates
+	public static final short INSTR_BRANCH_IF_FALSE = 25; // the following value is a signed offset relative to this instruction
+	public static final short INSTR_BRANCH_IF_TRUE = 26; // the following value is a signed offset relative to this instruction
 
 	private short[] mInstructions = null;
 	private QName[] mQNames = null;
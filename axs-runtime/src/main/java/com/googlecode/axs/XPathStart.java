@@ -33,4 +33,23 @@ import java.lang.annotation.Target;
 @Retention(RetentionPolicy.SOURCE)
 public @interface XPathStart {
 	String value();
+	
+	/**
+	 * The number of times the method is called for each document, after which its
+	 * expression is no longer tested; 0, the default, means no limit.
+	 */
+	int limit() default 0;
+	
+	/**
+	 * The name of a group of mutually exclusive methods: once one of them is called for an
+	 * element, the others are not tested for it. All the methods of a group must have the
+	 * same annotation. "", the default, means the method is in no group.
+	 */
+	String group() default "";
+	
+	/**
+	 * The order in which the methods of a group are tested, highest first; methods of the
+	 * same priority are tested in the order of their names.
+	 */
+	int priority() default 0;
 }
@@ -0,0 +1,72 @@
+/*
+ * This file is part of AXS, Annotation-XPath for SAX.
+ * 
+ * Copyright (c) 2013 Benjamin K. Stuhl
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.googlecode.axs;
+
+/**
+ * An XPathSuffixTrie is a precompiled form of all the XPath expressions of a handler, with
+ * the steps that several expressions end with shared between them. Since expressions are
+ * tested from their last step back towards the root, each node of the trie holds the
+ * instructions for one step (or the final root test) of every expression that ends with
+ * the same steps as the path to that node, and the engine need only execute the node once
+ * per event however many of those expressions are triggered.
+ * 
+ * Like XPathExpression, its format is subject to change in future versions of this library.
+ * @author Ben
+ *
+ */
+public final class XPathSuffixTrie {
+	private XPathExpression[] mSteps = null;
+	private int[] mParents = null;
+	private int[] mExpressionNodes = null;
+	
+	/**
+	 * @param steps the instructions of each node, which all use the same QName table
+	 * @param parents the parent of each node, or -1 for a node holding the last step of
+	 * its expressions
+	 * @param expressionNodes the node holding the first step of each of the handler's
+	 * expressions, or its root test if it has one
+	 */
+	public XPathSuffixTrie(XPathExpression[] steps, int[] parents, int[] expressionNodes) {
+		mSteps = steps;
+		mParents = parents;
+		mExpressionNodes = expressionNodes;
+	}
+	
+	public int numberOfNodes() {
+		return mSteps.length;
+	}
+	
+	public XPathExpression[] steps() {
+		return mSteps;
+	}
+	
+	public int[] parents() {
+		return mParents;
+	}
+	
+	public int[] expressionNodes() {
+		return mExpressionNodes;
+	}
+}
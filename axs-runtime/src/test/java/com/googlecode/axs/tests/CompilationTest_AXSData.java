@@ -24,19 +24,29 @@
 
 package com.googlecode.axs.tests;
 
+import java.io.Writer;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.regex.Pattern;
 import javax.annotation.Generated;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 
 import com.googlecode.axs.AXSData;
 import com.googlecode.axs.AbstractAnnotatedHandler;
+import com.googlecode.axs.Base64DecodingWriter;
+import com.googlecode.axs.CapturedText;
 import com.googlecode.axs.HandlerCallError;
+import com.googlecode.axs.KeywordSet;
+import com.googlecode.axs.MatchContext;
 import com.googlecode.axs.QName;
+import com.googlecode.axs.SimplePattern;
+import com.googlecode.axs.TextValues;
+import com.googlecode.axs.XPathAutomaton;
 import com.googlecode.axs.XPathExpression;
+import com.googlecode.axs.XPathSuffixTrie;
 
 import com.googlecode.axs.tests.CompilationTest;
 
@@ -62,6 +72,23 @@ public class CompilationTest_AXSData implements AXSData {
         }
     }
 
+    @Override
+    public void callXPathText(AbstractAnnotatedHandler abstractHandler, int exprIx, CapturedText callbackArg) throws SAXException {
+        CompilationTest handler = (CompilationTest) abstractHandler;
+
+        switch (exprIx) {
+        case 0: 
+            // "foo/ (: not baz :) bar"
+            handler.barElement(callbackArg.toString());
+            break;
+        case 1: 
+            // "/grep[captureattrs()]//foo[2]"
+            handler.fooElement2(callbackArg.toString());
+            break;
+        default: throw new HandlerCallError("unhandled call #" + exprIx);
+        }
+    }
+
     @Override
     public void callXPathEnd(AbstractAnnotatedHandler abstractHandler, int exprIx) throws SAXException {
         CompilationTest handler = (CompilationTest) abstractHandler;
@@ -96,9 +123,18 @@ public class CompilationTest_AXSData implements AXSData {
         }
     }
 
+    @Override
+    public Writer callXPathStream(AbstractAnnotatedHandler abstractHandler, int exprIx, Attributes callbackArg) throws SAXException {
+        CompilationTest handler = (CompilationTest) abstractHandler;
+
+        switch (exprIx) {
+        default: throw new HandlerCallError("unhandled call #" + exprIx);
+        }
+    }
+
     @Override
     public int getAXSDataVersion() {
-        return 65536;
+        return 65552;
     }
 
     @Override
@@ -111,6 +147,11 @@ public class CompilationTest_AXSData implements AXSData {
         return 2;
     }
 
+    @Override
+    public int getNumberOfStreamExpressions() {
+        return 0;
+    }
+
     @Override
     public int getMaximumPredicateStackDepth() {
         return 2;
@@ -138,6 +179,33 @@ public class CompilationTest_AXSData implements AXSData {
         return Triggers;
     }
 
+    private static final int[][] TriggerArray0 = new int[][] { null, new int[] { 2, }, };
+    private static final int[][] TriggerArray1 = new int[][] { new int[] { 0, }, new int[] { 0, }, };
+    private static final int[][] TriggerArray2 = new int[][] { new int[] { 4, 5, }, null, };
+    private static final int[][] TriggerArray3 = new int[][] { new int[] { 1, }, new int[] { 1, }, };
+    private static final int[][] TriggerArray4 = new int[][] { null, new int[] { 3, }, };
+
+    @Override
+    public int[][] getTriggers(String namespaceURI, String localName) {
+        switch (localName.length()) {
+        case 3:
+            switch (localName.charAt(0)) {
+            case 'a':
+                return (localName.equals("awk") && namespaceURI.equals("http://foo.bar/NS1") ? TriggerArray0 : null);
+            case 'b':
+                return (localName.equals("bar") && namespaceURI.equals("http://foo.bar/NS1") ? TriggerArray1 : null);
+            case 'f':
+                return (localName.equals("foo") && namespaceURI.equals("http://foo.bar/NS1") ? TriggerArray3 : null);
+            case 'n':
+                return (localName.equals("not") && namespaceURI.equals("http://foo.bar/NS1") ? TriggerArray4 : null);
+            }
+            return null;
+        case 4:
+            return (localName.equals("blah") && namespaceURI.equals("http://foo.bar/NS1") ? TriggerArray2 : null);
+        }
+        return null;
+    }
+
     private static HashSet<String> AttributeCaptureTags = null;
 
     @Override
@@ -167,6 +235,20 @@ public class CompilationTest_AXSData implements AXSData {
         return PositionCaptureTags;
     }
 
+    private static int[][] AttributeProjections = null;
+
+    @Override
+    public int[][] getAttributeProjections() {
+        synchronized (Lock) {
+            if (AttributeProjections != null)
+                return AttributeProjections;
+            AttributeProjections = new int[][] {
+                new int[] { 2, },
+            };
+        }
+        return AttributeProjections;
+    }
+
     private static String[] Literals = new String[] {
         "awk",
     };
@@ -209,20 +291,15 @@ public class CompilationTest_AXSData implements AXSData {
             XPathExpression.INSTR_TEST_PREDICATE,
             XPathExpression.INSTR_ELEMENT, 3,
             XPathExpression.INSTR_NONCONSECUTIVE_ELEMENT, 2,
-            XPathExpression.INSTR_ATTRIBUTE, 4,
-            XPathExpression.INSTR_LITERAL, 0,
-            XPathExpression.INSTR_EQ_STR,
-            XPathExpression.INSTR_NOT,
-            XPathExpression.INSTR_SOFT_TEST_PREDICATE, -8,
+            XPathExpression.INSTR_STEP_PREDICATE, 0,
+            XPathExpression.INSTR_SOFT_TEST_PREDICATE, -4,
             XPathExpression.INSTR_ELEMENT, 2,
             XPathExpression.INSTR_ROOT,
         }, QNames, Literals),
         new XPathExpression( // "grep[@is = 'awk']/not"
         new short[] {
             XPathExpression.INSTR_ELEMENT, 5,
-            XPathExpression.INSTR_ATTRIBUTE, 4,
-            XPathExpression.INSTR_LITERAL, 0,
-            XPathExpression.INSTR_EQ_STR,
+            XPathExpression.INSTR_STEP_PREDICATE, 1,
             XPathExpression.INSTR_TEST_PREDICATE,
             XPathExpression.INSTR_ELEMENT, 2,
         }, QNames, Literals),
@@ -245,4 +322,354 @@ public class CompilationTest_AXSData implements AXSData {
     public XPathExpression[] getXPathExpressions() {
         return Expressions;
     }
+
+    private static final int[][] Limits = new int[][] {
+    };
+
+    @Override
+    public int[][] getLimits() {
+        return Limits;
+    }
+
+    @Override
+    public int[] getExclusiveGroups() {
+        return null;
+    }
+
+    private static final Pattern[] Patterns = new Pattern[] {
+        null,
+    };
+
+    @Override
+    public Pattern[] getPatterns() {
+        return Patterns;
+    }
+
+    private static final SimplePattern[] SimplePatterns = new SimplePattern[] {
+        null,
+    };
+
+    @Override
+    public SimplePattern[] getSimplePatterns() {
+        return SimplePatterns;
+    }
+
+    private static KeywordSet[] KeywordSets = null;
+
+    @Override
+    public KeywordSet[] getKeywordSets() {
+        synchronized (Lock) {
+            if (KeywordSets != null)
+                return KeywordSets;
+            KeywordSets = new KeywordSet[] {
+            };
+        }
+        return KeywordSets;
+    }
+
+    private static XPathExpression[] StepPredicates = null;
+
+    @Override
+    public XPathExpression[] getStepPredicates() {
+        synchronized (Lock) {
+            if (StepPredicates != null)
+                return StepPredicates;
+            StepPredicates = new XPathExpression[] {
+                new XPathExpression(new short[] {
+                    XPathExpression.INSTR_ATTRIBUTE, 4,
+                    XPathExpression.INSTR_LITERAL, 0,
+                    XPathExpression.INSTR_EQ_STR,
+                    XPathExpression.INSTR_NOT,
+                    XPathExpression.INSTR_TEST_PREDICATE,
+                    XPathExpression.INSTR_ELEMENT, 2,
+                }, QNames, Literals),
+                new XPathExpression(new short[] {
+                    XPathExpression.INSTR_ATTRIBUTE, 4,
+                    XPathExpression.INSTR_LITERAL, 0,
+                    XPathExpression.INSTR_EQ_STR,
+                    XPathExpression.INSTR_TEST_PREDICATE,
+                    XPathExpression.INSTR_ELEMENT, 2,
+                }, QNames, Literals),
+            };
+        }
+        return StepPredicates;
+    }
+
+    @Override
+    public int[][] getReachablePrefixes() {
+        // some expressions are relative, so any element can lead to a match
+        return null;
+    }
+
+    private static XPathSuffixTrie SuffixTrie = null;
+
+    @Override
+    public XPathSuffixTrie getSuffixTrie() {
+        synchronized (Lock) {
+            if (SuffixTrie != null)
+                return SuffixTrie;
+            SuffixTrie = new XPathSuffixTrie(
+                new XPathExpression[] {
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 0,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 1,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_POSITION,
+                        XPathExpression.INSTR_ILITERAL, 2,
+                        XPathExpression.INSTR_EQ,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                        XPathExpression.INSTR_ELEMENT, 1,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_NONCONSECUTIVE_ELEMENT, 2,
+                        XPathExpression.INSTR_ILITERAL, 1,
+                        XPathExpression.INSTR_SOFT_TEST_PREDICATE, -4,
+                        XPathExpression.INSTR_ELEMENT, 2,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ROOT,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_POSITION,
+                        XPathExpression.INSTR_ILITERAL, 2,
+                        XPathExpression.INSTR_EQ,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                        XPathExpression.INSTR_ELEMENT, 3,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_NONCONSECUTIVE_ELEMENT, 2,
+                        XPathExpression.INSTR_STEP_PREDICATE, 0,
+                        XPathExpression.INSTR_SOFT_TEST_PREDICATE, -4,
+                        XPathExpression.INSTR_ELEMENT, 2,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ROOT,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 5,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_STEP_PREDICATE, 1,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                        XPathExpression.INSTR_ELEMENT, 2,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 6,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_NONCONSECUTIVE_ELEMENT, 7,
+                        XPathExpression.INSTR_ELEMENT, 7,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ROOT,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 6,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 7,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 1,
+                    }, QNames, Literals),
+                },
+                new int[] { -1, 0, -1, 2, 3, -1, 5, 6, -1, 8, -1, 10, 11, 10, 13, 14, },
+                new int[] { 1, 4, 7, 9, 12, 15, });
+        }
+        return SuffixTrie;
+    }
+
+    private static XPathAutomaton Automaton = null;
+
+    @Override
+    public XPathAutomaton getXPathAutomaton() {
+        synchronized (Lock) {
+            if (Automaton != null)
+                return Automaton;
+            Automaton = new XPathAutomaton(
+                new short[] { 1, 0, 2, 1, 2, 3, 2, 5, 7, 6, 7, 6, 6, },
+                new short[] { -1, 0, -1, 2, -1, 4, -1, 6, -1, 8, 0, 10, 11, },
+                new short[] { 0, 0, XPathAutomaton.STATE_ANCHORED | XPathAutomaton.STATE_CARRIED, 0, XPathAutomaton.STATE_ANCHORED | XPathAutomaton.STATE_CARRIED, 0, 0, 0, XPathAutomaton.STATE_ANCHORED | XPathAutomaton.STATE_CARRIED, 0, 0, 0, 0, },
+                new XPathExpression[] {
+                    null,
+                    null,
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ILITERAL, 1,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_POSITION,
+                        XPathExpression.INSTR_ILITERAL, 2,
+                        XPathExpression.INSTR_EQ,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_STEP_PREDICATE, 0,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_POSITION,
+                        XPathExpression.INSTR_ILITERAL, 2,
+                        XPathExpression.INSTR_EQ,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_STEP_PREDICATE, 1,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                    }, QNames, Literals),
+                    null,
+                    null,
+                    null,
+                    null,
+                    null,
+                    null,
+                },
+                new int[] { 1, 3, 5, 7, 9, 12, },
+                QNames);
+        }
+        return Automaton;
+    }
+
+    @Override
+    public boolean hasCompiledMatchers() {
+        return true;
+    }
+
+    @Override
+    public boolean test(int exprIx, MatchContext ctx) {
+        switch (exprIx) {
+        case 0: return match0(ctx);
+        case 1: return match1(ctx);
+        case 2: return match2(ctx);
+        case 3: return match3(ctx);
+        case 4: return match4(ctx);
+        case 5: return match5(ctx);
+        default: throw new HandlerCallError("unhandled test #" + exprIx);
+        }
+    }
+
+    // "foo/ (: not baz :) bar"
+    private static boolean match0(MatchContext ctx) {
+        int tagp = ctx.depth() - 1;
+        if (tagp < 0 || ctx.tagAt(tagp) != 0)
+            return false;
+        tagp--;
+        if (tagp < 0 || ctx.tagAt(tagp) != 1)
+            return false;
+        tagp--;
+        return true;
+    }
+
+    // "/grep[captureattrs()]//foo[2]"
+    private static boolean match1(MatchContext ctx) {
+        int tagp = ctx.depth() - 1;
+        final int p0 = ctx.position(tagp);
+        if (p0 < 0)
+            return false;
+        if (!(p0 == 2))
+            return false;
+        if (tagp < 0 || ctx.tagAt(tagp) != 1)
+            return false;
+        tagp--;
+        while (true) {
+            while (tagp >= 0 && ctx.tagAt(tagp) != 2)
+                tagp--;
+            if (tagp < 0)
+                return false;
+            break;
+        }
+        tagp--;
+        if (tagp != -1)
+            return false;
+        return true;
+    }
+
+    // "/grep[@is != 'awk']//awk[2]"
+    private static boolean match2(MatchContext ctx) {
+        int tagp = ctx.depth() - 1;
+        final int p0 = ctx.position(tagp);
+        if (p0 < 0)
+            return false;
+        if (!(p0 == 2))
+            return false;
+        if (tagp < 0 || ctx.tagAt(tagp) != 3)
+            return false;
+        tagp--;
+        while (true) {
+            while (tagp >= 0 && ctx.tagAt(tagp) != 2)
+                tagp--;
+            if (tagp < 0)
+                return false;
+            final int s1 = ctx.stepPredicate(tagp, 0);
+            if (s1 < 0)
+                return false;
+            if (!(s1 != 0)) {
+                if (--tagp < 0)
+                    return false;
+                continue;
+            }
+            break;
+        }
+        tagp--;
+        if (tagp != -1)
+            return false;
+        return true;
+    }
+
+    // "grep[@is = 'awk']/not"
+    private static boolean match3(MatchContext ctx) {
+        int tagp = ctx.depth() - 1;
+        if (tagp < 0 || ctx.tagAt(tagp) != 5)
+            return false;
+        tagp--;
+        final int s0 = ctx.stepPredicate(tagp, 1);
+        if (s0 < 0)
+            return false;
+        if (!(s0 != 0))
+            return false;
+        if (tagp < 0 || ctx.tagAt(tagp) != 2)
+            return false;
+        tagp--;
+        return true;
+    }
+
+    // "/baz//blah"
+    private static boolean match4(MatchContext ctx) {
+        int tagp = ctx.depth() - 1;
+        if (tagp < 0 || ctx.tagAt(tagp) != 6)
+            return false;
+        tagp--;
+        while (tagp >= 0 && ctx.tagAt(tagp) != 7)
+            tagp--;
+        if (tagp < 0)
+            return false;
+        if (tagp < 0 || ctx.tagAt(tagp) != 7)
+            return false;
+        tagp--;
+        if (tagp != -1)
+            return false;
+        return true;
+    }
+
+    // "foo/baz/blah/blah"
+    private static boolean match5(MatchContext ctx) {
+        int tagp = ctx.depth() - 1;
+        if (tagp < 0 || ctx.tagAt(tagp) != 6)
+            return false;
+        tagp--;
+        if (tagp < 0 || ctx.tagAt(tagp) != 6)
+            return false;
+        tagp--;
+        if (tagp < 0 || ctx.tagAt(tagp) != 7)
+            return false;
+        tagp--;
+        if (tagp < 0 || ctx.tagAt(tagp) != 1)
+            return false;
+        tagp--;
+        return true;
+    }
+
 }
@@ -123,26 +123,31 @@ public class RuntimeTest1 extends AbstractAnnotatedHandler {
 			SAXParser parser = factory.newSAXParser();
 			
 			String testDataRoot = args[0];
-			RuntimeTest1 test1 = new RuntimeTest1();
+			// every test must pass with each of the expression engines
+			for (int engine : new int[] { ENGINE_INTERPRETER, ENGINE_COMPILED, ENGINE_AUTOMATON }) {
+				System.out.println("[INFO] Using XPath engine " + engine);
+				RuntimeTest1 test1 = new RuntimeTest1();
+				test1.setXPathEngine(engine);
 	
-			parser.parse(testDataRoot + "/testData1.xml", test1);
+				parser.parse(testDataRoot + "/testData1.xml", test1);
 			
-			if (test1.nrBElements() == 6) {
-				System.out.println("[OK] Found 6 <b> elements");
-			} else {
-				System.out.println("[FAIL] Found " + test1.nrBElements() + " <b> elements?!");
-			}
+				if (test1.nrBElements() == 6) {
+					System.out.println("[OK] Found 6 <b> elements");
+				} else {
+					System.out.println("[FAIL] Found " + test1.nrBElements() + " <b> elements?!");
+				}
 			
-			if (test1.nrDElements() == 1) {
-				System.out.println("[OK] Found 1 <d> element");
-			} else {
-				System.out.println("[FAIL] Found " + test1.nrDElements() + " <d> elements?!");
-			}
+				if (test1.nrDElements() == 1) {
+					System.out.println("[OK] Found 1 <d> element");
+				} else {
+					System.out.println("[FAIL] Found " + test1.nrDElements() + " <d> elements?!");
+				}
 	
-			if (test1.nrEElements() == 0) {
-				System.out.println("[OK] Found 0 <e> elements");
-			} else {
-				System.out.println("[FAIL] Found " + test1.nrEElements() + " <e> elements?!");
+				if (test1.nrEElements() == 0) {
+					System.out.println("[OK] Found 0 <e> elements");
+				} else {
+					System.out.println("[FAIL] Found " + test1.nrEElements() + " <e> elements?!");
+				}
 			}
 		} catch (SAXException e) {
 			System.out.println("[FAIL] Got a SAXException: "+ e);
@@ -0,0 +1,756 @@
+/* This class is autogenerated by the AXS compiler. Do not edit! */
+
+/* **********************************************************************************/
+/* Copyright (c) 2013 Benjamin K. Stuhl                                             */
+/*                                                                                  */
+/* Permission is hereby granted, free of charge, to any person obtaining a copy     */
+/* of this software and associated documentation files (the "Software"), to deal    */
+/* in the Software without restriction, including without limitation the rights     */
+/* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies */
+/* of the Software, and to permit persons to whom the Software is furnished to do   */
+/* so, subject to the following conditions:                                         */
+/*                                                                                  */
+/* The above copyright notice and this permission notice shall be included in all   */
+/* copies or substantial portions of the Software.                                  */
+/*                                                                                  */
+/* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR       */
+/* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,         */
+/* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE      */
+/* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER           */
+/* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,    */
+/* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE    */
+/* SOFTWARE.                                                                        */
+/* **********************************************************************************/
+
+package com.googlecode.axs.tests;
+
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import javax.annotation.Generated;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+
+import com.googlecode.axs.AXSData;
+import com.googlecode.axs.AbstractAnnotatedHandler;
+import com.googlecode.axs.Base64DecodingWriter;
+import com.googlecode.axs.CapturedText;
+import com.googlecode.axs.HandlerCallError;
+import com.googlecode.axs.KeywordSet;
+import com.googlecode.axs.MatchContext;
+import com.googlecode.axs.QName;
+import com.googlecode.axs.SimplePattern;
+import com.googlecode.axs.TextValues;
+import com.googlecode.axs.XPathAutomaton;
+import com.googlecode.axs.XPathExpression;
+import com.googlecode.axs.XPathSuffixTrie;
+
+import com.googlecode.axs.tests.RuntimeTest1;
+
+
+@Generated(value = { "com.googlecode.axs.AnnotationProcessor", "com.googlecode.axs.tests.RuntimeTest1"})
+public class RuntimeTest1_AXSData implements AXSData {
+    private static Object Lock = new Object();
+
+    @Override
+    public void callXPathText(AbstractAnnotatedHandler abstractHandler, int exprIx, String callbackArg) throws SAXException {
+        RuntimeTest1 handler = (RuntimeTest1) abstractHandler;
+
+        switch (exprIx) {
+        case 0: 
+            // "b"
+            handler.bElement(callbackArg);
+            break;
+        case 1: 
+            // "//tests/test[position() < 4]/a"
+            handler.testAElement(callbackArg);
+            break;
+        case 2: 
+            // "/tests/test[2]/a[@attr1 = 'value1' and attribute::value2 != 'value3'][1]"
+            handler.testAElementAttrs2(callbackArg);
+            break;
+        case 3: 
+            // "//a[attribute::attr2 = 'value3' and not(@ns1:attrNotFound = 'foo''bar')]"
+            handler.testAElementAttrs3(callbackArg);
+            break;
+        case 4: 
+            // "/tests/test[2]/a[starts-with(@attr1,'value') and attribute::attr2 = 'value2' and position() = 3]"
+            handler.testAElementAttrs4(callbackArg);
+            break;
+        default: throw new HandlerCallError("unhandled call #" + exprIx);
+        }
+    }
+
+    @Override
+    public void callXPathText(AbstractAnnotatedHandler abstractHandler, int exprIx, CapturedText callbackArg) throws SAXException {
+        RuntimeTest1 handler = (RuntimeTest1) abstractHandler;
+
+        switch (exprIx) {
+        case 0: 
+            // "b"
+            handler.bElement(callbackArg.toString());
+            break;
+        case 1: 
+            // "//tests/test[position() < 4]/a"
+            handler.testAElement(callbackArg.toString());
+            break;
+        case 2: 
+            // "/tests/test[2]/a[@attr1 = 'value1' and attribute::value2 != 'value3'][1]"
+            handler.testAElementAttrs2(callbackArg.toString());
+            break;
+        case 3: 
+            // "//a[attribute::attr2 = 'value3' and not(@ns1:attrNotFound = 'foo''bar')]"
+            handler.testAElementAttrs3(callbackArg.toString());
+            break;
+        case 4: 
+            // "/tests/test[2]/a[starts-with(@attr1,'value') and attribute::attr2 = 'value2' and position() = 3]"
+            handler.testAElementAttrs4(callbackArg.toString());
+            break;
+        default: throw new HandlerCallError("unhandled call #" + exprIx);
+        }
+    }
+
+    @Override
+    public void callXPathEnd(AbstractAnnotatedHandler abstractHandler, int exprIx) throws SAXException {
+        RuntimeTest1 handler = (RuntimeTest1) abstractHandler;
+
+        switch (exprIx) {
+        case 5: 
+            // "e"
+            handler.eElementEnd();
+            break;
+        default: throw new HandlerCallError("unhandled call #" + exprIx);
+        }
+    }
+
+    @Override
+    public void callXPathStart(AbstractAnnotatedHandler abstractHandler, int exprIx, Attributes callbackArg) throws SAXException {
+        RuntimeTest1 handler = (RuntimeTest1) abstractHandler;
+
+        switch (exprIx) {
+        case 6: 
+            // "d"
+            handler.dElementStart(callbackArg);
+            break;
+        case 7: 
+            // "e"
+            handler.eElementStart(callbackArg);
+            break;
+        default: throw new HandlerCallError("unhandled call #" + exprIx);
+        }
+    }
+
+    @Override
+    public Writer callXPathStream(AbstractAnnotatedHandler abstractHandler, int exprIx, Attributes callbackArg) throws SAXException {
+        RuntimeTest1 handler = (RuntimeTest1) abstractHandler;
+
+        switch (exprIx) {
+        default: throw new HandlerCallError("unhandled call #" + exprIx);
+        }
+    }
+
+    @Override
+    public int getAXSDataVersion() {
+        return 65552;
+    }
+
+    @Override
+    public int getNumberOfCapturingExpressions() {
+        return 5;
+    }
+
+    @Override
+    public int getNumberOfEndExpressions() {
+        return 1;
+    }
+
+    @Override
+    public int getNumberOfStreamExpressions() {
+        return 0;
+    }
+
+    @Override
+    public int getMaximumPredicateStackDepth() {
+        return 4;
+    }
+
+    private static HashMap<String, int[]> Triggers = null;
+
+    @Override
+    public Map<String, int[]> getTriggerTags() {
+        synchronized (Lock) {
+            if (Triggers != null)
+                return Triggers;
+            Triggers = new HashMap<String, int[]>();
+            Triggers.put("a", 
+                    new int[] { 1, 2, 3, 4, });
+            Triggers.put("b", 
+                    new int[] { 0, });
+            Triggers.put("d", 
+                    new int[] { 6, });
+            Triggers.put("e", 
+                    new int[] { 5, 7, });
+        }
+        return Triggers;
+    }
+
+    private static final int[][] TriggerArray0 = new int[][] { new int[] { 1, 2, 3, 4, }, new int[] { 1, 2, 3, 4, }, };
+    private static final int[][] TriggerArray1 = new int[][] { new int[] { 0, }, new int[] { 0, }, };
+    private static final int[][] TriggerArray2 = new int[][] { new int[] { 6, }, null, };
+    private static final int[][] TriggerArray3 = new int[][] { new int[] { 7, }, new int[] { 5, }, };
+
+    @Override
+    public int[][] getTriggers(String namespaceURI, String localName) {
+        switch (localName.length()) {
+        case 1:
+            switch (localName.charAt(0)) {
+            case 'a':
+                return (localName.equals("a") && namespaceURI.equals("") ? TriggerArray0 : null);
+            case 'b':
+                return (localName.equals("b") && namespaceURI.equals("") ? TriggerArray1 : null);
+            case 'd':
+                return (localName.equals("d") && namespaceURI.equals("") ? TriggerArray2 : null);
+            case 'e':
+                return (localName.equals("e") && namespaceURI.equals("") ? TriggerArray3 : null);
+            }
+            return null;
+        }
+        return null;
+    }
+
+    private static HashSet<String> AttributeCaptureTags = null;
+
+    @Override
+    public Set<String> getAttributeCaptureTags() {
+        synchronized (Lock) {
+            if (AttributeCaptureTags != null)
+                return AttributeCaptureTags;
+
+            AttributeCaptureTags = new HashSet<String>();
+            AttributeCaptureTags.add("a");
+        }
+        return AttributeCaptureTags;
+    }
+
+    private static HashSet<String> PositionCaptureTags = null;
+
+    @Override
+    public Set<String> getPositionCaptureTags() {
+        synchronized (Lock) {
+            if (PositionCaptureTags != null)
+                return PositionCaptureTags;
+
+            PositionCaptureTags = new HashSet<String>();
+            PositionCaptureTags.add("a");
+            PositionCaptureTags.add("test");
+        }
+        return PositionCaptureTags;
+    }
+
+    private static int[][] AttributeProjections = null;
+
+    @Override
+    public int[][] getAttributeProjections() {
+        synchronized (Lock) {
+            if (AttributeProjections != null)
+                return AttributeProjections;
+            AttributeProjections = new int[][] {
+                new int[] { 1, 4, 5, 6, 7, },
+            };
+        }
+        return AttributeProjections;
+    }
+
+    private static String[] Literals = new String[] {
+        "value1",
+        "value3",
+        "foo'bar",
+        "value",
+        "value2",
+    };
+
+    private static QName[] QNames = new QName[] {
+        new QName("", "b"),
+        new QName("", "a"),
+        new QName("", "test"),
+        new QName("", "tests"),
+        new QName("", "attr1"),
+        new QName("", "value2"),
+        new QName("", "attr2"),
+        new QName("http://test.values/tests", "attrNotFound"),
+        new QName("", "e"),
+        new QName("", "d"),
+    };
+
+    private static XPathExpression[] Expressions = new XPathExpression[] {
+        new XPathExpression( // "b"
+        new short[] {
+            XPathExpression.INSTR_ELEMENT, 0,
+        }, QNames, Literals),
+        new XPathExpression( // "//tests/test[position() < 4]/a"
+        new short[] {
+            XPathExpression.INSTR_ELEMENT, 1,
+            XPathExpression.INSTR_POSITION,
+            XPathExpression.INSTR_ILITERAL, 4,
+            XPathExpression.INSTR_LT,
+            XPathExpression.INSTR_TEST_PREDICATE,
+            XPathExpression.INSTR_ELEMENT, 2,
+            XPathExpression.INSTR_ELEMENT, 3,
+        }, QNames, Literals),
+        new XPathExpression( // "/tests/test[2]/a[@attr1 = 'value1' and attribute::value2 != 'value3'][1]"
+        new short[] {
+            XPathExpression.INSTR_STEP_PREDICATE, 0,
+            XPathExpression.INSTR_TEST_PREDICATE,
+            XPathExpression.INSTR_POSITION,
+            XPathExpression.INSTR_ILITERAL, 1,
+            XPathExpression.INSTR_EQ,
+            XPathExpression.INSTR_TEST_PREDICATE,
+            XPathExpression.INSTR_ELEMENT, 1,
+            XPathExpression.INSTR_POSITION,
+            XPathExpression.INSTR_ILITERAL, 2,
+            XPathExpression.INSTR_EQ,
+            XPathExpression.INSTR_TEST_PREDICATE,
+            XPathExpression.INSTR_ELEMENT, 2,
+            XPathExpression.INSTR_ELEMENT, 3,
+            XPathExpression.INSTR_ROOT,
+        }, QNames, Literals),
+        new XPathExpression( // "//a[attribute::attr2 = 'value3' and not(@ns1:attrNotFound = 'foo''bar')]"
+        new short[] {
+            XPathExpression.INSTR_STEP_PREDICATE, 1,
+            XPathExpression.INSTR_TEST_PREDICATE,
+            XPathExpression.INSTR_ELEMENT, 1,
+        }, QNames, Literals),
+        new XPathExpression( // "/tests/test[2]/a[starts-with(@attr1,'value') and attribute::attr2 = 'value2' and position() = 3]"
+        new short[] {
+            XPathExpression.INSTR_STEP_PREDICATE, 2,
+            XPathExpression.INSTR_TEST_PREDICATE,
+            XPathExpression.INSTR_ELEMENT, 1,
+            XPathExpression.INSTR_POSITION,
+            XPathExpression.INSTR_ILITERAL, 2,
+            XPathExpression.INSTR_EQ,
+            XPathExpression.INSTR_TEST_PREDICATE,
+            XPathExpression.INSTR_ELEMENT, 2,
+            XPathExpression.INSTR_ELEMENT, 3,
+            XPathExpression.INSTR_ROOT,
+        }, QNames, Literals),
+        new XPathExpression( // "e"
+        new short[] {
+            XPathExpression.INSTR_ELEMENT, 8,
+        }, QNames, Literals),
+        new XPathExpression( // "d"
+        new short[] {
+            XPathExpression.INSTR_ELEMENT, 9,
+        }, QNames, Literals),
+        new XPathExpression( // "e"
+        new short[] {
+            XPathExpression.INSTR_ELEMENT, 8,
+        }, QNames, Literals),
+    };
+
+    public XPathExpression[] getXPathExpressions() {
+        return Expressions;
+    }
+
+    private static final int[][] Limits = new int[][] {
+    };
+
+    @Override
+    public int[][] getLimits() {
+        return Limits;
+    }
+
+    @Override
+    public int[] getExclusiveGroups() {
+        return null;
+    }
+
+    private static final Pattern[] Patterns = new Pattern[] {
+        null,
+        null,
+        null,
+        null,
+        null,
+    };
+
+    @Override
+    public Pattern[] getPatterns() {
+        return Patterns;
+    }
+
+    private static final SimplePattern[] SimplePatterns = new SimplePattern[] {
+        null,
+        null,
+        null,
+        null,
+        null,
+    };
+
+    @Override
+    public SimplePattern[] getSimplePatterns() {
+        return SimplePatterns;
+    }
+
+    private static KeywordSet[] KeywordSets = null;
+
+    @Override
+    public KeywordSet[] getKeywordSets() {
+        synchronized (Lock) {
+            if (KeywordSets != null)
+                return KeywordSets;
+            KeywordSets = new KeywordSet[] {
+            };
+        }
+        return KeywordSets;
+    }
+
+    private static XPathExpression[] StepPredicates = null;
+
+    @Override
+    public XPathExpression[] getStepPredicates() {
+        synchronized (Lock) {
+            if (StepPredicates != null)
+                return StepPredicates;
+            StepPredicates = new XPathExpression[] {
+                new XPathExpression(new short[] {
+                    XPathExpression.INSTR_ATTRIBUTE, 4,
+                    XPathExpression.INSTR_LITERAL, 0,
+                    XPathExpression.INSTR_EQ_STR,
+                    XPathExpression.INSTR_BRANCH_IF_FALSE, 9,
+                    XPathExpression.INSTR_ATTRIBUTE, 5,
+                    XPathExpression.INSTR_LITERAL, 1,
+                    XPathExpression.INSTR_EQ_STR,
+                    XPathExpression.INSTR_NOT,
+                    XPathExpression.INSTR_AND,
+                    XPathExpression.INSTR_TEST_PREDICATE,
+                    XPathExpression.INSTR_ELEMENT, 1,
+                }, QNames, Literals),
+                new XPathExpression(new short[] {
+                    XPathExpression.INSTR_ATTRIBUTE, 6,
+                    XPathExpression.INSTR_LITERAL, 1,
+                    XPathExpression.INSTR_EQ_STR,
+                    XPathExpression.INSTR_BRANCH_IF_FALSE, 9,
+                    XPathExpression.INSTR_ATTRIBUTE, 7,
+                    XPathExpression.INSTR_LITERAL, 2,
+                    XPathExpression.INSTR_EQ_STR,
+                    XPathExpression.INSTR_NOT,
+                    XPathExpression.INSTR_AND,
+                    XPathExpression.INSTR_TEST_PREDICATE,
+                    XPathExpression.INSTR_ELEMENT, 1,
+                }, QNames, Literals),
+                new XPathExpression(new short[] {
+                    XPathExpression.INSTR_ATTRIBUTE, 4,
+                    XPathExpression.INSTR_LITERAL, 3,
+                    XPathExpression.INSTR_STARTS_WITH,
+                    XPathExpression.INSTR_BRANCH_IF_FALSE, 8,
+                    XPathExpression.INSTR_ATTRIBUTE, 6,
+                    XPathExpression.INSTR_LITERAL, 4,
+                    XPathExpression.INSTR_EQ_STR,
+                    XPathExpression.INSTR_AND,
+                    XPathExpression.INSTR_BRANCH_IF_FALSE, 7,
+                    XPathExpression.INSTR_POSITION,
+                    XPathExpression.INSTR_ILITERAL, 3,
+                    XPathExpression.INSTR_EQ,
+                    XPathExpression.INSTR_AND,
+                    XPathExpression.INSTR_TEST_PREDICATE,
+                    XPathExpression.INSTR_ELEMENT, 1,
+                }, QNames, Literals),
+            };
+        }
+        return StepPredicates;
+    }
+
+    @Override
+    public int[][] getReachablePrefixes() {
+        // some expressions are relative, so any element can lead to a match
+        return null;
+    }
+
+    private static XPathSuffixTrie SuffixTrie = null;
+
+    @Override
+    public XPathSuffixTrie getSuffixTrie() {
+        synchronized (Lock) {
+            if (SuffixTrie != null)
+                return SuffixTrie;
+            SuffixTrie = new XPathSuffixTrie(
+                new XPathExpression[] {
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 0,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 1,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_POSITION,
+                        XPathExpression.INSTR_ILITERAL, 4,
+                        XPathExpression.INSTR_LT,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                        XPathExpression.INSTR_ELEMENT, 2,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 3,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_STEP_PREDICATE, 0,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                        XPathExpression.INSTR_POSITION,
+                        XPathExpression.INSTR_ILITERAL, 1,
+                        XPathExpression.INSTR_EQ,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                        XPathExpression.INSTR_ELEMENT, 1,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_POSITION,
+                        XPathExpression.INSTR_ILITERAL, 2,
+                        XPathExpression.INSTR_EQ,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                        XPathExpression.INSTR_ELEMENT, 2,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 3,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ROOT,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_STEP_PREDICATE, 1,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                        XPathExpression.INSTR_ELEMENT, 1,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_STEP_PREDICATE, 2,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                        XPathExpression.INSTR_ELEMENT, 1,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_POSITION,
+                        XPathExpression.INSTR_ILITERAL, 2,
+                        XPathExpression.INSTR_EQ,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                        XPathExpression.INSTR_ELEMENT, 2,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 3,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ROOT,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 8,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 9,
+                    }, QNames, Literals),
+                },
+                new int[] { -1, -1, 1, 2, -1, 4, 5, 6, -1, -1, 9, 10, 11, -1, -1, },
+                new int[] { 0, 3, 7, 8, 12, 13, 14, 13, });
+        }
+        return SuffixTrie;
+    }
+
+    private static XPathAutomaton Automaton = null;
+
+    @Override
+    public XPathAutomaton getXPathAutomaton() {
+        synchronized (Lock) {
+            if (Automaton != null)
+                return Automaton;
+            Automaton = new XPathAutomaton(
+                new short[] { 0, 3, 2, 1, 3, 2, 1, 1, 1, 8, 9, },
+                new short[] { -1, -1, 1, 2, -1, 4, 5, -1, 5, -1, -1, },
+                new short[] { 0, 0, 0, 0, XPathAutomaton.STATE_ANCHORED, 0, 0, 0, 0, 0, 0, },
+                new XPathExpression[] {
+                    null,
+                    null,
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_POSITION,
+                        XPathExpression.INSTR_ILITERAL, 4,
+                        XPathExpression.INSTR_LT,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                    }, QNames, Literals),
+                    null,
+                    null,
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_POSITION,
+                        XPathExpression.INSTR_ILITERAL, 2,
+                        XPathExpression.INSTR_EQ,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_STEP_PREDICATE, 0,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                        XPathExpression.INSTR_POSITION,
+                        XPathExpression.INSTR_ILITERAL, 1,
+                        XPathExpression.INSTR_EQ,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_STEP_PREDICATE, 1,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_STEP_PREDICATE, 2,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                    }, QNames, Literals),
+                    null,
+                    null,
+                },
+                new int[] { 0, 3, 6, 7, 8, 9, 10, 9, },
+                QNames);
+        }
+        return Automaton;
+    }
+
+    @Override
+    public boolean hasCompiledMatchers() {
+        return true;
+    }
+
+    @Override
+    public boolean test(int exprIx, MatchContext ctx) {
+        switch (exprIx) {
+        case 0: return match0(ctx);
+        case 1: return match1(ctx);
+        case 2: return match2(ctx);
+        case 3: return match3(ctx);
+        case 4: return match4(ctx);
+        case 5: return match5(ctx);
+        case 6: return match6(ctx);
+        case 7: return match7(ctx);
+        default: throw new HandlerCallError("unhandled test #" + exprIx);
+        }
+    }
+
+    // "b"
+    private static boolean match0(MatchContext ctx) {
+        int tagp = ctx.depth() - 1;
+        if (tagp < 0 || ctx.tagAt(tagp) != 0)
+            return false;
+        tagp--;
+        return true;
+    }
+
+    // "//tests/test[position() < 4]/a"
+    private static boolean match1(MatchContext ctx) {
+        int tagp = ctx.depth() - 1;
+        if (tagp < 0 || ctx.tagAt(tagp) != 1)
+            return false;
+        tagp--;
+        final int p0 = ctx.position(tagp);
+        if (p0 < 0)
+            return false;
+        if (!(p0 < 4))
+            return false;
+        if (tagp < 0 || ctx.tagAt(tagp) != 2)
+            return false;
+        tagp--;
+        if (tagp < 0 || ctx.tagAt(tagp) != 3)
+            return false;
+        tagp--;
+        return true;
+    }
+
+    // "/tests/test[2]/a[@attr1 = 'value1' and attribute::value2 != 'value3'][1]"
+    private static boolean match2(MatchContext ctx) {
+        int tagp = ctx.depth() - 1;
+        final int s0 = ctx.stepPredicate(tagp, 0);
+        if (s0 < 0)
+            return false;
+        if (!(s0 != 0))
+            return false;
+        final int p1 = ctx.position(tagp);
+        if (p1 < 0)
+            return false;
+        if (!(p1 == 1))
+            return false;
+        if (tagp < 0 || ctx.tagAt(tagp) != 1)
+            return false;
+        tagp--;
+        final int p2 = ctx.position(tagp);
+        if (p2 < 0)
+            return false;
+        if (!(p2 == 2))
+            return false;
+        if (tagp < 0 || ctx.tagAt(tagp) != 2)
+            return false;
+        tagp--;
+        if (tagp < 0 || ctx.tagAt(tagp) != 3)
+            return false;
+        tagp--;
+        if (tagp != -1)
+            return false;
+        return true;
+    }
+
+    // "//a[attribute::attr2 = 'value3' and not(@ns1:attrNotFound = 'foo''bar')]"
+    private static boolean match3(MatchContext ctx) {
+        int tagp = ctx.depth() - 1;
+        final int s0 = ctx.stepPredicate(tagp, 1);
+        if (s0 < 0)
+            return false;
+        if (!(s0 != 0))
+            return false;
+        if (tagp < 0 || ctx.tagAt(tagp) != 1)
+            return false;
+        tagp--;
+        return true;
+    }
+
+    // "/tests/test[2]/a[starts-with(@attr1,'value') and attribute::attr2 = 'value2' and position() = 3]"
+    private static boolean match4(MatchContext ctx) {
+        int tagp = ctx.depth() - 1;
+        final int s0 = ctx.stepPredicate(tagp, 2);
+        if (s0 < 0)
+            return false;
+        if (!(s0 != 0))
+            return false;
+        if (tagp < 0 || ctx.tagAt(tagp) != 1)
+            return false;
+        tagp--;
+        final int p1 = ctx.position(tagp);
+        if (p1 < 0)
+            return false;
+        if (!(p1 == 2))
+            return false;
+        if (tagp < 0 || ctx.tagAt(tagp) != 2)
+            return false;
+        tagp--;
+        if (tagp < 0 || ctx.tagAt(tagp) != 3)
+            return false;
+        tagp--;
+        if (tagp != -1)
+            return false;
+        return true;
+    }
+
+    // "e"
+    private static boolean match5(MatchContext ctx) {
+        int tagp = ctx.depth() - 1;
+        if (tagp < 0 || ctx.tagAt(tagp) != 8)
+            return false;
+        tagp--;
+        return true;
+    }
+
+    // "d"
+    private static boolean match6(MatchContext ctx) {
+        int tagp = ctx.depth() - 1;
+        if (tagp < 0 || ctx.tagAt(tagp) != 9)
+            return false;
+        tagp--;
+        return true;
+    }
+
+    // "e"
+    private static boolean match7(MatchContext ctx) {
+        int tagp = ctx.depth() - 1;
+        if (tagp < 0 || ctx.tagAt(tagp) != 8)
+            return false;
+        tagp--;
+        return true;
+    }
+
+}
@@ -32,12 +32,15 @@ import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 
+import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 
 import com.googlecode.axs.AbstractAnnotatedHandler;
 import com.googlecode.axs.QName;
 import com.googlecode.axs.XPath;
+import com.googlecode.axs.XPathEnd;
 import com.googlecode.axs.XPathNamespaces;
+import com.googlecode.axs.XPathStart;
 
 @XPathNamespaces({ "ns1=http://test.values/ns1", "ns2=http://test.values/ns2", "=http://test.values/ns0" })
 public class RuntimeTest2 extends AbstractAnnotatedHandler {
@@ -69,6 +72,18 @@ public class RuntimeTest2 extends AbstractAnnotatedHandler {
 		System.out.println("[FAIL] pattern matched that shouldn't");
 	}
 	
+	@XPath("ns2:key[contains(@value, 'ab') or contains(@value, 'cc')]")
+	void testKeywords(String text) {
+		// all the contains() literals for @value are searched for at once
+		expect("Value 10", text);
+	}
+	
+	@XPathStart("value[contains(@label, '3') or contains(@label, 'ab')]")
+	void testKeywordsPerAttribute(Attributes attrs) {
+		// 'ab' is also a keyword of @value, but @label is searched with its own set
+		expect("3", attrs.getValue("label"));
+	}
+	
 	@XPath("ns2:key[starts-with('bbbbbbbbb', @value)]")
 	void testStartsWith(String text) {
 		expect("Value 11", text);
@@ -79,10 +94,41 @@ public class RuntimeTest2 extends AbstractAnnotatedHandler {
 		expect("", text);
 	}
 	
+	@XPathEnd("value[@label = '2']")
+	void testProjectedAttributes() {
+		// only the outcome of the predicate is kept for elements without captureattrs()
+		expect("null", String.valueOf(attributesAtDepth(tagDepth() - 1)));
+	}
+	
+	@XPathStart(value = "value[@label = '3']", group = "label", priority = 1)
+	void testGroupPriority(Attributes attrs) {
+		expect("3", attrs.getValue("label"));
+	}
+	
+	@XPathStart(value = "value[@label != '']", group = "label")
+	void testGroupAny(Attributes attrs) {
+		// the first match of the group wins, so label 3 goes to testGroupPriority() only
+		if ("3".equals(attrs.getValue("label")))
+			System.out.println("[FAIL] both methods of a group were called");
+		else
+			expect(attrs.getValue("label"), attrs.getValue("label"));
+	}
+	
 	@XPath("ns2:key[matches(@value, 'ab*')]")
 	void testRegexp(String text) {
 		expect("Value 10", text);
 	}
+	
+	@XPath("ns2:key[matches(@value, '(ab)+b*|x')]")
+	void testRegexpFallback(String text) {
+		// not a pattern that a SimplePattern can handle
+		expect("Value 10", text);
+	}
+	
+	@XPath("ns2:key[matches(@value, 'b+') and starts-with(@value, 'b')]")
+	void testRegexpAnd(String text) {
+		expect("Value 11", text);
+	}
 
 	public static void main(String[] args) {
 		SAXParserFactory factory = SAXParserFactory.newInstance();
@@ -97,9 +143,14 @@ public class RuntimeTest2 extends AbstractAnnotatedHandler {
 			SAXParser parser = factory.newSAXParser();
 			
 			String testDataRoot = args[0];
-			RuntimeTest2 test1 = new RuntimeTest2();
+			// every test must pass with each of the expression engines
+			for (int engine : new int[] { ENGINE_INTERPRETER, ENGINE_COMPILED, ENGINE_AUTOMATON }) {
+				System.out.println("[INFO] Using XPath engine " + engine);
+				RuntimeTest2 test1 = new RuntimeTest2();
+				test1.setXPathEngine(engine);
 	
-			parser.parse(testDataRoot + "/testData2.xml", test1);
+				parser.parse(testDataRoot + "/testData2.xml", test1);
+			}
 		} catch (SAXException e) {
 			System.out.println("[FAIL] Got a SAXException: "+ e);
 		} catch (IOException e) {
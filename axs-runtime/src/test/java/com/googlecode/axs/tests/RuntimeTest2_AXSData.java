@@ -24,19 +24,29 @@
 
 package com.googlecode.axs.tests;
 
+import java.io.Writer;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.regex.Pattern;
 import javax.annotation.Generated;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 
 import com.googlecode.axs.AXSData;
 import com.googlecode.axs.AbstractAnnotatedHandler;
+import com.googlecode.axs.Base64DecodingWriter;
+import com.googlecode.axs.CapturedText;
 import com.googlecode.axs.HandlerCallError;
+import com.googlecode.axs.KeywordSet;
+import com.googlecode.axs.MatchContext;
 import com.googlecode.axs.QName;
+import com.googlecode.axs.SimplePattern;
+import com.googlecode.axs.TextValues;
+import com.googlecode.axs.XPathAutomaton;
 import com.googlecode.axs.XPathExpression;
+import com.googlecode.axs.XPathSuffixTrie;
 
 import com.googlecode.axs.tests.RuntimeTest2;
 
@@ -75,10 +85,22 @@ public class RuntimeTest2_AXSData implements AXSData {
             handler.testEmpty(callbackArg);
             break;
         case 6: 
+            // "ns2:key[contains(@value, 'ab') or contains(@value, 'cc')]"
+            handler.testKeywords(callbackArg);
+            break;
+        case 7: 
             // "ns2:key[matches(@value, 'ab*')]"
             handler.testRegexp(callbackArg);
             break;
-        case 7: 
+        case 8: 
+            // "ns2:key[matches(@value, 'b+') and starts-with(@value, 'b')]"
+            handler.testRegexpAnd(callbackArg);
+            break;
+        case 9: 
+            // "ns2:key[matches(@value, '(ab)+b*|x')]"
+            handler.testRegexpFallback(callbackArg);
+            break;
+        case 10: 
             // "ns2:key[starts-with('bbbbbbbbb', @value)]"
             handler.testStartsWith(callbackArg);
             break;
@@ -86,11 +108,68 @@ public class RuntimeTest2_AXSData implements AXSData {
         }
     }
 
+    @Override
+    public void callXPathText(AbstractAnnotatedHandler abstractHandler, int exprIx, CapturedText callbackArg) throws SAXException {
+        RuntimeTest2 handler = (RuntimeTest2) abstractHandler;
+
+        switch (exprIx) {
+        case 0: 
+            // "ns1:map/ns2:key[ends-with(@value, 'c')] | ns1:map/ns2:key[starts-with(@value, 'c')]"
+            handler.neverHappen(callbackArg.toString());
+            break;
+        case 1: 
+            // "ns1:map/ns2:key[ends-with(@value, 'c')] | ns1:map/ns2:key[starts-with(@value, 'c')]"
+            handler.neverHappen(callbackArg.toString());
+            break;
+        case 2: 
+            // "ns2:key[captureattrs()]/value | ns1:map/ns2:key[ends-with(@value, 'bb')]/value | ns2:key[contains(@value, 'bb')]/value"
+            handler.testAttributeStack(callbackArg.toString());
+            break;
+        case 3: 
+            // "ns2:key[captureattrs()]/value | ns1:map/ns2:key[ends-with(@value, 'bb')]/value | ns2:key[contains(@value, 'bb')]/value"
+            handler.testAttributeStack(callbackArg.toString());
+            break;
+        case 4: 
+            // "ns2:key[captureattrs()]/value | ns1:map/ns2:key[ends-with(@value, 'bb')]/value | ns2:key[contains(@value, 'bb')]/value"
+            handler.testAttributeStack(callbackArg.toString());
+            break;
+        case 5: 
+            // "value[@label != '']"
+            handler.testEmpty(callbackArg.toString());
+            break;
+        case 6: 
+            // "ns2:key[contains(@value, 'ab') or contains(@value, 'cc')]"
+            handler.testKeywords(callbackArg.toString());
+            break;
+        case 7: 
+            // "ns2:key[matches(@value, 'ab*')]"
+            handler.testRegexp(callbackArg.toString());
+            break;
+        case 8: 
+            // "ns2:key[matches(@value, 'b+') and starts-with(@value, 'b')]"
+            handler.testRegexpAnd(callbackArg.toString());
+            break;
+        case 9: 
+            // "ns2:key[matches(@value, '(ab)+b*|x')]"
+            handler.testRegexpFallback(callbackArg.toString());
+            break;
+        case 10: 
+            // "ns2:key[starts-with('bbbbbbbbb', @value)]"
+            handler.testStartsWith(callbackArg.toString());
+            break;
+        default: throw new HandlerCallError("unhandled call #" + exprIx);
+        }
+    }
+
     @Override
     public void callXPathEnd(AbstractAnnotatedHandler abstractHandler, int exprIx) throws SAXException {
         RuntimeTest2 handler = (RuntimeTest2) abstractHandler;
 
         switch (exprIx) {
+        case 11: 
+            // "value[@label = '2']"
+            handler.testProjectedAttributes();
+            break;
         default: throw new HandlerCallError("unhandled call #" + exprIx);
         }
     }
@@ -99,6 +178,27 @@ public class RuntimeTest2_AXSData implements AXSData {
     public void callXPathStart(AbstractAnnotatedHandler abstractHandler, int exprIx, Attributes callbackArg) throws SAXException {
         RuntimeTest2 handler = (RuntimeTest2) abstractHandler;
 
+        switch (exprIx) {
+        case 12: 
+            // "value[@label = '3']"
+            handler.testGroupPriority(callbackArg);
+            break;
+        case 13: 
+            // "value[@label != '']"
+            handler.testGroupAny(callbackArg);
+            break;
+        case 14: 
+            // "value[contains(@label, '3') or contains(@label, 'ab')]"
+            handler.testKeywordsPerAttribute(callbackArg);
+            break;
+        default: throw new HandlerCallError("unhandled call #" + exprIx);
+        }
+    }
+
+    @Override
+    public Writer callXPathStream(AbstractAnnotatedHandler abstractHandler, int exprIx, Attributes callbackArg) throws SAXException {
+        RuntimeTest2 handler = (RuntimeTest2) abstractHandler;
+
         switch (exprIx) {
         default: throw new HandlerCallError("unhandled call #" + exprIx);
         }
@@ -106,22 +206,27 @@ public class RuntimeTest2_AXSData implements AXSData {
 
     @Override
     public int getAXSDataVersion() {
-        return 65536;
+        return 65552;
     }
 
     @Override
     public int getNumberOfCapturingExpressions() {
-        return 8;
+        return 11;
     }
 
     @Override
     public int getNumberOfEndExpressions() {
+        return 1;
+    }
+
+    @Override
+    public int getNumberOfStreamExpressions() {
         return 0;
     }
 
     @Override
     public int getMaximumPredicateStackDepth() {
-        return 1;
+        return 2;
     }
 
     private static HashMap<String, int[]> Triggers = null;
@@ -133,13 +238,27 @@ public class RuntimeTest2_AXSData implements AXSData {
                 return Triggers;
             Triggers = new HashMap<String, int[]>();
             Triggers.put("value", 
-                    new int[] { 2, 3, 4, 5, });
+                    new int[] { 2, 3, 4, 5, 11, 12, 13, 14, });
             Triggers.put("key", 
-                    new int[] { 0, 1, 6, 7, });
+                    new int[] { 0, 1, 6, 7, 8, 9, 10, });
         }
         return Triggers;
     }
 
+    private static final int[][] TriggerArray0 = new int[][] { new int[] { 0, 1, 6, 7, 8, 9, 10, }, new int[] { 0, 1, 6, 7, 8, 9, 10, }, };
+    private static final int[][] TriggerArray1 = new int[][] { new int[] { 2, 3, 4, 5, 12, 13, 14, }, new int[] { 2, 3, 4, 5, 11, }, };
+
+    @Override
+    public int[][] getTriggers(String namespaceURI, String localName) {
+        switch (localName.length()) {
+        case 3:
+            return (localName.equals("key") && namespaceURI.equals("http://test.values/ns2") ? TriggerArray0 : null);
+        case 5:
+            return (localName.equals("value") && namespaceURI.equals("http://test.values/ns0") ? TriggerArray1 : null);
+        }
+        return null;
+    }
+
     private static HashSet<String> AttributeCaptureTags = null;
 
     @Override
@@ -168,12 +287,37 @@ public class RuntimeTest2_AXSData implements AXSData {
         return PositionCaptureTags;
     }
 
+    private static int[][] AttributeProjections = null;
+
+    @Override
+    public int[][] getAttributeProjections() {
+        synchronized (Lock) {
+            if (AttributeProjections != null)
+                return AttributeProjections;
+            AttributeProjections = new int[][] {
+                new int[] { 1, },
+                new int[] { 3, 4, },
+            };
+        }
+        return AttributeProjections;
+    }
+
     private static String[] Literals = new String[] {
         "c",
         "bb",
+        "bb",
         "",
+        "ab",
+        "cc",
         "ab*",
+        "b+",
+        "b",
+        "(ab)+b*|x",
         "bbbbbbbbb",
+        "2",
+        "3",
+        "3",
+        "ab",
     };
 
     private static QName[] QNames = new QName[] {
@@ -187,18 +331,14 @@ public class RuntimeTest2_AXSData implements AXSData {
     private static XPathExpression[] Expressions = new XPathExpression[] {
         new XPathExpression( // "ns1:map/ns2:key[ends-with(@value, 'c')] | ns1:map/ns2:key[starts-with(@value, 'c')]"
         new short[] {
-            XPathExpression.INSTR_ATTRIBUTE, 0,
-            XPathExpression.INSTR_LITERAL, 0,
-            XPathExpression.INSTR_ENDS_WITH,
+            XPathExpression.INSTR_STEP_PREDICATE, 0,
             XPathExpression.INSTR_TEST_PREDICATE,
             XPathExpression.INSTR_ELEMENT, 1,
             XPathExpression.INSTR_ELEMENT, 2,
         }, QNames, Literals),
         new XPathExpression( // "ns1:map/ns2:key[ends-with(@value, 'c')] | ns1:map/ns2:key[starts-with(@value, 'c')]"
         new short[] {
-            XPathExpression.INSTR_ATTRIBUTE, 0,
-            XPathExpression.INSTR_LITERAL, 0,
-            XPathExpression.INSTR_STARTS_WITH,
+            XPathExpression.INSTR_STEP_PREDICATE, 1,
             XPathExpression.INSTR_TEST_PREDICATE,
             XPathExpression.INSTR_ELEMENT, 1,
             XPathExpression.INSTR_ELEMENT, 2,
@@ -213,9 +353,7 @@ public class RuntimeTest2_AXSData implements AXSData {
         new XPathExpression( // "ns2:key[captureattrs()]/value | ns1:map/ns2:key[ends-with(@value, 'bb')]/value | ns2:key[contains(@value, 'bb')]/value"
         new short[] {
             XPathExpression.INSTR_ELEMENT, 3,
-            XPathExpression.INSTR_ATTRIBUTE, 0,
-            XPathExpression.INSTR_LITERAL, 1,
-            XPathExpression.INSTR_ENDS_WITH,
+            XPathExpression.INSTR_STEP_PREDICATE, 2,
             XPathExpression.INSTR_TEST_PREDICATE,
             XPathExpression.INSTR_ELEMENT, 1,
             XPathExpression.INSTR_ELEMENT, 2,
@@ -223,40 +361,701 @@ public class RuntimeTest2_AXSData implements AXSData {
         new XPathExpression( // "ns2:key[captureattrs()]/value | ns1:map/ns2:key[ends-with(@value, 'bb')]/value | ns2:key[contains(@value, 'bb')]/value"
         new short[] {
             XPathExpression.INSTR_ELEMENT, 3,
-            XPathExpression.INSTR_ATTRIBUTE, 0,
-            XPathExpression.INSTR_LITERAL, 1,
-            XPathExpression.INSTR_CONTAINS,
+            XPathExpression.INSTR_STEP_PREDICATE, 3,
             XPathExpression.INSTR_TEST_PREDICATE,
             XPathExpression.INSTR_ELEMENT, 1,
         }, QNames, Literals),
         new XPathExpression( // "value[@label != '']"
         new short[] {
-            XPathExpression.INSTR_ATTRIBUTE, 4,
-            XPathExpression.INSTR_LITERAL, 2,
-            XPathExpression.INSTR_EQ_STR,
-            XPathExpression.INSTR_NOT,
+            XPathExpression.INSTR_STEP_PREDICATE, 4,
             XPathExpression.INSTR_TEST_PREDICATE,
             XPathExpression.INSTR_ELEMENT, 3,
         }, QNames, Literals),
+        new XPathExpression( // "ns2:key[contains(@value, 'ab') or contains(@value, 'cc')]"
+        new short[] {
+            XPathExpression.INSTR_STEP_PREDICATE, 5,
+            XPathExpression.INSTR_TEST_PREDICATE,
+            XPathExpression.INSTR_ELEMENT, 1,
+        }, QNames, Literals),
         new XPathExpression( // "ns2:key[matches(@value, 'ab*')]"
         new short[] {
-            XPathExpression.INSTR_ATTRIBUTE, 0,
-            XPathExpression.INSTR_LITERAL, 3,
-            XPathExpression.INSTR_MATCHES,
+            XPathExpression.INSTR_STEP_PREDICATE, 6,
+            XPathExpression.INSTR_TEST_PREDICATE,
+            XPathExpression.INSTR_ELEMENT, 1,
+        }, QNames, Literals),
+        new XPathExpression( // "ns2:key[matches(@value, 'b+') and starts-with(@value, 'b')]"
+        new short[] {
+            XPathExpression.INSTR_STEP_PREDICATE, 7,
+            XPathExpression.INSTR_TEST_PREDICATE,
+            XPathExpression.INSTR_ELEMENT, 1,
+        }, QNames, Literals),
+        new XPathExpression( // "ns2:key[matches(@value, '(ab)+b*|x')]"
+        new short[] {
+            XPathExpression.INSTR_STEP_PREDICATE, 8,
             XPathExpression.INSTR_TEST_PREDICATE,
             XPathExpression.INSTR_ELEMENT, 1,
         }, QNames, Literals),
         new XPathExpression( // "ns2:key[starts-with('bbbbbbbbb', @value)]"
         new short[] {
-            XPathExpression.INSTR_LITERAL, 4,
-            XPathExpression.INSTR_ATTRIBUTE, 0,
-            XPathExpression.INSTR_STARTS_WITH,
+            XPathExpression.INSTR_STEP_PREDICATE, 9,
             XPathExpression.INSTR_TEST_PREDICATE,
             XPathExpression.INSTR_ELEMENT, 1,
         }, QNames, Literals),
+        new XPathExpression( // "value[@label = '2']"
+        new short[] {
+            XPathExpression.INSTR_STEP_PREDICATE, 10,
+            XPathExpression.INSTR_TEST_PREDICATE,
+            XPathExpression.INSTR_ELEMENT, 3,
+        }, QNames, Literals),
+        new XPathExpression( // "value[@label = '3']"
+        new short[] {
+            XPathExpression.INSTR_STEP_PREDICATE, 11,
+            XPathExpression.INSTR_TEST_PREDICATE,
+            XPathExpression.INSTR_ELEMENT, 3,
+        }, QNames, Literals),
+        new XPathExpression( // "value[@label != '']"
+        new short[] {
+            XPathExpression.INSTR_STEP_PREDICATE, 4,
+            XPathExpression.INSTR_TEST_PREDICATE,
+            XPathExpression.INSTR_ELEMENT, 3,
+        }, QNames, Literals),
+        new XPathExpression( // "value[contains(@label, '3') or contains(@label, 'ab')]"
+        new short[] {
+            XPathExpression.INSTR_STEP_PREDICATE, 12,
+            XPathExpression.INSTR_TEST_PREDICATE,
+            XPathExpression.INSTR_ELEMENT, 3,
+        }, QNames, Literals),
     };
 
     public XPathExpression[] getXPathExpressions() {
         return Expressions;
     }
+
+    private static final int[][] Limits = new int[][] {
+    };
+
+    @Override
+    public int[][] getLimits() {
+        return Limits;
+    }
+
+    @Override
+    public int[] getExclusiveGroups() {
+        return new int[] { -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 0, 0, -1, };
+    }
+
+    private static final Pattern[] Patterns = new Pattern[] {
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        Pattern.compile("(ab)+b*|x"),
+        null,
+        null,
+        null,
+        null,
+        null,
+    };
+
+    @Override
+    public Pattern[] getPatterns() {
+        return Patterns;
+    }
+
+    private static final SimplePattern[] SimplePatterns = new SimplePattern[] {
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        SimplePattern.compile("ab*"),
+        SimplePattern.compile("b+"),
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+    };
+
+    @Override
+    public SimplePattern[] getSimplePatterns() {
+        return SimplePatterns;
+    }
+
+    private static KeywordSet[] KeywordSets = null;
+
+    @Override
+    public KeywordSet[] getKeywordSets() {
+        synchronized (Lock) {
+            if (KeywordSets != null)
+                return KeywordSets;
+            KeywordSets = new KeywordSet[] {
+                new KeywordSet(new int[] { 2, 4, 5, }, new String[] { "bb", "ab", "cc", }),
+                new KeywordSet(new int[] { 13, 14, }, new String[] { "3", "ab", }),
+            };
+        }
+        return KeywordSets;
+    }
+
+    private static XPathExpression[] StepPredicates = null;
+
+    @Override
+    public XPathExpression[] getStepPredicates() {
+        synchronized (Lock) {
+            if (StepPredicates != null)
+                return StepPredicates;
+            StepPredicates = new XPathExpression[] {
+                new XPathExpression(new short[] {
+                    XPathExpression.INSTR_ATTRIBUTE, 0,
+                    XPathExpression.INSTR_LITERAL, 0,
+                    XPathExpression.INSTR_ENDS_WITH,
+                    XPathExpression.INSTR_TEST_PREDICATE,
+                    XPathExpression.INSTR_ELEMENT, 1,
+                }, QNames, Literals),
+                new XPathExpression(new short[] {
+                    XPathExpression.INSTR_ATTRIBUTE, 0,
+                    XPathExpression.INSTR_LITERAL, 0,
+                    XPathExpression.INSTR_STARTS_WITH,
+                    XPathExpression.INSTR_TEST_PREDICATE,
+                    XPathExpression.INSTR_ELEMENT, 1,
+                }, QNames, Literals),
+                new XPathExpression(new short[] {
+                    XPathExpression.INSTR_ATTRIBUTE, 0,
+                    XPathExpression.INSTR_LITERAL, 1,
+                    XPathExpression.INSTR_ENDS_WITH,
+                    XPathExpression.INSTR_TEST_PREDICATE,
+                    XPathExpression.INSTR_ELEMENT, 1,
+                }, QNames, Literals),
+                new XPathExpression(new short[] {
+                    XPathExpression.INSTR_ATTRIBUTE, 0,
+                    XPathExpression.INSTR_LITERAL, 2,
+                    XPathExpression.INSTR_CONTAINS,
+                    XPathExpression.INSTR_TEST_PREDICATE,
+                    XPathExpression.INSTR_ELEMENT, 1,
+                }, QNames, Literals),
+                new XPathExpression(new short[] {
+                    XPathExpression.INSTR_ATTRIBUTE, 4,
+                    XPathExpression.INSTR_LITERAL, 3,
+                    XPathExpression.INSTR_EQ_STR,
+                    XPathExpression.INSTR_NOT,
+                    XPathExpression.INSTR_TEST_PREDICATE,
+                    XPathExpression.INSTR_ELEMENT, 3,
+                }, QNames, Literals),
+                new XPathExpression(new short[] {
+                    XPathExpression.INSTR_ATTRIBUTE, 0,
+                    XPathExpression.INSTR_LITERAL, 4,
+                    XPathExpression.INSTR_CONTAINS,
+                    XPathExpression.INSTR_BRANCH_IF_TRUE, 8,
+                    XPathExpression.INSTR_ATTRIBUTE, 0,
+                    XPathExpression.INSTR_LITERAL, 5,
+                    XPathExpression.INSTR_CONTAINS,
+                    XPathExpression.INSTR_OR,
+                    XPathExpression.INSTR_TEST_PREDICATE,
+                    XPathExpression.INSTR_ELEMENT, 1,
+                }, QNames, Literals),
+                new XPathExpression(new short[] {
+                    XPathExpression.INSTR_ATTRIBUTE, 0,
+                    XPathExpression.INSTR_LITERAL, 6,
+                    XPathExpression.INSTR_MATCHES,
+                    XPathExpression.INSTR_TEST_PREDICATE,
+                    XPathExpression.INSTR_ELEMENT, 1,
+                }, QNames, Literals),
+                new XPathExpression(new short[] {
+                    XPathExpression.INSTR_ATTRIBUTE, 0,
+                    XPathExpression.INSTR_LITERAL, 7,
+                    XPathExpression.INSTR_MATCHES,
+                    XPathExpression.INSTR_BRANCH_IF_FALSE, 8,
+                    XPathExpression.INSTR_ATTRIBUTE, 0,
+                    XPathExpression.INSTR_LITERAL, 8,
+                    XPathExpression.INSTR_STARTS_WITH,
+                    XPathExpression.INSTR_AND,
+                    XPathExpression.INSTR_TEST_PREDICATE,
+                    XPathExpression.INSTR_ELEMENT, 1,
+                }, QNames, Literals),
+                new XPathExpression(new short[] {
+                    XPathExpression.INSTR_ATTRIBUTE, 0,
+                    XPathExpression.INSTR_LITERAL, 9,
+                    XPathExpression.INSTR_MATCHES,
+                    XPathExpression.INSTR_TEST_PREDICATE,
+                    XPathExpression.INSTR_ELEMENT, 1,
+                }, QNames, Literals),
+                new XPathExpression(new short[] {
+                    XPathExpression.INSTR_LITERAL, 10,
+                    XPathExpression.INSTR_ATTRIBUTE, 0,
+                    XPathExpression.INSTR_STARTS_WITH,
+                    XPathExpression.INSTR_TEST_PREDICATE,
+                    XPathExpression.INSTR_ELEMENT, 1,
+                }, QNames, Literals),
+                new XPathExpression(new short[] {
+                    XPathExpression.INSTR_ATTRIBUTE, 4,
+                    XPathExpression.INSTR_LITERAL, 11,
+                    XPathExpression.INSTR_EQ_STR,
+                    XPathExpression.INSTR_TEST_PREDICATE,
+                    XPathExpression.INSTR_ELEMENT, 3,
+                }, QNames, Literals),
+                new XPathExpression(new short[] {
+                    XPathExpression.INSTR_ATTRIBUTE, 4,
+                    XPathExpression.INSTR_LITERAL, 12,
+                    XPathExpression.INSTR_EQ_STR,
+                    XPathExpression.INSTR_TEST_PREDICATE,
+                    XPathExpression.INSTR_ELEMENT, 3,
+                }, QNames, Literals),
+                new XPathExpression(new short[] {
+                    XPathExpression.INSTR_ATTRIBUTE, 4,
+                    XPathExpression.INSTR_LITERAL, 13,
+                    XPathExpression.INSTR_CONTAINS,
+                    XPathExpression.INSTR_BRANCH_IF_TRUE, 8,
+                    XPathExpression.INSTR_ATTRIBUTE, 4,
+                    XPathExpression.INSTR_LITERAL, 14,
+                    XPathExpression.INSTR_CONTAINS,
+                    XPathExpression.INSTR_OR,
+                    XPathExpression.INSTR_TEST_PREDICATE,
+                    XPathExpression.INSTR_ELEMENT, 3,
+                }, QNames, Literals),
+            };
+        }
+        return StepPredicates;
+    }
+
+    @Override
+    public int[][] getReachablePrefixes() {
+        // some expressions are relative, so any element can lead to a match
+        return null;
+    }
+
+    private static XPathSuffixTrie SuffixTrie = null;
+
+    @Override
+    public XPathSuffixTrie getSuffixTrie() {
+        synchronized (Lock) {
+            if (SuffixTrie != null)
+                return SuffixTrie;
+            SuffixTrie = new XPathSuffixTrie(
+                new XPathExpression[] {
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_STEP_PREDICATE, 0,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                        XPathExpression.INSTR_ELEMENT, 1,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 2,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_STEP_PREDICATE, 1,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                        XPathExpression.INSTR_ELEMENT, 1,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 2,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 3,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ILITERAL, 1,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                        XPathExpression.INSTR_ELEMENT, 1,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_STEP_PREDICATE, 2,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                        XPathExpression.INSTR_ELEMENT, 1,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 2,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_STEP_PREDICATE, 3,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                        XPathExpression.INSTR_ELEMENT, 1,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_STEP_PREDICATE, 4,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                        XPathExpression.INSTR_ELEMENT, 3,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_STEP_PREDICATE, 5,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                        XPathExpression.INSTR_ELEMENT, 1,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_STEP_PREDICATE, 6,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                        XPathExpression.INSTR_ELEMENT, 1,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_STEP_PREDICATE, 7,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                        XPathExpression.INSTR_ELEMENT, 1,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_STEP_PREDICATE, 8,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                        XPathExpression.INSTR_ELEMENT, 1,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_STEP_PREDICATE, 9,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                        XPathExpression.INSTR_ELEMENT, 1,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_STEP_PREDICATE, 10,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                        XPathExpression.INSTR_ELEMENT, 3,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_STEP_PREDICATE, 11,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                        XPathExpression.INSTR_ELEMENT, 3,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_STEP_PREDICATE, 12,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                        XPathExpression.INSTR_ELEMENT, 3,
+                    }, QNames, Literals),
+                },
+                new int[] { -1, 0, -1, 2, -1, 4, 4, 6, 4, -1, -1, -1, -1, -1, -1, -1, -1, -1, },
+                new int[] { 1, 3, 5, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 9, 17, });
+        }
+        return SuffixTrie;
+    }
+
+    private static XPathAutomaton Automaton = null;
+
+    @Override
+    public XPathAutomaton getXPathAutomaton() {
+        synchronized (Lock) {
+            if (Automaton != null)
+                return Automaton;
+            Automaton = new XPathAutomaton(
+                new short[] { 2, 1, 1, 1, 3, 1, 3, 1, 3, 3, 1, 1, 1, 1, 1, 3, 3, 3, },
+                new short[] { -1, 0, 0, -1, 3, 0, 5, -1, 7, -1, -1, -1, -1, -1, -1, -1, -1, -1, },
+                new short[] { 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, },
+                new XPathExpression[] {
+                    null,
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_STEP_PREDICATE, 0,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_STEP_PREDICATE, 1,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ILITERAL, 1,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                    }, QNames, Literals),
+                    null,
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_STEP_PREDICATE, 2,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                    }, QNames, Literals),
+                    null,
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_STEP_PREDICATE, 3,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                    }, QNames, Literals),
+                    null,
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_STEP_PREDICATE, 4,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_STEP_PREDICATE, 5,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_STEP_PREDICATE, 6,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_STEP_PREDICATE, 7,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_STEP_PREDICATE, 8,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_STEP_PREDICATE, 9,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_STEP_PREDICATE, 10,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_STEP_PREDICATE, 11,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_STEP_PREDICATE, 12,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                    }, QNames, Literals),
+                },
+                new int[] { 1, 2, 4, 6, 8, 9, 10, 11, 12, 13, 14, 15, 16, 9, 17, },
+                QNames);
+        }
+        return Automaton;
+    }
+
+    @Override
+    public boolean hasCompiledMatchers() {
+        return true;
+    }
+
+    @Override
+    public boolean test(int exprIx, MatchContext ctx) {
+        switch (exprIx) {
+        case 0: return match0(ctx);
+        case 1: return match1(ctx);
+        case 2: return match2(ctx);
+        case 3: return match3(ctx);
+        case 4: return match4(ctx);
+        case 5: return match5(ctx);
+        case 6: return match6(ctx);
+        case 7: return match7(ctx);
+        case 8: return match8(ctx);
+        case 9: return match9(ctx);
+        case 10: return match10(ctx);
+        case 11: return match11(ctx);
+        case 12: return match12(ctx);
+        case 13: return match13(ctx);
+        case 14: return match14(ctx);
+        default: throw new HandlerCallError("unhandled test #" + exprIx);
+        }
+    }
+
+    // "ns1:map/ns2:key[ends-with(@value, 'c')] | ns1:map/ns2:key[starts-with(@value, 'c')]"
+    private static boolean match0(MatchContext ctx) {
+        int tagp = ctx.depth() - 1;
+        final int s0 = ctx.stepPredicate(tagp, 0);
+        if (s0 < 0)
+            return false;
+        if (!(s0 != 0))
+            return false;
+        if (tagp < 0 || ctx.tagAt(tagp) != 1)
+            return false;
+        tagp--;
+        if (tagp < 0 || ctx.tagAt(tagp) != 2)
+            return false;
+        tagp--;
+        return true;
+    }
+
+    // "ns1:map/ns2:key[ends-with(@value, 'c')] | ns1:map/ns2:key[starts-with(@value, 'c')]"
+    private static boolean match1(MatchContext ctx) {
+        int tagp = ctx.depth() - 1;
+        final int s0 = ctx.stepPredicate(tagp, 1);
+        if (s0 < 0)
+            return false;
+        if (!(s0 != 0))
+            return false;
+        if (tagp < 0 || ctx.tagAt(tagp) != 1)
+            return false;
+        tagp--;
+        if (tagp < 0 || ctx.tagAt(tagp) != 2)
+            return false;
+        tagp--;
+        return true;
+    }
+
+    // "ns2:key[captureattrs()]/value | ns1:map/ns2:key[ends-with(@value, 'bb')]/value | ns2:key[contains(@value, 'bb')]/value"
+    private static boolean match2(MatchContext ctx) {
+        int tagp = ctx.depth() - 1;
+        if (tagp < 0 || ctx.tagAt(tagp) != 3)
+            return false;
+        tagp--;
+        if (tagp < 0 || ctx.tagAt(tagp) != 1)
+            return false;
+        tagp--;
+        return true;
+    }
+
+    // "ns2:key[captureattrs()]/value | ns1:map/ns2:key[ends-with(@value, 'bb')]/value | ns2:key[contains(@value, 'bb')]/value"
+    private static boolean match3(MatchContext ctx) {
+        int tagp = ctx.depth() - 1;
+        if (tagp < 0 || ctx.tagAt(tagp) != 3)
+            return false;
+        tagp--;
+        final int s0 = ctx.stepPredicate(tagp, 2);
+        if (s0 < 0)
+            return false;
+        if (!(s0 != 0))
+            return false;
+        if (tagp < 0 || ctx.tagAt(tagp) != 1)
+            return false;
+        tagp--;
+        if (tagp < 0 || ctx.tagAt(tagp) != 2)
+            return false;
+        tagp--;
+        return true;
+    }
+
+    // "ns2:key[captureattrs()]/value | ns1:map/ns2:key[ends-with(@value, 'bb')]/value | ns2:key[contains(@value, 'bb')]/value"
+    private static boolean match4(MatchContext ctx) {
+        int tagp = ctx.depth() - 1;
+        if (tagp < 0 || ctx.tagAt(tagp) != 3)
+            return false;
+        tagp--;
+        final int s0 = ctx.stepPredicate(tagp, 3);
+        if (s0 < 0)
+            return false;
+        if (!(s0 != 0))
+            return false;
+        if (tagp < 0 || ctx.tagAt(tagp) != 1)
+            return false;
+        tagp--;
+        return true;
+    }
+
+    // "value[@label != '']"
+    private static boolean match5(MatchContext ctx) {
+        int tagp = ctx.depth() - 1;
+        final int s0 = ctx.stepPredicate(tagp, 4);
+        if (s0 < 0)
+            return false;
+        if (!(s0 != 0))
+            return false;
+        if (tagp < 0 || ctx.tagAt(tagp) != 3)
+            return false;
+        tagp--;
+        return true;
+    }
+
+    // "ns2:key[contains(@value, 'ab') or contains(@value, 'cc')]"
+    private static boolean match6(MatchContext ctx) {
+        int tagp = ctx.depth() - 1;
+        final int s0 = ctx.stepPredicate(tagp, 5);
+        if (s0 < 0)
+            return false;
+        if (!(s0 != 0))
+            return false;
+        if (tagp < 0 || ctx.tagAt(tagp) != 1)
+            return false;
+        tagp--;
+        return true;
+    }
+
+    // "ns2:key[matches(@value, 'ab*')]"
+    private static boolean match7(MatchContext ctx) {
+        int tagp = ctx.depth() - 1;
+        final int s0 = ctx.stepPredicate(tagp, 6);
+        if (s0 < 0)
+            return false;
+        if (!(s0 != 0))
+            return false;
+        if (tagp < 0 || ctx.tagAt(tagp) != 1)
+            return false;
+        tagp--;
+        return true;
+    }
+
+    // "ns2:key[matches(@value, 'b+') and starts-with(@value, 'b')]"
+    private static boolean match8(MatchContext ctx) {
+        int tagp = ctx.depth() - 1;
+        final int s0 = ctx.stepPredicate(tagp, 7);
+        if (s0 < 0)
+            return false;
+        if (!(s0 != 0))
+            return false;
+        if (tagp < 0 || ctx.tagAt(tagp) != 1)
+            return false;
+        tagp--;
+        return true;
+    }
+
+    // "ns2:key[matches(@value, '(ab)+b*|x')]"
+    private static boolean match9(MatchContext ctx) {
+        int tagp = ctx.depth() - 1;
+        final int s0 = ctx.stepPredicate(tagp, 8);
+        if (s0 < 0)
+            return false;
+        if (!(s0 != 0))
+            return false;
+        if (tagp < 0 || ctx.tagAt(tagp) != 1)
+            return false;
+        tagp--;
+        return true;
+    }
+
+    // "ns2:key[starts-with('bbbbbbbbb', @value)]"
+    private static boolean match10(MatchContext ctx) {
+        int tagp = ctx.depth() - 1;
+        final int s0 = ctx.stepPredicate(tagp, 9);
+        if (s0 < 0)
+            return false;
+        if (!(s0 != 0))
+            return false;
+        if (tagp < 0 || ctx.tagAt(tagp) != 1)
+            return false;
+        tagp--;
+        return true;
+    }
+
+    // "value[@label = '2']"
+    private static boolean match11(MatchContext ctx) {
+        int tagp = ctx.depth() - 1;
+        final int s0 = ctx.stepPredicate(tagp, 10);
+        if (s0 < 0)
+            return false;
+        if (!(s0 != 0))
+            return false;
+        if (tagp < 0 || ctx.tagAt(tagp) != 3)
+            return false;
+        tagp--;
+        return true;
+    }
+
+    // "value[@label = '3']"
+    private static boolean match12(MatchContext ctx) {
+        int tagp = ctx.depth() - 1;
+        final int s0 = ctx.stepPredicate(tagp, 11);
+        if (s0 < 0)
+            return false;
+        if (!(s0 != 0))
+            return false;
+        if (tagp < 0 || ctx.tagAt(tagp) != 3)
+            return false;
+        tagp--;
+        return true;
+    }
+
+    // "value[@label != '']"
+    private static boolean match13(MatchContext ctx) {
+        int tagp = ctx.depth() - 1;
+        final int s0 = ctx.stepPredicate(tagp, 4);
+        if (s0 < 0)
+            return false;
+        if (!(s0 != 0))
+            return false;
+        if (tagp < 0 || ctx.tagAt(tagp) != 3)
+            return false;
+        tagp--;
+        return true;
+    }
+
+    // "value[contains(@label, '3') or contains(@label, 'ab')]"
+    private static boolean match14(MatchContext ctx) {
+        int tagp = ctx.depth() - 1;
+        final int s0 = ctx.stepPredicate(tagp, 12);
+        if (s0 < 0)
+            return false;
+        if (!(s0 != 0))
+            return false;
+        if (tagp < 0 || ctx.tagAt(tagp) != 3)
+            return false;
+        tagp--;
+        return true;
+    }
+
 }
@@ -66,9 +66,14 @@ public class RuntimeTest3 extends AbstractAnnotatedHandler {
 			SAXParser parser = factory.newSAXParser();
 			
 			String testDataRoot = args[0];
-			RuntimeTest3 test1 = new RuntimeTest3();
+			// every test must pass with each of the expression engines
+			for (int engine : new int[] { ENGINE_INTERPRETER, ENGINE_COMPILED, ENGINE_AUTOMATON }) {
+				System.out.println("[INFO] Using XPath engine " + engine);
+				RuntimeTest3 test1 = new RuntimeTest3();
+				test1.setXPathEngine(engine);
 	
-			parser.parse(testDataRoot + "/testData3.xml", test1);
+				parser.parse(testDataRoot + "/testData3.xml", test1);
+			}
 		} catch (SAXException e) {
 			System.out.println("[FAIL] Got a SAXException: "+ e);
 		} catch (IOException e) {
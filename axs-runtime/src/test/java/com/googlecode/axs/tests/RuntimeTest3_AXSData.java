@@ -24,19 +24,29 @@
 
 package com.googlecode.axs.tests;
 
+import java.io.Writer;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.regex.Pattern;
 import javax.annotation.Generated;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 
 import com.googlecode.axs.AXSData;
 import com.googlecode.axs.AbstractAnnotatedHandler;
+import com.googlecode.axs.Base64DecodingWriter;
+import com.googlecode.axs.CapturedText;
 import com.googlecode.axs.HandlerCallError;
+import com.googlecode.axs.KeywordSet;
+import com.googlecode.axs.MatchContext;
 import com.googlecode.axs.QName;
+import com.googlecode.axs.SimplePattern;
+import com.googlecode.axs.TextValues;
+import com.googlecode.axs.XPathAutomaton;
 import com.googlecode.axs.XPathExpression;
+import com.googlecode.axs.XPathSuffixTrie;
 
 import com.googlecode.axs.tests.RuntimeTest3;
 
@@ -58,6 +68,19 @@ public class RuntimeTest3_AXSData implements AXSData {
         }
     }
 
+    @Override
+    public void callXPathText(AbstractAnnotatedHandler abstractHandler, int exprIx, CapturedText callbackArg) throws SAXException {
+        RuntimeTest3 handler = (RuntimeTest3) abstractHandler;
+
+        switch (exprIx) {
+        case 0: 
+            // "entry[@mod = 'moda'][@key = 'keyb']//value[@type='type2']"
+            handler.testPredicateRetrial(callbackArg.toString());
+            break;
+        default: throw new HandlerCallError("unhandled call #" + exprIx);
+        }
+    }
+
     @Override
     public void callXPathEnd(AbstractAnnotatedHandler abstractHandler, int exprIx) throws SAXException {
         RuntimeTest3 handler = (RuntimeTest3) abstractHandler;
@@ -76,9 +99,18 @@ public class RuntimeTest3_AXSData implements AXSData {
         }
     }
 
+    @Override
+    public Writer callXPathStream(AbstractAnnotatedHandler abstractHandler, int exprIx, Attributes callbackArg) throws SAXException {
+        RuntimeTest3 handler = (RuntimeTest3) abstractHandler;
+
+        switch (exprIx) {
+        default: throw new HandlerCallError("unhandled call #" + exprIx);
+        }
+    }
+
     @Override
     public int getAXSDataVersion() {
-        return 65536;
+        return 65552;
     }
 
     @Override
@@ -91,6 +123,11 @@ public class RuntimeTest3_AXSData implements AXSData {
         return 0;
     }
 
+    @Override
+    public int getNumberOfStreamExpressions() {
+        return 0;
+    }
+
     @Override
     public int getMaximumPredicateStackDepth() {
         return 1;
@@ -110,6 +147,17 @@ public class RuntimeTest3_AXSData implements AXSData {
         return Triggers;
     }
 
+    private static final int[][] TriggerArray0 = new int[][] { new int[] { 0, }, new int[] { 0, }, };
+
+    @Override
+    public int[][] getTriggers(String namespaceURI, String localName) {
+        switch (localName.length()) {
+        case 5:
+            return (localName.equals("value") && namespaceURI.equals("") ? TriggerArray0 : null);
+        }
+        return null;
+    }
+
     private static HashSet<String> AttributeCaptureTags = null;
 
     @Override
@@ -138,6 +186,21 @@ public class RuntimeTest3_AXSData implements AXSData {
         return PositionCaptureTags;
     }
 
+    private static int[][] AttributeProjections = null;
+
+    @Override
+    public int[][] getAttributeProjections() {
+        synchronized (Lock) {
+            if (AttributeProjections != null)
+                return AttributeProjections;
+            AttributeProjections = new int[][] {
+                new int[] { 1, 0, },
+                new int[] { 2, 3, 4, },
+            };
+        }
+        return AttributeProjections;
+    }
+
     private static String[] Literals = new String[] {
         "type2",
         "moda",
@@ -155,20 +218,14 @@ public class RuntimeTest3_AXSData implements AXSData {
     private static XPathExpression[] Expressions = new XPathExpression[] {
         new XPathExpression( // "entry[@mod = 'moda'][@key = 'keyb']//value[@type='type2']"
         new short[] {
-            XPathExpression.INSTR_ATTRIBUTE, 0,
-            XPathExpression.INSTR_LITERAL, 0,
-            XPathExpression.INSTR_EQ_STR,
+            XPathExpression.INSTR_STEP_PREDICATE, 0,
             XPathExpression.INSTR_TEST_PREDICATE,
             XPathExpression.INSTR_ELEMENT, 1,
             XPathExpression.INSTR_NONCONSECUTIVE_ELEMENT, 2,
-            XPathExpression.INSTR_ATTRIBUTE, 3,
-            XPathExpression.INSTR_LITERAL, 1,
-            XPathExpression.INSTR_EQ_STR,
-            XPathExpression.INSTR_SOFT_TEST_PREDICATE, -7,
-            XPathExpression.INSTR_ATTRIBUTE, 4,
-            XPathExpression.INSTR_LITERAL, 2,
-            XPathExpression.INSTR_EQ_STR,
-            XPathExpression.INSTR_SOFT_TEST_PREDICATE, -14,
+            XPathExpression.INSTR_STEP_PREDICATE, 1,
+            XPathExpression.INSTR_SOFT_TEST_PREDICATE, -4,
+            XPathExpression.INSTR_STEP_PREDICATE, 2,
+            XPathExpression.INSTR_SOFT_TEST_PREDICATE, -8,
             XPathExpression.INSTR_ELEMENT, 2,
         }, QNames, Literals),
     };
@@ -176,4 +233,202 @@ public class RuntimeTest3_AXSData implements AXSData {
     public XPathExpression[] getXPathExpressions() {
         return Expressions;
     }
+
+    private static final int[][] Limits = new int[][] {
+    };
+
+    @Override
+    public int[][] getLimits() {
+        return Limits;
+    }
+
+    @Override
+    public int[] getExclusiveGroups() {
+        return null;
+    }
+
+    private static final Pattern[] Patterns = new Pattern[] {
+        null,
+        null,
+        null,
+    };
+
+    @Override
+    public Pattern[] getPatterns() {
+        return Patterns;
+    }
+
+    private static final SimplePattern[] SimplePatterns = new SimplePattern[] {
+        null,
+        null,
+        null,
+    };
+
+    @Override
+    public SimplePattern[] getSimplePatterns() {
+        return SimplePatterns;
+    }
+
+    private static KeywordSet[] KeywordSets = null;
+
+    @Override
+    public KeywordSet[] getKeywordSets() {
+        synchronized (Lock) {
+            if (KeywordSets != null)
+                return KeywordSets;
+            KeywordSets = new KeywordSet[] {
+            };
+        }
+        return KeywordSets;
+    }
+
+    private static XPathExpression[] StepPredicates = null;
+
+    @Override
+    public XPathExpression[] getStepPredicates() {
+        synchronized (Lock) {
+            if (StepPredicates != null)
+                return StepPredicates;
+            StepPredicates = new XPathExpression[] {
+                new XPathExpression(new short[] {
+                    XPathExpression.INSTR_ATTRIBUTE, 0,
+                    XPathExpression.INSTR_LITERAL, 0,
+                    XPathExpression.INSTR_EQ_STR,
+                    XPathExpression.INSTR_TEST_PREDICATE,
+                    XPathExpression.INSTR_ELEMENT, 1,
+                }, QNames, Literals),
+                new XPathExpression(new short[] {
+                    XPathExpression.INSTR_ATTRIBUTE, 3,
+                    XPathExpression.INSTR_LITERAL, 1,
+                    XPathExpression.INSTR_EQ_STR,
+                    XPathExpression.INSTR_TEST_PREDICATE,
+                    XPathExpression.INSTR_ELEMENT, 2,
+                }, QNames, Literals),
+                new XPathExpression(new short[] {
+                    XPathExpression.INSTR_ATTRIBUTE, 4,
+                    XPathExpression.INSTR_LITERAL, 2,
+                    XPathExpression.INSTR_EQ_STR,
+                    XPathExpression.INSTR_TEST_PREDICATE,
+                    XPathExpression.INSTR_ELEMENT, 2,
+                }, QNames, Literals),
+            };
+        }
+        return StepPredicates;
+    }
+
+    @Override
+    public int[][] getReachablePrefixes() {
+        // some expressions are relative, so any element can lead to a match
+        return null;
+    }
+
+    private static XPathSuffixTrie SuffixTrie = null;
+
+    @Override
+    public XPathSuffixTrie getSuffixTrie() {
+        synchronized (Lock) {
+            if (SuffixTrie != null)
+                return SuffixTrie;
+            SuffixTrie = new XPathSuffixTrie(
+                new XPathExpression[] {
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_STEP_PREDICATE, 0,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                        XPathExpression.INSTR_ELEMENT, 1,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_NONCONSECUTIVE_ELEMENT, 2,
+                        XPathExpression.INSTR_STEP_PREDICATE, 1,
+                        XPathExpression.INSTR_SOFT_TEST_PREDICATE, -4,
+                        XPathExpression.INSTR_STEP_PREDICATE, 2,
+                        XPathExpression.INSTR_SOFT_TEST_PREDICATE, -8,
+                        XPathExpression.INSTR_ELEMENT, 2,
+                    }, QNames, Literals),
+                },
+                new int[] { -1, 0, },
+                new int[] { 1, });
+        }
+        return SuffixTrie;
+    }
+
+    private static XPathAutomaton Automaton = null;
+
+    @Override
+    public XPathAutomaton getXPathAutomaton() {
+        synchronized (Lock) {
+            if (Automaton != null)
+                return Automaton;
+            Automaton = new XPathAutomaton(
+                new short[] { 2, 1, },
+                new short[] { -1, 0, },
+                new short[] { XPathAutomaton.STATE_CARRIED, 0, },
+                new XPathExpression[] {
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_STEP_PREDICATE, 1,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                        XPathExpression.INSTR_STEP_PREDICATE, 2,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_STEP_PREDICATE, 0,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                    }, QNames, Literals),
+                },
+                new int[] { 1, },
+                QNames);
+        }
+        return Automaton;
+    }
+
+    @Override
+    public boolean hasCompiledMatchers() {
+        return true;
+    }
+
+    @Override
+    public boolean test(int exprIx, MatchContext ctx) {
+        switch (exprIx) {
+        case 0: return match0(ctx);
+        default: throw new HandlerCallError("unhandled test #" + exprIx);
+        }
+    }
+
+    // "entry[@mod = 'moda'][@key = 'keyb']//value[@type='type2']"
+    private static boolean match0(MatchContext ctx) {
+        int tagp = ctx.depth() - 1;
+        final int s0 = ctx.stepPredicate(tagp, 0);
+        if (s0 < 0)
+            return false;
+        if (!(s0 != 0))
+            return false;
+        if (tagp < 0 || ctx.tagAt(tagp) != 1)
+            return false;
+        tagp--;
+        while (true) {
+            while (tagp >= 0 && ctx.tagAt(tagp) != 2)
+                tagp--;
+            if (tagp < 0)
+                return false;
+            final int s1 = ctx.stepPredicate(tagp, 1);
+            if (s1 < 0)
+                return false;
+            if (!(s1 != 0)) {
+                if (--tagp < 0)
+                    return false;
+                continue;
+            }
+            final int s2 = ctx.stepPredicate(tagp, 2);
+            if (s2 < 0)
+                return false;
+            if (!(s2 != 0)) {
+                if (--tagp < 0)
+                    return false;
+                continue;
+            }
+            break;
+        }
+        tagp--;
+        return true;
+    }
+
 }
@@ -25,19 +25,26 @@
 package com.googlecode.axs.tests;
 
 import java.io.File;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.Map;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 
+import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 
 import com.googlecode.axs.AbstractAnnotatedHandler;
+import com.googlecode.axs.Base64DecodingWriter;
 import com.googlecode.axs.QName;
 import com.googlecode.axs.XPath;
 import com.googlecode.axs.XPathNamespaces;
+import com.googlecode.axs.XPathStream;
 
 public class RuntimeTest4 extends AbstractAnnotatedHandler {
 	@XPath("italic//bold")
@@ -52,6 +59,86 @@ public class RuntimeTest4 extends AbstractAnnotatedHandler {
 			System.out.println("[FAIL] Got unexpected text \"" + text + "\"");
 		}
 	}
+	
+	@XPath("text/italic/bold")
+	public void testCharSequence(CharSequence text) {
+		if ("Text 1 and text 2.".contentEquals(text)) {
+			System.out.println("[OK] Matched longest copy as a CharSequence.");
+		} else {
+			System.out.println("[FAIL] Got unexpected CharSequence \"" + text + "\"");
+		}
+	}
+	
+	@XPath("italic/bold/bold")
+	public void testCharRange(char[] buf, int offset, int length) {
+		String text = new String(buf, offset, length);
+		
+		if (text.equals("2")) {
+			System.out.println("[OK] Matched shortest copy as a char range.");
+		} else {
+			System.out.println("[FAIL] Got unexpected char range \"" + text + "\"");
+		}
+	}
+
+	@XPathStream("text/italic/bold")
+	public Writer testStream(Attributes attrs) {
+		return new StringWriter() {
+			private int mChunks = 0;
+			
+			@Override
+			public void write(char[] cbuf, int off, int len) {
+				mChunks++;
+				super.write(cbuf, off, len);
+			}
+			
+			@Override
+			public void close() {
+				if (toString().equals("Text 1 and text 2.") && mChunks > 1) {
+					System.out.println("[OK] Streamed longest copy.");
+				} else {
+					System.out.println("[FAIL] Got unexpected stream \"" + toString() + "\" in " + mChunks + " chunks");
+				}
+			}
+		};
+	}
+
+	@XPathStream("text/attachment")
+	public OutputStream testBase64Stream(Attributes attrs) {
+		return new ByteArrayOutputStream() {
+			@Override
+			public void close() {
+				if (new String(toByteArray()).equals("Hello, AXS!")) {
+					System.out.println("[OK] Decoded base64 stream.");
+				} else {
+					System.out.println("[FAIL] Got unexpected decoded stream \"" + new String(toByteArray()) + "\"");
+				}
+			}
+		};
+	}
+
+	// truncated base64 is an error, but the OutputStream still gets what was decoded and is closed
+	private static void testTruncatedBase64() {
+		final boolean[] closed = { false };
+		final ByteArrayOutputStream out = new ByteArrayOutputStream() {
+			@Override
+			public void close() {
+				closed[0] = true;
+			}
+		};
+		final Writer decoder = new Base64DecodingWriter(out);
+		
+		try {
+			decoder.write("SGVsbG8sI");
+			decoder.close();
+			System.out.println("[FAIL] Truncated base64 was not rejected");
+		} catch (IOException e) {
+			if (closed[0] && new String(out.toByteArray()).equals("Hello,")) {
+				System.out.println("[OK] Closed truncated base64 stream.");
+			} else {
+				System.out.println("[FAIL] Got truncated stream \"" + new String(out.toByteArray()) + "\", closed " + closed[0]);
+			}
+		}
+	}
 
 	public static void main(String[] args) {
 		SAXParserFactory factory = SAXParserFactory.newInstance();
@@ -62,15 +149,28 @@ public class RuntimeTest4 extends AbstractAnnotatedHandler {
 			System.exit(1);
 		}
 		
-		System.out.println("[INFO] Should get exactly 3 [OK]s.");
+		System.out.println("[INFO] Should get exactly 7 [OK]s with each engine, and with spilled captures, and 1 more for truncated base64.");
 		
 		try {
 			SAXParser parser = factory.newSAXParser();
 			
 			String testDataRoot = args[0];
-			RuntimeTest4 test1 = new RuntimeTest4();
+			// every test must pass with each of the expression engines
+			for (int engine : new int[] { ENGINE_INTERPRETER, ENGINE_COMPILED, ENGINE_AUTOMATON }) {
+				System.out.println("[INFO] Using XPath engine " + engine);
+				RuntimeTest4 test1 = new RuntimeTest4();
+				test1.setXPathEngine(engine);
 	
-			parser.parse(testDataRoot + "/testData4.xml", test1);
+				parser.parse(testDataRoot + "/testData4.xml", test1);
+			}
+			
+			// captures must come out the same when they are spilled to a file
+			System.out.println("[INFO] Spilling captures of more than 4 characters");
+			RuntimeTest4 spillTest = new RuntimeTest4();
+			spillTest.setCaptureSpillThreshold(4);
+			parser.parse(testDataRoot + "/testData4.xml", spillTest);
+			
+			testTruncatedBase64();
 		} catch (SAXException e) {
 			System.out.println("[FAIL] Got a SAXException: "+ e);
 		} catch (IOException e) {
@@ -24,19 +24,29 @@
 
 package com.googlecode.axs.tests;
 
+import java.io.Writer;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.regex.Pattern;
 import javax.annotation.Generated;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 
 import com.googlecode.axs.AXSData;
 import com.googlecode.axs.AbstractAnnotatedHandler;
+import com.googlecode.axs.Base64DecodingWriter;
+import com.googlecode.axs.CapturedText;
 import com.googlecode.axs.HandlerCallError;
+import com.googlecode.axs.KeywordSet;
+import com.googlecode.axs.MatchContext;
 import com.googlecode.axs.QName;
+import com.googlecode.axs.SimplePattern;
+import com.googlecode.axs.TextValues;
+import com.googlecode.axs.XPathAutomaton;
 import com.googlecode.axs.XPathExpression;
+import com.googlecode.axs.XPathSuffixTrie;
 
 import com.googlecode.axs.tests.RuntimeTest4;
 
@@ -51,6 +61,14 @@ public class RuntimeTest4_AXSData implements AXSData {
 
         switch (exprIx) {
         case 0: 
+            // "italic/bold/bold"
+            handler.testCharRange(callbackArg.toCharArray(), 0, callbackArg.length());
+            break;
+        case 1: 
+            // "text/italic/bold"
+            handler.testCharSequence(callbackArg);
+            break;
+        case 2: 
             // "italic//bold"
             handler.testPredicateRetrial(callbackArg);
             break;
@@ -58,6 +76,27 @@ public class RuntimeTest4_AXSData implements AXSData {
         }
     }
 
+    @Override
+    public void callXPathText(AbstractAnnotatedHandler abstractHandler, int exprIx, CapturedText callbackArg) throws SAXException {
+        RuntimeTest4 handler = (RuntimeTest4) abstractHandler;
+
+        switch (exprIx) {
+        case 0: 
+            // "italic/bold/bold"
+            handler.testCharRange(callbackArg.array(), callbackArg.offset(), callbackArg.length());
+            break;
+        case 1: 
+            // "text/italic/bold"
+            handler.testCharSequence(callbackArg);
+            break;
+        case 2: 
+            // "italic//bold"
+            handler.testPredicateRetrial(callbackArg.toString());
+            break;
+        default: throw new HandlerCallError("unhandled call #" + exprIx);
+        }
+    }
+
     @Override
     public void callXPathEnd(AbstractAnnotatedHandler abstractHandler, int exprIx) throws SAXException {
         RuntimeTest4 handler = (RuntimeTest4) abstractHandler;
@@ -76,14 +115,29 @@ public class RuntimeTest4_AXSData implements AXSData {
         }
     }
 
+    @Override
+    public Writer callXPathStream(AbstractAnnotatedHandler abstractHandler, int exprIx, Attributes callbackArg) throws SAXException {
+        RuntimeTest4 handler = (RuntimeTest4) abstractHandler;
+
+        switch (exprIx) {
+        case 3: 
+            // "text/attachment"
+            return Base64DecodingWriter.wrap(handler.testBase64Stream(callbackArg));
+        case 4: 
+            // "text/italic/bold"
+            return handler.testStream(callbackArg);
+        default: throw new HandlerCallError("unhandled call #" + exprIx);
+        }
+    }
+
     @Override
     public int getAXSDataVersion() {
-        return 65536;
+        return 65552;
     }
 
     @Override
     public int getNumberOfCapturingExpressions() {
-        return 1;
+        return 3;
     }
 
     @Override
@@ -91,6 +145,11 @@ public class RuntimeTest4_AXSData implements AXSData {
         return 0;
     }
 
+    @Override
+    public int getNumberOfStreamExpressions() {
+        return 2;
+    }
+
     @Override
     public int getMaximumPredicateStackDepth() {
         return 0;
@@ -104,12 +163,28 @@ public class RuntimeTest4_AXSData implements AXSData {
             if (Triggers != null)
                 return Triggers;
             Triggers = new HashMap<String, int[]>();
+            Triggers.put("attachment", 
+                    new int[] { 3, });
             Triggers.put("bold", 
-                    new int[] { 0, });
+                    new int[] { 0, 1, 2, 4, });
         }
         return Triggers;
     }
 
+    private static final int[][] TriggerArray0 = new int[][] { new int[] { 3, }, null, };
+    private static final int[][] TriggerArray1 = new int[][] { new int[] { 0, 1, 2, 4, }, new int[] { 0, 1, 2, }, };
+
+    @Override
+    public int[][] getTriggers(String namespaceURI, String localName) {
+        switch (localName.length()) {
+        case 4:
+            return (localName.equals("bold") && namespaceURI.equals("") ? TriggerArray1 : null);
+        case 10:
+            return (localName.equals("attachment") && namespaceURI.equals("") ? TriggerArray0 : null);
+        }
+        return null;
+    }
+
     private static HashSet<String> AttributeCaptureTags = null;
 
     @Override
@@ -136,24 +211,283 @@ public class RuntimeTest4_AXSData implements AXSData {
         return PositionCaptureTags;
     }
 
+    private static int[][] AttributeProjections = null;
+
+    @Override
+    public int[][] getAttributeProjections() {
+        synchronized (Lock) {
+            if (AttributeProjections != null)
+                return AttributeProjections;
+            AttributeProjections = new int[][] {
+            };
+        }
+        return AttributeProjections;
+    }
+
     private static String[] Literals = new String[] {
     };
 
     private static QName[] QNames = new QName[] {
         new QName("", "bold"),
         new QName("", "italic"),
+        new QName("", "text"),
+        new QName("", "attachment"),
     };
 
     private static XPathExpression[] Expressions = new XPathExpression[] {
+        new XPathExpression( // "italic/bold/bold"
+        new short[] {
+            XPathExpression.INSTR_ELEMENT, 0,
+            XPathExpression.INSTR_ELEMENT, 0,
+            XPathExpression.INSTR_ELEMENT, 1,
+        }, QNames, Literals),
+        new XPathExpression( // "text/italic/bold"
+        new short[] {
+            XPathExpression.INSTR_ELEMENT, 0,
+            XPathExpression.INSTR_ELEMENT, 1,
+            XPathExpression.INSTR_ELEMENT, 2,
+        }, QNames, Literals),
         new XPathExpression( // "italic//bold"
         new short[] {
             XPathExpression.INSTR_ELEMENT, 0,
             XPathExpression.INSTR_NONCONSECUTIVE_ELEMENT, 1,
             XPathExpression.INSTR_ELEMENT, 1,
         }, QNames, Literals),
+        new XPathExpression( // "text/attachment"
+        new short[] {
+            XPathExpression.INSTR_ELEMENT, 3,
+            XPathExpression.INSTR_ELEMENT, 2,
+        }, QNames, Literals),
+        new XPathExpression( // "text/italic/bold"
+        new short[] {
+            XPathExpression.INSTR_ELEMENT, 0,
+            XPathExpression.INSTR_ELEMENT, 1,
+            XPathExpression.INSTR_ELEMENT, 2,
+        }, QNames, Literals),
     };
 
     public XPathExpression[] getXPathExpressions() {
         return Expressions;
     }
+
+    private static final int[][] Limits = new int[][] {
+    };
+
+    @Override
+    public int[][] getLimits() {
+        return Limits;
+    }
+
+    @Override
+    public int[] getExclusiveGroups() {
+        return null;
+    }
+
+    private static final Pattern[] Patterns = new Pattern[] {
+    };
+
+    @Override
+    public Pattern[] getPatterns() {
+        return Patterns;
+    }
+
+    private static final SimplePattern[] SimplePatterns = new SimplePattern[] {
+    };
+
+    @Override
+    public SimplePattern[] getSimplePatterns() {
+        return SimplePatterns;
+    }
+
+    private static KeywordSet[] KeywordSets = null;
+
+    @Override
+    public KeywordSet[] getKeywordSets() {
+        synchronized (Lock) {
+            if (KeywordSets != null)
+                return KeywordSets;
+            KeywordSets = new KeywordSet[] {
+            };
+        }
+        return KeywordSets;
+    }
+
+    private static XPathExpression[] StepPredicates = null;
+
+    @Override
+    public XPathExpression[] getStepPredicates() {
+        synchronized (Lock) {
+            if (StepPredicates != null)
+                return StepPredicates;
+            StepPredicates = new XPathExpression[] {
+            };
+        }
+        return StepPredicates;
+    }
+
+    @Override
+    public int[][] getReachablePrefixes() {
+        // some expressions are relative, so any element can lead to a match
+        return null;
+    }
+
+    private static XPathSuffixTrie SuffixTrie = null;
+
+    @Override
+    public XPathSuffixTrie getSuffixTrie() {
+        synchronized (Lock) {
+            if (SuffixTrie != null)
+                return SuffixTrie;
+            SuffixTrie = new XPathSuffixTrie(
+                new XPathExpression[] {
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 0,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 0,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 1,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 1,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 2,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_NONCONSECUTIVE_ELEMENT, 1,
+                        XPathExpression.INSTR_ELEMENT, 1,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 3,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 2,
+                    }, QNames, Literals),
+                },
+                new int[] { -1, 0, 1, 0, 3, 0, -1, 6, },
+                new int[] { 2, 4, 5, 7, 4, });
+        }
+        return SuffixTrie;
+    }
+
+    private static XPathAutomaton Automaton = null;
+
+    @Override
+    public XPathAutomaton getXPathAutomaton() {
+        synchronized (Lock) {
+            if (Automaton != null)
+                return Automaton;
+            Automaton = new XPathAutomaton(
+                new short[] { 1, 0, 0, 2, 1, 0, 1, 0, 3, },
+                new short[] { -1, 0, 1, -1, 3, 4, -1, 6, 3, },
+                new short[] { 0, 0, 0, 0, 0, 0, XPathAutomaton.STATE_CARRIED, 0, 0, },
+                new XPathExpression[] {
+                    null,
+                    null,
+                    null,
+                    null,
+                    null,
+                    null,
+                    null,
+                    null,
+                    null,
+                },
+                new int[] { 2, 5, 7, 8, 5, },
+                QNames);
+        }
+        return Automaton;
+    }
+
+    @Override
+    public boolean hasCompiledMatchers() {
+        return true;
+    }
+
+    @Override
+    public boolean test(int exprIx, MatchContext ctx) {
+        switch (exprIx) {
+        case 0: return match0(ctx);
+        case 1: return match1(ctx);
+        case 2: return match2(ctx);
+        case 3: return match3(ctx);
+        case 4: return match4(ctx);
+        default: throw new HandlerCallError("unhandled test #" + exprIx);
+        }
+    }
+
+    // "italic/bold/bold"
+    private static boolean match0(MatchContext ctx) {
+        int tagp = ctx.depth() - 1;
+        if (tagp < 0 || ctx.tagAt(tagp) != 0)
+            return false;
+        tagp--;
+        if (tagp < 0 || ctx.tagAt(tagp) != 0)
+            return false;
+        tagp--;
+        if (tagp < 0 || ctx.tagAt(tagp) != 1)
+            return false;
+        tagp--;
+        return true;
+    }
+
+    // "text/italic/bold"
+    private static boolean match1(MatchContext ctx) {
+        int tagp = ctx.depth() - 1;
+        if (tagp < 0 || ctx.tagAt(tagp) != 0)
+            return false;
+        tagp--;
+        if (tagp < 0 || ctx.tagAt(tagp) != 1)
+            return false;
+        tagp--;
+        if (tagp < 0 || ctx.tagAt(tagp) != 2)
+            return false;
+        tagp--;
+        return true;
+    }
+
+    // "italic//bold"
+    private static boolean match2(MatchContext ctx) {
+        int tagp = ctx.depth() - 1;
+        if (tagp < 0 || ctx.tagAt(tagp) != 0)
+            return false;
+        tagp--;
+        while (tagp >= 0 && ctx.tagAt(tagp) != 1)
+            tagp--;
+        if (tagp < 0)
+            return false;
+        if (tagp < 0 || ctx.tagAt(tagp) != 1)
+            return false;
+        tagp--;
+        return true;
+    }
+
+    // "text/attachment"
+    private static boolean match3(MatchContext ctx) {
+        int tagp = ctx.depth() - 1;
+        if (tagp < 0 || ctx.tagAt(tagp) != 3)
+            return false;
+        tagp--;
+        if (tagp < 0 || ctx.tagAt(tagp) != 2)
+            return false;
+        tagp--;
+        return true;
+    }
+
+    // "text/italic/bold"
+    private static boolean match4(MatchContext ctx) {
+        int tagp = ctx.depth() - 1;
+        if (tagp < 0 || ctx.tagAt(tagp) != 0)
+            return false;
+        tagp--;
+        if (tagp < 0 || ctx.tagAt(tagp) != 1)
+            return false;
+        tagp--;
+        if (tagp < 0 || ctx.tagAt(tagp) != 2)
+            return false;
+        tagp--;
+        return true;
+    }
+
 }
@@ -0,0 +1,145 @@
+/*
+ * This file is part of AXS, Annotation-XPath for SAX.
+ * 
+ * Copyright (c) 2013 Benjamin K. Stuhl
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.googlecode.axs.tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import com.googlecode.axs.AbstractAnnotatedHandler;
+import com.googlecode.axs.HandlerCallError;
+import com.googlecode.axs.XPath;
+
+public class RuntimeTest5 extends AbstractAnnotatedHandler {
+	public enum Colour { RED, GREEN, BLUE };
+	
+	private int mCounts = 0, mRatios = 0, mFlags = 0;
+	
+	private void expect(Object expectation, Object value) {
+		if (expectation.equals(value)) {
+			System.out.println("[OK] expect " + expectation);
+		} else {
+			System.out.println("[FAIL] expect " + expectation + ", got " + value);
+		}
+	}
+	
+	@XPath("values/count")
+	public void testInt(int value) {
+		expect((mCounts++ == 0 ? 42 : Integer.MIN_VALUE), value);
+	}
+	
+	@XPath("values/total")
+	public void testLong(long value) {
+		expect(9007199254740993L, value);
+	}
+	
+	@XPath("values/ratio")
+	public void testDouble(double value) {
+		final String[] ratios = { "0.1", "6.02214076e23", "1.00000000000000000001" };
+		expect(Double.parseDouble(ratios[mRatios++]), value);
+	}
+	
+	@XPath("values/flag")
+	public void testBoolean(boolean value) {
+		expect(mFlags++ == 0, value);
+	}
+	
+	@XPath("values/price")
+	public void testBigDecimal(BigDecimal value) {
+		expect(new BigDecimal("19.99"), value);
+	}
+	
+	@XPath("values/colour")
+	public void testEnum(Colour value) {
+		expect(Colour.GREEN, value);
+	}
+	
+	@XPath("values/broken")
+	public void testMalformed(int value) {
+		System.out.println("[FAIL] converted malformed text to " + value);
+	}
+
+	public static void main(String[] args) {
+		SAXParserFactory factory = SAXParserFactory.newInstance();
+		factory.setNamespaceAware(true);
+		
+		if (! (new File(args[0] + "/testData5.xml")).exists()) {
+			System.out.println("Usage: RuntimeTest5 path/to/testData");
+			System.exit(1);
+		}
+		
+		System.out.println("[INFO] Should get exactly 12 [OK]s with each engine.");
+		
+		try {
+			SAXParser parser = factory.newSAXParser();
+			
+			String testDataRoot = args[0];
+			// every test must pass with each of the expression engines
+			for (int engine : new int[] { ENGINE_INTERPRETER, ENGINE_COMPILED, ENGINE_AUTOMATON }) {
+				System.out.println("[INFO] Using XPath engine " + engine);
+				RuntimeTest5 test1 = new RuntimeTest5();
+				test1.setXPathEngine(engine);
+	
+				parser.parse(testDataRoot + "/testData5.xml", test1);
+				
+				try {
+					parser.parse(new InputSource(new StringReader("<values><broken>12x</broken></values>")), test1);
+					System.out.println("[FAIL] Malformed text was accepted");
+				} catch (HandlerCallError e) {
+					System.out.println("[OK] Malformed text was rejected");
+				}
+				
+				// the error message quotes only the beginning of a long text
+				StringBuilder longText = new StringBuilder("<values><broken>");
+				for (int i = 0; i < 10000; i++)
+					longText.append('x');
+				longText.append("</broken></values>");
+				try {
+					parser.parse(new InputSource(new StringReader(longText.toString())), test1);
+					System.out.println("[FAIL] Long malformed text was accepted");
+				} catch (HandlerCallError e) {
+					if (e.getMessage().length() < 200)
+						System.out.println("[OK] Long malformed text was rejected briefly");
+					else
+						System.out.println("[FAIL] Error message is " + e.getMessage().length() + " chars long");
+				}
+			}
+		} catch (SAXException e) {
+			System.out.println("[FAIL] Got a SAXException: "+ e);
+		} catch (IOException e) {
+			System.out.println("Usage: RuntimeTest5 path/to/testData");
+		} catch (ParserConfigurationException e) {
+			System.out.println("[FAIL] Got a ParserConfigurationException: " + e);
+		}
+	}
+}
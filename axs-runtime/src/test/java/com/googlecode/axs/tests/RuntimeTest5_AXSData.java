@@ -0,0 +1,591 @@
+/* This class is autogenerated by the AXS compiler. Do not edit! */
+
+/* **********************************************************************************/
+/* Copyright (c) 2013 Benjamin K. Stuhl                                             */
+/*                                                                                  */
+/* Permission is hereby granted, free of charge, to any person obtaining a copy     */
+/* of this software and associated documentation files (the "Software"), to deal    */
+/* in the Software without restriction, including without limitation the rights     */
+/* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies */
+/* of the Software, and to permit persons to whom the Software is furnished to do   */
+/* so, subject to the following conditions:                                         */
+/*                                                                                  */
+/* The above copyright notice and this permission notice shall be included in all   */
+/* copies or substantial portions of the Software.                                  */
+/*                                                                                  */
+/* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR       */
+/* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,         */
+/* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE      */
+/* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER           */
+/* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,    */
+/* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE    */
+/* SOFTWARE.                                                                        */
+/* **********************************************************************************/
+
+package com.googlecode.axs.tests;
+
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import javax.annotation.Generated;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+
+import com.googlecode.axs.AXSData;
+import com.googlecode.axs.AbstractAnnotatedHandler;
+import com.googlecode.axs.Base64DecodingWriter;
+import com.googlecode.axs.CapturedText;
+import com.googlecode.axs.HandlerCallError;
+import com.googlecode.axs.KeywordSet;
+import com.googlecode.axs.MatchContext;
+import com.googlecode.axs.QName;
+import com.googlecode.axs.SimplePattern;
+import com.googlecode.axs.TextValues;
+import com.googlecode.axs.XPathAutomaton;
+import com.googlecode.axs.XPathExpression;
+import com.googlecode.axs.XPathSuffixTrie;
+
+import com.googlecode.axs.tests.RuntimeTest5;
+
+
+@Generated(value = { "com.googlecode.axs.AnnotationProcessor", "com.googlecode.axs.tests.RuntimeTest5"})
+public class RuntimeTest5_AXSData implements AXSData {
+    private static Object Lock = new Object();
+
+    @Override
+    public void callXPathText(AbstractAnnotatedHandler abstractHandler, int exprIx, String callbackArg) throws SAXException {
+        RuntimeTest5 handler = (RuntimeTest5) abstractHandler;
+
+        switch (exprIx) {
+        case 0: 
+            // "values/price"
+            handler.testBigDecimal(TextValues.parseBigDecimal(callbackArg));
+            break;
+        case 1: 
+            // "values/flag"
+            handler.testBoolean(TextValues.parseBoolean(callbackArg));
+            break;
+        case 2: 
+            // "values/ratio"
+            handler.testDouble(TextValues.parseDouble(callbackArg));
+            break;
+        case 3: 
+            // "values/colour"
+            handler.testEnum(TextValues.parseEnum(com.googlecode.axs.tests.RuntimeTest5.Colour.class, callbackArg));
+            break;
+        case 4: 
+            // "values/count"
+            handler.testInt(TextValues.parseInt(callbackArg));
+            break;
+        case 5: 
+            // "values/total"
+            handler.testLong(TextValues.parseLong(callbackArg));
+            break;
+        case 6: 
+            // "values/broken"
+            handler.testMalformed(TextValues.parseInt(callbackArg));
+            break;
+        default: throw new HandlerCallError("unhandled call #" + exprIx);
+        }
+    }
+
+    @Override
+    public void callXPathText(AbstractAnnotatedHandler abstractHandler, int exprIx, CapturedText callbackArg) throws SAXException {
+        RuntimeTest5 handler = (RuntimeTest5) abstractHandler;
+
+        switch (exprIx) {
+        case 0: 
+            // "values/price"
+            handler.testBigDecimal(TextValues.parseBigDecimal(callbackArg));
+            break;
+        case 1: 
+            // "values/flag"
+            handler.testBoolean(TextValues.parseBoolean(callbackArg));
+            break;
+        case 2: 
+            // "values/ratio"
+            handler.testDouble(TextValues.parseDouble(callbackArg));
+            break;
+        case 3: 
+            // "values/colour"
+            handler.testEnum(TextValues.parseEnum(com.googlecode.axs.tests.RuntimeTest5.Colour.class, callbackArg));
+            break;
+        case 4: 
+            // "values/count"
+            handler.testInt(TextValues.parseInt(callbackArg));
+            break;
+        case 5: 
+            // "values/total"
+            handler.testLong(TextValues.parseLong(callbackArg));
+            break;
+        case 6: 
+            // "values/broken"
+            handler.testMalformed(TextValues.parseInt(callbackArg));
+            break;
+        default: throw new HandlerCallError("unhandled call #" + exprIx);
+        }
+    }
+
+    @Override
+    public void callXPathEnd(AbstractAnnotatedHandler abstractHandler, int exprIx) throws SAXException {
+        RuntimeTest5 handler = (RuntimeTest5) abstractHandler;
+
+        switch (exprIx) {
+        default: throw new HandlerCallError("unhandled call #" + exprIx);
+        }
+    }
+
+    @Override
+    public void callXPathStart(AbstractAnnotatedHandler abstractHandler, int exprIx, Attributes callbackArg) throws SAXException {
+        RuntimeTest5 handler = (RuntimeTest5) abstractHandler;
+
+        switch (exprIx) {
+        default: throw new HandlerCallError("unhandled call #" + exprIx);
+        }
+    }
+
+    @Override
+    public Writer callXPathStream(AbstractAnnotatedHandler abstractHandler, int exprIx, Attributes callbackArg) throws SAXException {
+        RuntimeTest5 handler = (RuntimeTest5) abstractHandler;
+
+        switch (exprIx) {
+        default: throw new HandlerCallError("unhandled call #" + exprIx);
+        }
+    }
+
+    @Override
+    public int getAXSDataVersion() {
+        return 65552;
+    }
+
+    @Override
+    public int getNumberOfCapturingExpressions() {
+        return 7;
+    }
+
+    @Override
+    public int getNumberOfEndExpressions() {
+        return 0;
+    }
+
+    @Override
+    public int getNumberOfStreamExpressions() {
+        return 0;
+    }
+
+    @Override
+    public int getMaximumPredicateStackDepth() {
+        return 0;
+    }
+
+    private static HashMap<String, int[]> Triggers = null;
+
+    @Override
+    public Map<String, int[]> getTriggerTags() {
+        synchronized (Lock) {
+            if (Triggers != null)
+                return Triggers;
+            Triggers = new HashMap<String, int[]>();
+            Triggers.put("broken", 
+                    new int[] { 6, });
+            Triggers.put("colour", 
+                    new int[] { 3, });
+            Triggers.put("total", 
+                    new int[] { 5, });
+            Triggers.put("flag", 
+                    new int[] { 1, });
+            Triggers.put("price", 
+                    new int[] { 0, });
+            Triggers.put("count", 
+                    new int[] { 4, });
+            Triggers.put("ratio", 
+                    new int[] { 2, });
+        }
+        return Triggers;
+    }
+
+    private static final int[][] TriggerArray0 = new int[][] { new int[] { 6, }, new int[] { 6, }, };
+    private static final int[][] TriggerArray1 = new int[][] { new int[] { 3, }, new int[] { 3, }, };
+    private static final int[][] TriggerArray2 = new int[][] { new int[] { 4, }, new int[] { 4, }, };
+    private static final int[][] TriggerArray3 = new int[][] { new int[] { 1, }, new int[] { 1, }, };
+    private static final int[][] TriggerArray4 = new int[][] { new int[] { 0, }, new int[] { 0, }, };
+    private static final int[][] TriggerArray5 = new int[][] { new int[] { 2, }, new int[] { 2, }, };
+    private static final int[][] TriggerArray6 = new int[][] { new int[] { 5, }, new int[] { 5, }, };
+
+    @Override
+    public int[][] getTriggers(String namespaceURI, String localName) {
+        switch (localName.length()) {
+        case 4:
+            return (localName.equals("flag") && namespaceURI.equals("") ? TriggerArray3 : null);
+        case 5:
+            switch (localName.charAt(0)) {
+            case 'c':
+                return (localName.equals("count") && namespaceURI.equals("") ? TriggerArray2 : null);
+            case 'p':
+                return (localName.equals("price") && namespaceURI.equals("") ? TriggerArray4 : null);
+            case 'r':
+                return (localName.equals("ratio") && namespaceURI.equals("") ? TriggerArray5 : null);
+            case 't':
+                return (localName.equals("total") && namespaceURI.equals("") ? TriggerArray6 : null);
+            }
+            return null;
+        case 6:
+            switch (localName.charAt(0)) {
+            case 'b':
+                return (localName.equals("broken") && namespaceURI.equals("") ? TriggerArray0 : null);
+            case 'c':
+                return (localName.equals("colour") && namespaceURI.equals("") ? TriggerArray1 : null);
+            }
+            return null;
+        }
+        return null;
+    }
+
+    private static HashSet<String> AttributeCaptureTags = null;
+
+    @Override
+    public Set<String> getAttributeCaptureTags() {
+        synchronized (Lock) {
+            if (AttributeCaptureTags != null)
+                return AttributeCaptureTags;
+
+            AttributeCaptureTags = new HashSet<String>();
+        }
+        return AttributeCaptureTags;
+    }
+
+    private static HashSet<String> PositionCaptureTags = null;
+
+    @Override
+    public Set<String> getPositionCaptureTags() {
+        synchronized (Lock) {
+            if (PositionCaptureTags != null)
+                return PositionCaptureTags;
+
+            PositionCaptureTags = new HashSet<String>();
+        }
+        return PositionCaptureTags;
+    }
+
+    private static int[][] AttributeProjections = null;
+
+    @Override
+    public int[][] getAttributeProjections() {
+        synchronized (Lock) {
+            if (AttributeProjections != null)
+                return AttributeProjections;
+            AttributeProjections = new int[][] {
+            };
+        }
+        return AttributeProjections;
+    }
+
+    private static String[] Literals = new String[] {
+    };
+
+    private static QName[] QNames = new QName[] {
+        new QName("", "price"),
+        new QName("", "values"),
+        new QName("", "flag"),
+        new QName("", "ratio"),
+        new QName("", "colour"),
+        new QName("", "count"),
+        new QName("", "total"),
+        new QName("", "broken"),
+    };
+
+    private static XPathExpression[] Expressions = new XPathExpression[] {
+        new XPathExpression( // "values/price"
+        new short[] {
+            XPathExpression.INSTR_ELEMENT, 0,
+            XPathExpression.INSTR_ELEMENT, 1,
+        }, QNames, Literals),
+        new XPathExpression( // "values/flag"
+        new short[] {
+            XPathExpression.INSTR_ELEMENT, 2,
+            XPathExpression.INSTR_ELEMENT, 1,
+        }, QNames, Literals),
+        new XPathExpression( // "values/ratio"
+        new short[] {
+            XPathExpression.INSTR_ELEMENT, 3,
+            XPathExpression.INSTR_ELEMENT, 1,
+        }, QNames, Literals),
+        new XPathExpression( // "values/colour"
+        new short[] {
+            XPathExpression.INSTR_ELEMENT, 4,
+            XPathExpression.INSTR_ELEMENT, 1,
+        }, QNames, Literals),
+        new XPathExpression( // "values/count"
+        new short[] {
+            XPathExpression.INSTR_ELEMENT, 5,
+            XPathExpression.INSTR_ELEMENT, 1,
+        }, QNames, Literals),
+        new XPathExpression( // "values/total"
+        new short[] {
+            XPathExpression.INSTR_ELEMENT, 6,
+            XPathExpression.INSTR_ELEMENT, 1,
+        }, QNames, Literals),
+        new XPathExpression( // "values/broken"
+        new short[] {
+            XPathExpression.INSTR_ELEMENT, 7,
+            XPathExpression.INSTR_ELEMENT, 1,
+        }, QNames, Literals),
+    };
+
+    public XPathExpression[] getXPathExpressions() {
+        return Expressions;
+    }
+
+    private static final int[][] Limits = new int[][] {
+    };
+
+    @Override
+    public int[][] getLimits() {
+        return Limits;
+    }
+
+    @Override
+    public int[] getExclusiveGroups() {
+        return null;
+    }
+
+    private static final Pattern[] Patterns = new Pattern[] {
+    };
+
+    @Override
+    public Pattern[] getPatterns() {
+        return Patterns;
+    }
+
+    private static final SimplePattern[] SimplePatterns = new SimplePattern[] {
+    };
+
+    @Override
+    public SimplePattern[] getSimplePatterns() {
+        return SimplePatterns;
+    }
+
+    private static KeywordSet[] KeywordSets = null;
+
+    @Override
+    public KeywordSet[] getKeywordSets() {
+        synchronized (Lock) {
+            if (KeywordSets != null)
+                return KeywordSets;
+            KeywordSets = new KeywordSet[] {
+            };
+        }
+        return KeywordSets;
+    }
+
+    private static XPathExpression[] StepPredicates = null;
+
+    @Override
+    public XPathExpression[] getStepPredicates() {
+        synchronized (Lock) {
+            if (StepPredicates != null)
+                return StepPredicates;
+            StepPredicates = new XPathExpression[] {
+            };
+        }
+        return StepPredicates;
+    }
+
+    @Override
+    public int[][] getReachablePrefixes() {
+        // some expressions are relative, so any element can lead to a match
+        return null;
+    }
+
+    private static XPathSuffixTrie SuffixTrie = null;
+
+    @Override
+    public XPathSuffixTrie getSuffixTrie() {
+        synchronized (Lock) {
+            if (SuffixTrie != null)
+                return SuffixTrie;
+            SuffixTrie = new XPathSuffixTrie(
+                new XPathExpression[] {
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 0,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 1,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 2,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 1,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 3,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 1,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 4,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 1,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 5,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 1,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 6,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 1,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 7,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 1,
+                    }, QNames, Literals),
+                },
+                new int[] { -1, 0, -1, 2, -1, 4, -1, 6, -1, 8, -1, 10, -1, 12, },
+                new int[] { 1, 3, 5, 7, 9, 11, 13, });
+        }
+        return SuffixTrie;
+    }
+
+    private static XPathAutomaton Automaton = null;
+
+    @Override
+    public XPathAutomaton getXPathAutomaton() {
+        synchronized (Lock) {
+            if (Automaton != null)
+                return Automaton;
+            Automaton = new XPathAutomaton(
+                new short[] { 1, 0, 2, 3, 4, 5, 6, 7, },
+                new short[] { -1, 0, 0, 0, 0, 0, 0, 0, },
+                new short[] { 0, 0, 0, 0, 0, 0, 0, 0, },
+                new XPathExpression[] {
+                    null,
+                    null,
+                    null,
+                    null,
+                    null,
+                    null,
+                    null,
+                    null,
+                },
+                new int[] { 1, 2, 3, 4, 5, 6, 7, },
+                QNames);
+        }
+        return Automaton;
+    }
+
+    @Override
+    public boolean hasCompiledMatchers() {
+        return true;
+    }
+
+    @Override
+    public boolean test(int exprIx, MatchContext ctx) {
+        switch (exprIx) {
+        case 0: return match0(ctx);
+        case 1: return match1(ctx);
+        case 2: return match2(ctx);
+        case 3: return match3(ctx);
+        case 4: return match4(ctx);
+        case 5: return match5(ctx);
+        case 6: return match6(ctx);
+        default: throw new HandlerCallError("unhandled test #" + exprIx);
+        }
+    }
+
+    // "values/price"
+    private static boolean match0(MatchContext ctx) {
+        int tagp = ctx.depth() - 1;
+        if (tagp < 0 || ctx.tagAt(tagp) != 0)
+            return false;
+        tagp--;
+        if (tagp < 0 || ctx.tagAt(tagp) != 1)
+            return false;
+        tagp--;
+        return true;
+    }
+
+    // "values/flag"
+    private static boolean match1(MatchContext ctx) {
+        int tagp = ctx.depth() - 1;
+        if (tagp < 0 || ctx.tagAt(tagp) != 2)
+            return false;
+        tagp--;
+        if (tagp < 0 || ctx.tagAt(tagp) != 1)
+            return false;
+        tagp--;
+        return true;
+    }
+
+    // "values/ratio"
+    private static boolean match2(MatchContext ctx) {
+        int tagp = ctx.depth() - 1;
+        if (tagp < 0 || ctx.tagAt(tagp) != 3)
+            return false;
+        tagp--;
+        if (tagp < 0 || ctx.tagAt(tagp) != 1)
+            return false;
+        tagp--;
+        return true;
+    }
+
+    // "values/colour"
+    private static boolean match3(MatchContext ctx) {
+        int tagp = ctx.depth() - 1;
+        if (tagp < 0 || ctx.tagAt(tagp) != 4)
+            return false;
+        tagp--;
+        if (tagp < 0 || ctx.tagAt(tagp) != 1)
+            return false;
+        tagp--;
+        return true;
+    }
+
+    // "values/count"
+    private static boolean match4(MatchContext ctx) {
+        int tagp = ctx.depth() - 1;
+        if (tagp < 0 || ctx.tagAt(tagp) != 5)
+            return false;
+        tagp--;
+        if (tagp < 0 || ctx.tagAt(tagp) != 1)
+            return false;
+        tagp--;
+        return true;
+    }
+
+    // "values/total"
+    private static boolean match5(MatchContext ctx) {
+        int tagp = ctx.depth() - 1;
+        if (tagp < 0 || ctx.tagAt(tagp) != 6)
+            return false;
+        tagp--;
+        if (tagp < 0 || ctx.tagAt(tagp) != 1)
+            return false;
+        tagp--;
+        return true;
+    }
+
+    // "values/broken"
+    private static boolean match6(MatchContext ctx) {
+        int tagp = ctx.depth() - 1;
+        if (tagp < 0 || ctx.tagAt(tagp) != 7)
+            return false;
+        tagp--;
+        if (tagp < 0 || ctx.tagAt(tagp) != 1)
+            return false;
+        tagp--;
+        return true;
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * This file is part of AXS, Annotation-XPath for SAX.
+ * 
+ * Copyright (c) 2013 Benjamin K. Stuhl
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.googlecode.axs.tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import com.googlecode.axs.AbstractAnnotatedHandler;
+import com.googlecode.axs.XPath;
+import com.googlecode.axs.XPathEnd;
+
+/**
+ * All the expressions of this handler are absolute, so the engine skips the subtrees
+ * of the document which none of them can match.
+ */
+public class RuntimeTest6 extends AbstractAnnotatedHandler {
+	private int mTitles = 0, mLinks = 0;
+	
+	private void expect(Object expectation, Object value) {
+		if (expectation.equals(value)) {
+			System.out.println("[OK] expect " + expectation);
+		} else {
+			System.out.println("[FAIL] expect " + expectation + ", got " + value);
+		}
+	}
+	
+	@XPath("/feed/entry/title")
+	public void testTitle(String text) {
+		final String[] titles = { "One", "Two" };
+		expect(titles[mTitles++], text);
+	}
+	
+	@XPath("/feed/entry[2]/title")
+	public void testPosition(String text) {
+		expect("Two", text);
+	}
+	
+	@XPathEnd("/feed/entry//link[@rel = 'self']")
+	public void testLink() {
+		mLinks++;
+	}
+	
+	@XPath("/feed/summary")
+	public void testSummary(String text) {
+		// the text of the skipped <b> is still captured
+		expect("Hello bold world", text);
+	}
+
+	public static void main(String[] args) {
+		SAXParserFactory factory = SAXParserFactory.newInstance();
+		factory.setNamespaceAware(true);
+		
+		if (! (new File(args[0] + "/testData6.xml")).exists()) {
+			System.out.println("Usage: RuntimeTest6 path/to/testData");
+			System.exit(1);
+		}
+		
+		System.out.println("[INFO] Should get exactly 7 [OK]s with each engine.");
+		
+		try {
+			SAXParser parser = factory.newSAXParser();
+			
+			String testDataRoot = args[0];
+			// every test must pass with each of the expression engines
+			for (int engine : new int[] { ENGINE_INTERPRETER, ENGINE_COMPILED, ENGINE_AUTOMATON }) {
+				System.out.println("[INFO] Using XPath engine " + engine);
+				RuntimeTest6 test1 = new RuntimeTest6();
+				test1.setXPathEngine(engine);
+	
+				parser.parse(testDataRoot + "/testData6.xml", test1);
+				test1.expect(2, test1.mTitles);
+				test1.expect(2, test1.mLinks);
+				
+				// a document whose root matches no expression is skipped entirely
+				parser.parse(new InputSource(new StringReader(
+						"<atom><feed><entry><title>Three</title></entry></feed></atom>")), test1);
+				test1.expect(2, test1.mTitles);
+			}
+		} catch (SAXException e) {
+			System.out.println("[FAIL] Got a SAXException: "+ e);
+		} catch (IOException e) {
+			System.out.println("Usage: RuntimeTest6 path/to/testData");
+		} catch (ParserConfigurationException e) {
+			System.out.println("[FAIL] Got a ParserConfigurationException: " + e);
+		}
+	}
+}
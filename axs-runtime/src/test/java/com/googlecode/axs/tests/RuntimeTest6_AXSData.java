@@ -0,0 +1,563 @@
+/* This class is autogenerated by the AXS compiler. Do not edit! */
+
+/* **********************************************************************************/
+/* Copyright (c) 2013 Benjamin K. Stuhl                                             */
+/*                                                                                  */
+/* Permission is hereby granted, free of charge, to any person obtaining a copy     */
+/* of this software and associated documentation files (the "Software"), to deal    */
+/* in the Software without restriction, including without limitation the rights     */
+/* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies */
+/* of the Software, and to permit persons to whom the Software is furnished to do   */
+/* so, subject to the following conditions:                                         */
+/*                                                                                  */
+/* The above copyright notice and this permission notice shall be included in all   */
+/* copies or substantial portions of the Software.                                  */
+/*                                                                                  */
+/* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR       */
+/* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,         */
+/* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE      */
+/* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER           */
+/* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,    */
+/* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE    */
+/* SOFTWARE.                                                                        */
+/* **********************************************************************************/
+
+package com.googlecode.axs.tests;
+
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import javax.annotation.Generated;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+
+import com.googlecode.axs.AXSData;
+import com.googlecode.axs.AbstractAnnotatedHandler;
+import com.googlecode.axs.Base64DecodingWriter;
+import com.googlecode.axs.CapturedText;
+import com.googlecode.axs.HandlerCallError;
+import com.googlecode.axs.KeywordSet;
+import com.googlecode.axs.MatchContext;
+import com.googlecode.axs.QName;
+import com.googlecode.axs.SimplePattern;
+import com.googlecode.axs.TextValues;
+import com.googlecode.axs.XPathAutomaton;
+import com.googlecode.axs.XPathExpression;
+import com.googlecode.axs.XPathSuffixTrie;
+
+import com.googlecode.axs.tests.RuntimeTest6;
+
+
+@Generated(value = { "com.googlecode.axs.AnnotationProcessor", "com.googlecode.axs.tests.RuntimeTest6"})
+public class RuntimeTest6_AXSData implements AXSData {
+    private static Object Lock = new Object();
+
+    @Override
+    public void callXPathText(AbstractAnnotatedHandler abstractHandler, int exprIx, String callbackArg) throws SAXException {
+        RuntimeTest6 handler = (RuntimeTest6) abstractHandler;
+
+        switch (exprIx) {
+        case 0: 
+            // "/feed/entry[2]/title"
+            handler.testPosition(callbackArg);
+            break;
+        case 1: 
+            // "/feed/summary"
+            handler.testSummary(callbackArg);
+            break;
+        case 2: 
+            // "/feed/entry/title"
+            handler.testTitle(callbackArg);
+            break;
+        default: throw new HandlerCallError("unhandled call #" + exprIx);
+        }
+    }
+
+    @Override
+    public void callXPathText(AbstractAnnotatedHandler abstractHandler, int exprIx, CapturedText callbackArg) throws SAXException {
+        RuntimeTest6 handler = (RuntimeTest6) abstractHandler;
+
+        switch (exprIx) {
+        case 0: 
+            // "/feed/entry[2]/title"
+            handler.testPosition(callbackArg.toString());
+            break;
+        case 1: 
+            // "/feed/summary"
+            handler.testSummary(callbackArg.toString());
+            break;
+        case 2: 
+            // "/feed/entry/title"
+            handler.testTitle(callbackArg.toString());
+            break;
+        default: throw new HandlerCallError("unhandled call #" + exprIx);
+        }
+    }
+
+    @Override
+    public void callXPathEnd(AbstractAnnotatedHandler abstractHandler, int exprIx) throws SAXException {
+        RuntimeTest6 handler = (RuntimeTest6) abstractHandler;
+
+        switch (exprIx) {
+        case 3: 
+            // "/feed/entry//link[@rel = 'self']"
+            handler.testLink();
+            break;
+        default: throw new HandlerCallError("unhandled call #" + exprIx);
+        }
+    }
+
+    @Override
+    public void callXPathStart(AbstractAnnotatedHandler abstractHandler, int exprIx, Attributes callbackArg) throws SAXException {
+        RuntimeTest6 handler = (RuntimeTest6) abstractHandler;
+
+        switch (exprIx) {
+        default: throw new HandlerCallError("unhandled call #" + exprIx);
+        }
+    }
+
+    @Override
+    public Writer callXPathStream(AbstractAnnotatedHandler abstractHandler, int exprIx, Attributes callbackArg) throws SAXException {
+        RuntimeTest6 handler = (RuntimeTest6) abstractHandler;
+
+        switch (exprIx) {
+        default: throw new HandlerCallError("unhandled call #" + exprIx);
+        }
+    }
+
+    @Override
+    public int getAXSDataVersion() {
+        return 65552;
+    }
+
+    @Override
+    public int getNumberOfCapturingExpressions() {
+        return 3;
+    }
+
+    @Override
+    public int getNumberOfEndExpressions() {
+        return 1;
+    }
+
+    @Override
+    public int getNumberOfStreamExpressions() {
+        return 0;
+    }
+
+    @Override
+    public int getMaximumPredicateStackDepth() {
+        return 2;
+    }
+
+    private static HashMap<String, int[]> Triggers = null;
+
+    @Override
+    public Map<String, int[]> getTriggerTags() {
+        synchronized (Lock) {
+            if (Triggers != null)
+                return Triggers;
+            Triggers = new HashMap<String, int[]>();
+            Triggers.put("summary", 
+                    new int[] { 1, });
+            Triggers.put("link", 
+                    new int[] { 3, });
+            Triggers.put("title", 
+                    new int[] { 0, 2, });
+        }
+        return Triggers;
+    }
+
+    private static final int[][] TriggerArray0 = new int[][] { null, new int[] { 3, }, };
+    private static final int[][] TriggerArray1 = new int[][] { new int[] { 1, }, new int[] { 1, }, };
+    private static final int[][] TriggerArray2 = new int[][] { new int[] { 0, 2, }, new int[] { 0, 2, }, };
+
+    @Override
+    public int[][] getTriggers(String namespaceURI, String localName) {
+        switch (localName.length()) {
+        case 4:
+            return (localName.equals("link") && namespaceURI.equals("") ? TriggerArray0 : null);
+        case 5:
+            return (localName.equals("title") && namespaceURI.equals("") ? TriggerArray2 : null);
+        case 7:
+            return (localName.equals("summary") && namespaceURI.equals("") ? TriggerArray1 : null);
+        }
+        return null;
+    }
+
+    private static HashSet<String> AttributeCaptureTags = null;
+
+    @Override
+    public Set<String> getAttributeCaptureTags() {
+        synchronized (Lock) {
+            if (AttributeCaptureTags != null)
+                return AttributeCaptureTags;
+
+            AttributeCaptureTags = new HashSet<String>();
+            AttributeCaptureTags.add("link");
+        }
+        return AttributeCaptureTags;
+    }
+
+    private static HashSet<String> PositionCaptureTags = null;
+
+    @Override
+    public Set<String> getPositionCaptureTags() {
+        synchronized (Lock) {
+            if (PositionCaptureTags != null)
+                return PositionCaptureTags;
+
+            PositionCaptureTags = new HashSet<String>();
+            PositionCaptureTags.add("entry");
+        }
+        return PositionCaptureTags;
+    }
+
+    private static int[][] AttributeProjections = null;
+
+    @Override
+    public int[][] getAttributeProjections() {
+        synchronized (Lock) {
+            if (AttributeProjections != null)
+                return AttributeProjections;
+            AttributeProjections = new int[][] {
+                new int[] { 5, 4, },
+            };
+        }
+        return AttributeProjections;
+    }
+
+    private static String[] Literals = new String[] {
+        "self",
+    };
+
+    private static QName[] QNames = new QName[] {
+        new QName("", "title"),
+        new QName("", "entry"),
+        new QName("", "feed"),
+        new QName("", "summary"),
+        new QName("", "rel"),
+        new QName("", "link"),
+    };
+
+    private static XPathExpression[] Expressions = new XPathExpression[] {
+        new XPathExpression( // "/feed/entry[2]/title"
+        new short[] {
+            XPathExpression.INSTR_ELEMENT, 0,
+            XPathExpression.INSTR_POSITION,
+            XPathExpression.INSTR_ILITERAL, 2,
+            XPathExpression.INSTR_EQ,
+            XPathExpression.INSTR_TEST_PREDICATE,
+            XPathExpression.INSTR_ELEMENT, 1,
+            XPathExpression.INSTR_ELEMENT, 2,
+            XPathExpression.INSTR_ROOT,
+        }, QNames, Literals),
+        new XPathExpression( // "/feed/summary"
+        new short[] {
+            XPathExpression.INSTR_ELEMENT, 3,
+            XPathExpression.INSTR_ELEMENT, 2,
+            XPathExpression.INSTR_ROOT,
+        }, QNames, Literals),
+        new XPathExpression( // "/feed/entry/title"
+        new short[] {
+            XPathExpression.INSTR_ELEMENT, 0,
+            XPathExpression.INSTR_ELEMENT, 1,
+            XPathExpression.INSTR_ELEMENT, 2,
+            XPathExpression.INSTR_ROOT,
+        }, QNames, Literals),
+        new XPathExpression( // "/feed/entry//link[@rel = 'self']"
+        new short[] {
+            XPathExpression.INSTR_STEP_PREDICATE, 0,
+            XPathExpression.INSTR_TEST_PREDICATE,
+            XPathExpression.INSTR_ELEMENT, 5,
+            XPathExpression.INSTR_NONCONSECUTIVE_ELEMENT, 1,
+            XPathExpression.INSTR_ELEMENT, 1,
+            XPathExpression.INSTR_ELEMENT, 2,
+            XPathExpression.INSTR_ROOT,
+        }, QNames, Literals),
+    };
+
+    public XPathExpression[] getXPathExpressions() {
+        return Expressions;
+    }
+
+    private static final int[][] Limits = new int[][] {
+    };
+
+    @Override
+    public int[][] getLimits() {
+        return Limits;
+    }
+
+    @Override
+    public int[] getExclusiveGroups() {
+        return null;
+    }
+
+    private static final Pattern[] Patterns = new Pattern[] {
+        null,
+    };
+
+    @Override
+    public Pattern[] getPatterns() {
+        return Patterns;
+    }
+
+    private static final SimplePattern[] SimplePatterns = new SimplePattern[] {
+        null,
+    };
+
+    @Override
+    public SimplePattern[] getSimplePatterns() {
+        return SimplePatterns;
+    }
+
+    private static KeywordSet[] KeywordSets = null;
+
+    @Override
+    public KeywordSet[] getKeywordSets() {
+        synchronized (Lock) {
+            if (KeywordSets != null)
+                return KeywordSets;
+            KeywordSets = new KeywordSet[] {
+            };
+        }
+        return KeywordSets;
+    }
+
+    private static XPathExpression[] StepPredicates = null;
+
+    @Override
+    public XPathExpression[] getStepPredicates() {
+        synchronized (Lock) {
+            if (StepPredicates != null)
+                return StepPredicates;
+            StepPredicates = new XPathExpression[] {
+                new XPathExpression(new short[] {
+                    XPathExpression.INSTR_ATTRIBUTE, 4,
+                    XPathExpression.INSTR_LITERAL, 0,
+                    XPathExpression.INSTR_EQ_STR,
+                    XPathExpression.INSTR_TEST_PREDICATE,
+                    XPathExpression.INSTR_ELEMENT, 5,
+                }, QNames, Literals),
+            };
+        }
+        return StepPredicates;
+    }
+
+    private static int[][] ReachablePrefixes = null;
+
+    @Override
+    public int[][] getReachablePrefixes() {
+        synchronized (Lock) {
+            if (ReachablePrefixes != null)
+                return ReachablePrefixes;
+            ReachablePrefixes = new int[][] {
+                new int[] { -1, 2, 0 },
+                new int[] { 0, 1, 1 },
+                new int[] { 1, 0, 0 },
+                new int[] { 0, 3, 0 },
+            };
+        }
+        return ReachablePrefixes;
+    }
+
+    private static XPathSuffixTrie SuffixTrie = null;
+
+    @Override
+    public XPathSuffixTrie getSuffixTrie() {
+        synchronized (Lock) {
+            if (SuffixTrie != null)
+                return SuffixTrie;
+            SuffixTrie = new XPathSuffixTrie(
+                new XPathExpression[] {
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 0,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_POSITION,
+                        XPathExpression.INSTR_ILITERAL, 2,
+                        XPathExpression.INSTR_EQ,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                        XPathExpression.INSTR_ELEMENT, 1,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 2,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ROOT,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 3,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 2,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ROOT,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 1,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 2,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ROOT,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_STEP_PREDICATE, 0,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                        XPathExpression.INSTR_ELEMENT, 5,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_NONCONSECUTIVE_ELEMENT, 1,
+                        XPathExpression.INSTR_ELEMENT, 1,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 2,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ROOT,
+                    }, QNames, Literals),
+                },
+                new int[] { -1, 0, 1, 2, -1, 4, 5, 0, 7, 8, -1, 10, 11, 12, },
+                new int[] { 3, 6, 9, 13, });
+        }
+        return SuffixTrie;
+    }
+
+    private static XPathAutomaton Automaton = null;
+
+    @Override
+    public XPathAutomaton getXPathAutomaton() {
+        synchronized (Lock) {
+            if (Automaton != null)
+                return Automaton;
+            Automaton = new XPathAutomaton(
+                new short[] { 2, 1, 0, 3, 1, 0, 1, 5, },
+                new short[] { -1, 0, 1, 0, 0, 4, 0, 6, },
+                new short[] { XPathAutomaton.STATE_ANCHORED, 0, 0, 0, 0, 0, XPathAutomaton.STATE_CARRIED, 0, },
+                new XPathExpression[] {
+                    null,
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_POSITION,
+                        XPathExpression.INSTR_ILITERAL, 2,
+                        XPathExpression.INSTR_EQ,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                    }, QNames, Literals),
+                    null,
+                    null,
+                    null,
+                    null,
+                    null,
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_STEP_PREDICATE, 0,
+                        XPathExpression.INSTR_TEST_PREDICATE,
+                    }, QNames, Literals),
+                },
+                new int[] { 2, 3, 5, 7, },
+                QNames);
+        }
+        return Automaton;
+    }
+
+    @Override
+    public boolean hasCompiledMatchers() {
+        return true;
+    }
+
+    @Override
+    public boolean test(int exprIx, MatchContext ctx) {
+        switch (exprIx) {
+        case 0: return match0(ctx);
+        case 1: return match1(ctx);
+        case 2: return match2(ctx);
+        case 3: return match3(ctx);
+        default: throw new HandlerCallError("unhandled test #" + exprIx);
+        }
+    }
+
+    // "/feed/entry[2]/title"
+    private static boolean match0(MatchContext ctx) {
+        int tagp = ctx.depth() - 1;
+        if (tagp < 0 || ctx.tagAt(tagp) != 0)
+            return false;
+        tagp--;
+        final int p0 = ctx.position(tagp);
+        if (p0 < 0)
+            return false;
+        if (!(p0 == 2))
+            return false;
+        if (tagp < 0 || ctx.tagAt(tagp) != 1)
+            return false;
+        tagp--;
+        if (tagp < 0 || ctx.tagAt(tagp) != 2)
+            return false;
+        tagp--;
+        if (tagp != -1)
+            return false;
+        return true;
+    }
+
+    // "/feed/summary"
+    private static boolean match1(MatchContext ctx) {
+        int tagp = ctx.depth() - 1;
+        if (tagp < 0 || ctx.tagAt(tagp) != 3)
+            return false;
+        tagp--;
+        if (tagp < 0 || ctx.tagAt(tagp) != 2)
+            return false;
+        tagp--;
+        if (tagp != -1)
+            return false;
+        return true;
+    }
+
+    // "/feed/entry/title"
+    private static boolean match2(MatchContext ctx) {
+        int tagp = ctx.depth() - 1;
+        if (tagp < 0 || ctx.tagAt(tagp) != 0)
+            return false;
+        tagp--;
+        if (tagp < 0 || ctx.tagAt(tagp) != 1)
+            return false;
+        tagp--;
+        if (tagp < 0 || ctx.tagAt(tagp) != 2)
+            return false;
+        tagp--;
+        if (tagp != -1)
+            return false;
+        return true;
+    }
+
+    // "/feed/entry//link[@rel = 'self']"
+    private static boolean match3(MatchContext ctx) {
+        int tagp = ctx.depth() - 1;
+        final int s0 = ctx.stepPredicate(tagp, 0);
+        if (s0 < 0)
+            return false;
+        if (!(s0 != 0))
+            return false;
+        if (tagp < 0 || ctx.tagAt(tagp) != 5)
+            return false;
+        tagp--;
+        while (tagp >= 0 && ctx.tagAt(tagp) != 1)
+            tagp--;
+        if (tagp < 0)
+            return false;
+        if (tagp < 0 || ctx.tagAt(tagp) != 1)
+            return false;
+        tagp--;
+        if (tagp < 0 || ctx.tagAt(tagp) != 2)
+            return false;
+        tagp--;
+        if (tagp != -1)
+            return false;
+        return true;
+    }
+
+}
@@ -0,0 +1,134 @@
+/*
+ * This file is part of AXS, Annotation-XPath for SAX.
+ * 
+ * Copyright (c) 2013 Benjamin K. Stuhl
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.googlecode.axs.tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+
+import com.googlecode.axs.AbstractAnnotatedHandler;
+import com.googlecode.axs.StopParsingException;
+import com.googlecode.axs.XPath;
+import com.googlecode.axs.XPathEnd;
+import com.googlecode.axs.XPathStart;
+import com.googlecode.axs.XPathStream;
+
+public class RuntimeTest7 extends AbstractAnnotatedHandler {
+	private int mTitles = 0, mLinks = 0, mFeedEnds = 0, mFeedStreamsClosed = 0;
+	
+	private void expect(Object expectation, Object value) {
+		if (expectation.equals(value)) {
+			System.out.println("[OK] expect " + expectation);
+		} else {
+			System.out.println("[FAIL] expect " + expectation + ", got " + value);
+		}
+	}
+	
+	@XPath(value = "/feed/entry/title", limit = 1)
+	public void testTitle(String text) {
+		mTitles++;
+		expect("One", text);
+	}
+	
+	@XPathStart(value = "//link", limit = 2)
+	public void testLink(Attributes attrs) {
+		mLinks++;
+	}
+	
+	@XPathEnd("/feed")
+	public void testFeedEnd() {
+		mFeedEnds++;
+	}
+	
+	@XPathStream("/feed")
+	public Writer testFeedStream(Attributes attrs) {
+		return new StringWriter() {
+			@Override
+			public void close() {
+				mFeedStreamsClosed++;
+			}
+		};
+	}
+
+	public static void main(String[] args) {
+		SAXParserFactory factory = SAXParserFactory.newInstance();
+		factory.setNamespaceAware(true);
+		
+		if (! (new File(args[0] + "/testData6.xml")).exists()) {
+			System.out.println("Usage: RuntimeTest7 path/to/testData");
+			System.exit(1);
+		}
+		
+		System.out.println("[INFO] Should get exactly 10 [OK]s with each engine.");
+		
+		try {
+			SAXParser parser = factory.newSAXParser();
+			
+			String testDataRoot = args[0];
+			// every test must pass with each of the expression engines
+			for (int engine : new int[] { ENGINE_INTERPRETER, ENGINE_COMPILED, ENGINE_AUTOMATON }) {
+				System.out.println("[INFO] Using XPath engine " + engine);
+				
+				// the limited methods are only called so often, but the whole document is parsed
+				RuntimeTest7 test1 = new RuntimeTest7();
+				test1.setXPathEngine(engine);
+				parser.parse(testDataRoot + "/testData6.xml", test1);
+				test1.expect(1, test1.mTitles);
+				test1.expect(2, test1.mLinks);
+				test1.expect(1, test1.mFeedEnds);
+				test1.expect(1, test1.mFeedStreamsClosed);
+				
+				// the parse stops at the second <link>, after the first title
+				RuntimeTest7 test2 = new RuntimeTest7();
+				test2.setXPathEngine(engine);
+				test2.setStopWhenLimitsReached(true);
+				try {
+					parser.parse(testDataRoot + "/testData6.xml", test2);
+					System.out.println("[FAIL] The parse was not stopped");
+				} catch (StopParsingException e) {
+					System.out.println("[OK] The parse was stopped");
+				}
+				test2.expect(2, test2.mLinks);
+				test2.expect(0, test2.mFeedEnds);
+				// the Writer of the open <feed> is closed before the parse stops
+				test2.expect(1, test2.mFeedStreamsClosed);
+			}
+		} catch (SAXException e) {
+			System.out.println("[FAIL] Got a SAXException: "+ e);
+		} catch (IOException e) {
+			System.out.println("Usage: RuntimeTest7 path/to/testData");
+		} catch (ParserConfigurationException e) {
+			System.out.println("[FAIL] Got a ParserConfigurationException: " + e);
+		}
+	}
+}
@@ -0,0 +1,111 @@
+/*
+ * This file is part of AXS, Annotation-XPath for SAX.
+ * 
+ * Copyright (c) 2013 Benjamin K. Stuhl
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.googlecode.axs.tests;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+import com.googlecode.axs.AbstractAnnotatedHandler;
+import com.googlecode.axs.XPathStart;
+
+/**
+ * One expression of this handler is relative, so that no subtree may be skipped, even
+ * though the QName index of its only step happens to equal XPathExpression.INSTR_ROOT.
+ */
+public class RuntimeTest8 extends AbstractAnnotatedHandler {
+	private int mAbsolute = 0, mRelative = 0;
+	
+	private void expect(Object expectation, Object value) {
+		if (expectation.equals(value)) {
+			System.out.println("[OK] expect " + expectation);
+		} else {
+			System.out.println("[FAIL] expect " + expectation + ", got " + value);
+		}
+	}
+	
+	@XPathStart("/root/x")
+	public void testAbsolute(Attributes attrs) {
+		mAbsolute++;
+	}
+	
+	@XPathStart("root")
+	public void testRelative(Attributes attrs) {
+		mRelative++;
+	}
+
+	public static void main(String[] args) {
+		SAXParserFactory factory = SAXParserFactory.newInstance();
+		factory.setNamespaceAware(true);
+		
+		System.out.println("[INFO] Should get exactly 5 [OK]s with each engine.");
+		
+		try {
+			SAXParser parser = factory.newSAXParser();
+			
+			// every test must pass with each of the expression engines
+			for (int engine : new int[] { ENGINE_INTERPRETER, ENGINE_COMPILED, ENGINE_AUTOMATON }) {
+				System.out.println("[INFO] Using XPath engine " + engine);
+				
+				// the root matches no absolute expression, but the relative one matches below it
+				RuntimeTest8 test1 = new RuntimeTest8();
+				test1.setXPathEngine(engine);
+				parser.parse(new InputSource(new StringReader("<feed><root/><root/></feed>")), test1);
+				test1.expect(0, test1.mAbsolute);
+				test1.expect(2, test1.mRelative);
+				
+				RuntimeTest8 test2 = new RuntimeTest8();
+				test2.setXPathEngine(engine);
+				parser.parse(new InputSource(new StringReader("<root><x/><root/></root>")), test2);
+				test2.expect(1, test2.mAbsolute);
+				test2.expect(2, test2.mRelative);
+				
+				// some parsers which are not namespace aware report a null Namespace URI
+				RuntimeTest8 test3 = new RuntimeTest8();
+				test3.setXPathEngine(engine);
+				test3.startDocument();
+				test3.startElement(null, "", "root", new AttributesImpl());
+				test3.endElement(null, "", "root");
+				test3.endDocument();
+				test3.expect(1, test3.mRelative);
+			}
+		} catch (SAXException e) {
+			System.out.println("[FAIL] Got a SAXException: "+ e);
+		} catch (IOException e) {
+			System.out.println("[FAIL] Got an IOException: " + e);
+		} catch (ParserConfigurationException e) {
+			System.out.println("[FAIL] Got a ParserConfigurationException: " + e);
+		}
+	}
+}
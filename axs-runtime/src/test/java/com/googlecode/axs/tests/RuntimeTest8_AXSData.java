@@ -0,0 +1,378 @@
+/* This class is autogenerated by the AXS compiler. Do not edit! */
+
+/* **********************************************************************************/
+/* Copyright (c) 2013 Benjamin K. Stuhl                                             */
+/*                                                                                  */
+/* Permission is hereby granted, free of charge, to any person obtaining a copy     */
+/* of this software and associated documentation files (the "Software"), to deal    */
+/* in the Software without restriction, including without limitation the rights     */
+/* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies */
+/* of the Software, and to permit persons to whom the Software is furnished to do   */
+/* so, subject to the following conditions:                                         */
+/*                                                                                  */
+/* The above copyright notice and this permission notice shall be included in all   */
+/* copies or substantial portions of the Software.                                  */
+/*                                                                                  */
+/* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR       */
+/* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,         */
+/* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE      */
+/* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER           */
+/* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,    */
+/* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE    */
+/* SOFTWARE.                                                                        */
+/* **********************************************************************************/
+
+package com.googlecode.axs.tests;
+
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import javax.annotation.Generated;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+
+import com.googlecode.axs.AXSData;
+import com.googlecode.axs.AbstractAnnotatedHandler;
+import com.googlecode.axs.Base64DecodingWriter;
+import com.googlecode.axs.CapturedText;
+import com.googlecode.axs.HandlerCallError;
+import com.googlecode.axs.KeywordSet;
+import com.googlecode.axs.MatchContext;
+import com.googlecode.axs.QName;
+import com.googlecode.axs.SimplePattern;
+import com.googlecode.axs.TextValues;
+import com.googlecode.axs.XPathAutomaton;
+import com.googlecode.axs.XPathExpression;
+import com.googlecode.axs.XPathSuffixTrie;
+
+import com.googlecode.axs.tests.RuntimeTest8;
+
+
+@Generated(value = { "com.googlecode.axs.AnnotationProcessor", "com.googlecode.axs.tests.RuntimeTest8"})
+public class RuntimeTest8_AXSData implements AXSData {
+    private static Object Lock = new Object();
+
+    @Override
+    public void callXPathText(AbstractAnnotatedHandler abstractHandler, int exprIx, String callbackArg) throws SAXException {
+        RuntimeTest8 handler = (RuntimeTest8) abstractHandler;
+
+        switch (exprIx) {
+        default: throw new HandlerCallError("unhandled call #" + exprIx);
+        }
+    }
+
+    @Override
+    public void callXPathText(AbstractAnnotatedHandler abstractHandler, int exprIx, CapturedText callbackArg) throws SAXException {
+        RuntimeTest8 handler = (RuntimeTest8) abstractHandler;
+
+        switch (exprIx) {
+        default: throw new HandlerCallError("unhandled call #" + exprIx);
+        }
+    }
+
+    @Override
+    public void callXPathEnd(AbstractAnnotatedHandler abstractHandler, int exprIx) throws SAXException {
+        RuntimeTest8 handler = (RuntimeTest8) abstractHandler;
+
+        switch (exprIx) {
+        default: throw new HandlerCallError("unhandled call #" + exprIx);
+        }
+    }
+
+    @Override
+    public void callXPathStart(AbstractAnnotatedHandler abstractHandler, int exprIx, Attributes callbackArg) throws SAXException {
+        RuntimeTest8 handler = (RuntimeTest8) abstractHandler;
+
+        switch (exprIx) {
+        case 0: 
+            // "/root/x"
+            handler.testAbsolute(callbackArg);
+            break;
+        case 1: 
+            // "root"
+            handler.testRelative(callbackArg);
+            break;
+        default: throw new HandlerCallError("unhandled call #" + exprIx);
+        }
+    }
+
+    @Override
+    public Writer callXPathStream(AbstractAnnotatedHandler abstractHandler, int exprIx, Attributes callbackArg) throws SAXException {
+        RuntimeTest8 handler = (RuntimeTest8) abstractHandler;
+
+        switch (exprIx) {
+        default: throw new HandlerCallError("unhandled call #" + exprIx);
+        }
+    }
+
+    @Override
+    public int getAXSDataVersion() {
+        return 65552;
+    }
+
+    @Override
+    public int getNumberOfCapturingExpressions() {
+        return 0;
+    }
+
+    @Override
+    public int getNumberOfEndExpressions() {
+        return 0;
+    }
+
+    @Override
+    public int getNumberOfStreamExpressions() {
+        return 0;
+    }
+
+    @Override
+    public int getMaximumPredicateStackDepth() {
+        return 0;
+    }
+
+    private static HashMap<String, int[]> Triggers = null;
+
+    @Override
+    public Map<String, int[]> getTriggerTags() {
+        synchronized (Lock) {
+            if (Triggers != null)
+                return Triggers;
+            Triggers = new HashMap<String, int[]>();
+            Triggers.put("root", 
+                    new int[] { 1, });
+            Triggers.put("x", 
+                    new int[] { 0, });
+        }
+        return Triggers;
+    }
+
+    private static final int[][] TriggerArray0 = new int[][] { new int[] { 1, }, null, };
+    private static final int[][] TriggerArray1 = new int[][] { new int[] { 0, }, null, };
+
+    @Override
+    public int[][] getTriggers(String namespaceURI, String localName) {
+        switch (localName.length()) {
+        case 1:
+            return (localName.equals("x") && namespaceURI.equals("") ? TriggerArray1 : null);
+        case 4:
+            return (localName.equals("root") && namespaceURI.equals("") ? TriggerArray0 : null);
+        }
+        return null;
+    }
+
+    private static HashSet<String> AttributeCaptureTags = null;
+
+    @Override
+    public Set<String> getAttributeCaptureTags() {
+        synchronized (Lock) {
+            if (AttributeCaptureTags != null)
+                return AttributeCaptureTags;
+
+            AttributeCaptureTags = new HashSet<String>();
+        }
+        return AttributeCaptureTags;
+    }
+
+    private static HashSet<String> PositionCaptureTags = null;
+
+    @Override
+    public Set<String> getPositionCaptureTags() {
+        synchronized (Lock) {
+            if (PositionCaptureTags != null)
+                return PositionCaptureTags;
+
+            PositionCaptureTags = new HashSet<String>();
+        }
+        return PositionCaptureTags;
+    }
+
+    private static int[][] AttributeProjections = null;
+
+    @Override
+    public int[][] getAttributeProjections() {
+        synchronized (Lock) {
+            if (AttributeProjections != null)
+                return AttributeProjections;
+            AttributeProjections = new int[][] {
+            };
+        }
+        return AttributeProjections;
+    }
+
+    private static String[] Literals = new String[] {
+    };
+
+    private static QName[] QNames = new QName[] {
+        new QName("", "x"),
+        new QName("", "root"),
+    };
+
+    private static XPathExpression[] Expressions = new XPathExpression[] {
+        new XPathExpression( // "/root/x"
+        new short[] {
+            XPathExpression.INSTR_ELEMENT, 0,
+            XPathExpression.INSTR_ELEMENT, 1,
+            XPathExpression.INSTR_ROOT,
+        }, QNames, Literals),
+        new XPathExpression( // "root"
+        new short[] {
+            XPathExpression.INSTR_ELEMENT, 1,
+        }, QNames, Literals),
+    };
+
+    public XPathExpression[] getXPathExpressions() {
+        return Expressions;
+    }
+
+    private static final int[][] Limits = new int[][] {
+    };
+
+    @Override
+    public int[][] getLimits() {
+        return Limits;
+    }
+
+    @Override
+    public int[] getExclusiveGroups() {
+        return null;
+    }
+
+    private static final Pattern[] Patterns = new Pattern[] {
+    };
+
+    @Override
+    public Pattern[] getPatterns() {
+        return Patterns;
+    }
+
+    private static final SimplePattern[] SimplePatterns = new SimplePattern[] {
+    };
+
+    @Override
+    public SimplePattern[] getSimplePatterns() {
+        return SimplePatterns;
+    }
+
+    private static KeywordSet[] KeywordSets = null;
+
+    @Override
+    public KeywordSet[] getKeywordSets() {
+        synchronized (Lock) {
+            if (KeywordSets != null)
+                return KeywordSets;
+            KeywordSets = new KeywordSet[] {
+            };
+        }
+        return KeywordSets;
+    }
+
+    private static XPathExpression[] StepPredicates = null;
+
+    @Override
+    public XPathExpression[] getStepPredicates() {
+        synchronized (Lock) {
+            if (StepPredicates != null)
+                return StepPredicates;
+            StepPredicates = new XPathExpression[] {
+            };
+        }
+        return StepPredicates;
+    }
+
+    @Override
+    public int[][] getReachablePrefixes() {
+        // some expressions are relative, so any element can lead to a match
+        return null;
+    }
+
+    private static XPathSuffixTrie SuffixTrie = null;
+
+    @Override
+    public XPathSuffixTrie getSuffixTrie() {
+        synchronized (Lock) {
+            if (SuffixTrie != null)
+                return SuffixTrie;
+            SuffixTrie = new XPathSuffixTrie(
+                new XPathExpression[] {
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 0,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 1,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ROOT,
+                    }, QNames, Literals),
+                    new XPathExpression(new short[] {
+                        XPathExpression.INSTR_ELEMENT, 1,
+                    }, QNames, Literals),
+                },
+                new int[] { -1, 0, 1, -1, },
+                new int[] { 2, 3, });
+        }
+        return SuffixTrie;
+    }
+
+    private static XPathAutomaton Automaton = null;
+
+    @Override
+    public XPathAutomaton getXPathAutomaton() {
+        synchronized (Lock) {
+            if (Automaton != null)
+                return Automaton;
+            Automaton = new XPathAutomaton(
+                new short[] { 1, 0, 1, },
+                new short[] { -1, 0, -1, },
+                new short[] { XPathAutomaton.STATE_ANCHORED, 0, 0, },
+                new XPathExpression[] {
+                    null,
+                    null,
+                    null,
+                },
+                new int[] { 1, 2, },
+                QNames);
+        }
+        return Automaton;
+    }
+
+    @Override
+    public boolean hasCompiledMatchers() {
+        return true;
+    }
+
+    @Override
+    public boolean test(int exprIx, MatchContext ctx) {
+        switch (exprIx) {
+        case 0: return match0(ctx);
+        case 1: return match1(ctx);
+        default: throw new HandlerCallError("unhandled test #" + exprIx);
+        }
+    }
+
+    // "/root/x"
+    private static boolean match0(MatchContext ctx) {
+        int tagp = ctx.depth() - 1;
+        if (tagp < 0 || ctx.tagAt(tagp) != 0)
+            return false;
+        tagp--;
+        if (tagp < 0 || ctx.tagAt(tagp) != 1)
+            return false;
+        tagp--;
+        if (tagp != -1)
+            return false;
+        return true;
+    }
+
+    // "root"
+    private static boolean match1(MatchContext ctx) {
+        int tagp = ctx.depth() - 1;
+        if (tagp < 0 || ctx.tagAt(tagp) != 1)
+            return false;
+        tagp--;
+        return true;
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * This file is part of AXS, Annotation-XPath for SAX.
+ * 
+ * Copyright (c) 2013 Benjamin K. Stuhl
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.googlecode.axs.tests;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+
+import com.googlecode.axs.AbstractAnnotatedHandler;
+import com.googlecode.axs.QName;
+import com.googlecode.axs.XPath;
+
+/**
+ * All the expressions of this handler are absolute, but it overrides the SAX callbacks
+ * and queries the tag path from them, so no subtree may be skipped.
+ */
+public class RuntimeTest9 extends AbstractAnnotatedHandler {
+	private int mDepth = 0, mWrongDepths = 0, mParagraphs = 0, mTitles = 0;
+	
+	private void expect(Object expectation, Object value) {
+		if (expectation.equals(value)) {
+			System.out.println("[OK] expect " + expectation);
+		} else {
+			System.out.println("[FAIL] expect " + expectation + ", got " + value);
+		}
+	}
+	
+	@XPath("/feed/entry/title")
+	public void testTitle(String text) {
+		mTitles++;
+	}
+	
+	@Override
+	public void startElement(String uri, String localName, String qName, Attributes attrs) throws SAXException {
+		super.startElement(uri, localName, qName, attrs);
+		mDepth++;
+		if (tagDepth() != mDepth)
+			mWrongDepths++;
+		// <p> is only ever inside /feed/entry/content, which no expression can match
+		if ("p".equals(localName) && tagAtDepth(tagDepth() - 3).equals(new QName("", "entry")))
+			mParagraphs++;
+	}
+	
+	@Override
+	public void endElement(String uri, String localName, String qName) throws SAXException {
+		if (tagDepth() != mDepth)
+			mWrongDepths++;
+		mDepth--;
+		super.endElement(uri, localName, qName);
+	}
+
+	public static void main(String[] args) {
+		SAXParserFactory factory = SAXParserFactory.newInstance();
+		factory.setNamespaceAware(true);
+		
+		if (! (new File(args[0] + "/testData6.xml")).exists()) {
+			System.out.println("Usage: RuntimeTest9 path/to/testData");
+			System.exit(1);
+		}
+		
+		System.out.println("[INFO] Should get exactly 3 [OK]s with each engine.");
+		
+		try {
+			SAXParser parser = factory.newSAXParser();
+			
+			String testDataRoot = args[0];
+			// every test must pass with each of the expression engines
+			for (int engine : new int[] { ENGINE_INTERPRETER, ENGINE_COMPILED, ENGINE_AUTOMATON }) {
+				System.out.println("[INFO] Using XPath engine " + engine);
+				RuntimeTest9 test1 = new RuntimeTest9();
+				test1.setXPathEngine(engine);
+	
+				parser.parse(testDataRoot + "/testData6.xml", test1);
+				test1.expect(2, test1.mTitles);
+				test1.expect(0, test1.mWrongDepths);
+				test1.expect(1, test1.mParagraphs);
+			}
+		} catch (SAXException e) {
+			System.out.println("[FAIL] Got a SAXException: "+ e);
+		} catch (IOException e) {
+			System.out.println("Usage: RuntimeTest9 path/to/testData");
+		} catch (ParserConfigurationException e) {
+			System.out.println("[FAIL] Got a ParserConfigurationException: " + e);
+		}
+	}
+}